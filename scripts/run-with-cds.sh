@@ -0,0 +1,28 @@
+#!/bin/sh
+# Runs an entry point of the packaged jar with the AppCDS archive built by: mvn -Pappcds package
+#
+# Usage: scripts/run-with-cds.sh [mainClass] [args...]
+#   JAVA_OPTS   extra JVM options, e.g. -XX:TieredStopAtLevel=1 for jobs too short to profit from C2
+#
+# The archive is only valid for the jar it was trained with; after repackaging, rebuild it.
+# Without an archive, or with a stale one, the JVM starts normally and prints a warning.
+
+BASE_DIR=$(cd "$(dirname "$0")/.." && pwd)
+JAR="$BASE_DIR/target/copilot-demo-1.0.0.jar"
+ARCHIVE="$BASE_DIR/target/app-cds.jsa"
+MAIN_CLASS=${1:-com.example.demo.DemoRunner}
+[ $# -gt 0 ] && shift
+
+if [ ! -f "$JAR" ]; then
+    echo "No jar at $JAR; build it with: mvn -Pappcds package" >&2
+    exit 1
+fi
+
+CDS_OPTS=""
+if [ -f "$ARCHIVE" ]; then
+    CDS_OPTS="-XX:SharedArchiveFile=$ARCHIVE"
+else
+    echo "No AppCDS archive at $ARCHIVE; starting without it" >&2
+fi
+
+exec java $CDS_OPTS $JAVA_OPTS -cp "$JAR" "$MAIN_CLASS" "$@"
@@ -0,0 +1,267 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH JSON result files and fails when a benchmark got slower than a threshold.
+ * 
+ * Usage: {@code JmhRegressionCheck <baseline.json> <current.json> [thresholdPercent]}. Results
+ * are matched by benchmark, mode and parameters; throughput regresses when it drops, the other
+ * modes when their time per operation grows. Benchmarks missing from either file are listed but
+ * do not fail the check. Exits with status 1 if any benchmark regressed, and with status 2 if
+ * the baseline file does not exist, so a CI job without a baseline cannot pass unchecked.
+ * 
+ * To record or update the baseline, run the benchmarks on the reference machine and copy
+ * their result file over it: {@code cp target/jmh-result.json jmh-baseline.json}.
+ */
+public final class JmhRegressionCheck {
+    
+    private JmhRegressionCheck() {
+    }
+    
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: JmhRegressionCheck <baseline.json> <current.json> [thresholdPercent]");
+            System.exit(2);
+        }
+        if (!Files.exists(Paths.get(args[0]))) {
+            System.err.println("No baseline at " + args[0] + "; record one by copying a result file of the "
+                + "reference machine there, e.g. cp " + args[1] + " " + args[0]);
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+        Map<String, Result> baseline = read(args[0]);
+        Map<String, Result> current = read(args[1]);
+        
+        int regressions = 0;
+        for (Map.Entry<String, Result> entry : current.entrySet()) {
+            Result before = baseline.get(entry.getKey());
+            Result after = entry.getValue();
+            if (before == null) {
+                System.out.printf("NEW        %s: %.3f %s%n", entry.getKey(), after.score, after.unit);
+                continue;
+            }
+            double change = (after.score - before.score) / before.score * 100;
+            double slowdown = "thrpt".equals(after.mode) ? -change : change;
+            boolean regressed = slowdown > threshold;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-10s %s: %.3f -> %.3f %s (%+.1f%%)%n", regressed ? "REGRESSED" : "OK",
+                              entry.getKey(), before.score, after.score, after.unit, change);
+        }
+        for (String key : baseline.keySet()) {
+            if (!current.containsKey(key)) {
+                System.out.println("MISSING    " + key);
+            }
+        }
+        if (regressions > 0) {
+            System.out.println(regressions + " benchmark(s) regressed by more than " + threshold + "%");
+            System.exit(1);
+        }
+    }
+    
+    private static Map<String, Result> read(String file) throws IOException {
+        String json = new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8);
+        Map<String, Result> results = new TreeMap<>();
+        for (Object element : (List<?>) new Parser(json).parse()) {
+            Map<?, ?> run = (Map<?, ?>) element;
+            Map<?, ?> metric = (Map<?, ?>) run.get("primaryMetric");
+            String mode = (String) run.get("mode");
+            StringBuilder key = new StringBuilder((String) run.get("benchmark")).append(" [").append(mode);
+            Object params = run.get("params");
+            if (params != null) {
+                new TreeMap<Object, Object>((Map<?, ?>) params)
+                    .forEach((name, value) -> key.append(", ").append(name).append('=').append(value));
+            }
+            key.append(']');
+            Object score = metric.get("score");
+            double value = score instanceof Number ? ((Number) score).doubleValue() : Double.parseDouble((String) score);
+            results.put(key.toString(), new Result(mode, value, (String) metric.get("scoreUnit")));
+        }
+        return results;
+    }
+    
+    private static final class Result {
+        private final String mode;
+        private final double score;
+        private final String unit;
+        
+        Result(String mode, double score, String unit) {
+            this.mode = mode;
+            this.score = score;
+            this.unit = unit;
+        }
+    }
+    
+    /**
+     * Minimal JSON reader for JMH result files: objects, arrays, strings, numbers, booleans and
+     * null. JMH writes non-finite scores as the strings "NaN" and "Infinity".
+     */
+    private static final class Parser {
+        private final String text;
+        private int position;
+        
+        Parser(String text) {
+            this.text = text;
+        }
+        
+        Object parse() {
+            Object value = value();
+            skipWhitespace();
+            if (position != text.length()) {
+                throw error("Trailing content");
+            }
+            return value;
+        }
+        
+        private Object value() {
+            skipWhitespace();
+            if (position >= text.length()) {
+                throw error("Unexpected end of input");
+            }
+            char c = text.charAt(position);
+            switch (c) {
+                case '{':
+                    return object();
+                case '[':
+                    return array();
+                case '"':
+                    return string();
+                case 't':
+                    return literal("true", Boolean.TRUE);
+                case 'f':
+                    return literal("false", Boolean.FALSE);
+                case 'n':
+                    return literal("null", null);
+                default:
+                    return number();
+            }
+        }
+        
+        private Map<String, Object> object() {
+            Map<String, Object> object = new LinkedHashMap<>();
+            position++;
+            skipWhitespace();
+            if (text.charAt(position) == '}') {
+                position++;
+                return object;
+            }
+            while (true) {
+                skipWhitespace();
+                String key = string();
+                skipWhitespace();
+                expect(':');
+                object.put(key, value());
+                skipWhitespace();
+                if (text.charAt(position) == '}') {
+                    position++;
+                    return object;
+                }
+                expect(',');
+            }
+        }
+        
+        private List<Object> array() {
+            List<Object> array = new ArrayList<>();
+            position++;
+            skipWhitespace();
+            if (text.charAt(position) == ']') {
+                position++;
+                return array;
+            }
+            while (true) {
+                array.add(value());
+                skipWhitespace();
+                if (text.charAt(position) == ']') {
+                    position++;
+                    return array;
+                }
+                expect(',');
+            }
+        }
+        
+        private String string() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (true) {
+                char c = text.charAt(position++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                char escaped = text.charAt(position++);
+                switch (escaped) {
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'u':
+                        value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        position += 4;
+                        break;
+                    default:
+                        value.append(escaped);
+                }
+            }
+        }
+        
+        private Double number() {
+            int start = position;
+            while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+                position++;
+            }
+            if (start == position) {
+                throw error("Unexpected character '" + text.charAt(position) + "'");
+            }
+            return Double.valueOf(text.substring(start, position));
+        }
+        
+        private Object literal(String literal, Object value) {
+            if (!text.startsWith(literal, position)) {
+                throw error("Expected " + literal);
+            }
+            position += literal.length();
+            return value;
+        }
+        
+        private void expect(char c) {
+            if (position >= text.length() || text.charAt(position) != c) {
+                throw error("Expected '" + c + "'");
+            }
+            position++;
+        }
+        
+        private void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+        
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at offset " + position);
+        }
+    }
+}
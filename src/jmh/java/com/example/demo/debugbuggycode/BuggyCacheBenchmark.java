@@ -0,0 +1,92 @@
+package com.example.demo.debugbuggycode;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link BuggyCache} gets and puts, alone and with readers and a writer contending
+ * on the same cache, in operations per microsecond. Keys cycle through a fixed key space, so
+ * puts overwrite entries instead of growing the cache without bound.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BuggyCacheBenchmark {
+    
+    @Param({"1000", "100000"})
+    public int keys;
+    
+    private BuggyCache<Integer, String> cache;
+    private Integer[] keySpace;
+    
+    /**
+     * Per-thread position in the key space, so threads do not share a counter.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+        
+        int next(int bound) {
+            // Stride through the key space to avoid walking neighbouring hash buckets
+            next = (next + 7919) % bound;
+            return next;
+        }
+    }
+    
+    @Setup
+    public void setUp() {
+        cache = new BuggyCache<>(keys, TimeUnit.HOURS.toMillis(1));
+        keySpace = new Integer[keys];
+        for (int i = 0; i < keys; i++) {
+            keySpace[i] = i;
+            cache.put(keySpace[i], "value-" + i);
+        }
+    }
+    
+    @Benchmark
+    public String get(Cursor cursor) {
+        return cache.get(keySpace[cursor.next(keys)]);
+    }
+    
+    @Benchmark
+    public void put(Cursor cursor) {
+        cache.put(keySpace[cursor.next(keys)], "value");
+    }
+    
+    @Benchmark
+    @Threads(4)
+    public String contendedGet(Cursor cursor) {
+        return cache.get(keySpace[cursor.next(keys)]);
+    }
+    
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public String mixedGet(Cursor cursor) {
+        return cache.get(keySpace[cursor.next(keys)]);
+    }
+    
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void mixedPut(Cursor cursor) {
+        cache.put(keySpace[cursor.next(keys)], "value");
+    }
+}
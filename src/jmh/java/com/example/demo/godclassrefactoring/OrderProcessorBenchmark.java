@@ -0,0 +1,87 @@
+package com.example.demo.godclassrefactoring;
+
+import com.example.demo.godclassrefactoring.refactored.RefactoredDataProcessor;
+import com.example.demo.godclassrefactoring.solutions.run2.RefactoredOrderProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end time per call of the legacy {@link OrderProcessor} against the refactored
+ * {@link RefactoredDataProcessor} and the run2 {@link RefactoredOrderProcessor}, replacing the
+ * single timed call of {@code LegacyVsRefactoredComparison}.
+ * 
+ * Console output is discarded while measuring: the processors still build and print their log
+ * lines, but the terminal's speed does not end up in the results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderProcessorBenchmark {
+    
+    @Param({"csv", "json"})
+    public String dataType;
+    
+    @Param({"validation", "analytics"})
+    public String processingType;
+    
+    @Param({"3", "1000", "100000"})
+    public int rows;
+    
+    private List<String> rawData;
+    private OrderProcessor legacy;
+    private RefactoredDataProcessor refactored;
+    private RefactoredOrderProcessor run2;
+    private PrintStream console;
+    
+    @Setup
+    public void setUp() {
+        rawData = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            rawData.add("order-" + i + ",customer-" + (i % 100) + "," + (i % 50 + 1));
+        }
+        legacy = new OrderProcessor();
+        refactored = new RefactoredDataProcessor();
+        run2 = new RefactoredOrderProcessor();
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+    
+    @TearDown
+    public void tearDown() {
+        System.setOut(console);
+    }
+    
+    @Benchmark
+    public String legacy() {
+        return legacy.processData(dataType, processingType, rawData);
+    }
+    
+    @Benchmark
+    public String refactored() {
+        return refactored.processData(dataType, processingType, rawData);
+    }
+    
+    @Benchmark
+    public String run2() {
+        return run2.processData(dataType, processingType, rawData);
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time for a burst of concurrent processing requests that each block on simulated I/O, on the
+ * platform thread pool against virtual threads. The virtual mode fails its setup on runtimes
+ * before Java 21.
+ * 
+ * Console output is discarded while measuring, as in {@code OrderProcessorBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AsyncProcessingBenchmark {
+    
+    private static final String[] DATA_TYPES = {"csv", "json", "xml", "database"};
+    private static final List<String> SAMPLE_DATA = Arrays.asList("row1", "row2", "row3");
+    
+    @Param({"PLATFORM", "VIRTUAL"})
+    public ExecutorMode mode;
+    
+    @Param({"1000"})
+    public int requests;
+    
+    @Param({"20"})
+    public long ioMillis;
+    
+    @Param({"200"})
+    public int platformThreads;
+    
+    private AsyncOrderProcessor async;
+    private PrintStream console;
+    
+    @Setup
+    public void setUp() {
+        if (!mode.isSupported()) {
+            throw new IllegalStateException(mode + " is not supported on Java " + System.getProperty("java.version"));
+        }
+        async = new AsyncOrderProcessor(new BlockingIoOrderProcessor(ioMillis), mode, platformThreads,
+                                        new ConcurrencyLimiter(requests));
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+    
+    @TearDown
+    public void tearDown() {
+        System.setOut(console);
+        async.close();
+    }
+    
+    @Benchmark
+    public int burst() {
+        List<CompletableFuture<String>> futures = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            futures.add(async.processDataAsync(DATA_TYPES[i % DATA_TYPES.length], "analytics", SAMPLE_DATA));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        return futures.size();
+    }
+    
+    /**
+     * Processor that blocks for a fixed time per request, standing in for database or file I/O.
+     */
+    private static class BlockingIoOrderProcessor extends RefactoredOrderProcessor {
+        private final long ioMillis;
+        
+        BlockingIoOrderProcessor(long ioMillis) {
+            this.ioMillis = ioMillis;
+        }
+        
+        @Override
+        public String processData(String dataType, String processingType, List<String> rawData) {
+            try {
+                Thread.sleep(ioMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted during simulated I/O", e);
+            }
+            return super.processData(dataType, processingType, rawData);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.demo.readmegeneration;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time per call of {@link DataProcessor#processTransactions} and
+ * {@link DataProcessor#calculateMovingAverages} by input size.
+ * 
+ * The default sizes fit a few gigabytes of heap; larger ones need more, e.g.
+ * {@code -Djmh.args="DataProcessorBenchmark -p rows=100000000 -jvmArgsAppend -Xmx24g"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class DataProcessorBenchmark {
+    
+    private static final String[] CATEGORIES = {"food", "electronics", "clothing", "services", "books"};
+    private static final String[] CURRENCIES = {"USD", "EUR", "GBP"};
+    
+    @Param({"1000", "100000", "10000000"})
+    public int rows;
+    
+    @Param({"20"})
+    public int window;
+    
+    private DataProcessor processor;
+    private List<Transaction> transactions;
+    private List<Double> values;
+    
+    @Setup
+    public void setUp() {
+        processor = new DataProcessor();
+        LocalDateTime timestamp = LocalDateTime.of(2024, 1, 1, 0, 0);
+        transactions = new ArrayList<>(rows);
+        values = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            // Every tenth amount is non-positive and filtered out
+            double amount = i % 10 == 0 ? -1 : (i % 997) + 0.5;
+            transactions.add(new Transaction("t" + (i % 1024), CATEGORIES[i % CATEGORIES.length], amount,
+                                             CURRENCIES[i % CURRENCIES.length], timestamp));
+            values.add(Math.sin(i / 100.0) * 100 + i % 13);
+        }
+    }
+    
+    @Benchmark
+    public List<TransactionSummary> processTransactions() {
+        return processor.processTransactions(transactions, "EUR");
+    }
+    
+    @Benchmark
+    public Map<String, Double> calculateMovingAverages() {
+        return processor.calculateMovingAverages(values, window);
+    }
+}
@@ -0,0 +1,346 @@
+package com.example.demo.godclassrefactoring.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-thread pool of the intermediate buffers a pipeline invocation needs: byte buffers for
+ * encoding output, string builders, and primitive arrays for column scratch space such as
+ * group ids and null masks. Borrowing returns a pooled buffer when one is large enough and
+ * releasing hands it back, so steady-state invocations allocate no new buffers.
+ * 
+ * Each thread has its own arena, so borrowing and releasing take no locks. A buffer must be
+ * released on the thread that borrowed it, exactly once, and must not be used afterwards;
+ * borrow in a try block and release in its finally block. The contents of a borrowed array
+ * are undefined: clear the part you use. At most {@value #MAX_POOLED} buffers of each kind
+ * are kept, and buffers above {@value #MAX_RETAINED_BYTES} bytes are left to the garbage
+ * collector, so a single huge batch does not pin its memory.
+ * 
+ * With leak detection, enabled by {@code -Dbuffer.arena.leakDetection=true} or
+ * {@link #setLeakDetection(boolean)}, every borrow records where it happened, releasing a
+ * buffer that is not outstanding fails, and {@link #checkReturned} fails with the borrow sites
+ * of buffers an operation did not return. Without it, leaks are only counted.
+ */
+public final class BufferArena {
+    
+    static final int MAX_POOLED = 8;
+    static final int MAX_RETAINED_BYTES = 4 * 1024 * 1024;
+    private static final int MIN_BYTE_BUFFER = 8 * 1024;
+    private static final int MIN_ARRAY_LENGTH = 64;
+    
+    private static final ThreadLocal<BufferArena> ARENAS = ThreadLocal.withInitial(BufferArena::new);
+    private static final LongAdder LEAKS = new LongAdder();
+    private static volatile boolean leakDetection = Boolean.getBoolean("buffer.arena.leakDetection");
+    
+    private final Pool byteBuffers = new Pool();
+    private final Pool stringBuilders = new Pool();
+    private final Pool ints = new Pool();
+    private final Pool longs = new Pool();
+    private final Pool doubles = new Pool();
+    private final Map<Object, Throwable> borrowSites = new IdentityHashMap<>();
+    private int outstanding;
+    private long borrows;
+    private long allocations;
+    
+    BufferArena() {
+    }
+    
+    /**
+     * Returns the arena of the current thread.
+     *
+     * @return the arena
+     */
+    public static BufferArena current() {
+        return ARENAS.get();
+    }
+    
+    public static boolean isLeakDetection() {
+        return leakDetection;
+    }
+    
+    /**
+     * Turns recording of borrow sites on or off for all threads. Buffers borrowed while it was
+     * off are not tracked.
+     *
+     * @param enabled whether to record borrow sites
+     */
+    public static void setLeakDetection(boolean enabled) {
+        leakDetection = enabled;
+    }
+    
+    /**
+     * Returns the number of buffers that operations passed to {@link #checkReturned} did not
+     * return, on any thread.
+     *
+     * @return the leaked buffer count
+     */
+    public static long getLeakCount() {
+        return LEAKS.sum();
+    }
+    
+    /**
+     * Borrows a cleared heap byte buffer.
+     *
+     * @param minCapacity the minimum capacity in bytes
+     * @return a buffer with at least that capacity
+     */
+    public ByteBuffer borrowByteBuffer(int minCapacity) {
+        ByteBuffer buffer = (ByteBuffer) byteBuffers.take(minCapacity);
+        if (buffer == null) {
+            buffer = ByteBuffer.allocate(size(minCapacity, MIN_BYTE_BUFFER));
+            allocations++;
+        }
+        buffer.clear();
+        return borrowed(buffer);
+    }
+    
+    /**
+     * Borrows an empty string builder.
+     *
+     * @return the builder
+     */
+    public StringBuilder borrowStringBuilder() {
+        StringBuilder builder = (StringBuilder) stringBuilders.take(0);
+        if (builder == null) {
+            builder = new StringBuilder(256);
+            allocations++;
+        }
+        builder.setLength(0);
+        return borrowed(builder);
+    }
+    
+    /**
+     * Borrows an int array with undefined contents.
+     *
+     * @param minLength the minimum length
+     * @return an array of at least that length
+     */
+    public int[] borrowInts(int minLength) {
+        int[] array = (int[]) ints.take(minLength);
+        if (array == null) {
+            array = new int[size(minLength, MIN_ARRAY_LENGTH)];
+            allocations++;
+        }
+        return borrowed(array);
+    }
+    
+    /**
+     * Borrows a long array with undefined contents.
+     *
+     * @param minLength the minimum length
+     * @return an array of at least that length
+     */
+    public long[] borrowLongs(int minLength) {
+        long[] array = (long[]) longs.take(minLength);
+        if (array == null) {
+            array = new long[size(minLength, MIN_ARRAY_LENGTH)];
+            allocations++;
+        }
+        return borrowed(array);
+    }
+    
+    /**
+     * Borrows a double array with undefined contents.
+     *
+     * @param minLength the minimum length
+     * @return an array of at least that length
+     */
+    public double[] borrowDoubles(int minLength) {
+        double[] array = (double[]) doubles.take(minLength);
+        if (array == null) {
+            array = new double[size(minLength, MIN_ARRAY_LENGTH)];
+            allocations++;
+        }
+        return borrowed(array);
+    }
+    
+    public void release(ByteBuffer buffer) {
+        returned(buffer, byteBuffers);
+        if (!buffer.isDirect() && !buffer.isReadOnly() && buffer.capacity() <= MAX_RETAINED_BYTES) {
+            byteBuffers.offer(buffer, buffer.capacity());
+        }
+    }
+    
+    public void release(StringBuilder builder) {
+        returned(builder, stringBuilders);
+        if (builder.capacity() * 2L <= MAX_RETAINED_BYTES) {
+            stringBuilders.offer(builder, builder.capacity());
+        }
+    }
+    
+    public void release(int[] array) {
+        returned(array, ints);
+        if (array.length * 4L <= MAX_RETAINED_BYTES) {
+            ints.offer(array, array.length);
+        }
+    }
+    
+    public void release(long[] array) {
+        returned(array, longs);
+        if (array.length * 8L <= MAX_RETAINED_BYTES) {
+            longs.offer(array, array.length);
+        }
+    }
+    
+    public void release(double[] array) {
+        returned(array, doubles);
+        if (array.length * 8L <= MAX_RETAINED_BYTES) {
+            doubles.offer(array, array.length);
+        }
+    }
+    
+    /**
+     * Returns the number of buffers borrowed and not yet released on this thread; take it
+     * before an operation to pass to {@link #checkReturned}.
+     *
+     * @return the outstanding buffer count
+     */
+    public int getOutstanding() {
+        return outstanding;
+    }
+    
+    /**
+     * Returns the number of borrows on this thread.
+     *
+     * @return the borrow count
+     */
+    public long getBorrowCount() {
+        return borrows;
+    }
+    
+    /**
+     * Returns the number of borrows on this thread that had to allocate a new buffer because
+     * none in the pool was large enough.
+     *
+     * @return the allocation count
+     */
+    public long getAllocationCount() {
+        return allocations;
+    }
+    
+    /**
+     * Checks that an operation returned every buffer it borrowed. Leaked buffers are counted
+     * and forgotten, so the next check does not report them again; with leak detection, the
+     * check fails.
+     *
+     * @param outstandingBefore {@link #getOutstanding()} before the operation
+     * @param operation describes the operation in the failure message
+     * @throws IllegalStateException if leak detection is on and buffers were not returned;
+     *         its cause and suppressed exceptions show where they were borrowed
+     */
+    public void checkReturned(int outstandingBefore, Object operation) {
+        int leaked = outstanding - outstandingBefore;
+        if (leaked <= 0) {
+            return;
+        }
+        outstanding = outstandingBefore;
+        LEAKS.add(leaked);
+        if (borrowSites.isEmpty()) {
+            return;
+        }
+        List<Throwable> sites = new ArrayList<>(borrowSites.values());
+        borrowSites.clear();
+        IllegalStateException leak = new IllegalStateException(
+            operation + " did not return " + leaked + " borrowed buffer(s)", sites.get(0));
+        for (int i = 1; i < sites.size(); i++) {
+            leak.addSuppressed(sites.get(i));
+        }
+        throw leak;
+    }
+    
+    private <T> T borrowed(T buffer) {
+        borrows++;
+        outstanding++;
+        if (leakDetection) {
+            borrowSites.put(buffer, new Throwable("Borrowed " + buffer.getClass().getSimpleName() + " here"));
+        }
+        return buffer;
+    }
+    
+    /**
+     * Checks a released buffer before any bookkeeping changes, so a rejected release leaves
+     * the arena as it was.
+     */
+    private void returned(Object buffer, Pool pool) {
+        if (pool.contains(buffer)) {
+            throw new IllegalStateException("Released a " + buffer.getClass().getSimpleName() + " twice");
+        }
+        if (leakDetection && borrowSites.remove(buffer) == null) {
+            throw new IllegalStateException("Released a " + buffer.getClass().getSimpleName()
+                + " that is not borrowed from this thread's arena");
+        }
+        outstanding--;
+    }
+    
+    private static int size(int minimum, int smallest) {
+        if (minimum <= smallest) {
+            return smallest;
+        }
+        // Round up to a power of two, so slightly different sizes reuse the same buffer
+        int rounded = Integer.highestOneBit(minimum - 1) << 1;
+        return rounded > 0 ? rounded : minimum;
+    }
+    
+    /**
+     * Free buffers of one kind with their capacities; small enough to search linearly.
+     */
+    private static final class Pool {
+        private final Object[] buffers = new Object[MAX_POOLED];
+        private final int[] capacities = new int[MAX_POOLED];
+        private int size;
+        
+        /**
+         * Removes and returns the smallest free buffer of at least the given capacity.
+         */
+        Object take(int minCapacity) {
+            int best = -1;
+            for (int i = 0; i < size; i++) {
+                if (capacities[i] >= minCapacity && (best < 0 || capacities[i] < capacities[best])) {
+                    best = i;
+                }
+            }
+            if (best < 0) {
+                return null;
+            }
+            Object buffer = buffers[best];
+            size--;
+            buffers[best] = buffers[size];
+            capacities[best] = capacities[size];
+            buffers[size] = null;
+            return buffer;
+        }
+        
+        boolean contains(Object buffer) {
+            for (int i = 0; i < size; i++) {
+                if (buffers[i] == buffer) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        /**
+         * Adds a free buffer that is not in the pool, replacing the smallest one if the pool is full.
+         */
+        void offer(Object buffer, int capacity) {
+            int smallest = 0;
+            for (int i = 0; i < size; i++) {
+                if (capacities[i] < capacities[smallest]) {
+                    smallest = i;
+                }
+            }
+            if (size < buffers.length) {
+                buffers[size] = buffer;
+                capacities[size] = capacity;
+                size++;
+            } else if (capacities[smallest] < capacity) {
+                buffers[smallest] = buffer;
+                capacities[smallest] = capacity;
+            }
+        }
+    }
+}
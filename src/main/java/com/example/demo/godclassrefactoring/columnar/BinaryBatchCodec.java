@@ -0,0 +1,452 @@
+package com.example.demo.godclassrefactoring.columnar;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of {@link ColumnBatch}es for handing data between jobs without
+ * formatting and parsing text.
+ * 
+ * A frame is a 13 byte header (magic "CBF1", flags, payload length, stored length) followed by
+ * the payload, optionally compressed in the LZ4 block format. The payload holds the row and
+ * column counts, then each column as its length-prefixed name, type, encoding and values:
+ * <ul>
+ *   <li>LONG columns as zigzag varint deltas, or as fixed 8 byte values when deltas do not pay off</li>
+ *   <li>DOUBLE columns as fixed 8 byte IEEE 754 values</li>
+ *   <li>STRING columns as a dictionary plus one varint code per row when at most half of the
+ *       values are distinct, otherwise as length-prefixed UTF-8 values</li>
+ * </ul>
+ * Frames are self-delimiting, so several can be concatenated into one stream.
+ */
+public final class BinaryBatchCodec {
+    
+    static final int MAGIC = 0x43424631;
+    static final int HEADER_BYTES = 4 + 1 + 4 + 4;
+    private static final int FLAG_COMPRESSED = 1;
+    // An LZ4 block expands at most 255-fold: each extra byte of a match length encodes 255 bytes
+    private static final int MAX_COMPRESSION_RATIO = 255;
+    
+    private static final byte PLAIN = 0;
+    private static final byte DELTA = 1;
+    private static final byte DICTIONARY = 2;
+    
+    private static final ColumnType[] TYPES = ColumnType.values();
+    
+    private BinaryBatchCodec() {
+    }
+    
+    /**
+     * Encodes a batch as one frame.
+     *
+     * @param batch the batch to encode
+     * @param compress whether to compress the payload; it is stored uncompressed if that is smaller
+     * @return the frame
+     */
+    public static byte[] encode(ColumnBatch batch, boolean compress) {
+        List<String> names = batch.getColumnNames();
+        Writer out = new Writer(HEADER_BYTES + 16 + (int) Math.min(1 << 20, 4L * batch.size() * names.size()));
+        out.position = HEADER_BYTES;
+        out.writeVarLong(batch.size());
+        out.writeVarLong(names.size());
+        for (String name : names) {
+            out.writeString(name);
+            ColumnType type = batch.getColumnType(name);
+            out.write((byte) type.ordinal());
+            switch (type) {
+                case LONG:
+                    writeLongs(batch.getLongColumn(name), batch.size(), out);
+                    break;
+                case DOUBLE:
+                    out.write(PLAIN);
+                    double[] doubles = batch.getDoubleColumn(name);
+                    for (int row = 0; row < batch.size(); row++) {
+                        out.writeLong(Double.doubleToRawLongBits(doubles[row]));
+                    }
+                    break;
+                default:
+                    writeStrings(batch.getStringColumn(name), batch.size(), out);
+                    break;
+            }
+        }
+        
+        int payloadLength = out.position - HEADER_BYTES;
+        if (compress) {
+            byte[] frame = new byte[HEADER_BYTES + Lz4Block.maxCompressedLength(payloadLength)];
+            int storedLength = Lz4Block.compress(out.bytes, HEADER_BYTES, payloadLength, frame, HEADER_BYTES);
+            if (storedLength < payloadLength) {
+                writeHeader(frame, FLAG_COMPRESSED, payloadLength, storedLength);
+                return Arrays.copyOf(frame, HEADER_BYTES + storedLength);
+            }
+        }
+        writeHeader(out.bytes, 0, payloadLength, payloadLength);
+        return Arrays.copyOf(out.bytes, out.position);
+    }
+    
+    /**
+     * Decodes the frame at the buffer's position and advances the position past it.
+     *
+     * @param frames the buffer holding one or more frames
+     * @return the decoded batch
+     * @throws IllegalArgumentException if the frame is truncated or corrupt
+     */
+    public static ColumnBatch decode(ByteBuffer frames) {
+        if (frames.remaining() < HEADER_BYTES) {
+            throw new IllegalArgumentException("Truncated binary frame");
+        }
+        int start = frames.position();
+        if (frames.getInt(start) != MAGIC) {
+            throw new IllegalArgumentException("Not a binary batch frame");
+        }
+        int flags = frames.get(start + 4);
+        int payloadLength = frames.getInt(start + 5);
+        int storedLength = frames.getInt(start + 9);
+        if (payloadLength < 0 || storedLength < 0 || storedLength > frames.remaining() - HEADER_BYTES) {
+            throw new IllegalArgumentException("Truncated binary frame");
+        }
+        
+        byte[] stored;
+        int offset;
+        if (frames.hasArray()) {
+            stored = frames.array();
+            offset = frames.arrayOffset() + start + HEADER_BYTES;
+        } else {
+            stored = new byte[storedLength];
+            frames.get(start + HEADER_BYTES, stored);
+            offset = 0;
+        }
+        frames.position(start + HEADER_BYTES + storedLength);
+        
+        if ((flags & FLAG_COMPRESSED) != 0) {
+            // The header is untrusted: bound the allocation by what the stored bytes can expand to
+            if (payloadLength > (long) storedLength * MAX_COMPRESSION_RATIO) {
+                throw new IllegalArgumentException("Corrupt binary frame");
+            }
+            byte[] payload = new byte[payloadLength];
+            Lz4Block.decompress(stored, offset, storedLength, payload, 0, payloadLength);
+            return readPayload(new Reader(payload, 0, payloadLength));
+        }
+        if (storedLength != payloadLength) {
+            throw new IllegalArgumentException("Corrupt binary frame");
+        }
+        return readPayload(new Reader(stored, offset, payloadLength));
+    }
+    
+    /**
+     * Decodes all frames remaining in a buffer.
+     *
+     * @param frames the buffer holding concatenated frames
+     * @return the decoded batches in stream order
+     * @throws IllegalArgumentException if a frame is truncated or corrupt
+     */
+    public static List<ColumnBatch> decodeAll(ByteBuffer frames) {
+        List<ColumnBatch> batches = new ArrayList<>();
+        while (frames.hasRemaining()) {
+            batches.add(decode(frames));
+        }
+        return batches;
+    }
+    
+    private static void writeLongs(long[] values, int size, Writer out) {
+        long plainBytes = 8L * size;
+        long deltaBytes = 0;
+        long previous = 0;
+        for (int row = 0; row < size && deltaBytes < plainBytes; row++) {
+            deltaBytes += varLongSize(zigzag(values[row] - previous));
+            previous = values[row];
+        }
+        if (deltaBytes >= plainBytes) {
+            out.write(PLAIN);
+            for (int row = 0; row < size; row++) {
+                out.writeLong(values[row]);
+            }
+            return;
+        }
+        out.write(DELTA);
+        previous = 0;
+        for (int row = 0; row < size; row++) {
+            out.writeVarLong(zigzag(values[row] - previous));
+            previous = values[row];
+        }
+    }
+    
+    private static void writeStrings(String[] values, int size, Writer out) {
+        // Code 0 is null, code i + 1 is dictionary entry i
+        Map<String, Integer> codes = new HashMap<>();
+        List<String> dictionary = new ArrayList<>();
+        int[] rowCodes = new int[size];
+        int maxEntries = size / 2;
+        for (int row = 0; row < size && dictionary.size() <= maxEntries; row++) {
+            String value = values[row];
+            if (value != null) {
+                Integer code = codes.get(value);
+                if (code == null) {
+                    code = dictionary.size() + 1;
+                    codes.put(value, code);
+                    dictionary.add(value);
+                }
+                rowCodes[row] = code;
+            }
+        }
+        
+        if (dictionary.size() > maxEntries) {
+            out.write(PLAIN);
+            for (int row = 0; row < size; row++) {
+                out.writeNullableString(values[row]);
+            }
+            return;
+        }
+        out.write(DICTIONARY);
+        out.writeVarLong(dictionary.size());
+        for (String entry : dictionary) {
+            out.writeString(entry);
+        }
+        for (int row = 0; row < size; row++) {
+            out.writeVarLong(rowCodes[row]);
+        }
+    }
+    
+    private static ColumnBatch readPayload(Reader in) {
+        // Rows of a batch without columns take no bytes, so the row count is only checked per column
+        int size = in.readInt();
+        int columnCount = in.readCount();
+        ColumnBatch.Builder builder = ColumnBatch.builder(size);
+        for (int column = 0; column < columnCount; column++) {
+            String name = in.readString(in.readCount());
+            int type = in.readByte();
+            byte encoding = in.readByte();
+            if (type < 0 || type >= TYPES.length || size > in.remaining()) {
+                throw new IllegalArgumentException("Corrupt binary frame");
+            }
+            switch (TYPES[type]) {
+                case LONG:
+                    builder.longColumn(name, readLongs(in, size, encoding));
+                    break;
+                case DOUBLE:
+                    double[] doubles = new double[size];
+                    for (int row = 0; row < size; row++) {
+                        doubles[row] = Double.longBitsToDouble(in.readLong());
+                    }
+                    builder.doubleColumn(name, doubles);
+                    break;
+                default:
+                    builder.stringColumn(name, readStrings(in, size, encoding));
+                    break;
+            }
+        }
+        if (in.remaining() != 0) {
+            throw new IllegalArgumentException("Corrupt binary frame");
+        }
+        return builder.build();
+    }
+    
+    private static long[] readLongs(Reader in, int size, byte encoding) {
+        long[] values = new long[size];
+        if (encoding == PLAIN) {
+            for (int row = 0; row < size; row++) {
+                values[row] = in.readLong();
+            }
+        } else {
+            long previous = 0;
+            for (int row = 0; row < size; row++) {
+                long encoded = in.readVarLong();
+                previous += (encoded >>> 1) ^ -(encoded & 1);
+                values[row] = previous;
+            }
+        }
+        return values;
+    }
+    
+    private static String[] readStrings(Reader in, int size, byte encoding) {
+        String[] values = new String[size];
+        if (encoding == PLAIN) {
+            for (int row = 0; row < size; row++) {
+                values[row] = in.readNullableString();
+            }
+            return values;
+        }
+        // Rows share the decoded dictionary strings
+        String[] dictionary = new String[in.readCount() + 1];
+        for (int i = 1; i < dictionary.length; i++) {
+            dictionary[i] = in.readString(in.readCount());
+        }
+        for (int row = 0; row < size; row++) {
+            int code = in.readInt();
+            if (code >= dictionary.length) {
+                throw new IllegalArgumentException("Corrupt binary frame");
+            }
+            values[row] = dictionary[code];
+        }
+        return values;
+    }
+    
+    private static void writeHeader(byte[] frame, int flags, int payloadLength, int storedLength) {
+        ByteBuffer header = ByteBuffer.wrap(frame, 0, HEADER_BYTES);
+        header.putInt(MAGIC).put((byte) flags).putInt(payloadLength).putInt(storedLength);
+    }
+    
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+    
+    private static int varLongSize(long value) {
+        return value == 0 ? 1 : (63 - Long.numberOfLeadingZeros(value)) / 7 + 1;
+    }
+    
+    /**
+     * Growable byte array the payload is encoded into.
+     */
+    private static final class Writer {
+        private byte[] bytes;
+        private int position;
+        
+        Writer(int capacity) {
+            bytes = new byte[capacity];
+        }
+        
+        void write(byte value) {
+            ensure(1);
+            bytes[position++] = value;
+        }
+        
+        void writeLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[position++] = (byte) (value >>> shift);
+            }
+        }
+        
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[position++] = (byte) (value | 0x80);
+                value >>>= 7;
+            }
+            bytes[position++] = (byte) value;
+        }
+        
+        void writeString(String value) {
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(encoded.length);
+            writeBytes(encoded);
+        }
+        
+        void writeNullableString(String value) {
+            if (value == null) {
+                write((byte) 0);
+                return;
+            }
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(encoded.length + 1L);
+            writeBytes(encoded);
+        }
+        
+        private void writeBytes(byte[] encoded) {
+            ensure(encoded.length);
+            System.arraycopy(encoded, 0, bytes, position, encoded.length);
+            position += encoded.length;
+        }
+        
+        private void ensure(int length) {
+            if (bytes.length - position < length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, position + length));
+            }
+        }
+    }
+    
+    /**
+     * Bounds-checked cursor over an encoded payload.
+     */
+    private static final class Reader {
+        private final byte[] bytes;
+        private final int end;
+        private int position;
+        
+        Reader(byte[] bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.position = offset;
+            this.end = offset + length;
+        }
+        
+        int remaining() {
+            return end - position;
+        }
+        
+        byte readByte() {
+            require(1);
+            return bytes[position++];
+        }
+        
+        long readLong() {
+            require(8);
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = value << 8 | (bytes[position++] & 0xFF);
+            }
+            return value;
+        }
+        
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Corrupt binary frame");
+        }
+        
+        /**
+         * Reads a non-negative varint that fits an int.
+         */
+        int readInt() {
+            long value = readVarLong();
+            if (value < 0 || value > Integer.MAX_VALUE - 1) {
+                throw new IllegalArgumentException("Corrupt binary frame");
+            }
+            return (int) value;
+        }
+        
+        /**
+         * Reads a varint that sizes an array or string whose elements take at least one byte
+         * each, so a forged count is rejected before anything is allocated for it.
+         */
+        int readCount() {
+            int count = readInt();
+            if (count > remaining()) {
+                throw new IllegalArgumentException("Corrupt binary frame");
+            }
+            return count;
+        }
+        
+        /**
+         * Reads a string prefixed with its UTF-8 length plus one, or 0 for null.
+         */
+        String readNullableString() {
+            int length = readInt();
+            if (length - 1 > remaining()) {
+                throw new IllegalArgumentException("Corrupt binary frame");
+            }
+            return length == 0 ? null : readString(length - 1);
+        }
+        
+        String readString(int length) {
+            require(length);
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+        
+        private void require(int length) {
+            if (length > end - position) {
+                throw new IllegalArgumentException("Truncated binary frame");
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.demo.godclassrefactoring.columnar;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A batch of records stored column by column in primitive arrays.
+ * Column arrays are shared, not copied: callers must not modify them after building the batch.
+ */
+public final class ColumnBatch {
+    
+    private final int size;
+    private final Map<String, Object> columns;
+    private final Map<String, ColumnType> types;
+    
+    private ColumnBatch(int size, Map<String, Object> columns, Map<String, ColumnType> types) {
+        this.size = size;
+        this.columns = columns;
+        this.types = types;
+    }
+    
+    /**
+     * Starts building a batch of the given number of rows.
+     * 
+     * @param size the number of rows
+     * @return a new builder
+     */
+    public static Builder builder(int size) {
+        return new Builder(size);
+    }
+    
+    /**
+     * Returns whether data is a non-empty list of batches, the loaded form of a columnar
+     * source that produces several batches.
+     * 
+     * @param data the loaded data
+     * @return true if every element is a batch
+     */
+    public static boolean isBatchList(Object data) {
+        if (!(data instanceof List) || ((List<?>) data).isEmpty()) {
+            return false;
+        }
+        for (Object element : (List<?>) data) {
+            if (!(element instanceof ColumnBatch)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Returns the column names in the order they were added.
+     * 
+     * @return the column names
+     */
+    public List<String> getColumnNames() {
+        return new ArrayList<>(types.keySet());
+    }
+    
+    public boolean hasColumn(String name) {
+        return types.containsKey(name);
+    }
+    
+    /**
+     * Returns the type of a column.
+     * 
+     * @param name the column name
+     * @return the column type
+     * @throws IllegalArgumentException if the column does not exist
+     */
+    public ColumnType getColumnType(String name) {
+        ColumnType type = types.get(name);
+        if (type == null) {
+            throw new IllegalArgumentException("Unknown column: " + name);
+        }
+        return type;
+    }
+    
+    public long[] getLongColumn(String name) {
+        return (long[]) column(name, ColumnType.LONG);
+    }
+    
+    public double[] getDoubleColumn(String name) {
+        return (double[]) column(name, ColumnType.DOUBLE);
+    }
+    
+    public String[] getStringColumn(String name) {
+        return (String[]) column(name, ColumnType.STRING);
+    }
+    
+    /**
+     * Returns the value at a row as an object, boxing primitives.
+     * 
+     * @param name the column name
+     * @param row the row index
+     * @return the value
+     */
+    public Object getValue(String name, int row) {
+        switch (getColumnType(name)) {
+            case LONG:
+                return getLongColumn(name)[row];
+            case DOUBLE:
+                return getDoubleColumn(name)[row];
+            default:
+                return getStringColumn(name)[row];
+        }
+    }
+    
+    /**
+     * Returns a batch holding only the given rows, in ascending order. The columns are copied
+     * unless every row is selected.
+     * 
+     * @param rows the indexes of the rows to keep
+     * @return the selected rows
+     * @throws IllegalArgumentException if a row index is out of range
+     */
+    public ColumnBatch select(BitSet rows) {
+        if (rows.length() > size) {
+            throw new IllegalArgumentException("Row " + (rows.length() - 1) + " out of range for " + size + " rows");
+        }
+        int[] selected = rows.stream().toArray();
+        if (selected.length == size) {
+            return this;
+        }
+        Builder builder = builder(selected.length);
+        for (Map.Entry<String, ColumnType> column : types.entrySet()) {
+            String name = column.getKey();
+            switch (column.getValue()) {
+                case LONG:
+                    long[] longs = getLongColumn(name);
+                    long[] selectedLongs = new long[selected.length];
+                    for (int i = 0; i < selected.length; i++) {
+                        selectedLongs[i] = longs[selected[i]];
+                    }
+                    builder.longColumn(name, selectedLongs);
+                    break;
+                case DOUBLE:
+                    double[] doubles = getDoubleColumn(name);
+                    double[] selectedDoubles = new double[selected.length];
+                    for (int i = 0; i < selected.length; i++) {
+                        selectedDoubles[i] = doubles[selected[i]];
+                    }
+                    builder.doubleColumn(name, selectedDoubles);
+                    break;
+                default:
+                    String[] strings = getStringColumn(name);
+                    String[] selectedStrings = new String[selected.length];
+                    for (int i = 0; i < selected.length; i++) {
+                        selectedStrings[i] = strings[selected[i]];
+                    }
+                    builder.stringColumn(name, selectedStrings);
+                    break;
+            }
+        }
+        return builder.build();
+    }
+    
+    private Object column(String name, ColumnType expected) {
+        ColumnType actual = getColumnType(name);
+        if (actual != expected) {
+            throw new IllegalArgumentException("Column " + name + " is " + actual + ", not " + expected);
+        }
+        return columns.get(name);
+    }
+    
+    @Override
+    public String toString() {
+        return "ColumnBatch{rows=" + size + ", columns=" + types + "}";
+    }
+    
+    /**
+     * Builder for column batches
+     */
+    public static final class Builder {
+        private final int size;
+        private final Map<String, Object> columns = new LinkedHashMap<>();
+        private final Map<String, ColumnType> types = new LinkedHashMap<>();
+        
+        private Builder(int size) {
+            if (size < 0) {
+                throw new IllegalArgumentException("Batch size must not be negative: " + size);
+            }
+            this.size = size;
+        }
+        
+        public Builder longColumn(String name, long[] values) {
+            return add(name, ColumnType.LONG, values, values.length);
+        }
+        
+        public Builder doubleColumn(String name, double[] values) {
+            return add(name, ColumnType.DOUBLE, values, values.length);
+        }
+        
+        public Builder stringColumn(String name, String[] values) {
+            return add(name, ColumnType.STRING, values, values.length);
+        }
+        
+        private Builder add(String name, ColumnType type, Object values, int length) {
+            if (length < size) {
+                throw new IllegalArgumentException("Column " + name + " has " + length + " values, expected " + size);
+            }
+            if (types.putIfAbsent(name, type) != null) {
+                throw new IllegalArgumentException("Duplicate column: " + name);
+            }
+            columns.put(name, values);
+            return this;
+        }
+        
+        public ColumnBatch build() {
+            return new ColumnBatch(size, Collections.unmodifiableMap(new LinkedHashMap<>(columns)),
+                                   Collections.unmodifiableMap(new LinkedHashMap<>(types)));
+        }
+    }
+}
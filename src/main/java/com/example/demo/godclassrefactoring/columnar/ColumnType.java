@@ -0,0 +1,10 @@
+package com.example.demo.godclassrefactoring.columnar;
+
+/**
+ * Physical type of a column in a {@link ColumnBatch}.
+ */
+public enum ColumnType {
+    LONG,
+    DOUBLE,
+    STRING
+}
@@ -0,0 +1,623 @@
+package com.example.demo.godclassrefactoring.columnar;
+
+import com.example.demo.godclassrefactoring.buffer.BufferArena;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Hash aggregation of a numeric column per long or string key that stays within a fixed memory
+ * budget.
+ * 
+ * Groups are accumulated in an in-memory open-addressing table, which starts small and doubles
+ * as groups are added. String keys are dictionary-encoded first, and the dictionary counts
+ * against the budget too. When the next group would not fit the budget, the groups are sorted
+ * by key and spilled as a run to a temporary file through a {@link FileChannel}, and the table
+ * starts over. {@link #finish} merges the runs (in several passes if there are more than
+ * {@code maxMergeFanIn}) and streams the combined groups in key order, so heap usage is
+ * independent of the number of rows and keys.
+ * 
+ * Instances are not thread-safe. Close the aggregator to delete its temporary files.
+ */
+public class ExternalHashAggregator implements AutoCloseable {
+    
+    // Up to 4 table slots per group (load factor 0.5, rounded to a power of two), group key, its copy for
+    // sorting a spill, 6 accumulators and the batch scratch of the accumulators
+    static final int BYTES_PER_GROUP = 4 * (8 + 4) + 8 + 8 + 6 * 8 + GroupAccumulators.SCRATCH_BYTES_PER_GROUP;
+    // Heap of a dictionary entry besides its characters: map node, boxed code, list slot, string and array headers
+    static final int BYTES_PER_STRING_KEY = 96;
+    private static final int STATISTICS_BYTES = 6 * 8;
+    private static final int IO_BUFFER_BYTES = 64 * 1024;
+    private static final int DEFAULT_MAX_MERGE_FAN_IN = 64;
+    private static final int INITIAL_GROUPS = 16;
+    private static final Comparator<String> STRING_KEY_ORDER = Comparator.nullsFirst(Comparator.naturalOrder());
+    
+    /**
+     * Receives aggregated groups in ascending key order. The key is a {@link Long} for a LONG key
+     * column and a {@link String}, or null, for a STRING key column. {@code m2} is the sum of
+     * squared deviations from the mean, so the population variance is {@code m2 / count}.
+     */
+    @FunctionalInterface
+    public interface GroupConsumer {
+        void accept(Object key, long count, double sum, double mean, double m2, double min, double max);
+    }
+    
+    private final String keyColumn;
+    private final String valueColumn;
+    private final Path spillDirectory;
+    private final long memoryBudgetBytes;
+    private final int maxGroupsInMemory;
+    private final int maxMergeFanIn;
+    
+    private final LongGroupTable table;
+    private final GroupAccumulators accumulators;
+    private final Map<String, Long> dictionary = new HashMap<>();
+    private final List<String> dictionaryValues = new ArrayList<>();
+    private long dictionaryBytes;
+    private ColumnType keyType;
+    
+    private int[] groupIds;
+    private double[] doubleValues;
+    private long[] longValues;
+    
+    private final List<Path> runs = new ArrayList<>();
+    private ByteBuffer writeBuffer = ByteBuffer.allocateDirect(IO_BUFFER_BYTES);
+    private long spilledBytes;
+    private int spillCount;
+    private boolean finished;
+    
+    /**
+     * Creates an aggregator.
+     *
+     * @param keyColumn the LONG or STRING column to group by
+     * @param valueColumn the LONG or DOUBLE column to aggregate
+     * @param memoryBudgetBytes the heap to use for in-memory groups
+     * @param spillDirectory the directory for temporary run files
+     */
+    public ExternalHashAggregator(String keyColumn, String valueColumn, long memoryBudgetBytes, Path spillDirectory) {
+        this(keyColumn, valueColumn, memoryBudgetBytes, spillDirectory, DEFAULT_MAX_MERGE_FAN_IN);
+    }
+    
+    /**
+     * Creates an aggregator.
+     *
+     * @param keyColumn the LONG or STRING column to group by
+     * @param valueColumn the LONG or DOUBLE column to aggregate
+     * @param memoryBudgetBytes the heap to use for in-memory groups
+     * @param spillDirectory the directory for temporary run files
+     * @param maxMergeFanIn the maximum number of runs merged at once, each needing one I/O buffer
+     */
+    public ExternalHashAggregator(String keyColumn, String valueColumn, long memoryBudgetBytes, Path spillDirectory,
+                                  int maxMergeFanIn) {
+        if (maxMergeFanIn < 2) {
+            throw new IllegalArgumentException("Merge fan-in must be at least 2: " + maxMergeFanIn);
+        }
+        long groups = memoryBudgetBytes / BYTES_PER_GROUP;
+        if (groups < 16) {
+            throw new IllegalArgumentException("Memory budget too small: " + memoryBudgetBytes + " bytes");
+        }
+        this.keyColumn = keyColumn;
+        this.valueColumn = valueColumn;
+        this.spillDirectory = spillDirectory;
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.maxGroupsInMemory = (int) Math.min(groups, 1 << 28);
+        this.maxMergeFanIn = maxMergeFanIn;
+        this.table = new LongGroupTable(INITIAL_GROUPS, maxGroupsInMemory);
+        this.accumulators = new GroupAccumulators(INITIAL_GROUPS);
+    }
+    
+    /**
+     * Adds the rows of a batch to the aggregation, spilling to disk as needed.
+     *
+     * @param batch the batch to add
+     * @throws IllegalArgumentException if the key column is not LONG or STRING or changed type,
+     *         or the value column is not numeric
+     */
+    public void add(ColumnBatch batch) {
+        if (finished) {
+            throw new IllegalStateException("Aggregation already finished");
+        }
+        ColumnType type = batch.getColumnType(keyColumn);
+        if (type != ColumnType.LONG && type != ColumnType.STRING) {
+            throw new IllegalArgumentException("Key column " + keyColumn + " must be LONG or STRING");
+        }
+        if (keyType == null) {
+            keyType = type;
+        } else if (keyType != type) {
+            throw new IllegalArgumentException(
+                "Key column " + keyColumn + " changed type from " + keyType + " to " + type);
+        }
+        ColumnType valueType = batch.getColumnType(valueColumn);
+        if (valueType != ColumnType.DOUBLE && valueType != ColumnType.LONG) {
+            throw new IllegalArgumentException("Value column " + valueColumn + " must be numeric");
+        }
+        
+        int rows = batch.size();
+        BufferArena arena = BufferArena.current();
+        groupIds = arena.borrowInts(rows);
+        doubleValues = valueType == ColumnType.DOUBLE ? batch.getDoubleColumn(valueColumn) : null;
+        longValues = valueType == ColumnType.LONG ? batch.getLongColumn(valueColumn) : null;
+        try {
+            int start = type == ColumnType.LONG ? assignLongGroups(batch.getLongColumn(keyColumn), rows)
+                : assignStringGroups(batch.getStringColumn(keyColumn), rows);
+            accumulate(start, rows);
+        } finally {
+            arena.release(groupIds);
+            groupIds = null;
+            doubleValues = null;
+            longValues = null;
+        }
+    }
+    
+    /**
+     * Completes the aggregation and streams every group in ascending key order.
+     *
+     * @param consumer the receiver of the aggregated groups
+     */
+    public void finish(GroupConsumer consumer) {
+        if (finished) {
+            throw new IllegalStateException("Aggregation already finished");
+        }
+        finished = true;
+        if (runs.isEmpty()) {
+            forEachGroupInKeyOrder(consumer);
+            return;
+        }
+        
+        if (table.size() > 0) {
+            spill();
+        }
+        try {
+            while (runs.size() > maxMergeFanIn) {
+                List<Path> batch = new ArrayList<>(runs.subList(0, maxMergeFanIn));
+                runs.subList(0, maxMergeFanIn).clear();
+                Path merged = newRunFile();
+                try (FileChannel out = FileChannel.open(merged, StandardOpenOption.WRITE)) {
+                    merge(batch, (key, count, sum, mean, m2, min, max) ->
+                        writeRecord(out, key, count, sum, mean, m2, min, max));
+                    flush(out);
+                } catch (IOException | RuntimeException e) {
+                    writeBuffer.clear();
+                    deleteQuietly(merged);
+                    throw e;
+                }
+                runs.add(merged);
+            }
+            List<Path> finalRuns = new ArrayList<>(runs);
+            runs.clear();
+            merge(finalRuns, consumer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to merge spilled aggregation runs", e);
+        }
+    }
+    
+    /**
+     * Completes the aggregation and materializes all groups. Only use this when the
+     * number of groups fits in memory; otherwise stream them with {@link #finish}.
+     *
+     * @return the per-group statistics
+     */
+    public GroupStatistics result() {
+        StatisticsCollector collector = new StatisticsCollector();
+        finish(collector);
+        return collector.toStatistics();
+    }
+    
+    /**
+     * Aggregates a sequence of batches within a memory budget, deleting the spill files afterwards.
+     *
+     * @param batches the batches to aggregate, which may be produced lazily
+     * @param keyColumn the LONG or STRING column to group by
+     * @param valueColumn the LONG or DOUBLE column to aggregate
+     * @param memoryBudgetBytes the heap to use for in-memory groups
+     * @param spillDirectory the directory for temporary run files
+     * @return the per-group statistics
+     */
+    public static GroupStatistics aggregate(Iterable<ColumnBatch> batches, String keyColumn, String valueColumn,
+                                            long memoryBudgetBytes, Path spillDirectory) {
+        try (ExternalHashAggregator aggregator =
+                 new ExternalHashAggregator(keyColumn, valueColumn, memoryBudgetBytes, spillDirectory)) {
+            for (ColumnBatch batch : batches) {
+                aggregator.add(batch);
+            }
+            return aggregator.result();
+        }
+    }
+    
+    /**
+     * Returns how many times the in-memory table was spilled to disk.
+     *
+     * @return the number of spills
+     */
+    public int getSpillCount() {
+        return spillCount;
+    }
+    
+    /**
+     * Returns the number of bytes written to spill runs, including intermediate merges.
+     *
+     * @return the spilled bytes
+     */
+    public long getSpilledBytes() {
+        return spilledBytes;
+    }
+    
+    /**
+     * Deletes any remaining temporary run files.
+     */
+    @Override
+    public void close() {
+        for (Path run : runs) {
+            deleteQuietly(run);
+        }
+        runs.clear();
+    }
+    
+    private static void deleteQuietly(Path run) {
+        try {
+            Files.deleteIfExists(run);
+        } catch (IOException e) {
+            // Best effort: the file lives in a temporary directory
+        }
+    }
+    
+    /**
+     * Assigns the rows' groups, spilling when a new key would exceed the budget.
+     *
+     * @return the first row not yet accumulated
+     */
+    private int assignLongGroups(long[] keys, int rows) {
+        int[] ids = groupIds;
+        int start = 0;
+        for (int row = 0; row < rows; row++) {
+            long key = keys[row];
+            if (table.size() == maxGroupsInMemory && table.find(key) < 0) {
+                start = spillBefore(start, row);
+            }
+            ids[row] = group(key);
+        }
+        return start;
+    }
+    
+    /**
+     * Dictionary-encodes the rows' keys and assigns their groups, spilling when a new key and
+     * its dictionary entry would exceed the budget.
+     *
+     * @return the first row not yet accumulated
+     */
+    private int assignStringGroups(String[] keys, int rows) {
+        int[] ids = groupIds;
+        int start = 0;
+        for (int row = 0; row < rows; row++) {
+            String key = keys[row];
+            Long code = dictionary.get(key);
+            if (code == null) {
+                long bytes = BYTES_PER_STRING_KEY + (key == null ? 0 : 2L * key.length());
+                if (table.size() > 0 && (table.size() == maxGroupsInMemory
+                    || (table.size() + 1L) * BYTES_PER_GROUP + dictionaryBytes + bytes > memoryBudgetBytes)) {
+                    start = spillBefore(start, row);
+                }
+                code = (long) dictionaryValues.size();
+                dictionary.put(key, code);
+                dictionaryValues.add(key);
+                dictionaryBytes += bytes;
+            }
+            ids[row] = group(code);
+        }
+        return start;
+    }
+    
+    /**
+     * Accumulates the rows assigned since the last spill and spills, since a spill renumbers
+     * the groups.
+     */
+    private int spillBefore(int start, int row) {
+        accumulate(start, row);
+        spill();
+        return row;
+    }
+    
+    private int group(long key) {
+        int group = table.findOrInsert(key);
+        if (group == accumulators.capacity()) {
+            accumulators.grow((int) Math.min((long) accumulators.capacity() * 2, maxGroupsInMemory));
+        }
+        return group;
+    }
+    
+    private void accumulate(int from, int to) {
+        if (doubleValues != null) {
+            accumulators.add(groupIds, doubleValues, from, to, table.size());
+        } else {
+            accumulators.add(groupIds, longValues, from, to, table.size());
+        }
+    }
+    
+    private void spill() {
+        Path run = newRunFile();
+        try (FileChannel out = FileChannel.open(run, StandardOpenOption.WRITE)) {
+            forEachGroupInKeyOrder((key, count, sum, mean, m2, min, max) ->
+                writeRecord(out, key, count, sum, mean, m2, min, max));
+            flush(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to spill aggregation run " + run, e);
+        }
+        runs.add(run);
+        spillCount++;
+        accumulators.reset(0, table.size());
+        table.clear();
+        dictionary.clear();
+        dictionaryValues.clear();
+        dictionaryBytes = 0;
+    }
+    
+    /**
+     * Streams the in-memory groups in key order. The sorted copy of the keys is part of
+     * {@link #BYTES_PER_GROUP}.
+     */
+    private void forEachGroupInKeyOrder(GroupConsumer consumer) {
+        if (keyType == ColumnType.STRING) {
+            String[] keys = dictionaryValues.toArray(new String[0]);
+            Arrays.sort(keys, STRING_KEY_ORDER);
+            for (String key : keys) {
+                accept(consumer, key, table.find(dictionary.get(key)));
+            }
+            return;
+        }
+        long[] keys = new long[table.size()];
+        for (int group = 0; group < keys.length; group++) {
+            keys[group] = table.keyAt(group);
+        }
+        Arrays.sort(keys);
+        for (long key : keys) {
+            accept(consumer, key, table.find(key));
+        }
+    }
+    
+    private void accept(GroupConsumer consumer, Object key, int group) {
+        consumer.accept(key, accumulators.counts[group], accumulators.sums[group], accumulators.means[group],
+                        accumulators.m2s[group], accumulators.mins[group], accumulators.maxs[group]);
+    }
+    
+    private Path newRunFile() {
+        try {
+            return Files.createTempFile(spillDirectory, "aggregation-run-", ".bin");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create spill file in " + spillDirectory, e);
+        }
+    }
+    
+    /**
+     * Writes a record: the key (a long, or the UTF-8 length, -1 for null, and bytes of a string)
+     * followed by the statistics.
+     */
+    private void writeRecord(FileChannel out, Object key, long count, double sum, double mean, double m2, double min,
+                             double max) {
+        byte[] encoded = keyType == ColumnType.STRING && key != null
+            ? ((String) key).getBytes(StandardCharsets.UTF_8) : null;
+        int size = (keyType == ColumnType.STRING ? 4 + (encoded == null ? 0 : encoded.length) : 8) + STATISTICS_BYTES;
+        if (writeBuffer.remaining() < size) {
+            flush(out);
+            if (writeBuffer.capacity() < size) {
+                writeBuffer = ByteBuffer.allocateDirect(size);
+            }
+        }
+        if (keyType == ColumnType.STRING) {
+            writeBuffer.putInt(encoded == null ? -1 : encoded.length);
+            if (encoded != null) {
+                writeBuffer.put(encoded);
+            }
+        } else {
+            writeBuffer.putLong((Long) key);
+        }
+        writeBuffer.putLong(count).putDouble(sum).putDouble(mean).putDouble(m2).putDouble(min).putDouble(max);
+        spilledBytes += size;
+    }
+    
+    private void flush(FileChannel out) {
+        writeBuffer.flip();
+        try {
+            while (writeBuffer.hasRemaining()) {
+                out.write(writeBuffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write aggregation run", e);
+        }
+        writeBuffer.clear();
+    }
+    
+    private int compareKeys(RunReader reader, long key, String stringKey) {
+        return keyType == ColumnType.STRING ? STRING_KEY_ORDER.compare(reader.stringKey, stringKey)
+            : Long.compare(reader.key, key);
+    }
+    
+    /**
+     * K-way merge of sorted runs, combining records with equal keys. Deletes the runs afterwards.
+     */
+    private void merge(List<Path> inputs, GroupConsumer consumer) throws IOException {
+        PriorityQueue<RunReader> heap =
+            new PriorityQueue<>(inputs.size(), (a, b) -> compareKeys(a, b.key, b.stringKey));
+        List<RunReader> readers = new ArrayList<>(inputs.size());
+        try {
+            for (Path input : inputs) {
+                RunReader reader = new RunReader(input, keyType == ColumnType.STRING);
+                readers.add(reader);
+                if (reader.advance()) {
+                    heap.add(reader);
+                }
+            }
+            while (!heap.isEmpty()) {
+                RunReader first = heap.poll();
+                long key = first.key;
+                String stringKey = first.stringKey;
+                long count = first.count;
+                double sum = first.sum;
+                double mean = first.mean;
+                double m2 = first.m2;
+                double min = first.min;
+                double max = first.max;
+                if (first.advance()) {
+                    heap.add(first);
+                }
+                while (!heap.isEmpty() && compareKeys(heap.peek(), key, stringKey) == 0) {
+                    RunReader next = heap.poll();
+                    // Chan's formula combines the runs' moments without cancellation
+                    m2 = Moments.mergeM2(count, mean, m2, next.count, next.mean, next.m2);
+                    mean = Moments.mergeMean(count, mean, next.count, next.mean);
+                    count += next.count;
+                    sum += next.sum;
+                    min = Math.min(min, next.min);
+                    max = Math.max(max, next.max);
+                    if (next.advance()) {
+                        heap.add(next);
+                    }
+                }
+                consumer.accept(keyType == ColumnType.STRING ? stringKey : (Object) key, count, sum, mean, m2, min,
+                                max);
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+            for (Path input : inputs) {
+                Files.deleteIfExists(input);
+            }
+        }
+    }
+    
+    /**
+     * Sequential reader over the records of one run file.
+     */
+    private static final class RunReader {
+        private final FileChannel channel;
+        private final boolean stringKeys;
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER_BYTES);
+        long key;
+        String stringKey;
+        long count;
+        double sum;
+        double mean;
+        double m2;
+        double min;
+        double max;
+        
+        RunReader(Path run, boolean stringKeys) throws IOException {
+            this.channel = FileChannel.open(run, StandardOpenOption.READ);
+            this.stringKeys = stringKeys;
+            buffer.limit(0);
+        }
+        
+        boolean advance() throws IOException {
+            if (!fill(stringKeys ? 4 : 8)) {
+                return false;
+            }
+            if (stringKeys) {
+                int length = buffer.getInt();
+                require(Math.max(length, 0) + STATISTICS_BYTES);
+                if (length < 0) {
+                    stringKey = null;
+                } else {
+                    byte[] encoded = new byte[length];
+                    buffer.get(encoded);
+                    stringKey = new String(encoded, StandardCharsets.UTF_8);
+                }
+            } else {
+                key = buffer.getLong();
+                require(STATISTICS_BYTES);
+            }
+            count = buffer.getLong();
+            sum = buffer.getDouble();
+            mean = buffer.getDouble();
+            m2 = buffer.getDouble();
+            min = buffer.getDouble();
+            max = buffer.getDouble();
+            return true;
+        }
+        
+        private void require(int bytes) throws IOException {
+            if (!fill(bytes)) {
+                throw new IOException("Truncated aggregation run");
+            }
+        }
+        
+        /**
+         * Buffers at least the given number of bytes, or returns false if the file ends first.
+         */
+        private boolean fill(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return true;
+            }
+            if (buffer.capacity() < bytes) {
+                ByteBuffer larger = ByteBuffer.allocateDirect(bytes);
+                larger.put(buffer);
+                buffer = larger;
+            } else {
+                buffer.compact();
+            }
+            while (buffer.position() < bytes && channel.read(buffer) >= 0) {
+                // keep reading until enough bytes are buffered or the file ends
+            }
+            buffer.flip();
+            return buffer.remaining() >= bytes;
+        }
+        
+        void close() throws IOException {
+            channel.close();
+        }
+    }
+    
+    /**
+     * Collects streamed groups into growable primitive arrays.
+     */
+    private static final class StatisticsCollector implements GroupConsumer {
+        private Object[] keys = new Object[16];
+        private long[] counts = new long[16];
+        private double[] sums = new double[16];
+        private double[] means = new double[16];
+        private double[] m2s = new double[16];
+        private double[] mins = new double[16];
+        private double[] maxs = new double[16];
+        private int size;
+        
+        @Override
+        public void accept(Object key, long count, double sum, double mean, double m2, double min, double max) {
+            if (size == keys.length) {
+                int capacity = size * 2;
+                keys = Arrays.copyOf(keys, capacity);
+                counts = Arrays.copyOf(counts, capacity);
+                sums = Arrays.copyOf(sums, capacity);
+                means = Arrays.copyOf(means, capacity);
+                m2s = Arrays.copyOf(m2s, capacity);
+                mins = Arrays.copyOf(mins, capacity);
+                maxs = Arrays.copyOf(maxs, capacity);
+            }
+            keys[size] = key;
+            counts[size] = count;
+            sums[size] = sum;
+            means[size] = mean;
+            m2s[size] = m2;
+            mins[size] = min;
+            maxs[size] = max;
+            size++;
+        }
+        
+        GroupStatistics toStatistics() {
+            return new GroupStatistics(Arrays.copyOf(keys, size), Arrays.copyOf(counts, size),
+                                       Arrays.copyOf(sums, size), Arrays.copyOf(means, size), Arrays.copyOf(m2s, size),
+                                       Arrays.copyOf(mins, size), Arrays.copyOf(maxs, size));
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.demo.godclassrefactoring.columnar;
+
+import com.example.demo.godclassrefactoring.buffer.BufferArena;
+
+import java.util.Arrays;
+
+/**
+ * Count, sum, mean, M2, min and max per group in parallel primitive arrays, indexed by the
+ * dense group indexes of a {@link LongGroupTable}.
+ * 
+ * Rows are added a batch at a time in two branch-free, division-free loops: the first counts
+ * and sums each group's rows and tracks min and max, the second sums the squared deviations
+ * from each group's batch mean. The batch's moments are then folded into the groups with
+ * {@link Moments}, which costs one division per group rather than one per row. The per-batch
+ * sums are scratch arrays borrowed from the thread's {@link BufferArena}.
+ */
+final class GroupAccumulators {
+    
+    // Batch count, sum, mean and M2 per group while a batch is added
+    static final int SCRATCH_BYTES_PER_GROUP = 4 * 8;
+    
+    long[] counts;
+    double[] sums;
+    double[] means;
+    double[] m2s;
+    double[] mins;
+    double[] maxs;
+    
+    private long[] batchCounts;
+    private double[] batchSums;
+    private double[] batchMeans;
+    private double[] batchM2s;
+    
+    GroupAccumulators(int capacity) {
+        counts = new long[capacity];
+        sums = new double[capacity];
+        means = new double[capacity];
+        m2s = new double[capacity];
+        mins = new double[capacity];
+        maxs = new double[capacity];
+        reset(0, capacity);
+    }
+    
+    int capacity() {
+        return counts.length;
+    }
+    
+    /**
+     * Grows the arrays to a larger capacity; the new groups are empty.
+     */
+    void grow(int capacity) {
+        int length = counts.length;
+        counts = Arrays.copyOf(counts, capacity);
+        sums = Arrays.copyOf(sums, capacity);
+        means = Arrays.copyOf(means, capacity);
+        m2s = Arrays.copyOf(m2s, capacity);
+        mins = Arrays.copyOf(mins, capacity);
+        maxs = Arrays.copyOf(maxs, capacity);
+        reset(length, capacity);
+    }
+    
+    /**
+     * Empties a range of groups.
+     */
+    void reset(int from, int to) {
+        Arrays.fill(counts, from, to, 0L);
+        Arrays.fill(sums, from, to, 0.0);
+        Arrays.fill(means, from, to, 0.0);
+        Arrays.fill(m2s, from, to, 0.0);
+        Arrays.fill(mins, from, to, Double.POSITIVE_INFINITY);
+        Arrays.fill(maxs, from, to, Double.NEGATIVE_INFINITY);
+    }
+    
+    /**
+     * Merges partial statistics into a group, combining the means and M2s with Chan's formula.
+     */
+    void combine(int group, long count, double sum, double mean, double m2, double min, double max) {
+        m2s[group] = Moments.mergeM2(counts[group], means[group], m2s[group], count, mean, m2);
+        means[group] = Moments.mergeMean(counts[group], means[group], count, mean);
+        counts[group] += count;
+        sums[group] += sum;
+        mins[group] = Math.min(mins[group], min);
+        maxs[group] = Math.max(maxs[group], max);
+    }
+    
+    /**
+     * Adds a range of rows whose groups are already assigned.
+     *
+     * @param ids the group of each row
+     * @param values the value of each row
+     * @param from the first row
+     * @param to the row after the last
+     * @param groups the number of groups the rows may belong to
+     */
+    void add(int[] ids, double[] values, int from, int to, int groups) {
+        BufferArena arena = begin(groups);
+        try {
+            long[] batchCounts = this.batchCounts;
+            double[] batchSums = this.batchSums;
+            double[] batchMeans = this.batchMeans;
+            double[] batchM2s = this.batchM2s;
+            double[] mins = this.mins;
+            double[] maxs = this.maxs;
+            for (int row = from; row < to; row++) {
+                int group = ids[row];
+                double value = values[row];
+                batchCounts[group]++;
+                batchSums[group] += value;
+                mins[group] = Math.min(mins[group], value);
+                maxs[group] = Math.max(maxs[group], value);
+            }
+            batchMeans(groups);
+            for (int row = from; row < to; row++) {
+                int group = ids[row];
+                double deviation = values[row] - batchMeans[group];
+                batchM2s[group] += deviation * deviation;
+            }
+            fold(groups);
+        } finally {
+            end(arena);
+        }
+    }
+    
+    /**
+     * Adds a range of rows whose groups are already assigned.
+     *
+     * @param ids the group of each row
+     * @param values the value of each row
+     * @param from the first row
+     * @param to the row after the last
+     * @param groups the number of groups the rows may belong to
+     */
+    void add(int[] ids, long[] values, int from, int to, int groups) {
+        BufferArena arena = begin(groups);
+        try {
+            long[] batchCounts = this.batchCounts;
+            double[] batchSums = this.batchSums;
+            double[] batchMeans = this.batchMeans;
+            double[] batchM2s = this.batchM2s;
+            double[] mins = this.mins;
+            double[] maxs = this.maxs;
+            for (int row = from; row < to; row++) {
+                int group = ids[row];
+                double value = values[row];
+                batchCounts[group]++;
+                batchSums[group] += value;
+                mins[group] = Math.min(mins[group], value);
+                maxs[group] = Math.max(maxs[group], value);
+            }
+            batchMeans(groups);
+            for (int row = from; row < to; row++) {
+                int group = ids[row];
+                double deviation = values[row] - batchMeans[group];
+                batchM2s[group] += deviation * deviation;
+            }
+            fold(groups);
+        } finally {
+            end(arena);
+        }
+    }
+    
+    private BufferArena begin(int groups) {
+        BufferArena arena = BufferArena.current();
+        batchCounts = arena.borrowLongs(groups);
+        batchSums = arena.borrowDoubles(groups);
+        batchMeans = arena.borrowDoubles(groups);
+        batchM2s = arena.borrowDoubles(groups);
+        Arrays.fill(batchCounts, 0, groups, 0L);
+        Arrays.fill(batchSums, 0, groups, 0.0);
+        Arrays.fill(batchM2s, 0, groups, 0.0);
+        return arena;
+    }
+    
+    private void batchMeans(int groups) {
+        for (int group = 0; group < groups; group++) {
+            long count = batchCounts[group];
+            batchMeans[group] = count == 0 ? 0.0 : batchSums[group] / count;
+        }
+    }
+    
+    private void fold(int groups) {
+        for (int group = 0; group < groups; group++) {
+            long count = batchCounts[group];
+            if (count > 0) {
+                m2s[group] = Moments.mergeM2(counts[group], means[group], m2s[group], count, batchMeans[group],
+                                             batchM2s[group]);
+                means[group] = Moments.mergeMean(counts[group], means[group], count, batchMeans[group]);
+                counts[group] += count;
+                sums[group] += batchSums[group];
+            }
+        }
+    }
+    
+    private void end(BufferArena arena) {
+        arena.release(batchM2s);
+        arena.release(batchMeans);
+        arena.release(batchSums);
+        arena.release(batchCounts);
+        batchCounts = null;
+        batchSums = null;
+        batchMeans = null;
+        batchM2s = null;
+    }
+}
@@ -0,0 +1,311 @@
+package com.example.demo.godclassrefactoring.columnar;
+
+import com.example.demo.godclassrefactoring.buffer.BufferArena;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes count, sum, min, max, mean and standard deviation of a value column per
+ * group key over one or more {@link ColumnBatch}es.
+ * 
+ * Each batch is processed in two phases: the key column is mapped to dense group
+ * indexes through a primitive open-addressing table, then the {@link GroupAccumulators}
+ * are updated in branch-free, division-free loops over primitive arrays. Long keys are hashed
+ * directly; string keys are dictionary-encoded first. The per-row group ids and the direct
+ * lookup are scratch arrays borrowed from the thread's {@link BufferArena} for each batch.
+ * 
+ * The variance is kept as a mean and sum of squared deviations (M2): each batch's M2 is
+ * computed around the batch mean and combined with the groups' with Chan's formula, as are
+ * merged partial states, so it stays accurate for values with a large mean.
+ * 
+ * Instances are not thread-safe; aggregate partitions separately and {@link #merge} them.
+ */
+public class GroupByAggregator {
+    
+    private static final int INITIAL_GROUPS = 64;
+    private static final int DIRECT_RANGE = 1 << 16;
+    
+    private final String keyColumn;
+    private final String valueColumn;
+    private final LongGroupTable table = new LongGroupTable(INITIAL_GROUPS);
+    private final Map<String, Long> dictionary = new HashMap<>();
+    private final List<String> dictionaryValues = new ArrayList<>();
+    private ColumnType keyType;
+    
+    private final GroupAccumulators accumulators = new GroupAccumulators(INITIAL_GROUPS);
+    private int[] groupIds;
+    
+    /**
+     * Creates an aggregator.
+     * 
+     * @param keyColumn the LONG or STRING column to group by
+     * @param valueColumn the LONG or DOUBLE column to aggregate
+     */
+    public GroupByAggregator(String keyColumn, String valueColumn) {
+        this.keyColumn = keyColumn;
+        this.valueColumn = valueColumn;
+    }
+    
+    /**
+     * Aggregates a single batch.
+     * 
+     * @param batch the batch to aggregate
+     * @param keyColumn the column to group by
+     * @param valueColumn the column to aggregate
+     * @return the per-group statistics
+     */
+    public static GroupStatistics aggregate(ColumnBatch batch, String keyColumn, String valueColumn) {
+        GroupByAggregator aggregator = new GroupByAggregator(keyColumn, valueColumn);
+        aggregator.add(batch);
+        return aggregator.result();
+    }
+    
+    /**
+     * Adds the rows of a batch to the aggregation.
+     * 
+     * @param batch the batch to add
+     */
+    public void add(ColumnBatch batch) {
+        int rows = batch.size();
+        BufferArena arena = BufferArena.current();
+        groupIds = arena.borrowInts(rows);
+        try {
+            assignGroups(batch, rows);
+            ensureGroupCapacity(table.size());
+            
+            if (batch.getColumnType(valueColumn) == ColumnType.DOUBLE) {
+                accumulators.add(groupIds, batch.getDoubleColumn(valueColumn), 0, rows, table.size());
+            } else if (batch.getColumnType(valueColumn) == ColumnType.LONG) {
+                accumulators.add(groupIds, batch.getLongColumn(valueColumn), 0, rows, table.size());
+            } else {
+                throw new IllegalArgumentException("Value column " + valueColumn + " must be numeric");
+            }
+        } finally {
+            arena.release(groupIds);
+            groupIds = null;
+        }
+    }
+    
+    /**
+     * Merges the groups of another aggregator over the same columns into this one.
+     * 
+     * @param other the aggregator to merge
+     * @throws IllegalArgumentException if the other aggregator grouped keys of another type
+     */
+    public void merge(GroupByAggregator other) {
+        if (keyType != null && other.keyType != null && keyType != other.keyType) {
+            throw new IllegalArgumentException("Key column " + keyColumn + " changed type from " + keyType + " to "
+                + other.keyType);
+        }
+        GroupAccumulators from = other.accumulators;
+        for (int otherGroup = 0; otherGroup < other.table.size(); otherGroup++) {
+            long key = other.table.keyAt(otherGroup);
+            if (other.keyType == ColumnType.STRING) {
+                key = encode(other.dictionaryValues.get((int) key));
+            }
+            int group = table.findOrInsert(key);
+            ensureGroupCapacity(table.size());
+            accumulators.combine(group, from.counts[otherGroup], from.sums[otherGroup], from.means[otherGroup],
+                                 from.m2s[otherGroup], from.mins[otherGroup], from.maxs[otherGroup]);
+        }
+        if (keyType == null) {
+            keyType = other.keyType;
+        }
+    }
+    
+    /**
+     * Writes the partial state of every group, e.g. to checkpoint a long aggregation.
+     * 
+     * @param out the destination
+     * @throws IOException if writing fails
+     */
+    public void writeGroups(DataOutput out) throws IOException {
+        out.writeByte(keyType == null ? -1 : keyType.ordinal());
+        out.writeInt(table.size());
+        for (int group = 0; group < table.size(); group++) {
+            long key = table.keyAt(group);
+            if (keyType == ColumnType.STRING) {
+                String value = dictionaryValues.get((int) key);
+                out.writeBoolean(value != null);
+                if (value != null) {
+                    byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(encoded.length);
+                    out.write(encoded);
+                }
+            } else {
+                out.writeLong(key);
+            }
+            out.writeLong(accumulators.counts[group]);
+            out.writeDouble(accumulators.sums[group]);
+            out.writeDouble(accumulators.means[group]);
+            out.writeDouble(accumulators.m2s[group]);
+            out.writeDouble(accumulators.mins[group]);
+            out.writeDouble(accumulators.maxs[group]);
+        }
+    }
+    
+    /**
+     * Merges groups written by {@link #writeGroups} into this aggregator. Restoring into a new
+     * aggregator and adding the remaining batches gives exactly the result of a single run.
+     * 
+     * @param in the source
+     * @throws IOException if reading fails
+     * @throws IllegalArgumentException if the key type differs from the groups already added
+     */
+    public void readGroups(DataInput in) throws IOException {
+        int type = in.readByte();
+        if (type < 0) {
+            in.readInt();
+            return;
+        }
+        ColumnType readType = ColumnType.values()[type];
+        if (keyType == null) {
+            keyType = readType;
+        } else if (keyType != readType) {
+            throw new IllegalArgumentException("Key column " + keyColumn + " changed type from " + keyType + " to " + readType);
+        }
+        int groups = in.readInt();
+        for (int i = 0; i < groups; i++) {
+            long key;
+            if (readType == ColumnType.STRING) {
+                String value = null;
+                if (in.readBoolean()) {
+                    byte[] encoded = new byte[in.readInt()];
+                    in.readFully(encoded);
+                    value = new String(encoded, StandardCharsets.UTF_8);
+                }
+                key = encode(value);
+            } else {
+                key = in.readLong();
+            }
+            int group = table.findOrInsert(key);
+            ensureGroupCapacity(table.size());
+            accumulators.combine(group, in.readLong(), in.readDouble(), in.readDouble(), in.readDouble(),
+                                 in.readDouble(), in.readDouble());
+        }
+    }
+    
+    /**
+     * Returns the statistics of all groups added so far, ordered by key.
+     * 
+     * @return the per-group statistics
+     */
+    public GroupStatistics result() {
+        int groups = table.size();
+        Integer[] order = new Integer[groups];
+        for (int group = 0; group < groups; group++) {
+            order[group] = group;
+        }
+        Object[] keys = new Object[groups];
+        for (int group = 0; group < groups; group++) {
+            long key = table.keyAt(group);
+            keys[group] = keyType == ColumnType.STRING ? dictionaryValues.get((int) key) : (Object) key;
+        }
+        Arrays.sort(order, keyType == ColumnType.STRING
+            ? Comparator.comparing(group -> (String) keys[group], Comparator.nullsFirst(Comparator.naturalOrder()))
+            : Comparator.comparingLong(table::keyAt));
+        
+        Object[] sortedKeys = new Object[groups];
+        long[] sortedCounts = new long[groups];
+        double[] sortedSums = new double[groups];
+        double[] sortedMeans = new double[groups];
+        double[] sortedM2s = new double[groups];
+        double[] sortedMins = new double[groups];
+        double[] sortedMaxs = new double[groups];
+        for (int i = 0; i < groups; i++) {
+            int group = order[i];
+            sortedKeys[i] = keys[group];
+            sortedCounts[i] = accumulators.counts[group];
+            sortedSums[i] = accumulators.sums[group];
+            sortedMeans[i] = accumulators.means[group];
+            sortedM2s[i] = accumulators.m2s[group];
+            sortedMins[i] = accumulators.mins[group];
+            sortedMaxs[i] = accumulators.maxs[group];
+        }
+        return new GroupStatistics(sortedKeys, sortedCounts, sortedSums, sortedMeans, sortedM2s, sortedMins,
+                                   sortedMaxs);
+    }
+    
+    private void assignGroups(ColumnBatch batch, int rows) {
+        ColumnType type = batch.getColumnType(keyColumn);
+        if (keyType == null) {
+            keyType = type;
+        } else if (keyType != type) {
+            throw new IllegalArgumentException("Key column " + keyColumn + " changed type from " + keyType + " to " + type);
+        }
+        
+        if (type == ColumnType.LONG) {
+            assignLongGroups(batch.getLongColumn(keyColumn), rows);
+        } else if (type == ColumnType.STRING) {
+            String[] keys = batch.getStringColumn(keyColumn);
+            int[] ids = groupIds;
+            for (int row = 0; row < rows; row++) {
+                ids[row] = table.findOrInsert(encode(keys[row]));
+            }
+        } else {
+            throw new IllegalArgumentException("Key column " + keyColumn + " must be LONG or STRING");
+        }
+    }
+    
+    private void assignLongGroups(long[] keys, int rows) {
+        int[] ids = groupIds;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int row = 0; row < rows; row++) {
+            min = Math.min(min, keys[row]);
+            max = Math.max(max, keys[row]);
+        }
+        
+        // Keys from a small dense range (typical for codes and ids) use a direct-mapped lookup
+        // in front of the hash table, so each distinct key is hashed once per batch
+        if (rows > 0 && max - min >= 0 && max - min < Math.min(DIRECT_RANGE, rows)) {
+            int range = (int) (max - min) + 1;
+            BufferArena arena = BufferArena.current();
+            int[] direct = arena.borrowInts(range);
+            try {
+                Arrays.fill(direct, 0, range, -1);
+                for (int row = 0; row < rows; row++) {
+                    int slot = (int) (keys[row] - min);
+                    int group = direct[slot];
+                    if (group < 0) {
+                        group = table.findOrInsert(keys[row]);
+                        direct[slot] = group;
+                    }
+                    ids[row] = group;
+                }
+            } finally {
+                arena.release(direct);
+            }
+            return;
+        }
+        for (int row = 0; row < rows; row++) {
+            ids[row] = table.findOrInsert(keys[row]);
+        }
+    }
+    
+    private long encode(String key) {
+        Long code = dictionary.get(key);
+        if (code == null) {
+            code = (long) dictionaryValues.size();
+            dictionary.put(key, code);
+            dictionaryValues.add(key);
+        }
+        return code;
+    }
+    
+    private void ensureGroupCapacity(int groups) {
+        int capacity = accumulators.capacity();
+        if (groups > capacity) {
+            accumulators.grow(Math.max(groups, capacity * 2));
+        }
+    }
+}
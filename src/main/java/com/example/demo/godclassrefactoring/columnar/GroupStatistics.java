@@ -0,0 +1,101 @@
+package com.example.demo.godclassrefactoring.columnar;
+
+import java.util.Arrays;
+
+/**
+ * Per-group count, sum, min, max, mean and standard deviation produced by a
+ * {@link GroupByAggregator}, ordered by group key.
+ */
+public final class GroupStatistics {
+    
+    private final Object[] keys;
+    private final long[] counts;
+    private final double[] sums;
+    private final double[] means;
+    private final double[] m2s;
+    private final double[] mins;
+    private final double[] maxs;
+    
+    GroupStatistics(Object[] keys, long[] counts, double[] sums, double[] means, double[] m2s, double[] mins,
+                    double[] maxs) {
+        this.keys = keys;
+        this.counts = counts;
+        this.sums = sums;
+        this.means = means;
+        this.m2s = m2s;
+        this.mins = mins;
+        this.maxs = maxs;
+    }
+    
+    /**
+     * Returns the number of groups.
+     * 
+     * @return the group count
+     */
+    public int size() {
+        return keys.length;
+    }
+    
+    public Object getKey(int group) {
+        return keys[group];
+    }
+    
+    public long getCount(int group) {
+        return counts[group];
+    }
+    
+    public double getSum(int group) {
+        return sums[group];
+    }
+    
+    public double getMin(int group) {
+        return mins[group];
+    }
+    
+    public double getMax(int group) {
+        return maxs[group];
+    }
+    
+    public double getMean(int group) {
+        return means[group];
+    }
+    
+    /**
+     * Returns the population standard deviation of a group, from the sum of squared deviations
+     * from the mean, which is computed per batch and combined with Chan's formula.
+     * 
+     * @param group the group index
+     * @return the standard deviation
+     */
+    public double getStdDev(int group) {
+        return Math.sqrt(m2s[group] / counts[group]);
+    }
+    
+    /**
+     * Returns the index of the group with the given key, or -1 if there is none.
+     * 
+     * @param key the group key
+     * @return the group index
+     */
+    public int indexOf(Object key) {
+        return Arrays.asList(keys).indexOf(key);
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("GroupStatistics[");
+        for (int group = 0; group < keys.length; group++) {
+            if (group > 0) {
+                builder.append(", ");
+            }
+            builder.append(keys[group])
+                .append(": count=").append(counts[group])
+                .append(", sum=").append(sums[group])
+                .append(", min=").append(mins[group])
+                .append(", max=").append(maxs[group])
+                .append(", mean=").append(getMean(group))
+                .append(", stddev=").append(getStdDev(group));
+        }
+        return builder.append(']').toString();
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.demo.godclassrefactoring.columnar;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges the loaded data of several batches back into the shape one load of the whole
+ * input has, for processors and strategies that must see all of it at once. Shared by the
+ * staged pipeline and the partitioned strategies of the refactored processor.
+ */
+public final class LoadedBatches {
+    
+    private LoadedBatches() {
+    }
+    
+    /**
+     * Merges loaded batches: numeric fields of map batches are summed, other fields keep
+     * their first value. Record lists are concatenated and columnar batches collected.
+     */
+    public static Object merge(List<Object> batches) {
+        Map<String, Object> merged = new HashMap<>();
+        List<Object> others = new ArrayList<>();
+        for (Object batch : batches) {
+            if (batch instanceof List) {
+                others.addAll((List<?>) batch);
+                continue;
+            }
+            if (!(batch instanceof Map)) {
+                others.add(batch);
+                continue;
+            }
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) batch).entrySet()) {
+                String key = String.valueOf(entry.getKey());
+                Object existing = merged.get(key);
+                merged.put(key, existing == null ? entry.getValue() : mergeValue(existing, entry.getValue()));
+            }
+        }
+        if (merged.isEmpty()) {
+            return others;
+        }
+        if (!others.isEmpty()) {
+            merged.put("unmerged", others);
+        }
+        return merged;
+    }
+    
+    private static Object mergeValue(Object existing, Object value) {
+        if (existing instanceof Integer && value instanceof Integer) {
+            return (Integer) existing + (Integer) value;
+        }
+        if (existing instanceof Number && value instanceof Number) {
+            return ((Number) existing).doubleValue() + ((Number) value).doubleValue();
+        }
+        return existing;
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.demo.godclassrefactoring.columnar;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash table mapping primitive long keys to dense group indexes
+ * (0, 1, 2, ... in insertion order). Uses linear probing and never boxes keys.
+ */
+final class LongGroupTable {
+    
+    private static final int MIN_CAPACITY = 16;
+    
+    private long[] slotKeys;
+    // Group index + 1 per slot, 0 marks an empty slot
+    private int[] slotGroups;
+    private long[] groupKeys;
+    private int size;
+    private int mask;
+    private final int maxGroups;
+    
+    LongGroupTable(int expectedGroups) {
+        this(expectedGroups, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Creates a table whose group key array never grows past {@code maxGroups}; callers must not
+     * insert more groups than that.
+     */
+    LongGroupTable(int expectedGroups, int maxGroups) {
+        this.maxGroups = maxGroups;
+        int capacity = Integer.highestOneBit(Math.max(MIN_CAPACITY, expectedGroups * 2 - 1)) << 1;
+        slotKeys = new long[capacity];
+        slotGroups = new int[capacity];
+        groupKeys = new long[Math.max(MIN_CAPACITY, expectedGroups)];
+        mask = capacity - 1;
+    }
+    
+    /**
+     * Returns the group index of a key, adding a new group if the key is not present.
+     */
+    int findOrInsert(long key) {
+        int slot = hash(key) & mask;
+        while (true) {
+            int group = slotGroups[slot];
+            if (group == 0) {
+                return insert(key, slot);
+            }
+            if (slotKeys[slot] == key) {
+                return group - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+    
+    /**
+     * Returns the group index of a key, or -1 if the key is not present.
+     */
+    int find(long key) {
+        int slot = hash(key) & mask;
+        while (true) {
+            int group = slotGroups[slot];
+            if (group == 0) {
+                return -1;
+            }
+            if (slotKeys[slot] == key) {
+                return group - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    long keyAt(int group) {
+        return groupKeys[group];
+    }
+    
+    void clear() {
+        Arrays.fill(slotGroups, 0);
+        size = 0;
+    }
+    
+    private int insert(long key, int slot) {
+        int group = size++;
+        if (group == groupKeys.length) {
+            groupKeys = Arrays.copyOf(groupKeys, (int) Math.min(group * 2L, maxGroups));
+        }
+        groupKeys[group] = key;
+        slotKeys[slot] = key;
+        slotGroups[slot] = group + 1;
+        // Keep the load factor at or below 0.5
+        if (size * 2 > slotKeys.length) {
+            rehash();
+        }
+        return group;
+    }
+    
+    private void rehash() {
+        int capacity = slotKeys.length * 2;
+        long[] newKeys = new long[capacity];
+        int[] newGroups = new int[capacity];
+        int newMask = capacity - 1;
+        for (int group = 0; group < size; group++) {
+            long key = groupKeys[group];
+            int slot = hash(key) & newMask;
+            while (newGroups[slot] != 0) {
+                slot = (slot + 1) & newMask;
+            }
+            newKeys[slot] = key;
+            newGroups[slot] = group + 1;
+        }
+        slotKeys = newKeys;
+        slotGroups = newGroups;
+        mask = newMask;
+    }
+    
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.demo.godclassrefactoring.columnar;
+
+import java.util.Arrays;
+
+/**
+ * Block compression in the LZ4 block format: a sequence of literal runs and back references
+ * of at least 4 bytes into the previous 64 KB. Matches are found through a single-entry hash
+ * table, trading ratio for speed, so decompression is little more than copying.
+ */
+final class Lz4Block {
+    
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MATCH_FIND_LIMIT = 12;
+    private static final int MAX_OFFSET = 65535;
+    private static final int HASH_LOG = 12;
+    private static final int RUN_MASK = 15;
+    
+    private Lz4Block() {
+    }
+    
+    /**
+     * Returns the largest compressed size of an input, for sizing the destination.
+     *
+     * @param length the input length
+     * @return the worst-case compressed length
+     */
+    static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+    
+    /**
+     * Compresses a block.
+     *
+     * @param src the input
+     * @param srcOff the input offset
+     * @param srcLen the input length
+     * @param dst the destination, with at least {@link #maxCompressedLength} bytes from dstOff
+     * @param dstOff the destination offset
+     * @return the compressed length
+     */
+    static int compress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff) {
+        int srcEnd = srcOff + srcLen;
+        int matchLimit = srcEnd - LAST_LITERALS;
+        int matchFindLimit = srcEnd - MATCH_FIND_LIMIT;
+        int anchor = srcOff;
+        int op = dstOff;
+        
+        if (srcLen > MATCH_FIND_LIMIT) {
+            int[] table = new int[1 << HASH_LOG];
+            Arrays.fill(table, -1);
+            int ip = srcOff;
+            while (ip <= matchFindLimit) {
+                int hash = hash(readInt(src, ip));
+                int ref = table[hash];
+                table[hash] = ip;
+                if (ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != readInt(src, ip)) {
+                    // Skip faster through incompressible data
+                    ip += 1 + ((ip - anchor) >>> 6);
+                    continue;
+                }
+                while (ip > anchor && ref > srcOff && src[ip - 1] == src[ref - 1]) {
+                    ip--;
+                    ref--;
+                }
+                int matchLength = MIN_MATCH;
+                while (ip + matchLength < matchLimit && src[ip + matchLength] == src[ref + matchLength]) {
+                    matchLength++;
+                }
+                op = writeSequence(src, anchor, ip - anchor, ip - ref, matchLength, dst, op);
+                ip += matchLength;
+                anchor = ip;
+            }
+        }
+        
+        // The block always ends with literals
+        int literalLength = srcEnd - anchor;
+        int token = op++;
+        op = writeLength(literalLength, dst, op);
+        dst[token] = (byte) (Math.min(literalLength, RUN_MASK) << 4);
+        System.arraycopy(src, anchor, dst, op, literalLength);
+        return op + literalLength - dstOff;
+    }
+    
+    /**
+     * Decompresses a block.
+     *
+     * @param src the compressed input
+     * @param srcOff the input offset
+     * @param srcLen the compressed length
+     * @param dst the destination
+     * @param dstOff the destination offset
+     * @param dstLen the expected decompressed length
+     * @throws IllegalArgumentException if the block is corrupt or does not decompress to dstLen bytes
+     */
+    static void decompress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int dstLen) {
+        int ip = srcOff;
+        int srcEnd = srcOff + srcLen;
+        int op = dstOff;
+        int dstEnd = dstOff + dstLen;
+        try {
+            while (true) {
+                if (ip >= srcEnd) {
+                    throw corrupt();
+                }
+                int token = src[ip++] & 0xFF;
+                
+                int literalLength = token >>> 4;
+                if (literalLength == RUN_MASK) {
+                    int extra;
+                    do {
+                        extra = src[ip++] & 0xFF;
+                        literalLength += extra;
+                    } while (extra == 255);
+                }
+                if (literalLength > srcEnd - ip || literalLength > dstEnd - op) {
+                    throw corrupt();
+                }
+                System.arraycopy(src, ip, dst, op, literalLength);
+                ip += literalLength;
+                op += literalLength;
+                if (ip == srcEnd) {
+                    break;
+                }
+                if (srcEnd - ip < 2) {
+                    throw corrupt();
+                }
+                
+                int offset = (src[ip++] & 0xFF) | (src[ip++] & 0xFF) << 8;
+                int matchLength = token & RUN_MASK;
+                if (matchLength == RUN_MASK) {
+                    int extra;
+                    do {
+                        extra = src[ip++] & 0xFF;
+                        matchLength += extra;
+                    } while (extra == 255);
+                }
+                matchLength += MIN_MATCH;
+                int ref = op - offset;
+                if (offset == 0 || ref < dstOff || matchLength > dstEnd - op) {
+                    throw corrupt();
+                }
+                if (offset >= matchLength) {
+                    System.arraycopy(dst, ref, dst, op, matchLength);
+                    op += matchLength;
+                } else {
+                    // Overlapping copy repeats the last offset bytes
+                    for (int i = 0; i < matchLength; i++) {
+                        dst[op++] = dst[ref++];
+                    }
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw corrupt();
+        }
+        if (op != dstEnd) {
+            throw corrupt();
+        }
+    }
+    
+    private static int writeSequence(byte[] src, int literalStart, int literalLength, int offset, int matchLength,
+                                     byte[] dst, int op) {
+        int token = op++;
+        op = writeLength(literalLength, dst, op);
+        System.arraycopy(src, literalStart, dst, op, literalLength);
+        op += literalLength;
+        dst[op++] = (byte) offset;
+        dst[op++] = (byte) (offset >>> 8);
+        int matchCode = matchLength - MIN_MATCH;
+        op = writeLength(matchCode, dst, op);
+        dst[token] = (byte) (Math.min(literalLength, RUN_MASK) << 4 | Math.min(matchCode, RUN_MASK));
+        return op;
+    }
+    
+    /**
+     * Writes the extra bytes of a length that does not fit in its 4-bit token field.
+     */
+    private static int writeLength(int length, byte[] dst, int op) {
+        if (length < RUN_MASK) {
+            return op;
+        }
+        int remaining = length - RUN_MASK;
+        while (remaining >= 255) {
+            dst[op++] = (byte) 255;
+            remaining -= 255;
+        }
+        dst[op++] = (byte) remaining;
+        return op;
+    }
+    
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8
+            | (bytes[offset + 2] & 0xFF) << 16 | (bytes[offset + 3] & 0xFF) << 24;
+    }
+    
+    private static int hash(int value) {
+        return (value * -1640531535) >>> (32 - HASH_LOG);
+    }
+    
+    private static IllegalArgumentException corrupt() {
+        return new IllegalArgumentException("Corrupt compressed block");
+    }
+}
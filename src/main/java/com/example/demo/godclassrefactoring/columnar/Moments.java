@@ -0,0 +1,32 @@
+package com.example.demo.godclassrefactoring.columnar;
+
+/**
+ * Combines the mean and sum of squared deviations (M2) of two sets of values with the pairwise
+ * formula of Chan, Golub and LeVeque. Unlike a sum of squares, M2 does not grow with the mean,
+ * so the variance keeps its precision for values far from zero.
+ */
+final class Moments {
+    
+    private Moments() {
+    }
+    
+    /**
+     * Returns the mean of the union of two sets of values.
+     */
+    static double mergeMean(long count, double mean, long otherCount, double otherMean) {
+        long total = count + otherCount;
+        return total == 0 ? 0.0 : mean + (otherMean - mean) * ((double) otherCount / total);
+    }
+    
+    /**
+     * Returns the M2 of the union of two sets of values.
+     */
+    static double mergeM2(long count, double mean, double m2, long otherCount, double otherMean, double otherM2) {
+        long total = count + otherCount;
+        if (total == 0) {
+            return 0.0;
+        }
+        double delta = otherMean - mean;
+        return m2 + otherM2 + delta * delta * ((double) count * otherCount / total);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.demo.godclassrefactoring.expression;
+
+import com.example.demo.godclassrefactoring.columnar.ColumnBatch;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Applies user-configured field expressions to columnar batches.
+ * 
+ * Expressions are parsed when the transformer is created. The first batch of each schema
+ * compiles a {@link TransformationProgram}, which is cached and reused for every later
+ * batch with the same column names and types. Instances are thread-safe.
+ */
+public class BatchTransformer {
+    
+    private final Map<String, Expression> rules = new LinkedHashMap<>();
+    private final Map<String, Map<String, String>> lookups;
+    private final TransformationProgram.Mode mode;
+    private final Map<String, TransformationProgram> programs = new ConcurrentHashMap<>();
+    
+    /**
+     * Creates a transformer that compiles its expressions.
+     *
+     * @param rules the expression source of each output column, in output order
+     * @param lookups the lookup tables by name
+     */
+    public BatchTransformer(Map<String, String> rules, Map<String, Map<String, String>> lookups) {
+        this(rules, lookups, TransformationProgram.Mode.COMPILED);
+    }
+    
+    /**
+     * Creates a transformer.
+     *
+     * @param rules the expression source of each output column, in output order
+     * @param lookups the lookup tables by name
+     * @param mode whether expressions are compiled or interpreted
+     */
+    public BatchTransformer(Map<String, String> rules, Map<String, Map<String, String>> lookups,
+                            TransformationProgram.Mode mode) {
+        for (Map.Entry<String, String> rule : rules.entrySet()) {
+            this.rules.put(rule.getKey(), Expression.parse(rule.getValue()));
+        }
+        this.lookups = Collections.unmodifiableMap(new LinkedHashMap<>(lookups));
+        this.mode = mode;
+    }
+    
+    /**
+     * Returns a transformer without rules, which passes batches through unchanged.
+     *
+     * @return an empty transformer
+     */
+    public static BatchTransformer empty() {
+        return new BatchTransformer(Collections.emptyMap(), Collections.emptyMap());
+    }
+    
+    /**
+     * Evaluates the expressions over a batch.
+     *
+     * @param batch the input batch
+     * @return a batch with the input and output columns
+     */
+    public ColumnBatch apply(ColumnBatch batch) {
+        return programs.computeIfAbsent(schemaOf(batch), schema ->
+            TransformationProgram.compile(rules, ExpressionContext.of(batch, lookups), mode)).apply(batch);
+    }
+    
+    private static String schemaOf(ColumnBatch batch) {
+        StringBuilder schema = new StringBuilder();
+        for (String name : batch.getColumnNames()) {
+            schema.append(name).append(':').append(batch.getColumnType(name)).append(',');
+        }
+        return schema.toString();
+    }
+}
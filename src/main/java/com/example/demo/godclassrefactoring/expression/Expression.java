@@ -0,0 +1,395 @@
+package com.example.demo.godclassrefactoring.expression;
+
+import com.example.demo.godclassrefactoring.columnar.ColumnType;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A parsed field expression, e.g. {@code upper(lookup('regions', region)) + ': ' + round(price * quantity)}.
+ * 
+ * The language has number and 'string' literals, column references, the operators
+ * {@code + - * / %} (with {@code +} concatenating when either side is a string) and the
+ * functions upper, lower, trim, length, abs, round, negate, min, max and lookup('table', key).
+ * LONG columns are read as numbers; every number is a double. A null string propagates:
+ * string functions and concatenation return null, and length returns NaN.
+ * 
+ * An expression can be evaluated in two ways: {@link #evaluate} walks the tree for each
+ * row with boxed values, while {@link #compile} turns the tree into a single
+ * {@link MethodHandle} with primitive arithmetic and column positions resolved up front.
+ */
+public abstract class Expression {
+    
+    /**
+     * Signature shared by every compiled expression: (Object[] columns, int row).
+     */
+    static final MethodType ROW_TYPE = MethodType.methodType(Object.class, Object[].class, int.class);
+    
+    private static final MethodHandle TEXT = Functions.handle("text", String.class, double.class);
+    
+    Expression() {
+    }
+    
+    /**
+     * Parses an expression.
+     *
+     * @param text the expression source
+     * @return the expression tree
+     * @throws IllegalArgumentException if the text is not a valid expression
+     */
+    public static Expression parse(String text) {
+        return new ExpressionParser(text).parse();
+    }
+    
+    /**
+     * Returns the result type in a context: DOUBLE for numbers, STRING for text.
+     *
+     * @param context the columns and lookup tables
+     * @return the result type
+     * @throws IllegalArgumentException if the expression is not valid in the context
+     */
+    public abstract ColumnType typeOf(ExpressionContext context);
+    
+    /**
+     * Interprets the expression for one row.
+     *
+     * @param context the columns and lookup tables
+     * @param columns the column arrays in context order
+     * @param row the row index
+     * @return a Double or a String
+     */
+    public abstract Object evaluate(ExpressionContext context, Object[] columns, int row);
+    
+    /**
+     * Compiles the expression into a method handle of type (Object[], int) returning
+     * {@code double} or {@code String} according to {@link #typeOf}.
+     *
+     * @param context the columns and lookup tables
+     * @return the compiled expression
+     */
+    public abstract MethodHandle compile(ExpressionContext context);
+    
+    /**
+     * Compiles the expression and converts the result to the requested type.
+     */
+    MethodHandle compileAs(ExpressionContext context, ColumnType type) {
+        MethodHandle handle = compile(context);
+        if (type == ColumnType.STRING && typeOf(context) == ColumnType.DOUBLE) {
+            return MethodHandles.filterReturnValue(handle, TEXT);
+        }
+        if (type == ColumnType.DOUBLE && typeOf(context) == ColumnType.STRING) {
+            throw new IllegalArgumentException("Expected a number but " + this + " is a string");
+        }
+        return handle;
+    }
+    
+    /**
+     * Feeds the (columns, row) arguments to every operand and passes the results to the function.
+     */
+    static MethodHandle combine(MethodHandle function, MethodHandle... operands) {
+        MethodHandle collected = function;
+        // Right to left, so the positions of the remaining operands do not shift
+        for (int operand = operands.length - 1; operand >= 0; operand--) {
+            collected = MethodHandles.collectArguments(collected, operand, operands[operand]);
+        }
+        int[] reorder = new int[operands.length * 2];
+        for (int operand = 0; operand < operands.length; operand++) {
+            reorder[operand * 2 + 1] = 1;
+        }
+        return MethodHandles.permuteArguments(collected, ROW_TYPE.changeReturnType(function.type().returnType()), reorder);
+    }
+    
+    static Object text(Object value) {
+        return value instanceof Double ? Functions.text((Double) value) : value;
+    }
+    
+    /**
+     * A number or string constant.
+     */
+    static final class Literal extends Expression {
+        private final Object value;
+        
+        Literal(Object value) {
+            this.value = value;
+        }
+        
+        Object getValue() {
+            return value;
+        }
+        
+        @Override
+        public ColumnType typeOf(ExpressionContext context) {
+            return value instanceof Double ? ColumnType.DOUBLE : ColumnType.STRING;
+        }
+        
+        @Override
+        public Object evaluate(ExpressionContext context, Object[] columns, int row) {
+            return value;
+        }
+        
+        @Override
+        public MethodHandle compile(ExpressionContext context) {
+            MethodHandle constant = value instanceof Double
+                ? MethodHandles.constant(double.class, value)
+                : MethodHandles.constant(String.class, value);
+            return MethodHandles.dropArguments(constant, 0, Object[].class, int.class);
+        }
+        
+        @Override
+        public String toString() {
+            return value instanceof Double ? Functions.text((Double) value) : "'" + value + "'";
+        }
+    }
+    
+    /**
+     * A reference to a column of the current row.
+     */
+    static final class Column extends Expression {
+        private final String name;
+        
+        Column(String name) {
+            this.name = name;
+        }
+        
+        @Override
+        public ColumnType typeOf(ExpressionContext context) {
+            ColumnType type = context.typeOf(context.indexOf(name));
+            return type == ColumnType.STRING ? ColumnType.STRING : ColumnType.DOUBLE;
+        }
+        
+        @Override
+        public Object evaluate(ExpressionContext context, Object[] columns, int row) {
+            int index = context.indexOf(name);
+            switch (context.typeOf(index)) {
+                case LONG:
+                    return (double) ((long[]) columns[index])[row];
+                case DOUBLE:
+                    return ((double[]) columns[index])[row];
+                default:
+                    return ((String[]) columns[index])[row];
+            }
+        }
+        
+        @Override
+        public MethodHandle compile(ExpressionContext context) {
+            int index = context.indexOf(name);
+            Class<?> arrayType;
+            switch (context.typeOf(index)) {
+                case LONG:
+                    arrayType = long[].class;
+                    break;
+                case DOUBLE:
+                    arrayType = double[].class;
+                    break;
+                default:
+                    arrayType = String[].class;
+                    break;
+            }
+            // (Object[] columns) -> columns[index], cast to the column's array type
+            MethodHandle column = MethodHandles.insertArguments(MethodHandles.arrayElementGetter(Object[].class), 1, index)
+                .asType(MethodType.methodType(arrayType, Object[].class));
+            MethodHandle element = MethodHandles.filterArguments(MethodHandles.arrayElementGetter(arrayType), 0, column);
+            // Widens long to double for LONG columns
+            return element.asType(element.type().changeReturnType(arrayType == String[].class ? String.class : double.class));
+        }
+        
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+    
+    /**
+     * Arithmetic, or string concatenation for {@code +} with a string operand.
+     */
+    static final class Binary extends Expression {
+        private static final Map<Character, MethodHandle> ARITHMETIC = new HashMap<>();
+        private static final MethodHandle CONCAT = Functions.handle("concat", String.class, String.class, String.class);
+        
+        static {
+            ARITHMETIC.put('+', Functions.handle("add", double.class, double.class, double.class));
+            ARITHMETIC.put('-', Functions.handle("subtract", double.class, double.class, double.class));
+            ARITHMETIC.put('*', Functions.handle("multiply", double.class, double.class, double.class));
+            ARITHMETIC.put('/', Functions.handle("divide", double.class, double.class, double.class));
+            ARITHMETIC.put('%', Functions.handle("remainder", double.class, double.class, double.class));
+        }
+        
+        private final char operator;
+        private final Expression left;
+        private final Expression right;
+        
+        Binary(char operator, Expression left, Expression right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+        
+        @Override
+        public ColumnType typeOf(ExpressionContext context) {
+            boolean text = left.typeOf(context) == ColumnType.STRING || right.typeOf(context) == ColumnType.STRING;
+            if (!text) {
+                return ColumnType.DOUBLE;
+            }
+            if (operator != '+') {
+                throw new IllegalArgumentException("Operator " + operator + " requires numbers: " + this);
+            }
+            return ColumnType.STRING;
+        }
+        
+        @Override
+        public Object evaluate(ExpressionContext context, Object[] columns, int row) {
+            Object leftValue = left.evaluate(context, columns, row);
+            Object rightValue = right.evaluate(context, columns, row);
+            if (leftValue instanceof String || rightValue instanceof String) {
+                if (operator != '+') {
+                    throw new IllegalArgumentException("Operator " + operator + " requires numbers: " + this);
+                }
+                return Functions.concat((String) text(leftValue), (String) text(rightValue));
+            }
+            double a = (Double) leftValue;
+            double b = (Double) rightValue;
+            switch (operator) {
+                case '+':
+                    return Functions.add(a, b);
+                case '-':
+                    return Functions.subtract(a, b);
+                case '*':
+                    return Functions.multiply(a, b);
+                case '/':
+                    return Functions.divide(a, b);
+                default:
+                    return Functions.remainder(a, b);
+            }
+        }
+        
+        @Override
+        public MethodHandle compile(ExpressionContext context) {
+            if (typeOf(context) == ColumnType.STRING) {
+                return combine(CONCAT, left.compileAs(context, ColumnType.STRING), right.compileAs(context, ColumnType.STRING));
+            }
+            return combine(ARITHMETIC.get(operator), left.compile(context), right.compile(context));
+        }
+        
+        @Override
+        public String toString() {
+            return "(" + left + " " + operator + " " + right + ")";
+        }
+    }
+    
+    /**
+     * A function call.
+     */
+    static final class Call extends Expression {
+        private static final Map<String, MethodHandle> FUNCTIONS = new HashMap<>();
+        
+        static {
+            FUNCTIONS.put("upper", Functions.handle("upper", String.class, String.class));
+            FUNCTIONS.put("lower", Functions.handle("lower", String.class, String.class));
+            FUNCTIONS.put("trim", Functions.handle("trim", String.class, String.class));
+            FUNCTIONS.put("length", Functions.handle("length", double.class, String.class));
+            FUNCTIONS.put("abs", Functions.handle("abs", double.class, double.class));
+            FUNCTIONS.put("round", Functions.handle("round", double.class, double.class));
+            FUNCTIONS.put("negate", Functions.handle("negate", double.class, double.class));
+            FUNCTIONS.put("min", Functions.handle("min", double.class, double.class, double.class));
+            FUNCTIONS.put("max", Functions.handle("max", double.class, double.class, double.class));
+            FUNCTIONS.put("lookup", Functions.handle("lookup", String.class, Map.class, String.class));
+        }
+        
+        private final String function;
+        private final List<Expression> arguments;
+        
+        Call(String function, List<Expression> arguments) {
+            MethodHandle handle = FUNCTIONS.get(function);
+            if (handle == null) {
+                throw new IllegalArgumentException("Unsupported function: " + function);
+            }
+            if (handle.type().parameterCount() != arguments.size()) {
+                throw new IllegalArgumentException("Function " + function + " expects "
+                    + handle.type().parameterCount() + " arguments, got " + arguments.size());
+            }
+            if ("lookup".equals(function)
+                && !(arguments.get(0) instanceof Literal && ((Literal) arguments.get(0)).getValue() instanceof String)) {
+                throw new IllegalArgumentException("The first argument of lookup must be a table name literal");
+            }
+            this.function = function;
+            this.arguments = Collections.unmodifiableList(arguments);
+        }
+        
+        @Override
+        public ColumnType typeOf(ExpressionContext context) {
+            MethodType type = FUNCTIONS.get(function).type();
+            for (int index = 0; index < arguments.size(); index++) {
+                if (type.parameterType(index) == double.class && arguments.get(index).typeOf(context) != ColumnType.DOUBLE) {
+                    throw new IllegalArgumentException("Function " + function + " expects a number: " + arguments.get(index));
+                }
+            }
+            if ("lookup".equals(function)) {
+                context.lookupTable(tableName());
+            }
+            return type.returnType() == double.class ? ColumnType.DOUBLE : ColumnType.STRING;
+        }
+        
+        @Override
+        public Object evaluate(ExpressionContext context, Object[] columns, int row) {
+            if ("lookup".equals(function)) {
+                Object key = text(arguments.get(1).evaluate(context, columns, row));
+                return Functions.lookup(context.lookupTable(tableName()), (String) key);
+            }
+            Object first = arguments.get(0).evaluate(context, columns, row);
+            switch (function) {
+                case "upper":
+                    return Functions.upper((String) text(first));
+                case "lower":
+                    return Functions.lower((String) text(first));
+                case "trim":
+                    return Functions.trim((String) text(first));
+                case "length":
+                    return Functions.length((String) text(first));
+                case "abs":
+                    return Functions.abs((Double) first);
+                case "round":
+                    return Functions.round((Double) first);
+                case "negate":
+                    return Functions.negate((Double) first);
+                case "min":
+                    return Functions.min((Double) first, (Double) arguments.get(1).evaluate(context, columns, row));
+                default:
+                    return Functions.max((Double) first, (Double) arguments.get(1).evaluate(context, columns, row));
+            }
+        }
+        
+        @Override
+        public MethodHandle compile(ExpressionContext context) {
+            typeOf(context);
+            MethodHandle handle = FUNCTIONS.get(function);
+            if ("lookup".equals(function)) {
+                handle = MethodHandles.insertArguments(handle, 0, context.lookupTable(tableName()));
+                return combine(handle, arguments.get(1).compileAs(context, ColumnType.STRING));
+            }
+            MethodHandle[] operands = new MethodHandle[arguments.size()];
+            for (int index = 0; index < operands.length; index++) {
+                ColumnType type = handle.type().parameterType(index) == double.class ? ColumnType.DOUBLE : ColumnType.STRING;
+                operands[index] = arguments.get(index).compileAs(context, type);
+            }
+            return combine(handle, operands);
+        }
+        
+        private String tableName() {
+            return (String) ((Literal) arguments.get(0)).getValue();
+        }
+        
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder(function).append('(');
+            for (int index = 0; index < arguments.size(); index++) {
+                text.append(index > 0 ? ", " : "").append(arguments.get(index));
+            }
+            return text.append(')').toString();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.demo.godclassrefactoring.expression;
+
+import com.example.demo.godclassrefactoring.columnar.ColumnBatch;
+import com.example.demo.godclassrefactoring.columnar.ColumnType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The columns and lookup tables an expression is compiled against.
+ * 
+ * At evaluation time the columns are passed as an {@code Object[]} of column arrays
+ * ({@code long[]}, {@code double[]} or {@code String[]}) in the order of this context.
+ */
+public final class ExpressionContext {
+    
+    private final List<String> columnNames;
+    private final List<ColumnType> columnTypes;
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private final Map<String, Map<String, String>> lookups;
+    
+    /**
+     * Creates a context.
+     *
+     * @param columnNames the column names
+     * @param columnTypes the type of each column
+     * @param lookups the lookup tables by name
+     */
+    public ExpressionContext(List<String> columnNames, List<ColumnType> columnTypes,
+                             Map<String, Map<String, String>> lookups) {
+        if (columnNames.size() != columnTypes.size()) {
+            throw new IllegalArgumentException("Expected a type for each of the " + columnNames.size() + " columns");
+        }
+        this.columnNames = Collections.unmodifiableList(new ArrayList<>(columnNames));
+        this.columnTypes = Collections.unmodifiableList(new ArrayList<>(columnTypes));
+        this.lookups = lookups;
+        for (int index = 0; index < columnNames.size(); index++) {
+            indexes.put(columnNames.get(index), index);
+        }
+    }
+    
+    /**
+     * Creates a context for the columns of a batch.
+     *
+     * @param batch the batch whose schema to use
+     * @param lookups the lookup tables by name
+     * @return the context
+     */
+    public static ExpressionContext of(ColumnBatch batch, Map<String, Map<String, String>> lookups) {
+        List<ColumnType> types = new ArrayList<>();
+        for (String name : batch.getColumnNames()) {
+            types.add(batch.getColumnType(name));
+        }
+        return new ExpressionContext(batch.getColumnNames(), types, lookups);
+    }
+    
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+    
+    /**
+     * Returns the column arrays of a batch in the order of this context.
+     *
+     * @param batch a batch with this context's schema
+     * @return the column arrays
+     */
+    public Object[] columns(ColumnBatch batch) {
+        Object[] columns = new Object[columnNames.size()];
+        for (int index = 0; index < columns.length; index++) {
+            String name = columnNames.get(index);
+            switch (columnTypes.get(index)) {
+                case LONG:
+                    columns[index] = batch.getLongColumn(name);
+                    break;
+                case DOUBLE:
+                    columns[index] = batch.getDoubleColumn(name);
+                    break;
+                default:
+                    columns[index] = batch.getStringColumn(name);
+                    break;
+            }
+        }
+        return columns;
+    }
+    
+    int indexOf(String column) {
+        Integer index = indexes.get(column);
+        if (index == null) {
+            throw new IllegalArgumentException("Unknown column: " + column);
+        }
+        return index;
+    }
+    
+    ColumnType typeOf(int index) {
+        return columnTypes.get(index);
+    }
+    
+    Map<String, String> lookupTable(String name) {
+        Map<String, String> table = lookups.get(name);
+        if (table == null) {
+            throw new IllegalArgumentException("Unknown lookup table: " + name);
+        }
+        return table;
+    }
+}
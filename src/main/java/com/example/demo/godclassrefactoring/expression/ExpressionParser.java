@@ -0,0 +1,171 @@
+package com.example.demo.godclassrefactoring.expression;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recursive descent parser for the expression language.
+ * 
+ * <pre>
+ * expression := term (('+' | '-') term)*
+ * term       := unary (('*' | '/' | '%') unary)*
+ * unary      := '-' unary | primary
+ * primary    := number | 'string' | name | name '(' [expression (',' expression)*] ')' | '(' expression ')'
+ * </pre>
+ */
+final class ExpressionParser {
+    
+    private final String text;
+    private int position;
+    
+    ExpressionParser(String text) {
+        this.text = text;
+    }
+    
+    Expression parse() {
+        Expression expression = expression();
+        skipWhitespace();
+        if (position < text.length()) {
+            throw error("Unexpected '" + text.charAt(position) + "'");
+        }
+        return expression;
+    }
+    
+    private Expression expression() {
+        Expression left = term();
+        while (true) {
+            if (accept('+')) {
+                left = new Expression.Binary('+', left, term());
+            } else if (accept('-')) {
+                left = new Expression.Binary('-', left, term());
+            } else {
+                return left;
+            }
+        }
+    }
+    
+    private Expression term() {
+        Expression left = unary();
+        while (true) {
+            if (accept('*')) {
+                left = new Expression.Binary('*', left, unary());
+            } else if (accept('/')) {
+                left = new Expression.Binary('/', left, unary());
+            } else if (accept('%')) {
+                left = new Expression.Binary('%', left, unary());
+            } else {
+                return left;
+            }
+        }
+    }
+    
+    private Expression unary() {
+        if (accept('-')) {
+            List<Expression> operand = new ArrayList<>();
+            operand.add(unary());
+            return new Expression.Call("negate", operand);
+        }
+        return primary();
+    }
+    
+    private Expression primary() {
+        skipWhitespace();
+        if (position >= text.length()) {
+            throw error("Unexpected end of expression");
+        }
+        char next = text.charAt(position);
+        if (accept('(')) {
+            Expression inner = expression();
+            expect(')');
+            return inner;
+        }
+        if (next == '\'') {
+            return new Expression.Literal(string());
+        }
+        if (Character.isDigit(next) || next == '.') {
+            return new Expression.Literal(number());
+        }
+        if (Character.isLetter(next) || next == '_') {
+            String name = name();
+            if (!accept('(')) {
+                return new Expression.Column(name);
+            }
+            List<Expression> arguments = new ArrayList<>();
+            if (!accept(')')) {
+                do {
+                    arguments.add(expression());
+                } while (accept(','));
+                expect(')');
+            }
+            return new Expression.Call(name, arguments);
+        }
+        throw error("Unexpected '" + next + "'");
+    }
+    
+    private String string() {
+        StringBuilder value = new StringBuilder();
+        position++;
+        while (true) {
+            if (position >= text.length()) {
+                throw error("Unterminated string");
+            }
+            char c = text.charAt(position++);
+            if (c == '\'') {
+                // A doubled quote is an escaped quote
+                if (position < text.length() && text.charAt(position) == '\'') {
+                    value.append('\'');
+                    position++;
+                    continue;
+                }
+                return value.toString();
+            }
+            value.append(c);
+        }
+    }
+    
+    private Double number() {
+        int start = position;
+        while (position < text.length() && (Character.isDigit(text.charAt(position)) || text.charAt(position) == '.')) {
+            position++;
+        }
+        try {
+            return Double.valueOf(text.substring(start, position));
+        } catch (NumberFormatException e) {
+            throw error("Invalid number '" + text.substring(start, position) + "'");
+        }
+    }
+    
+    private String name() {
+        int start = position;
+        while (position < text.length()
+               && (Character.isLetterOrDigit(text.charAt(position)) || text.charAt(position) == '_')) {
+            position++;
+        }
+        return text.substring(start, position);
+    }
+    
+    private boolean accept(char expected) {
+        skipWhitespace();
+        if (position < text.length() && text.charAt(position) == expected) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+    
+    private void expect(char expected) {
+        if (!accept(expected)) {
+            throw error("Expected '" + expected + "'");
+        }
+    }
+    
+    private void skipWhitespace() {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+    }
+    
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + position + " in: " + text);
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.demo.godclassrefactoring.expression;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Runtime operations of the expression language, shared by the interpreter and the
+ * method handle compiler so both modes produce identical results.
+ */
+final class Functions {
+    
+    private Functions() {
+    }
+    
+    static double add(double left, double right) {
+        return left + right;
+    }
+    
+    static double subtract(double left, double right) {
+        return left - right;
+    }
+    
+    static double multiply(double left, double right) {
+        return left * right;
+    }
+    
+    static double divide(double left, double right) {
+        return left / right;
+    }
+    
+    static double remainder(double left, double right) {
+        return left % right;
+    }
+    
+    static double negate(double value) {
+        return -value;
+    }
+    
+    static String concat(String left, String right) {
+        return left == null || right == null ? null : left.concat(right);
+    }
+    
+    /**
+     * Formats a number as text, without a trailing ".0" for whole numbers.
+     */
+    static String text(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+    
+    static String upper(String value) {
+        return value == null ? null : value.toUpperCase(Locale.ROOT);
+    }
+    
+    static String lower(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
+    }
+    
+    static String trim(String value) {
+        return value == null ? null : value.trim();
+    }
+    
+    static double length(String value) {
+        return value == null ? Double.NaN : value.length();
+    }
+    
+    static double abs(double value) {
+        return Math.abs(value);
+    }
+    
+    static double round(double value) {
+        return Math.round(value);
+    }
+    
+    static double min(double left, double right) {
+        return Math.min(left, right);
+    }
+    
+    static double max(double left, double right) {
+        return Math.max(left, right);
+    }
+    
+    /**
+     * Looks a key up in a table; missing keys map to the empty string and a null key to null.
+     */
+    static String lookup(Map<String, String> table, String key) {
+        return key == null ? null : table.getOrDefault(key, "");
+    }
+    
+    static MethodHandle handle(String name, Class<?> returnType, Class<?>... parameterTypes) {
+        try {
+            return MethodHandles.lookup().findStatic(Functions.class, name, MethodType.methodType(returnType, parameterTypes));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Missing expression function: " + name, e);
+        }
+    }
+}
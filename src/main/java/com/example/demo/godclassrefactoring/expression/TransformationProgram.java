@@ -0,0 +1,138 @@
+package com.example.demo.godclassrefactoring.expression;
+
+import com.example.demo.godclassrefactoring.columnar.ColumnBatch;
+import com.example.demo.godclassrefactoring.columnar.ColumnType;
+
+import java.lang.invoke.MethodHandle;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A set of output column expressions bound to one batch schema.
+ * 
+ * In {@link Mode#COMPILED} mode every expression is compiled to a method handle once, when
+ * the program is created; in {@link Mode#INTERPRETED} mode the expression trees are walked
+ * for every row. Both modes produce the same values.
+ */
+public final class TransformationProgram {
+    
+    /**
+     * How expressions are evaluated per row.
+     */
+    public enum Mode { COMPILED, INTERPRETED }
+    
+    private final ExpressionContext context;
+    private final Mode mode;
+    private final String[] outputs;
+    private final Expression[] expressions;
+    private final ColumnType[] types;
+    private final MethodHandle[] handles;
+    
+    private TransformationProgram(ExpressionContext context, Mode mode, Map<String, Expression> rules) {
+        this.context = context;
+        this.mode = mode;
+        this.outputs = rules.keySet().toArray(new String[0]);
+        this.expressions = rules.values().toArray(new Expression[0]);
+        this.types = new ColumnType[expressions.length];
+        this.handles = new MethodHandle[expressions.length];
+        for (int index = 0; index < expressions.length; index++) {
+            types[index] = expressions[index].typeOf(context);
+            if (mode == Mode.COMPILED) {
+                handles[index] = expressions[index].compile(context);
+            }
+        }
+    }
+    
+    /**
+     * Type-checks and, in compiled mode, compiles the expressions against a context.
+     *
+     * @param rules the expression of each output column, in output order
+     * @param context the input columns and lookup tables
+     * @param mode the evaluation mode
+     * @return the program
+     * @throws IllegalArgumentException if an expression is not valid in the context
+     */
+    public static TransformationProgram compile(Map<String, Expression> rules, ExpressionContext context, Mode mode) {
+        return new TransformationProgram(context, mode, rules);
+    }
+    
+    /**
+     * Evaluates the expressions over a batch with the program's schema. Output columns are
+     * appended after the input columns, replacing input columns of the same name.
+     *
+     * @param batch the input batch
+     * @return a batch with the input and output columns
+     */
+    public ColumnBatch apply(ColumnBatch batch) {
+        Object[] columns = context.columns(batch);
+        Map<String, Object> results = new LinkedHashMap<>();
+        for (int index = 0; index < expressions.length; index++) {
+            results.put(outputs[index], mode == Mode.COMPILED
+                ? runCompiled(index, columns, batch.size())
+                : runInterpreted(index, columns, batch.size()));
+        }
+        
+        ColumnBatch.Builder builder = ColumnBatch.builder(batch.size());
+        for (String name : batch.getColumnNames()) {
+            if (!results.containsKey(name)) {
+                addColumn(builder, name, batch.getColumnType(name), columns[context.indexOf(name)]);
+            }
+        }
+        for (int index = 0; index < outputs.length; index++) {
+            addColumn(builder, outputs[index], types[index], results.get(outputs[index]));
+        }
+        return builder.build();
+    }
+    
+    private Object runCompiled(int index, Object[] columns, int size) {
+        MethodHandle handle = handles[index];
+        try {
+            if (types[index] == ColumnType.DOUBLE) {
+                double[] values = new double[size];
+                for (int row = 0; row < size; row++) {
+                    values[row] = (double) handle.invokeExact(columns, row);
+                }
+                return values;
+            }
+            String[] values = new String[size];
+            for (int row = 0; row < size; row++) {
+                values[row] = (String) handle.invokeExact(columns, row);
+            }
+            return values;
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException("Failed to evaluate " + expressions[index], t);
+        }
+    }
+    
+    private Object runInterpreted(int index, Object[] columns, int size) {
+        Expression expression = expressions[index];
+        if (types[index] == ColumnType.DOUBLE) {
+            double[] values = new double[size];
+            for (int row = 0; row < size; row++) {
+                values[row] = (Double) expression.evaluate(context, columns, row);
+            }
+            return values;
+        }
+        String[] values = new String[size];
+        for (int row = 0; row < size; row++) {
+            values[row] = (String) Expression.text(expression.evaluate(context, columns, row));
+        }
+        return values;
+    }
+    
+    private static void addColumn(ColumnBatch.Builder builder, String name, ColumnType type, Object values) {
+        switch (type) {
+            case LONG:
+                builder.longColumn(name, (long[]) values);
+                break;
+            case DOUBLE:
+                builder.doubleColumn(name, (double[]) values);
+                break;
+            default:
+                builder.stringColumn(name, (String[]) values);
+                break;
+        }
+    }
+}
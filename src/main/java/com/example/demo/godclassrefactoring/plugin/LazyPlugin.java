@@ -0,0 +1,128 @@
+package com.example.demo.godclassrefactoring.plugin;
+
+import java.util.function.Supplier;
+
+/**
+ * A plugin that is created on first use, so a factory can register parsers, connection pools
+ * or compiled rule sets at class initialization without paying for them before a request
+ * needs them. Creation runs once even if several threads ask at the same time; its duration
+ * is kept for the {@link PluginStartupReport}.
+ * 
+ * After creation, {@link #get()} is one volatile read. A creation that throws is not cached,
+ * so the next request tries again.
+ * 
+ * @param <T> the plugin interface
+ */
+public final class LazyPlugin<T> {
+    
+    private final String key;
+    private final Supplier<? extends T> factory;
+    private volatile T instance;
+    private volatile long initNanos = -1;
+    private volatile String initThread;
+    private volatile RuntimeException failure;
+    
+    LazyPlugin(String key, Supplier<? extends T> factory) {
+        this.key = key;
+        this.factory = factory;
+    }
+    
+    /**
+     * Wraps a plugin that was created by the caller.
+     */
+    static <T> LazyPlugin<T> of(String key, T instance) {
+        LazyPlugin<T> plugin = new LazyPlugin<>(key, () -> instance);
+        plugin.instance = instance;
+        plugin.initNanos = 0;
+        return plugin;
+    }
+    
+    /**
+     * Returns the plugin, creating it on the first call.
+     *
+     * @return the plugin
+     * @throws RuntimeException whatever the creation throws
+     */
+    public T get() {
+        T current = instance;
+        return current != null ? current : initialize();
+    }
+    
+    private synchronized T initialize() {
+        if (instance == null) {
+            long start = System.nanoTime();
+            T created;
+            try {
+                created = factory.get();
+                if (created == null) {
+                    throw new IllegalStateException("Plugin factory returned null for " + key);
+                }
+            } catch (RuntimeException e) {
+                failure = e;
+                throw e;
+            }
+            initNanos = System.nanoTime() - start;
+            initThread = Thread.currentThread().getName();
+            failure = null;
+            instance = created;
+        }
+        return instance;
+    }
+    
+    /**
+     * Creates the plugin unless it exists, recording instead of throwing a failure.
+     */
+    void warmUp() {
+        try {
+            get();
+        } catch (RuntimeException e) {
+            // Kept in failure for the startup report; requests will retry
+        }
+    }
+    
+    public String getKey() {
+        return key;
+    }
+    
+    public boolean isInitialized() {
+        return instance != null;
+    }
+    
+    /**
+     * Returns the plugin if it has been created.
+     *
+     * @return the plugin, or null
+     */
+    public T getIfInitialized() {
+        return instance;
+    }
+    
+    /**
+     * Returns how long creating the plugin took: 0 for one registered as an instance, -1 if it
+     * has not been created.
+     *
+     * @return the creation time in nanoseconds
+     */
+    public long getInitNanos() {
+        return initNanos;
+    }
+    
+    /**
+     * Returns the thread that created the plugin, e.g. a warm-up thread or the one serving the
+     * first request, or null for a plugin registered as an instance or not yet created.
+     *
+     * @return the thread name, or null
+     */
+    public String getInitThread() {
+        return initThread;
+    }
+    
+    /**
+     * Returns the exception of the last failed creation, or null.
+     *
+     * @return the failure, or null
+     */
+    public RuntimeException getFailure() {
+        return failure;
+    }
+}
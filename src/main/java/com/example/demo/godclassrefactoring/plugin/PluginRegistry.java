@@ -0,0 +1,275 @@
+package com.example.demo.godclassrefactoring.plugin;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Registry of plugins keyed by the type they handle, e.g. data loaders by data type.
+ * 
+ * The plugins are held in an immutable map that every change copies and publishes with a
+ * compare-and-set, so lookups read one volatile reference and never lock or retry, however
+ * often plugins are registered concurrently. Changes are rare and pay for the copy. Keys are
+ * case-insensitive and iterate in registration order.
+ * 
+ * Besides explicit registration, plugins can be discovered with {@link ServiceLoader}: a jar
+ * listing implementations in {@code META-INF/services/<interface name>} is picked up at startup
+ * from the class path, or at runtime by {@link #loadServices(ClassLoader)} with a class loader
+ * over the new jar, so a new format deploys without a restart.
+ * 
+ * Plugins that are costly to create can be registered as factories with
+ * {@link #registerLazy(String, Supplier)}; they are created by the first lookup or by
+ * {@link #warmUp(Executor)} on a background pool, whichever comes first.
+ * 
+ * @param <T> the plugin interface
+ */
+public final class PluginRegistry<T> {
+    
+    private final Class<T> type;
+    private final String kind;
+    private final Function<T, String> keyOf;
+    private final Runnable onChange;
+    private final AtomicReference<Map<String, LazyPlugin<T>>> plugins = new AtomicReference<>(Collections.emptyMap());
+    
+    /**
+     * Creates an empty registry.
+     *
+     * @param type the plugin interface, used for service discovery
+     * @param kind what the keys are, for error messages, e.g. "data type"
+     * @param keyOf returns the key a plugin handles
+     * @param onChange runs after every change, e.g. to invalidate caches of resolved plugins
+     */
+    public PluginRegistry(Class<T> type, String kind, Function<T, String> keyOf, Runnable onChange) {
+        this.type = type;
+        this.kind = kind;
+        this.keyOf = Objects.requireNonNull(keyOf, "keyOf");
+        this.onChange = onChange;
+    }
+    
+    /**
+     * Creates an empty registry for plugins that cannot tell their key, so they are only
+     * registered with {@link #registerLazy(String, Supplier)}; registering instances or
+     * loading services fails.
+     *
+     * @param type the plugin interface
+     * @param kind what the keys are, for error messages, e.g. "data type"
+     */
+    public PluginRegistry(Class<T> type, String kind) {
+        this.type = type;
+        this.kind = kind;
+        this.keyOf = null;
+        this.onChange = () -> { };
+    }
+    
+    /**
+     * Returns the plugin for a key.
+     *
+     * @param key the key, in any case
+     * @return the plugin, or null if none is registered
+     */
+    public T get(String key) {
+        LazyPlugin<T> plugin = plugins.get().get(normalize(key));
+        return plugin == null ? null : plugin.get();
+    }
+    
+    /**
+     * Returns whether a plugin is registered for a key, without creating it.
+     *
+     * @param key the key, in any case; null is never registered
+     * @return true if a plugin is registered for the key
+     */
+    public boolean contains(String key) {
+        return key != null && plugins.get().containsKey(normalize(key));
+    }
+    
+    /**
+     * Returns the key a plugin is registered under, e.g. for labelling metrics consistently.
+     *
+     * @param key the key, in any case
+     * @return the normalized key, or null if no plugin is registered for it
+     */
+    public String registeredKey(String key) {
+        return contains(key) ? normalize(key) : null;
+    }
+    
+    /**
+     * Returns the plugin for a key, failing if there is none.
+     *
+     * @param key the key, in any case
+     * @return the plugin
+     * @throws IllegalArgumentException if no plugin is registered for the key
+     */
+    public T require(String key) {
+        T plugin = get(key);
+        if (plugin == null) {
+            throw new IllegalArgumentException("Unsupported " + kind + ": " + key);
+        }
+        return plugin;
+    }
+    
+    /**
+     * Registers a plugin, replacing the one registered for the same key.
+     *
+     * @param plugin the plugin
+     * @return the replaced plugin, or null if there was none or it was never created
+     * @throws IllegalStateException if the registry only registers plugins lazily
+     */
+    public T register(T plugin) {
+        String key = keyOf(plugin);
+        return update(current -> current.put(key, LazyPlugin.of(key, plugin)));
+    }
+    
+    /**
+     * Registers a plugin that is created on first use, replacing the one registered for the key.
+     *
+     * @param key the key the plugin will handle
+     * @param factory creates the plugin
+     */
+    public void registerLazy(String key, Supplier<? extends T> factory) {
+        String normalized = normalize(key);
+        update(current -> current.put(normalized, new LazyPlugin<>(normalized, factory)));
+    }
+    
+    /**
+     * Registers plugins as one change, so lookups see either none or all of them.
+     *
+     * @param additions the plugins
+     * @throws IllegalStateException if the registry only registers plugins lazily
+     */
+    public void registerAll(Collection<? extends T> additions) {
+        requireKeyed();
+        if (additions.isEmpty()) {
+            return;
+        }
+        update(current -> {
+            for (T plugin : additions) {
+                String key = keyOf(plugin);
+                current.put(key, LazyPlugin.of(key, plugin));
+            }
+            return null;
+        });
+    }
+    
+    /**
+     * Removes the plugin registered for a key.
+     *
+     * @param key the key, in any case
+     * @return the removed plugin, or null if none was registered or it was never created
+     */
+    public T unregister(String key) {
+        String normalized = normalize(key);
+        if (!plugins.get().containsKey(normalized)) {
+            return null;
+        }
+        return update(current -> current.remove(normalized));
+    }
+    
+    /**
+     * Registers the implementations a class loader lists as services of the plugin interface.
+     * A provider that fails to load is reported and skipped, so one broken jar does not take
+     * down the registrations of the others.
+     *
+     * @param classLoader the class loader to search
+     * @return the registered plugins
+     * @throws IllegalStateException if the registry only registers plugins lazily
+     */
+    public List<T> loadServices(ClassLoader classLoader) {
+        requireKeyed();
+        List<T> loaded = new ArrayList<>();
+        Iterator<T> providers = ServiceLoader.load(type, classLoader).iterator();
+        while (true) {
+            try {
+                if (!providers.hasNext()) {
+                    break;
+                }
+                loaded.add(providers.next());
+            } catch (ServiceConfigurationError e) {
+                // The iterator moves on to the next provider after an error
+                System.err.println("Skipping " + kind + " plugin: " + e.getMessage());
+            }
+        }
+        registerAll(loaded);
+        return loaded;
+    }
+    
+    /**
+     * Returns the registered keys in registration order.
+     *
+     * @return the keys
+     */
+    public String[] keys() {
+        return plugins.get().keySet().toArray(new String[0]);
+    }
+    
+    /**
+     * Returns the current plugins without creating any; the map does not change with later
+     * registrations.
+     *
+     * @return an immutable map from key to plugin
+     */
+    public Map<String, LazyPlugin<T>> snapshot() {
+        return plugins.get();
+    }
+    
+    public String getKind() {
+        return kind;
+    }
+    
+    /**
+     * Creates the plugins that have not been created yet, one task per plugin on the executor.
+     * A plugin whose creation fails stays uncreated, with the failure in its
+     * {@link LazyPlugin#getFailure()}; the returned future still completes normally.
+     *
+     * @param executor runs the creations, e.g. a small background pool during startup
+     * @return a future that completes when every creation has finished
+     */
+    public CompletableFuture<Void> warmUp(Executor executor) {
+        List<CompletableFuture<Void>> creations = new ArrayList<>();
+        for (LazyPlugin<T> plugin : plugins.get().values()) {
+            if (!plugin.isInitialized()) {
+                creations.add(CompletableFuture.runAsync(plugin::warmUp, executor));
+            }
+        }
+        return CompletableFuture.allOf(creations.toArray(new CompletableFuture<?>[0]));
+    }
+    
+    private T update(Function<Map<String, LazyPlugin<T>>, LazyPlugin<T>> change) {
+        while (true) {
+            Map<String, LazyPlugin<T>> current = plugins.get();
+            Map<String, LazyPlugin<T>> next = new LinkedHashMap<>(current);
+            LazyPlugin<T> previous = change.apply(next);
+            if (plugins.compareAndSet(current, Collections.unmodifiableMap(next))) {
+                onChange.run();
+                return previous == null ? null : previous.getIfInitialized();
+            }
+        }
+    }
+    
+    private String keyOf(T plugin) {
+        requireKeyed();
+        return normalize(keyOf.apply(plugin));
+    }
+    
+    private void requireKeyed() {
+        if (keyOf == null) {
+            throw new IllegalStateException(kind + " plugins can only be registered lazily by key");
+        }
+    }
+    
+    private static String normalize(String key) {
+        return key.toLowerCase(Locale.ROOT);
+    }
+}
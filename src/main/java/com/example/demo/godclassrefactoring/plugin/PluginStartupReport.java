@@ -0,0 +1,140 @@
+package com.example.demo.godclassrefactoring.plugin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * What creating each plugin of some registries cost, most expensive first, to see which
+ * plugins dominate startup and whether a warm-up pool took the cost off the first requests.
+ */
+public final class PluginStartupReport {
+    
+    private final List<Entry> entries;
+    
+    private PluginStartupReport(List<Entry> entries) {
+        entries.sort(Comparator.comparingLong(Entry::getInitNanos).reversed());
+        this.entries = Collections.unmodifiableList(entries);
+    }
+    
+    /**
+     * Reports the current state of registries without creating any plugin.
+     *
+     * @param registries the registries to report
+     * @return the report
+     */
+    public static PluginStartupReport of(PluginRegistry<?>... registries) {
+        List<Entry> entries = new ArrayList<>();
+        for (PluginRegistry<?> registry : registries) {
+            for (LazyPlugin<?> plugin : registry.snapshot().values()) {
+                entries.add(new Entry(registry.getKind(), plugin));
+            }
+        }
+        return new PluginStartupReport(entries);
+    }
+    
+    /**
+     * Creates the uncreated plugins of registries in parallel on an executor.
+     *
+     * @param executor runs the creations
+     * @param registries the registries to warm up
+     * @return a future of the report once every creation has finished
+     */
+    public static CompletableFuture<PluginStartupReport> warmUp(Executor executor, PluginRegistry<?>... registries) {
+        List<CompletableFuture<Void>> warmUps = new ArrayList<>();
+        for (PluginRegistry<?> registry : registries) {
+            warmUps.add(registry.warmUp(executor));
+        }
+        return CompletableFuture.allOf(warmUps.toArray(new CompletableFuture<?>[0]))
+            .thenApply(done -> of(registries));
+    }
+    
+    public List<Entry> getEntries() {
+        return entries;
+    }
+    
+    /**
+     * Returns the summed creation time of all created plugins; with a parallel warm-up the
+     * wall-clock time is lower.
+     *
+     * @return the total in nanoseconds
+     */
+    public long getTotalInitNanos() {
+        long total = 0;
+        for (Entry entry : entries) {
+            total += Math.max(0, entry.getInitNanos());
+        }
+        return total;
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-16s %-16s %10s  %-24s %s%n", "kind", "key", "init ms", "thread", "plugin"));
+        for (Entry entry : entries) {
+            String time = entry.getInitNanos() < 0 ? "-" : String.format("%.3f", entry.getInitNanos() / 1e6);
+            String plugin = entry.getFailure() != null ? "FAILED: " + entry.getFailure()
+                : entry.getPluginClass() != null ? entry.getPluginClass() : "not created";
+            report.append(String.format("%-16s %-16s %10s  %-24s %s%n", entry.getKind(), entry.getKey(), time,
+                                        entry.getInitThread() == null ? "-" : entry.getInitThread(), plugin));
+        }
+        report.append(String.format("Total creation time: %.3f ms%n", getTotalInitNanos() / 1e6));
+        return report.toString();
+    }
+    
+    /**
+     * Creation cost of one plugin
+     */
+    public static final class Entry {
+        private final String kind;
+        private final String key;
+        private final String pluginClass;
+        private final long initNanos;
+        private final String initThread;
+        private final RuntimeException failure;
+        
+        Entry(String kind, LazyPlugin<?> plugin) {
+            Object instance = plugin.getIfInitialized();
+            this.kind = kind;
+            this.key = plugin.getKey();
+            this.pluginClass = instance == null ? null : instance.getClass().getName();
+            this.initNanos = plugin.getInitNanos();
+            this.initThread = plugin.getInitThread();
+            this.failure = plugin.getFailure();
+        }
+        
+        public String getKind() {
+            return kind;
+        }
+        
+        public String getKey() {
+            return key;
+        }
+        
+        /**
+         * Returns the class of the created plugin, or null if it has not been created.
+         */
+        public String getPluginClass() {
+            return pluginClass;
+        }
+        
+        /**
+         * Returns the creation time, 0 for a plugin registered as an instance and -1 for one
+         * not created yet.
+         */
+        public long getInitNanos() {
+            return initNanos;
+        }
+        
+        public String getInitThread() {
+            return initThread;
+        }
+        
+        public RuntimeException getFailure() {
+            return failure;
+        }
+    }
+}
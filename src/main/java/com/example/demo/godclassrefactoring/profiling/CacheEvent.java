@@ -0,0 +1,74 @@
+package com.example.demo.godclassrefactoring.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for a cache filling, evicting or invalidating entries. The duration of
+ * a load is the time spent computing the loaded value.
+ * 
+ * Used like {@link PipelineStageEvent}; {@link #emit} records events without a duration.
+ */
+@Name(CacheEvent.NAME)
+@Label("Cache")
+@Category({"Order Processing"})
+@Description("A cache load, eviction or invalidation")
+@StackTrace(false)
+public final class CacheEvent extends Event {
+    
+    public static final String NAME = "com.example.demo.Cache";
+    
+    public static final String LOAD = "load";
+    public static final String EVICT = "evict";
+    public static final String INVALIDATE = "invalidate";
+    
+    @Label("Cache")
+    private String cache;
+    
+    @Label("Action")
+    private String action;
+    
+    @Label("Key")
+    private String key;
+    
+    @Label("Bytes")
+    @Description("Size of the loaded or evicted entry, -1 if not measured")
+    @DataAmount
+    private long bytes;
+    
+    /**
+     * Fills in the fields and commits the event; call only if {@link #shouldCommit()} is true.
+     *
+     * @param cache the name of the cache
+     * @param action the action, e.g. {@link #EVICT}
+     * @param key the key of the entry, or null for the whole cache
+     * @param bytes the size of the entry, or -1 if not measured
+     */
+    public void commit(String cache, String action, String key, long bytes) {
+        this.cache = cache;
+        this.action = action;
+        this.key = key;
+        this.bytes = bytes;
+        commit();
+    }
+    
+    /**
+     * Records an event without a duration if the event is enabled.
+     *
+     * @param cache the name of the cache
+     * @param action the action, e.g. {@link #EVICT}
+     * @param key the key of the entry, or null for the whole cache
+     * @param bytes the size of the entry, or -1 if not measured
+     */
+    public static void emit(String cache, String action, String key, long bytes) {
+        CacheEvent event = new CacheEvent();
+        if (event.shouldCommit()) {
+            event.commit(cache, action, key, bytes);
+        }
+    }
+}
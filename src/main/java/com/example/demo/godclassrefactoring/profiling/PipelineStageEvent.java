@@ -0,0 +1,89 @@
+package com.example.demo.godclassrefactoring.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.List;
+
+/**
+ * Flight Recorder event for one loader, processor, formatter or saver invocation.
+ * 
+ * Usage: create and {@link #begin()} the event before the invocation, then fill and commit it
+ * only if {@link #shouldCommit()} is true. Without a recording enabling the event the check
+ * is false, the JIT removes the unused event allocation and the invocation costs nothing extra.
+ */
+@Name(PipelineStageEvent.NAME)
+@Label("Pipeline Stage")
+@Category({"Order Processing"})
+@Description("One loader, processor, formatter or saver invocation")
+@StackTrace(false)
+public final class PipelineStageEvent extends Event {
+    
+    public static final String NAME = "com.example.demo.PipelineStage";
+    
+    public static final String LOAD = "load";
+    public static final String PROCESS = "process";
+    public static final String FORMAT = "format";
+    public static final String SAVE = "save";
+    
+    @Label("Stage")
+    private String stage;
+    
+    @Label("Component")
+    @Description("Class of the loader, processor, formatter or saver")
+    private String component;
+    
+    @Label("Data Type")
+    private String dataType;
+    
+    @Label("Processing Type")
+    private String processingType;
+    
+    @Label("Record Count")
+    private int recordCount;
+    
+    @Label("Bytes")
+    @Description("Size of the raw input of a loader or the output of a formatter or saver, -1 if not measured")
+    @DataAmount
+    private long bytes;
+    
+    /**
+     * Fills in the fields and commits the event; call only if {@link #shouldCommit()} is true.
+     *
+     * @param stage the stage, e.g. {@link #LOAD}
+     * @param component the invoked loader, processor, formatter or saver
+     * @param dataType the type of data processed
+     * @param processingType the type of processing applied
+     * @param recordCount the number of records the invocation handled
+     * @param bytes the input or output size, or -1 if not measured
+     */
+    public void commit(String stage, Object component, String dataType, String processingType, int recordCount,
+                       long bytes) {
+        this.stage = stage;
+        this.component = component.getClass().getName();
+        this.dataType = dataType;
+        this.processingType = processingType;
+        this.recordCount = recordCount;
+        this.bytes = bytes;
+        commit();
+    }
+    
+    /**
+     * Returns the number of characters of raw records, as the input size of a loader.
+     *
+     * @param rawData the raw records
+     * @return the total length
+     */
+    public static long sizeOf(List<String> rawData) {
+        long size = 0;
+        for (String record : rawData) {
+            size += record == null ? 0 : record.length();
+        }
+        return size;
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.demo.godclassrefactoring.profiling;
+
+import jdk.jfr.Recording;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Starts Flight Recorder recordings of the order processing events at runtime.
+ * 
+ * The events are enabled in any recording by default, so an operator can also capture them
+ * from a live process with {@code jcmd <pid> JFR.start duration=60s filename=stages.jfr} and
+ * view the "Order Processing" category in JDK Mission Control. While no recording runs, the
+ * instrumented code only checks whether the events are enabled.
+ */
+public final class Profiling {
+    
+    private Profiling() {
+    }
+    
+    /**
+     * Starts a recording of every pipeline stage and cache event. Stop or close it to write
+     * the recording to the destination.
+     *
+     * @param destination the file to write the recording to
+     * @return the running recording
+     * @throws UncheckedIOException if the destination cannot be written
+     */
+    public static Recording start(Path destination) {
+        return start(destination, Duration.ZERO);
+    }
+    
+    /**
+     * Starts a recording of the pipeline stages that take at least a threshold, e.g. to keep
+     * a continuous recording of latency spikes small, and of every cache event.
+     *
+     * @param destination the file to write the recording to
+     * @param stageThreshold the minimum duration of a recorded stage
+     * @return the running recording
+     * @throws UncheckedIOException if the destination cannot be written
+     */
+    public static Recording start(Path destination, Duration stageThreshold) {
+        Recording recording = new Recording();
+        recording.setName("order-processing");
+        recording.enable(PipelineStageEvent.NAME).withThreshold(stageThreshold);
+        recording.enable(CacheEvent.NAME).withThreshold(Duration.ZERO);
+        try {
+            recording.setDestination(destination);
+        } catch (IOException e) {
+            recording.close();
+            throw new UncheckedIOException("Failed to record to " + destination, e);
+        }
+        recording.start();
+        return recording;
+    }
+}
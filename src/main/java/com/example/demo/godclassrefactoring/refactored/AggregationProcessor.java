@@ -1,14 +1,55 @@
 package com.example.demo.godclassrefactoring.refactored;
 
+import com.example.demo.godclassrefactoring.columnar.ColumnBatch;
+import com.example.demo.godclassrefactoring.columnar.ExternalHashAggregator;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Data aggregation implementation
+ * Columnar batches are grouped within a memory budget, spilling to disk when it is exceeded.
+ * Aggregates must see the whole input, so partitioned runs merge the loaded partitions first.
  */
 public class AggregationProcessor implements ProcessingStrategy {
+    private static final long DEFAULT_MEMORY_BUDGET_BYTES = 64L * 1024 * 1024;
+    
+    private final String keyColumn;
+    private final String valueColumn;
+    private final long memoryBudgetBytes;
+    private final Path spillDirectory;
+    
+    public AggregationProcessor() {
+        this("key", "value", DEFAULT_MEMORY_BUDGET_BYTES, Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+    
+    public AggregationProcessor(String keyColumn, String valueColumn, long memoryBudgetBytes, Path spillDirectory) {
+        this.keyColumn = keyColumn;
+        this.valueColumn = valueColumn;
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.spillDirectory = spillDirectory;
+    }
+    
     @Override
     public Object process(Object data) {
         System.out.println("Performing data aggregation");
-        // Aggregation logic would go here
+        if (data instanceof ColumnBatch) {
+            return aggregate(List.of((ColumnBatch) data));
+        }
+        if (ColumnBatch.isBatchList(data)) {
+            List<ColumnBatch> batches = new ArrayList<>();
+            for (Object batch : (List<?>) data) {
+                batches.add((ColumnBatch) batch);
+            }
+            return aggregate(batches);
+        }
+        // Untyped data has no columns to group
         return "Aggregated: " + data.toString();
     }
+    
+    private Object aggregate(List<ColumnBatch> batches) {
+        return ExternalHashAggregator.aggregate(batches, keyColumn, valueColumn, memoryBudgetBytes, spillDirectory);
+    }
 }
-
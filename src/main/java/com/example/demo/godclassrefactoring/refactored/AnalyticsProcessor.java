@@ -1,13 +1,41 @@
 package com.example.demo.godclassrefactoring.refactored;
 
+import com.example.demo.godclassrefactoring.columnar.ColumnBatch;
+import com.example.demo.godclassrefactoring.columnar.GroupByAggregator;
+
+import java.util.List;
+
 /**
  * Analytics processing implementation
+ * Columnar batches get per-group count, sum, min, max, mean and standard deviation
  */
 public class AnalyticsProcessor implements ProcessingStrategy {
+    private final String keyColumn;
+    private final String valueColumn;
+    
+    public AnalyticsProcessor() {
+        this("key", "value");
+    }
+    
+    public AnalyticsProcessor(String keyColumn, String valueColumn) {
+        this.keyColumn = keyColumn;
+        this.valueColumn = valueColumn;
+    }
+    
     @Override
     public Object process(Object data) {
         System.out.println("Running analytics algorithms");
-        // Complex analytics logic would go here
+        if (data instanceof ColumnBatch) {
+            return GroupByAggregator.aggregate((ColumnBatch) data, keyColumn, valueColumn);
+        }
+        if (ColumnBatch.isBatchList(data)) {
+            GroupByAggregator aggregator = new GroupByAggregator(keyColumn, valueColumn);
+            for (Object batch : (List<?>) data) {
+                aggregator.add((ColumnBatch) batch);
+            }
+            return aggregator.result();
+        }
+        // Untyped data has no columns to analyse
         return "Analytics result for: " + data.toString();
     }
-}
\ No newline at end of file
+}
@@ -1,26 +1,26 @@
 package com.example.demo.godclassrefactoring.refactored;
 
-import java.util.HashMap;
-import java.util.Map;
+import com.example.demo.godclassrefactoring.plugin.PluginRegistry;
 
 /**
- * Factory for creating data sources
+ * Factory for creating data sources; each is created on first use
  */
 public class DataSourceFactory {
-    private static final Map<String, DataSource> dataSources = new HashMap<>();
+    private static final PluginRegistry<DataSource> dataSources =
+        new PluginRegistry<>(DataSource.class, "data type");
     
     static {
-        dataSources.put("csv", new CsvDataSource());
-        dataSources.put("json", new JsonDataSource());
-        dataSources.put("xml", new XmlDataSource());
-        dataSources.put("database", new DatabaseDataSource());
+        dataSources.registerLazy("csv", CsvDataSource::new);
+        dataSources.registerLazy("json", JsonDataSource::new);
+        dataSources.registerLazy("xml", XmlDataSource::new);
+        dataSources.registerLazy("database", DatabaseDataSource::new);
     }
     
     public static DataSource getDataSource(String type) {
-        DataSource source = dataSources.get(type.toLowerCase());
-        if (source == null) {
-            throw new IllegalArgumentException("Unsupported data type: " + type);
-        }
-        return source;
+        return dataSources.require(type);
+    }
+    
+    static PluginRegistry<DataSource> registry() {
+        return dataSources;
     }
 }
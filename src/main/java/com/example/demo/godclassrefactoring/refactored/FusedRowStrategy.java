@@ -0,0 +1,29 @@
+package com.example.demo.godclassrefactoring.refactored;
+
+import java.util.List;
+
+/**
+ * Adjacent row strategies fused into one pass: every record goes through all of them
+ * before the next record is touched, without intermediate collections.
+ */
+class FusedRowStrategy implements RowStrategy {
+    private final RowStrategy[] stages;
+    
+    FusedRowStrategy(List<RowStrategy> stages) {
+        this.stages = stages.toArray(new RowStrategy[0]);
+    }
+    
+    @Override
+    public Object process(Object data) {
+        return data instanceof List ? processRows((List<?>) data) : processRow(data);
+    }
+    
+    @Override
+    public Object processRow(Object row) {
+        Object current = row;
+        for (int i = 0; i < stages.length && current != null; i++) {
+            current = stages[i].processRow(current);
+        }
+        return current;
+    }
+}
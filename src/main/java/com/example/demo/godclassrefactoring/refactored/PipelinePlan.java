@@ -0,0 +1,39 @@
+package com.example.demo.godclassrefactoring.refactored;
+
+import java.util.List;
+
+/**
+ * Immutable, pre-resolved load → process → format pipeline for one
+ * (data type, processing type) combination. Executing a plan does no factory lookups.
+ */
+public final class PipelinePlan {
+    private final DataSource dataSource;
+    private final ProcessingStrategy strategy;
+    
+    PipelinePlan(DataSource dataSource, ProcessingStrategy strategy) {
+        this.dataSource = dataSource;
+        this.strategy = strategy;
+    }
+    
+    /**
+     * Resolves the data source and strategy through the factories.
+     */
+    public static PipelinePlan compile(String dataType, String processingType) {
+        return new PipelinePlan(DataSourceFactory.getDataSource(dataType),
+                                ProcessingStrategyFactory.getStrategy(processingType));
+    }
+    
+    public String execute(List<String> rawData) {
+        Object loadedData = dataSource.loadData(rawData);
+        Object processedData = strategy.process(loadedData);
+        return dataSource.formatOutput(processedData);
+    }
+    
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+    
+    public ProcessingStrategy getStrategy() {
+        return strategy;
+    }
+}
@@ -1,9 +1,41 @@
 package com.example.demo.godclassrefactoring.refactored;
 
+import com.example.demo.godclassrefactoring.columnar.LoadedBatches;
+
+import java.util.List;
+
 /**
  * Strategy Pattern for Data Processing
  * Each processing type has its own implementation
  */
 public interface ProcessingStrategy {
     Object process(Object data);
+    
+    /**
+     * Whether partitions of the input can be processed independently and
+     * their results simply collected. By default a strategy sees the whole
+     * input: partitions hand back their loaded data, which {@link #combine(List)}
+     * merges and processes once.
+     */
+    default boolean isPartitionSafe() {
+        return false;
+    }
+    
+    /**
+     * Processes a single partition. Strategies that need a combine step
+     * return mergeable partial state here instead of a final result; by
+     * default that is the loaded partition itself.
+     */
+    default Object processPartition(Object partition) {
+        return isPartitionSafe() ? process(partition) : partition;
+    }
+    
+    /**
+     * Merges the partial results of {@link #processPartition(Object)} into
+     * the final result. By default the loaded partitions are merged, numeric
+     * map fields summed and record lists concatenated, and processed once.
+     */
+    default Object combine(List<Object> partialResults) {
+        return process(LoadedBatches.merge(partialResults));
+    }
 }
@@ -1,26 +1,34 @@
 package com.example.demo.godclassrefactoring.refactored;
 
-import java.util.HashMap;
-import java.util.Map;
+import com.example.demo.godclassrefactoring.plugin.PluginRegistry;
 
 /**
- * Factory for creating processing strategies
+ * Factory for creating processing strategies; each is created on first use
  */
 public class ProcessingStrategyFactory {
-    private static final Map<String, ProcessingStrategy> strategies = new HashMap<>();
+    private static final PluginRegistry<ProcessingStrategy> strategies =
+        new PluginRegistry<>(ProcessingStrategy.class, "processing type");
     
     static {
-        strategies.put("analytics", new AnalyticsProcessor());
-        strategies.put("transformation", new TransformationProcessor());
-        strategies.put("validation", new ValidationProcessor());
-        strategies.put("aggregation", new AggregationProcessor());
+        strategies.registerLazy("analytics", AnalyticsProcessor::new);
+        strategies.registerLazy("transformation", TransformationProcessor::new);
+        strategies.registerLazy("validation", ValidationProcessor::new);
+        strategies.registerLazy("aggregation", AggregationProcessor::new);
     }
     
     public static ProcessingStrategy getStrategy(String type) {
-        ProcessingStrategy strategy = strategies.get(type.toLowerCase());
-        if (strategy == null) {
-            throw new IllegalArgumentException("Unsupported processing type: " + type);
-        }
-        return strategy;
+        return strategies.require(type);
+    }
+    
+    static PluginRegistry<ProcessingStrategy> registry() {
+        return strategies;
+    }
+    
+    /**
+     * Starts a chain of strategies, e.g. {@code chain().then("validation").then("transformation").then("aggregation").build()}.
+     * Adjacent row-wise steps are fused into a single pass over the records.
+     */
+    public static StrategyChain.Builder chain() {
+        return new StrategyChain.Builder();
     }
 }
@@ -1,6 +1,16 @@
 package com.example.demo.godclassrefactoring.refactored;
 
+import com.example.demo.godclassrefactoring.plugin.PluginStartupReport;
+
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * REFACTORED SOLUTION - Clean, maintainable data processor
@@ -14,21 +24,33 @@ import java.util.List;
  */
 public class RefactoredDataProcessor {
     
+    private final ForkJoinPool pool;
+    
+    // Compiled plans by data type, then processing type. Keys are the caller's strings, whose
+    // hash codes are cached, so a repeated call neither lowercases nor rehashes them.
+    private final ConcurrentMap<String, ConcurrentMap<String, PipelinePlan>> plans = new ConcurrentHashMap<>();
+    
+    public RefactoredDataProcessor() {
+        this(ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * @param pool work-stealing pool used by {@link #processDataPartitioned}
+     */
+    public RefactoredDataProcessor(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+    
     /**
      * Main processing method - now clean and focused
      * The workflow is self-documenting: load → process → format
      */
     public String processData(String dataType, String processingType, List<String> rawData) {
-        // Use factory to get the appropriate data source
-        DataSource dataSource = DataSourceFactory.getDataSource(dataType);
-        
-        // Use factory to get the appropriate processing strategy
-        ProcessingStrategy processor = ProcessingStrategyFactory.getStrategy(processingType);
+        // Data source and strategy are resolved once per combination and cached
+        PipelinePlan plan = plan(dataType, processingType);
         
         // Clean workflow: load → process → format
-        Object loadedData = dataSource.loadData(rawData);
-        Object processedData = processor.process(loadedData);
-        String result = dataSource.formatOutput(processedData);
+        String result = plan.execute(rawData);
         
         // Single responsibility for logging
         logProcessingMetrics(dataType, processingType, rawData.size());
@@ -36,6 +58,105 @@ public class RefactoredDataProcessor {
         return result;
     }
     
+    /**
+     * Returns the cached plan for a combination, compiling it on first use.
+     * Callers running many requests for the same combination can keep the plan and
+     * execute it directly.
+     */
+    public PipelinePlan plan(String dataType, String processingType) {
+        ConcurrentMap<String, PipelinePlan> byProcessingType = plans.get(dataType);
+        PipelinePlan plan = byProcessingType == null ? null : byProcessingType.get(processingType);
+        if (plan != null) {
+            return plan;
+        }
+        // Compile before caching so unsupported types throw without leaving entries behind
+        PipelinePlan compiled = PipelinePlan.compile(dataType, processingType);
+        return plans.computeIfAbsent(dataType, type -> new ConcurrentHashMap<>())
+            .computeIfAbsent(processingType, type -> compiled);
+    }
+    
+    /**
+     * Partitioned variant of {@link #processData}: the input is split into chunks of
+     * {@code partitionSize} rows which are loaded and processed on the work-stealing pool.
+     * Partition-safe strategies yield the list of per-partition results, in input order
+     * or completion order depending on {@code preserveOrder}; other strategies have their
+     * partial results merged through {@link ProcessingStrategy#combine(List)}.
+     */
+    public String processDataPartitioned(String dataType, String processingType, List<String> rawData,
+                                         int partitionSize, boolean preserveOrder) {
+        if (partitionSize <= 0) {
+            throw new IllegalArgumentException("Partition size must be positive: " + partitionSize);
+        }
+        PipelinePlan plan = plan(dataType, processingType);
+        DataSource dataSource = plan.getDataSource();
+        ProcessingStrategy processor = plan.getStrategy();
+        
+        List<Object> partials = processPartitions(dataSource, processor, partition(rawData, partitionSize), preserveOrder);
+        Object processedData = processor.isPartitionSafe() ? partials : processor.combine(partials);
+        String result = dataSource.formatOutput(processedData);
+        
+        logProcessingMetrics(dataType, processingType, rawData.size());
+        
+        return result;
+    }
+    
+    private List<Object> processPartitions(DataSource dataSource, ProcessingStrategy processor,
+                                           List<List<String>> partitions, boolean preserveOrder) {
+        List<CompletableFuture<Object>> futures = new ArrayList<>(partitions.size());
+        for (List<String> partition : partitions) {
+            futures.add(CompletableFuture.supplyAsync(
+                () -> processor.processPartition(dataSource.loadData(partition)), pool));
+        }
+        
+        try {
+            if (preserveOrder) {
+                List<Object> results = new ArrayList<>(futures.size());
+                for (CompletableFuture<Object> future : futures) {
+                    results.add(future.join());
+                }
+                return results;
+            }
+            ConcurrentLinkedQueue<Object> completed = new ConcurrentLinkedQueue<>();
+            CompletableFuture.allOf(futures.stream()
+                    .map(future -> future.thenAccept(completed::add))
+                    .toArray(CompletableFuture[]::new))
+                .join();
+            return new ArrayList<>(completed);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * Creates the data sources and strategies that no request has used yet, in parallel on an
+     * executor, and reports what each cost.
+     */
+    public static CompletableFuture<PluginStartupReport> warmUpPlugins(Executor executor) {
+        return PluginStartupReport.warmUp(executor, DataSourceFactory.registry(), ProcessingStrategyFactory.registry());
+    }
+    
+    /**
+     * Reports which data sources and strategies have been created and what each cost.
+     */
+    public static PluginStartupReport pluginStartupReport() {
+        return PluginStartupReport.of(DataSourceFactory.registry(), ProcessingStrategyFactory.registry());
+    }
+    
+    private static List<List<String>> partition(List<String> rawData, int partitionSize) {
+        List<List<String>> partitions = new ArrayList<>();
+        if (rawData.isEmpty()) {
+            partitions.add(rawData);
+            return partitions;
+        }
+        for (int start = 0; start < rawData.size(); start += partitionSize) {
+            partitions.add(rawData.subList(start, Math.min(start + partitionSize, rawData.size())));
+        }
+        return partitions;
+    }
+    
     private void logProcessingMetrics(String dataType, String processingType, int dataSize) {
         System.out.println("Processed " + dataSize + " records of " + dataType + " using " + processingType);
     }
@@ -0,0 +1,40 @@
+package com.example.demo.godclassrefactoring.refactored;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Processing strategy that works record by record.
+ * Adjacent row strategies in a {@link StrategyChain} are fused into a single loop.
+ */
+public interface RowStrategy extends ProcessingStrategy {
+    /**
+     * Processes a single record. A columnar batch is handed over whole, as a block of records,
+     * and should be returned as a batch.
+     *
+     * @return the processed record, or null to drop it
+     */
+    Object processRow(Object row);
+    
+    /**
+     * Records are processed independently, so partitions are too.
+     */
+    @Override
+    default boolean isPartitionSafe() {
+        return true;
+    }
+    
+    /**
+     * Applies {@link #processRow(Object)} to every record, dropping the ones mapped to null.
+     */
+    default List<Object> processRows(List<?> rows) {
+        List<Object> output = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            Object result = processRow(row);
+            if (result != null) {
+                output.add(result);
+            }
+        }
+        return output;
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.demo.godclassrefactoring.refactored;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Runs several processing strategies one after another.
+ * Adjacent {@link RowStrategy} steps are fused into a single per-record loop, which hands each
+ * record, or each columnar batch, to {@link RowStrategy#processRow}; any other strategy is a
+ * blocking step that sees the whole output of the previous pass.
+ * A validate → transform → aggregate chain therefore touches each record once before
+ * the aggregation.
+ */
+public class StrategyChain implements ProcessingStrategy {
+    private final List<ProcessingStrategy> passes;
+    
+    private StrategyChain(List<ProcessingStrategy> passes) {
+        this.passes = Collections.unmodifiableList(passes);
+    }
+    
+    @Override
+    public Object process(Object data) {
+        Object current = data;
+        for (ProcessingStrategy pass : passes) {
+            current = pass.process(current);
+        }
+        return current;
+    }
+    
+    /**
+     * A chain is partition-safe when every pass is.
+     */
+    @Override
+    public boolean isPartitionSafe() {
+        for (ProcessingStrategy pass : passes) {
+            if (!pass.isPartitionSafe()) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Runs every pass but the last on the partition and lets the last one produce its partial state.
+     * If an earlier pass needs the whole input, the loaded partition is handed back unchanged.
+     */
+    @Override
+    public Object processPartition(Object partition) {
+        if (!onlyLastPassCombines()) {
+            return partition;
+        }
+        Object current = partition;
+        int last = passes.size() - 1;
+        for (int i = 0; i < last; i++) {
+            current = passes.get(i).process(current);
+        }
+        return passes.get(last).processPartition(current);
+    }
+    
+    /**
+     * Combines partitions through the last pass, or, if an earlier pass needs the whole input,
+     * merges the loaded partitions and runs the whole chain once.
+     */
+    @Override
+    public Object combine(List<Object> partialResults) {
+        if (!onlyLastPassCombines()) {
+            return ProcessingStrategy.super.combine(partialResults);
+        }
+        return passes.get(passes.size() - 1).combine(partialResults);
+    }
+    
+    private boolean onlyLastPassCombines() {
+        for (int i = 0; i < passes.size() - 1; i++) {
+            if (!passes.get(i).isPartitionSafe()) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Returns the passes of this chain after fusion.
+     */
+    public List<ProcessingStrategy> getPasses() {
+        return passes;
+    }
+    
+    /**
+     * Builder for strategy chains
+     */
+    public static class Builder {
+        private final List<ProcessingStrategy> steps = new ArrayList<>();
+        
+        Builder() {
+        }
+        
+        public Builder then(String processingType) {
+            return then(ProcessingStrategyFactory.getStrategy(processingType));
+        }
+        
+        public Builder then(ProcessingStrategy strategy) {
+            steps.add(strategy);
+            return this;
+        }
+        
+        public StrategyChain build() {
+            if (steps.isEmpty()) {
+                throw new IllegalStateException("A strategy chain needs at least one step");
+            }
+            List<ProcessingStrategy> passes = new ArrayList<>();
+            List<RowStrategy> fusable = new ArrayList<>();
+            for (ProcessingStrategy step : steps) {
+                if (step instanceof RowStrategy) {
+                    fusable.add((RowStrategy) step);
+                    continue;
+                }
+                flush(fusable, passes);
+                passes.add(step);
+            }
+            flush(fusable, passes);
+            return new StrategyChain(passes);
+        }
+        
+        private static void flush(List<RowStrategy> fusable, List<ProcessingStrategy> passes) {
+            // Even a single row strategy runs as a fused pass, so it sees records the same way
+            if (!fusable.isEmpty()) {
+                passes.add(new FusedRowStrategy(fusable));
+            }
+            fusable.clear();
+        }
+    }
+}
@@ -1,13 +1,41 @@
 package com.example.demo.godclassrefactoring.refactored;
 
+import com.example.demo.godclassrefactoring.columnar.ColumnBatch;
+import com.example.demo.godclassrefactoring.expression.BatchTransformer;
+
+import java.util.List;
+
 /**
  * Data transformation implementation
+ * Columnar batches get output columns computed by compiled field expressions, including
+ * batches passed through a {@link StrategyChain}
  */
-public class TransformationProcessor implements ProcessingStrategy {
+public class TransformationProcessor implements RowStrategy {
+    private final BatchTransformer transformer;
+    
+    public TransformationProcessor() {
+        this(BatchTransformer.empty());
+    }
+    
+    public TransformationProcessor(BatchTransformer transformer) {
+        this.transformer = transformer;
+    }
+    
     @Override
     public Object process(Object data) {
         System.out.println("Applying data transformation rules");
-        // Transformation logic would go here
-        return "Transformed: " + data.toString();
+        if (data instanceof ColumnBatch) {
+            return transformer.apply((ColumnBatch) data);
+        }
+        return data instanceof List ? processRows((List<?>) data) : processRow(data);
+    }
+    
+    @Override
+    public Object processRow(Object row) {
+        if (row instanceof ColumnBatch) {
+            return transformer.apply((ColumnBatch) row);
+        }
+        // Untyped records have no fields to transform
+        return "Transformed: " + row.toString();
     }
-}
\ No newline at end of file
+}
@@ -1,13 +1,48 @@
 package com.example.demo.godclassrefactoring.refactored;
 
+import com.example.demo.godclassrefactoring.columnar.ColumnBatch;
+import com.example.demo.godclassrefactoring.validation.RuleSet;
+import com.example.demo.godclassrefactoring.validation.ValidationProgram;
+import com.example.demo.godclassrefactoring.validation.ValidationResult;
+
+import java.util.BitSet;
+import java.util.List;
+
 /**
  * Data validation implementation
+ * Columnar batches are checked against a compiled rule set, yielding a bitmap of failing rows.
+ * Within a {@link StrategyChain} a batch is passed on with its failing rows dropped.
  */
-public class ValidationProcessor implements ProcessingStrategy {
+public class ValidationProcessor implements RowStrategy {
+    private final ValidationProgram program;
+    
+    public ValidationProcessor() {
+        this(RuleSet.empty());
+    }
+    
+    public ValidationProcessor(RuleSet rules) {
+        this.program = rules.compile();
+    }
+    
     @Override
     public Object process(Object data) {
         System.out.println("Validating data quality");
-        // Validation logic would go here
-        return "Validated: " + data.toString();
+        if (data instanceof ColumnBatch) {
+            return program.validate((ColumnBatch) data);
+        }
+        return data instanceof List ? processRows((List<?>) data) : processRow(data);
+    }
+    
+    @Override
+    public Object processRow(Object row) {
+        if (row instanceof ColumnBatch) {
+            ColumnBatch batch = (ColumnBatch) row;
+            ValidationResult result = program.validate(batch);
+            BitSet validRows = result.getFailedRows();
+            validRows.flip(0, batch.size());
+            return batch.select(validRows);
+        }
+        // Untyped records have no fields to check
+        return "Validated: " + row.toString();
     }
-}
\ No newline at end of file
+}
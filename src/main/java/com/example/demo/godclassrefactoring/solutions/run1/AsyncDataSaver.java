@@ -0,0 +1,129 @@
+package com.example.demo.godclassrefactoring.solutions.run1;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Hands records to another saver on a background writer thread, so callers do not block on
+ * writes. The queue is bounded: when the writer falls behind, saveData blocks until there is room.
+ * A write failure is rethrown by the next call to saveData, flush or close.
+ * saveData, flush and close share one lock, so nothing can be queued after close has stopped the writer.
+ */
+public class AsyncDataSaver implements DataSaver {
+
+    private static final Object STOP = new Object();
+
+    private final DataSaver delegate;
+    private final BlockingQueue<Object> queue;
+    private final Thread writer;
+    private volatile RuntimeException failure;
+    private boolean closed;
+
+    /**
+     * @param delegate the saver to write with
+     * @param queueCapacity the number of records that may wait for the writer
+     */
+    public AsyncDataSaver(DataSaver delegate, int queueCapacity) {
+        this.delegate = delegate;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.writer = new Thread(this::writeLoop, "async-saver-" + delegate.getClass().getSimpleName());
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public synchronized void saveData(Object data) {
+        ensureOpen();
+        rethrowFailure();
+        enqueue(data);
+    }
+
+    @Override
+    public synchronized void flush() {
+        ensureOpen();
+        rethrowFailure();
+        FlushRequest request = new FlushRequest();
+        enqueue(request);
+        try {
+            request.done.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            closed = true;
+            enqueue(STOP);
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            delegate.close();
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Saver is closed");
+        }
+    }
+
+    private void enqueue(Object item) {
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing data to save", e);
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            Object item;
+            try {
+                item = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (item == STOP) {
+                return;
+            }
+            try {
+                if (item instanceof FlushRequest) {
+                    delegate.flush();
+                    ((FlushRequest) item).done.complete(null);
+                } else {
+                    delegate.saveData(item);
+                }
+            } catch (RuntimeException e) {
+                if (item instanceof FlushRequest) {
+                    ((FlushRequest) item).done.completeExceptionally(e);
+                } else {
+                    failure = e;
+                }
+            }
+        }
+    }
+
+    private void rethrowFailure() {
+        RuntimeException current = failure;
+        if (current != null) {
+            failure = null;
+            throw current;
+        }
+    }
+
+    private static final class FlushRequest {
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+    }
+}
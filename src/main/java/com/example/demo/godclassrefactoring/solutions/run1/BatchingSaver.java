@@ -0,0 +1,163 @@
+package com.example.demo.godclassrefactoring.solutions.run1;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base class for savers that accumulate records in a write buffer and write them in batches.
+ * A batch is written when it reaches the maximum batch size, or when its oldest record has
+ * waited for the maximum latency, whichever comes first.
+ * A failed write keeps its records buffered and schedules a new deadline to retry them; a failure
+ * in a background deadline flush is rethrown by the next call to saveData or flush.
+ * Each saver has its own deadline thread, so a slow write only delays that saver's records. The
+ * thread exits when the saver has been idle for a while and is stopped on close.
+ */
+public abstract class BatchingSaver implements DataSaver {
+
+    private static final long IDLE_THREAD_MILLIS = 1000;
+
+    private final int maxBatchSize;
+    private final long maxLatencyMillis;
+    private final ScheduledThreadPoolExecutor deadlines;
+    private List<Object> buffer = new ArrayList<>();
+    private ScheduledFuture<?> deadline;
+    private long deadlineSequence;
+    private RuntimeException pendingFailure;
+    private boolean closed;
+
+    /**
+     * @param maxBatchSize the number of records that triggers a write
+     * @param maxLatencyMillis the longest a record may wait in the buffer, or 0 to flush by size only
+     */
+    protected BatchingSaver(int maxBatchSize, long maxLatencyMillis) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + maxBatchSize);
+        }
+        if (maxLatencyMillis < 0) {
+            throw new IllegalArgumentException("Latency must not be negative: " + maxLatencyMillis);
+        }
+        this.maxBatchSize = maxBatchSize;
+        this.maxLatencyMillis = maxLatencyMillis;
+        this.deadlines = maxLatencyMillis > 0 ? newDeadlineExecutor() : null;
+    }
+
+    private static ScheduledThreadPoolExecutor newDeadlineExecutor() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, task -> {
+            Thread thread = new Thread(task, "saver-flush-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        executor.setKeepAliveTime(IDLE_THREAD_MILLIS, TimeUnit.MILLISECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    @Override
+    public synchronized void saveData(Object data) {
+        if (closed) {
+            throw new IllegalStateException("Saver is closed");
+        }
+        rethrowPendingFailure();
+        buffer.add(data);
+        if (buffer.size() >= maxBatchSize) {
+            flushBuffer();
+        } else {
+            scheduleDeadline();
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        rethrowPendingFailure();
+        flushBuffer();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            closed = true;
+            if (deadlines != null) {
+                deadlines.shutdownNow();
+            }
+            closeDestination();
+        }
+    }
+
+    /**
+     * Writes one batch to the destination.
+     *
+     * @param batch the records in arrival order
+     */
+    protected abstract void writeBatch(List<Object> batch);
+
+    /**
+     * Releases the destination after the final flush.
+     */
+    protected void closeDestination() {
+    }
+
+    /**
+     * Schedules a flush of the buffered records unless one is already pending.
+     */
+    private void scheduleDeadline() {
+        if (deadline != null || deadlines == null || closed || buffer.isEmpty()) {
+            return;
+        }
+        long sequence = ++deadlineSequence;
+        deadline = deadlines.schedule(() -> flushOnDeadline(sequence), maxLatencyMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void flushOnDeadline(long sequence) {
+        // A deadline cancelled after it started may still run; only the latest one may clear the field
+        if (sequence != deadlineSequence) {
+            return;
+        }
+        deadline = null;
+        if (closed || buffer.isEmpty()) {
+            return;
+        }
+        try {
+            flushBuffer();
+        } catch (RuntimeException e) {
+            pendingFailure = e;
+        }
+    }
+
+    private void flushBuffer() {
+        if (deadline != null) {
+            deadline.cancel(false);
+            deadline = null;
+        }
+        if (buffer.isEmpty()) {
+            return;
+        }
+        List<Object> batch = buffer;
+        buffer = new ArrayList<>(maxBatchSize);
+        try {
+            writeBatch(batch);
+        } catch (RuntimeException e) {
+            // Keep the records so the next flush retries them
+            batch.addAll(buffer);
+            buffer = batch;
+            scheduleDeadline();
+            throw e;
+        }
+    }
+
+    private void rethrowPendingFailure() {
+        if (pendingFailure != null) {
+            RuntimeException failure = pendingFailure;
+            pendingFailure = null;
+            throw failure;
+        }
+    }
+}
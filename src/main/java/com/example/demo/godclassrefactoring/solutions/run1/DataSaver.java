@@ -3,13 +3,27 @@ package com.example.demo.godclassrefactoring.solutions.run1;
 /**
  * Defines the contract for data saving operations.
  * Implementations of this interface will handle saving data to a specific destination.
+ * Savers may buffer data; {@link #flush()} and {@link #close()} make it durable.
  */
-public interface DataSaver {
+public interface DataSaver extends AutoCloseable {
     /**
      * Saves the given data.
      *
      * @param data The data to be saved.
      */
     void saveData(Object data);
-}
 
+    /**
+     * Writes out any buffered data.
+     */
+    default void flush() {
+    }
+
+    /**
+     * Flushes buffered data and releases the destination.
+     */
+    @Override
+    default void close() {
+        flush();
+    }
+}
@@ -1,10 +1,71 @@
 package com.example.demo.godclassrefactoring.solutions.run1;
 
-public class DatabaseSaver implements DataSaver {
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.regex.Pattern;
+import javax.sql.DataSource;
+
+/**
+ * Inserts records into a table with one JDBC batch and one transaction per batch.
+ * Without a DataSource the saver only logs each batch, so the demo runs without a database.
+ */
+public class DatabaseSaver extends BatchingSaver {
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private final DataSource dataSource;
+    private final String insertSql;
+
+    public DatabaseSaver() {
+        this(null, "orders", 500, 200);
+    }
+
+    /**
+     * @param dataSource the database to write to, or null to only log batches
+     * @param table the table with a single text column named payload
+     * @param maxBatchSize the number of records that triggers a write
+     * @param maxLatencyMillis the longest a record may wait in the buffer, or 0 to flush by size only
+     */
+    public DatabaseSaver(DataSource dataSource, String table, int maxBatchSize, long maxLatencyMillis) {
+        super(maxBatchSize, maxLatencyMillis);
+        if (!IDENTIFIER.matcher(table).matches()) {
+            throw new IllegalArgumentException("Invalid table name: " + table);
+        }
+        this.dataSource = dataSource;
+        this.insertSql = "INSERT INTO " + table + " (payload) VALUES (?)";
+    }
+
     @Override
-    public void saveData(Object data) {
-        System.out.println("Saving data to database: " + data);
-        // Simulate saving to database
+    protected void writeBatch(List<Object> batch) {
+        if (dataSource == null) {
+            System.out.println("Saving " + batch.size() + " records to database: " + batch);
+            return;
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            // Pooled connections are reused, so hand this one back in the mode it was lent in
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(insertSql)) {
+                for (Object record : batch) {
+                    statement.setString(1, String.valueOf(record));
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackFailure) {
+                    e.addSuppressed(rollbackFailure);
+                }
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to save " + batch.size() + " records to database", e);
+        }
     }
 }
-
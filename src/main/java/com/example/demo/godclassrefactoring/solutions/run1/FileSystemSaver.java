@@ -1,10 +1,92 @@
 package com.example.demo.godclassrefactoring.solutions.run1;
 
-public class FileSystemSaver implements DataSaver {
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Appends records to a file, one line per record.
+ * Each batch is written with a single gathering write; with fsync enabled the batch is forced
+ * to disk once, so all of its records share one sync (group commit).
+ * Without a file the saver only logs each batch, so the demo leaves no files behind.
+ */
+public class FileSystemSaver extends BatchingSaver {
+
+    private static final byte[] NEWLINE = {'\n'};
+
+    private final Path file;
+    private final boolean fsync;
+    private FileChannel channel;
+
+    public FileSystemSaver() {
+        this(null, 100, 200, false);
+    }
+
+    /**
+     * @param file the file to append to, or null to only log batches
+     * @param maxBatchSize the number of records that triggers a write
+     * @param maxLatencyMillis the longest a record may wait in the buffer, or 0 to flush by size only
+     * @param fsync whether to force each batch to disk before the flush returns
+     */
+    public FileSystemSaver(Path file, int maxBatchSize, long maxLatencyMillis, boolean fsync) {
+        super(maxBatchSize, maxLatencyMillis);
+        this.file = file;
+        this.fsync = fsync;
+    }
+
     @Override
-    public void saveData(Object data) {
-        System.out.println("Saving data to file system: " + data);
-        // Simulate saving to file system
+    protected void writeBatch(List<Object> batch) {
+        if (file == null) {
+            System.out.println("Saving " + batch.size() + " records to file system: " + batch);
+            return;
+        }
+        ByteBuffer[] buffers = new ByteBuffer[batch.size() * 2];
+        for (int i = 0; i < batch.size(); i++) {
+            buffers[i * 2] = ByteBuffer.wrap(String.valueOf(batch.get(i)).getBytes(StandardCharsets.UTF_8));
+            buffers[i * 2 + 1] = ByteBuffer.wrap(NEWLINE);
+        }
+        try {
+            FileChannel out = channel();
+            // A gathering write may be partial; continue from the first buffer with bytes left
+            int first = 0;
+            while (first < buffers.length) {
+                out.write(buffers, first, buffers.length - first);
+                while (first < buffers.length && !buffers[first].hasRemaining()) {
+                    first++;
+                }
+            }
+            if (fsync) {
+                out.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save " + batch.size() + " records to " + file, e);
+        }
+        System.out.println("Saved " + batch.size() + " records to file system: " + file);
     }
-}
 
+    @Override
+    protected void closeDestination() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close " + file, e);
+        } finally {
+            channel = null;
+        }
+    }
+
+    private FileChannel channel() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+}
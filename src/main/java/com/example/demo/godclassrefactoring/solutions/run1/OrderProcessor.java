@@ -1,35 +1,91 @@
 package com.example.demo.godclassrefactoring.solutions.run1;
 
+import com.example.demo.godclassrefactoring.profiling.PipelineStageEvent;
+
 import java.util.List;
 
-public class OrderProcessor {
+public class OrderProcessor implements AutoCloseable {
+
+    private static final int ASYNC_QUEUE_CAPACITY = 1024;
 
+    private final String dataType;
+    private final String processingType;
     private final DataLoader dataLoader;
     private final DataProcessor dataProcessor;
     private final DataSaver dataSaver;
 
     public OrderProcessor(String dataType, String processingType, String saveType) {
+        this(dataType, processingType, saveType, false);
+    }
+
+    /**
+     * @param asyncSave whether saving runs on a background writer instead of blocking processData
+     */
+    public OrderProcessor(String dataType, String processingType, String saveType, boolean asyncSave) {
+        this(dataType, processingType, asyncSave
+            ? new AsyncDataSaver(DataHandlerFactory.createDataSaver(saveType), ASYNC_QUEUE_CAPACITY)
+            : DataHandlerFactory.createDataSaver(saveType));
+    }
+
+    public OrderProcessor(String dataType, String processingType, DataSaver dataSaver) {
+        this.dataType = dataType;
+        this.processingType = processingType;
         this.dataLoader = DataHandlerFactory.createDataLoader(dataType);
         this.dataProcessor = DataHandlerFactory.createDataProcessor(processingType);
-        this.dataSaver = DataHandlerFactory.createDataSaver(saveType);
+        this.dataSaver = dataSaver;
     }
 
+    /**
+     * Loads, processes and saves the data. Each step emits a {@link PipelineStageEvent} while
+     * a Flight Recorder recording is running.
+     */
     public void processData(List<String> rawData) {
+        PipelineStageEvent loadEvent = new PipelineStageEvent();
+        loadEvent.begin();
         Object loadedData = dataLoader.loadData(rawData);
+        if (loadEvent.shouldCommit()) {
+            loadEvent.commit(PipelineStageEvent.LOAD, dataLoader, dataType, processingType, rawData.size(),
+                             PipelineStageEvent.sizeOf(rawData));
+        }
+
+        PipelineStageEvent processEvent = new PipelineStageEvent();
+        processEvent.begin();
         Object processedData = dataProcessor.process(loadedData);
+        if (processEvent.shouldCommit()) {
+            processEvent.commit(PipelineStageEvent.PROCESS, dataProcessor, dataType, processingType, rawData.size(), -1);
+        }
+
+        PipelineStageEvent saveEvent = new PipelineStageEvent();
+        saveEvent.begin();
         dataSaver.saveData(processedData);
+        if (saveEvent.shouldCommit()) {
+            saveEvent.commit(PipelineStageEvent.SAVE, dataSaver, dataType, processingType, rawData.size(), -1);
+        }
+    }
+
+    /**
+     * Writes out all data saved so far.
+     */
+    public void flush() {
+        dataSaver.flush();
+    }
+
+    @Override
+    public void close() {
+        dataSaver.close();
     }
 
     public static void main(String[] args) {
         // Example 1: Process and validate CSV data, then save to a file system
-        OrderProcessor processor1 = new OrderProcessor("csv", "validate", "filesystem");
-        processor1.processData(List.of("raw", "csv", "data"));
+        try (OrderProcessor processor1 = new OrderProcessor("csv", "validate", "filesystem")) {
+            processor1.processData(List.of("raw", "csv", "data"));
+        }
 
         System.out.println("---------------------");
 
-        // Example 2: Process and transform JSON data, then save to a database
-        OrderProcessor processor2 = new OrderProcessor("json", "transform", "database");
-        processor2.processData(List.of("raw", "json", "data"));
+        // Example 2: Process and transform JSON data, then save to a database without blocking on writes
+        try (OrderProcessor processor2 = new OrderProcessor("json", "transform", "database", true)) {
+            processor2.processData(List.of("raw", "json", "data"));
+        }
     }
 }
-
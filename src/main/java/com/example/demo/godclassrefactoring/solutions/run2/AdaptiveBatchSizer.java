@@ -0,0 +1,473 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Chooses the batch size of a {@link StagedPipeline} at runtime, separately for each
+ * combination of data type and processing type, so tiny API payloads and huge dumps each get
+ * the size that suits them.
+ * 
+ * Each stage reports its time, allocated bytes and input queue depth per batch. The controller
+ * of a combination measures the pipeline's throughput over a window of completed batches and
+ * climbs towards the size with the highest throughput: it keeps moving in one direction while
+ * throughput improves and turns back with a smaller step when it drops, until the step is too
+ * small to matter. A size is only tried if the estimated latency of a batch, including the
+ * batches queued ahead of it, stays below the latency bound, and the memory the stages allocate
+ * for it stays below the allocation bound; when a bound is exceeded, the size shrinks in
+ * proportion at once. After converging, the controller keeps watching and searches again if
+ * throughput moves by more than a third, e.g. because the record mix changed.
+ * 
+ * Instances are thread-safe. Register one with {@link MetricsRegistry#register(AdaptiveBatchSizer)}
+ * to export the chosen sizes.
+ */
+public final class AdaptiveBatchSizer {
+    
+    static final String[] STAGES = {MetricsRegistry.LOAD, MetricsRegistry.PROCESS, MetricsRegistry.FORMAT};
+    
+    private static final double INITIAL_STEP = 2.0;
+    private static final double MIN_STEP = 1.1;
+    private static final double SMOOTHING = 0.3;
+    private static final double RESEARCH_DEVIATION = 1.0 / 3;
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final int initialBatchSize;
+    private final long maxBatchLatencyNanos;
+    private final long maxBatchBytes;
+    private final int window;
+    private final ConcurrentMap<String, Controller> controllers = new ConcurrentHashMap<>();
+    
+    private AdaptiveBatchSizer(Builder builder) {
+        this.minBatchSize = builder.minBatchSize;
+        this.maxBatchSize = builder.maxBatchSize;
+        this.initialBatchSize = Math.max(minBatchSize, Math.min(maxBatchSize, builder.initialBatchSize));
+        this.maxBatchLatencyNanos = builder.maxBatchLatency.toNanos();
+        this.maxBatchBytes = builder.maxBatchBytes;
+        this.window = builder.window;
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    /**
+     * Returns the controller of a combination, creating it on first use.
+     *
+     * @param dataType the type of data processed
+     * @param processingType the type of processing applied
+     * @return the controller
+     */
+    public Controller controller(String dataType, String processingType) {
+        String key = dataType + '/' + processingType;
+        Controller controller = controllers.get(key);
+        return controller != null ? controller
+            : controllers.computeIfAbsent(key, name -> new Controller(this, dataType, processingType));
+    }
+    
+    /**
+     * Returns all controllers, ordered by data type and processing type.
+     *
+     * @return the controllers
+     */
+    public List<Controller> getControllers() {
+        List<Controller> all = new ArrayList<>(controllers.values());
+        all.sort(Comparator.comparing(Controller::getDataType).thenComparing(Controller::getProcessingType));
+        return all;
+    }
+    
+    public int getMinBatchSize() {
+        return minBatchSize;
+    }
+    
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+    
+    /**
+     * Returns the bytes the current thread has allocated so far, or -1 if the JVM cannot tell.
+     *
+     * @return the allocated bytes
+     */
+    static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+    
+    /**
+     * Batch size control loop of one combination of data type and processing type.
+     */
+    public static final class Controller {
+        private final AdaptiveBatchSizer sizer;
+        private final String dataType;
+        private final String processingType;
+        private final double[] nanosPerRecord = new double[STAGES.length];
+        private final double[] bytesPerRecord = new double[STAGES.length];
+        private final double[] queueDepth = new double[STAGES.length];
+        private int batchSize;
+        private double step = INITIAL_STEP;
+        private int direction = 1;
+        private boolean converged;
+        private int bestSize;
+        private double bestThroughput;
+        private double throughput;
+        private long windowStart = -1;
+        private long windowRecords;
+        private int windowBatches;
+        private long adjustments;
+        
+        Controller(AdaptiveBatchSizer sizer, String dataType, String processingType) {
+            this.sizer = sizer;
+            this.dataType = dataType;
+            this.processingType = processingType;
+            this.batchSize = sizer.initialBatchSize;
+            this.bestSize = batchSize;
+        }
+        
+        /**
+         * Returns the size to cut the next batch with.
+         *
+         * @return the number of records
+         */
+        public synchronized int nextBatchSize() {
+            return batchSize;
+        }
+        
+        /**
+         * Records one batch passing through a stage.
+         *
+         * @param stage {@link MetricsRegistry#LOAD}, {@link MetricsRegistry#PROCESS} or {@link MetricsRegistry#FORMAT}
+         * @param records the records in the batch
+         * @param nanos the time the stage took
+         * @param allocatedBytes the bytes the stage allocated, or a negative value if unknown
+         * @param depth the batches waiting in the stage's input queue when it took this one
+         */
+        public synchronized void observe(String stage, int records, long nanos, long allocatedBytes, int depth) {
+            if (records <= 0) {
+                return;
+            }
+            int index = index(stage);
+            nanosPerRecord[index] = smooth(nanosPerRecord[index], (double) nanos / records);
+            if (allocatedBytes >= 0) {
+                bytesPerRecord[index] = smooth(bytesPerRecord[index], (double) allocatedBytes / records);
+            }
+            queueDepth[index] += SMOOTHING * (depth - queueDepth[index]);
+        }
+        
+        /**
+         * Discards the partly measured window, so the idle time before a new run does not
+         * count against the throughput of the current size.
+         */
+        public synchronized void restartWindow() {
+            windowStart = -1;
+            windowRecords = 0;
+            windowBatches = 0;
+        }
+        
+        /**
+         * Records a batch leaving the last stage and adjusts the size once a window of batches
+         * cut with the current size has completed.
+         *
+         * @param cutSize the batch size the batch was cut with
+         * @param records the records in the batch
+         */
+        public synchronized void completed(int cutSize, int records) {
+            if (cutSize != batchSize) {
+                // Still draining batches cut before the last adjustment
+                return;
+            }
+            long now = System.nanoTime();
+            if (windowStart < 0) {
+                windowStart = now;
+                return;
+            }
+            windowRecords += records;
+            if (++windowBatches < sizer.window) {
+                return;
+            }
+            throughput = windowRecords * 1e9 / Math.max(1, now - windowStart);
+            restartWindow();
+            adjust();
+        }
+        
+        private void adjust() {
+            double overshoot = Math.max(estimatedLatencyNanos(batchSize) / sizer.maxBatchLatencyNanos,
+                                        estimatedBytes(batchSize) / sizer.maxBatchBytes);
+            if (overshoot > 1) {
+                // Out of bounds: shrink in proportion and search again from there
+                resize((int) (batchSize / overshoot * 0.9));
+                restart(-1);
+                return;
+            }
+            if (converged) {
+                if (Math.abs(throughput - bestThroughput) > RESEARCH_DEVIATION * bestThroughput) {
+                    restart(1);
+                }
+                return;
+            }
+            if (throughput > bestThroughput) {
+                bestThroughput = throughput;
+                bestSize = batchSize;
+            } else {
+                // Worse than the best size so far: turn back from it with a finer step
+                direction = -direction;
+                step = Math.sqrt(step);
+                if (step < MIN_STEP) {
+                    converged = true;
+                    resize(bestSize);
+                    return;
+                }
+            }
+            int candidate = (int) Math.round(direction > 0 ? bestSize * step : bestSize / step);
+            if (direction > 0) {
+                candidate = Math.min(candidate, largestWithinBounds());
+            }
+            if (!resize(candidate)) {
+                // Hit a limit: explore the other direction instead
+                direction = -direction;
+                step = Math.sqrt(step);
+            }
+        }
+        
+        private void restart(int newDirection) {
+            converged = false;
+            step = INITIAL_STEP;
+            direction = newDirection;
+            bestSize = batchSize;
+            bestThroughput = 0;
+        }
+        
+        private boolean resize(int size) {
+            int clamped = Math.max(sizer.minBatchSize, Math.min(sizer.maxBatchSize, size));
+            if (clamped == batchSize) {
+                return false;
+            }
+            batchSize = clamped;
+            adjustments++;
+            return true;
+        }
+        
+        private int largestWithinBounds() {
+            double latencyPerRecord = estimatedLatencyNanos(1);
+            double bytesPerRecord = estimatedBytes(1);
+            double largest = sizer.maxBatchSize;
+            if (latencyPerRecord > 0) {
+                largest = Math.min(largest, sizer.maxBatchLatencyNanos / latencyPerRecord);
+            }
+            if (bytesPerRecord > 0) {
+                largest = Math.min(largest, sizer.maxBatchBytes / bytesPerRecord);
+            }
+            return (int) largest;
+        }
+        
+        /**
+         * Estimates the time from cutting a batch of the given size to its completion: each
+         * stage's time for the batch, plus a bottleneck batch time for every batch queued ahead.
+         */
+        private double estimatedLatencyNanos(int size) {
+            double total = 0;
+            double bottleneck = 0;
+            double queued = 0;
+            for (int stage = 0; stage < STAGES.length; stage++) {
+                total += nanosPerRecord[stage] * size;
+                bottleneck = Math.max(bottleneck, nanosPerRecord[stage] * size);
+                queued += queueDepth[stage];
+            }
+            return total + queued * bottleneck;
+        }
+        
+        private double estimatedBytes(int size) {
+            double total = 0;
+            for (double bytes : bytesPerRecord) {
+                total += bytes * size;
+            }
+            return total;
+        }
+        
+        private static double smooth(double average, double sample) {
+            return average == 0 ? sample : average + SMOOTHING * (sample - average);
+        }
+        
+        private static int index(String stage) {
+            for (int i = 0; i < STAGES.length; i++) {
+                if (STAGES[i].equals(stage)) {
+                    return i;
+                }
+            }
+            throw new IllegalArgumentException("Unsupported stage: " + stage);
+        }
+        
+        public String getDataType() {
+            return dataType;
+        }
+        
+        public String getProcessingType() {
+            return processingType;
+        }
+        
+        public synchronized int getBatchSize() {
+            return batchSize;
+        }
+        
+        /**
+         * Returns whether the search has settled on the best size found.
+         *
+         * @return true once converged
+         */
+        public synchronized boolean isConverged() {
+            return converged;
+        }
+        
+        /**
+         * Returns the records per second of the last completed window.
+         *
+         * @return the throughput, or 0 before the first window completed
+         */
+        public synchronized double getThroughput() {
+            return throughput;
+        }
+        
+        /**
+         * Returns the number of times the batch size changed.
+         *
+         * @return the adjustment count
+         */
+        public synchronized long getAdjustments() {
+            return adjustments;
+        }
+        
+        /**
+         * Returns the smoothed time per record of a stage.
+         *
+         * @param stage the stage name
+         * @return the time in nanoseconds
+         */
+        public synchronized double getNanosPerRecord(String stage) {
+            return nanosPerRecord[index(stage)];
+        }
+        
+        /**
+         * Returns the smoothed bytes a stage allocates per record.
+         *
+         * @param stage the stage name
+         * @return the bytes, 0 if the JVM does not measure allocation
+         */
+        public synchronized double getBytesPerRecord(String stage) {
+            return bytesPerRecord[index(stage)];
+        }
+        
+        /**
+         * Returns the smoothed number of batches waiting in a stage's input queue.
+         *
+         * @param stage the stage name
+         * @return the queue depth
+         */
+        public synchronized double getQueueDepth(String stage) {
+            return queueDepth[index(stage)];
+        }
+        
+        @Override
+        public synchronized String toString() {
+            return String.format("%s/%s: batch size %d%s, %.0f records/s", dataType, processingType, batchSize,
+                                 converged ? " (converged)" : "", throughput);
+        }
+    }
+    
+    /**
+     * Builder for {@link AdaptiveBatchSizer}
+     */
+    public static final class Builder {
+        private int minBatchSize = 1;
+        private int maxBatchSize = 65_536;
+        private int initialBatchSize = 256;
+        private Duration maxBatchLatency = Duration.ofSeconds(1);
+        private long maxBatchBytes = 64L * 1024 * 1024;
+        private int window = 4;
+        
+        private Builder() {
+        }
+        
+        /**
+         * Sets the range the batch size is chosen from; defaults to 1 to 65536 records.
+         *
+         * @param min the smallest batch size
+         * @param max the largest batch size
+         * @return this builder
+         */
+        public Builder batchSizeRange(int min, int max) {
+            if (min <= 0 || max < min) {
+                throw new IllegalArgumentException("Invalid batch size range: " + min + " to " + max);
+            }
+            this.minBatchSize = min;
+            this.maxBatchSize = max;
+            return this;
+        }
+        
+        /**
+         * Sets the size to start the search with, kept within the range; defaults to 256.
+         *
+         * @param initialBatchSize the first batch size
+         * @return this builder
+         */
+        public Builder initialBatchSize(int initialBatchSize) {
+            this.initialBatchSize = initialBatchSize;
+            return this;
+        }
+        
+        /**
+         * Sets the latency bound of a batch from cutting to completion, including queueing;
+         * defaults to one second.
+         *
+         * @param maxBatchLatency the latency bound
+         * @return this builder
+         */
+        public Builder maxBatchLatency(Duration maxBatchLatency) {
+            if (maxBatchLatency.isNegative() || maxBatchLatency.isZero()) {
+                throw new IllegalArgumentException("Latency bound must be positive: " + maxBatchLatency);
+            }
+            this.maxBatchLatency = maxBatchLatency;
+            return this;
+        }
+        
+        /**
+         * Sets the bound on the bytes all stages together allocate for one batch; defaults to 64 MB.
+         *
+         * @param maxBatchBytes the allocation bound
+         * @return this builder
+         */
+        public Builder maxBatchBytes(long maxBatchBytes) {
+            if (maxBatchBytes <= 0) {
+                throw new IllegalArgumentException("Allocation bound must be positive: " + maxBatchBytes);
+            }
+            this.maxBatchBytes = maxBatchBytes;
+            return this;
+        }
+        
+        /**
+         * Sets the number of completed batches throughput is measured over; defaults to 4.
+         *
+         * @param window the window in batches
+         * @return this builder
+         */
+        public Builder window(int window) {
+            if (window <= 0) {
+                throw new IllegalArgumentException("Window must be positive: " + window);
+            }
+            this.window = window;
+            return this;
+        }
+        
+        public AdaptiveBatchSizer build() {
+            return new AdaptiveBatchSizer(this);
+        }
+    }
+}
@@ -1,16 +1,66 @@
 package com.example.demo.godclassrefactoring.solutions.run2;
 
+import com.example.demo.godclassrefactoring.columnar.ColumnBatch;
+import com.example.demo.godclassrefactoring.columnar.ExternalHashAggregator;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Concrete implementation for data aggregation processing.
- * Handles data aggregation algorithms and logic.
+ * Groups columnar batches within a fixed memory budget, spilling sorted runs to disk
+ * when the number of groups exceeds it.
  */
 public class AggregationProcessor implements DataProcessor {
     
+    private static final long DEFAULT_MEMORY_BUDGET_BYTES = 64L * 1024 * 1024;
+    
+    private final String keyColumn;
+    private final String valueColumn;
+    private final long memoryBudgetBytes;
+    private final Path spillDirectory;
+    
+    /**
+     * Creates an aggregation processor grouping the "value" column by the "key" column
+     * with a 64 MB budget, spilling to the system temporary directory.
+     */
+    public AggregationProcessor() {
+        this("key", "value", DEFAULT_MEMORY_BUDGET_BYTES, Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+    
+    /**
+     * Creates an aggregation processor.
+     * 
+     * @param keyColumn the LONG or STRING column to group by
+     * @param valueColumn the numeric column to aggregate
+     * @param memoryBudgetBytes the heap to use for in-memory groups
+     * @param spillDirectory the directory for temporary run files
+     */
+    public AggregationProcessor(String keyColumn, String valueColumn, long memoryBudgetBytes, Path spillDirectory) {
+        this.keyColumn = keyColumn;
+        this.valueColumn = valueColumn;
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.spillDirectory = spillDirectory;
+    }
+    
     @Override
     public Object processData(Object data) {
         System.out.println("Performing data aggregation");
         
-        // Data aggregation logic
+        if (data instanceof ColumnBatch) {
+            return aggregate(List.of((ColumnBatch) data));
+        }
+        if (ColumnBatch.isBatchList(data)) {
+            List<ColumnBatch> batches = new ArrayList<>();
+            for (Object batch : (List<?>) data) {
+                batches.add((ColumnBatch) batch);
+            }
+            return aggregate(batches);
+        }
+        
+        // Untyped data has no columns to group
         return "Aggregated: " + data.toString();
     }
     
@@ -18,4 +68,8 @@ public class AggregationProcessor implements DataProcessor {
     public String getProcessingType() {
         return "aggregation";
     }
+    
+    private Object aggregate(List<ColumnBatch> batches) {
+        return ExternalHashAggregator.aggregate(batches, keyColumn, valueColumn, memoryBudgetBytes, spillDirectory);
+    }
 }
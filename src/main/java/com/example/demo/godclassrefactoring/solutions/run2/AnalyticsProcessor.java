@@ -1,16 +1,53 @@
 package com.example.demo.godclassrefactoring.solutions.run2;
 
+import com.example.demo.godclassrefactoring.columnar.ColumnBatch;
+import com.example.demo.godclassrefactoring.columnar.GroupByAggregator;
+
+import java.util.List;
+
 /**
  * Concrete implementation for analytics processing.
- * Handles complex analytics algorithms.
+ * Computes per-group count, sum, min, max, mean and standard deviation over columnar batches.
  */
 public class AnalyticsProcessor implements DataProcessor {
     
+    private final String keyColumn;
+    private final String valueColumn;
+    
+    /**
+     * Creates an analytics processor grouping the "value" column by the "key" column.
+     */
+    public AnalyticsProcessor() {
+        this("key", "value");
+    }
+    
+    /**
+     * Creates an analytics processor over the given columns.
+     * 
+     * @param keyColumn the LONG or STRING column to group by
+     * @param valueColumn the numeric column to aggregate
+     */
+    public AnalyticsProcessor(String keyColumn, String valueColumn) {
+        this.keyColumn = keyColumn;
+        this.valueColumn = valueColumn;
+    }
+    
     @Override
     public Object processData(Object data) {
         System.out.println("Running analytics algorithms");
         
-        // Complex analytics algorithms
+        if (data instanceof ColumnBatch) {
+            return GroupByAggregator.aggregate((ColumnBatch) data, keyColumn, valueColumn);
+        }
+        if (ColumnBatch.isBatchList(data)) {
+            GroupByAggregator aggregator = new GroupByAggregator(keyColumn, valueColumn);
+            for (Object batch : (List<?>) data) {
+                aggregator.add((ColumnBatch) batch);
+            }
+            return aggregator.result();
+        }
+        
+        // Untyped data has no columns to analyse
         return "Analytics result for: " + data.toString();
     }
     
@@ -0,0 +1,85 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Asynchronous front end for the RefactoredOrderProcessor.
+ * Each request runs on the executor of the configured {@link ExecutorMode}, subject to the
+ * per data type limits of a {@link ConcurrencyLimiter}. Requests over a limit wait in the
+ * limiter rather than on an executor thread.
+ */
+public class AsyncOrderProcessor implements AutoCloseable {
+    
+    private final RefactoredOrderProcessor processor;
+    private final ExecutorService executor;
+    private final ConcurrencyLimiter limiter;
+    private final Object lock = new Object();
+    private int pending;
+    private boolean closed;
+    
+    /**
+     * Creates an async processor.
+     *
+     * @param processor the processor to run requests with
+     * @param mode the threading model for requests
+     * @param platformThreads the pool size when running in {@link ExecutorMode#PLATFORM} mode
+     * @param limiter the per data type concurrency limiter
+     */
+    public AsyncOrderProcessor(RefactoredOrderProcessor processor, ExecutorMode mode, int platformThreads,
+                               ConcurrencyLimiter limiter) {
+        this.processor = processor;
+        this.executor = mode.createExecutor(platformThreads);
+        this.limiter = limiter;
+    }
+    
+    /**
+     * Submits a processing request.
+     *
+     * @param dataType the type of data to process
+     * @param processingType the type of processing to apply
+     * @param rawData the raw data to process
+     * @return a future completed with the formatted output, or exceptionally with the processing failure
+     * @throws RejectedExecutionException if this processor is closed
+     */
+    public CompletableFuture<String> processDataAsync(String dataType, String processingType, List<String> rawData) {
+        // Checking and counting under one lock keeps a request from slipping past close()
+        synchronized (lock) {
+            if (closed) {
+                throw new RejectedExecutionException("Async order processor is closed");
+            }
+            pending++;
+        }
+        return limiter.submit(dataType, () -> processor.processData(dataType, processingType, rawData), executor)
+            .whenComplete((output, failure) -> finished());
+    }
+    
+    /**
+     * Stops accepting requests; already submitted requests still complete, including those
+     * still waiting for their data type to be below its limit.
+     */
+    @Override
+    public void close() {
+        boolean idle;
+        synchronized (lock) {
+            closed = true;
+            idle = pending == 0;
+        }
+        if (idle) {
+            executor.shutdown();
+        }
+    }
+    
+    private void finished() {
+        boolean shutDown;
+        synchronized (lock) {
+            pending--;
+            shutDown = pending == 0 && closed;
+        }
+        if (shutDown) {
+            executor.shutdown();
+        }
+    }
+}
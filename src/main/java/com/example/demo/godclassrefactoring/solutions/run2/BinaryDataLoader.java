@@ -0,0 +1,55 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+import com.example.demo.godclassrefactoring.columnar.BinaryBatchCodec;
+import com.example.demo.godclassrefactoring.columnar.ColumnBatch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Concrete implementation for loading binary columnar data written by {@link BinaryOutputFormatter}.
+ * Each raw line is one Base64 encoded frame; a single frame loads as a {@link ColumnBatch},
+ * several as a list of batches.
+ */
+public class BinaryDataLoader implements DataLoader {
+    
+    @Override
+    public Object loadData(List<String> rawData) {
+        Base64.Decoder decoder = Base64.getDecoder();
+        List<ColumnBatch> batches = new ArrayList<>(rawData.size());
+        for (String line : rawData) {
+            byte[] frame;
+            try {
+                frame = decoder.decode(line.trim());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid binary frame: not Base64 encoded", e);
+            }
+            batches.add(BinaryBatchCodec.decode(ByteBuffer.wrap(frame)));
+        }
+        return batches.size() == 1 ? batches.get(0) : batches;
+    }
+    
+    /**
+     * Loads all raw frames of a stream, e.g. a file written through {@link BinaryOutputFormatter#writeTo}.
+     * 
+     * @param in the stream of concatenated frames
+     * @return the decoded batches in stream order
+     */
+    public List<ColumnBatch> loadFrames(InputStream in) {
+        try {
+            return BinaryBatchCodec.decodeAll(ByteBuffer.wrap(in.readAllBytes()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read binary frames", e);
+        }
+    }
+    
+    @Override
+    public String getDataType() {
+        return "binary";
+    }
+}
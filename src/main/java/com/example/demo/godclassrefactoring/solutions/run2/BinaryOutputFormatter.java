@@ -0,0 +1,70 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+import com.example.demo.godclassrefactoring.columnar.BinaryBatchCodec;
+import com.example.demo.godclassrefactoring.columnar.ColumnBatch;
+
+import java.util.Base64;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Concrete implementation for binary output formatting.
+ * Columnar batches are encoded as {@link BinaryBatchCodec} frames, which {@link BinaryDataLoader}
+ * reads back without any text parsing. {@link #writeTo} writes the raw frame, while
+ * {@link #formatOutput} returns it Base64 encoded so it can travel through text channels.
+ * A list of batches becomes one frame per batch, written back to back or as one Base64 line
+ * each. Other data falls back to a labelled text representation.
+ */
+public class BinaryOutputFormatter implements OutputFormatter {
+    
+    private final boolean compress;
+    
+    /**
+     * Creates a formatter writing uncompressed frames.
+     */
+    public BinaryOutputFormatter() {
+        this(false);
+    }
+    
+    /**
+     * Creates a formatter.
+     * 
+     * @param compress whether to compress frames in the LZ4 block format
+     */
+    public BinaryOutputFormatter(boolean compress) {
+        this.compress = compress;
+    }
+    
+    @Override
+    public String formatOutput(Object data) {
+        if (data instanceof ColumnBatch) {
+            return Base64.getEncoder().encodeToString(BinaryBatchCodec.encode((ColumnBatch) data, compress));
+        }
+        if (ColumnBatch.isBatchList(data)) {
+            StringJoiner lines = new StringJoiner("\n");
+            for (Object batch : (List<?>) data) {
+                lines.add(Base64.getEncoder().encodeToString(BinaryBatchCodec.encode((ColumnBatch) batch, compress)));
+            }
+            return lines.toString();
+        }
+        return "Binary Output: " + data.toString();
+    }
+    
+    @Override
+    public void writeTo(Object data, ByteSink sink) {
+        if (data instanceof ColumnBatch) {
+            sink.write(BinaryBatchCodec.encode((ColumnBatch) data, compress));
+        } else if (ColumnBatch.isBatchList(data)) {
+            for (Object batch : (List<?>) data) {
+                sink.write(BinaryBatchCodec.encode((ColumnBatch) batch, compress));
+            }
+        } else {
+            sink.writeText(formatOutput(data));
+        }
+    }
+    
+    @Override
+    public String getFormatType() {
+        return "binary";
+    }
+}
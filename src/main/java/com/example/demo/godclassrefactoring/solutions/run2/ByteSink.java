@@ -0,0 +1,289 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered destination for encoded output bytes.
+ * 
+ * Text is encoded to UTF-8 straight into a caller-supplied, reusable {@link ByteBuffer}, which
+ * is drained to the channel whenever it fills up, so output of any size streams through a
+ * fixed amount of memory. Numbers are written digit by digit and escaping is table driven,
+ * so writing does not create intermediate strings.
+ * 
+ * Non-finite doubles are rejected, since JSON and SQL have no literal for them; formatters
+ * decide how to represent them.
+ * 
+ * Instances are not thread-safe. Call {@link #flush()} when done; the channel is not closed.
+ */
+public final class ByteSink {
+    
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final byte[] LONG_MIN = Long.toString(Long.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NEGATIVE_ZERO = "-0".getBytes(StandardCharsets.US_ASCII);
+    // 10^22 is the largest power of ten a double holds exactly
+    private static final int MAX_FRACTION_DIGITS = 22;
+    private static final double[] POWERS_OF_TEN = new double[MAX_FRACTION_DIGITS + 1];
+    
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+    
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    // Room for the 19 digits of a long and for a fraction of MAX_FRACTION_DIGITS digits with its leading 0
+    private final byte[] digits = new byte[MAX_FRACTION_DIGITS + 1];
+    private long bytesWritten;
+    
+    /**
+     * Creates a sink draining into a channel through the given buffer.
+     *
+     * @param channel the destination, e.g. a FileChannel or SocketChannel
+     * @param buffer the reusable buffer to encode into; it is cleared first
+     */
+    public ByteSink(WritableByteChannel channel, ByteBuffer buffer) {
+        if (buffer.capacity() < 32) {
+            throw new IllegalArgumentException("Buffer too small: " + buffer.capacity() + " bytes");
+        }
+        this.channel = channel;
+        this.buffer = buffer;
+        buffer.clear();
+    }
+    
+    /**
+     * Creates a sink draining into a stream through a new 64 KB buffer.
+     *
+     * @param out the destination stream
+     * @return the sink
+     */
+    public static ByteSink of(OutputStream out) {
+        return new ByteSink(Channels.newChannel(out), ByteBuffer.allocate(DEFAULT_BUFFER_SIZE));
+    }
+    
+    /**
+     * Builds an escape table: entry {@code c} holds the UTF-8 replacement for ASCII character
+     * {@code c}, or null if the character is written as is.
+     *
+     * @param characters the characters to escape
+     * @param replacements the replacement of each character
+     * @return the table, indexed by character
+     */
+    public static byte[][] escapeTable(String characters, String... replacements) {
+        if (characters.length() != replacements.length) {
+            throw new IllegalArgumentException("Expected one replacement per character");
+        }
+        byte[][] table = new byte[128][];
+        for (int i = 0; i < replacements.length; i++) {
+            char c = characters.charAt(i);
+            if (c >= 128) {
+                throw new IllegalArgumentException("Only ASCII characters can be escaped: " + c);
+            }
+            table[c] = replacements[i].getBytes(StandardCharsets.UTF_8);
+        }
+        return table;
+    }
+    
+    public ByteSink write(byte b) {
+        ensure(1);
+        buffer.put(b);
+        return this;
+    }
+    
+    /**
+     * Writes raw bytes, e.g. a precomputed delimiter.
+     *
+     * @param bytes the bytes to write
+     * @return this sink
+     */
+    public ByteSink write(byte[] bytes) {
+        int offset = 0;
+        while (offset < bytes.length) {
+            ensure(1);
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+        return this;
+    }
+    
+    /**
+     * Writes a number in decimal without creating a string.
+     *
+     * @param value the number
+     * @return this sink
+     */
+    public ByteSink writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            return write(LONG_MIN);
+        }
+        ensure(20);
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        int start = digits.length;
+        do {
+            digits[--start] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        buffer.put(digits, start, digits.length - start);
+        return this;
+    }
+    
+    /**
+     * Writes a finite number without creating a string. Whole numbers are written without a
+     * fraction, keeping the sign of -0.0. Other values are written in fixed point with the
+     * fewest fraction digits that read back as the same double: the value is scaled to an
+     * integer and accepted once dividing by the power of ten, which is correctly rounded like
+     * parsing, gives the value back. The scaling is exact up to 15 significant digits; beyond
+     * that the output may have a digit more than {@link Double#toString(double)}, but still
+     * reads back exactly. Only values that need more than 22 fraction digits or more than 18
+     * integer digits fall back to {@link Double#toString(double)}.
+     *
+     * @param value the number
+     * @return this sink
+     * @throws IllegalArgumentException if the value is NaN or infinite
+     */
+    public ByteSink writeDouble(double value) {
+        if (!Double.isFinite(value)) {
+            throw new IllegalArgumentException("Not a finite number: " + value);
+        }
+        double magnitude = Math.abs(value);
+        if (magnitude == Math.rint(magnitude) && magnitude < 0x1p63) {
+            if (value == 0 && 1 / value < 0) {
+                return write(NEGATIVE_ZERO);
+            }
+            return writeLong((long) value);
+        }
+        for (int fractionDigits = 1; fractionDigits <= MAX_FRACTION_DIGITS; fractionDigits++) {
+            double power = POWERS_OF_TEN[fractionDigits];
+            double unscaled = Math.rint(magnitude * power);
+            if (unscaled >= 0x1p63) {
+                break;
+            }
+            if (unscaled / power == magnitude) {
+                return writeFixed(value < 0, (long) unscaled, fractionDigits);
+            }
+        }
+        return writeText(Double.toString(value));
+    }
+    
+    private ByteSink writeFixed(boolean negative, long unscaled, int fractionDigits) {
+        ensure(digits.length + 2);
+        if (negative) {
+            buffer.put((byte) '-');
+        }
+        int start = digits.length;
+        do {
+            digits[--start] = (byte) ('0' + unscaled % 10);
+            unscaled /= 10;
+        } while (unscaled != 0 || digits.length - start <= fractionDigits);
+        int point = digits.length - fractionDigits;
+        buffer.put(digits, start, point - start);
+        buffer.put((byte) '.');
+        buffer.put(digits, point, fractionDigits);
+        return this;
+    }
+    
+    /**
+     * Writes text encoded as UTF-8.
+     *
+     * @param text the text
+     * @return this sink
+     */
+    public ByteSink writeText(CharSequence text) {
+        return writeEscaped(text, null);
+    }
+    
+    /**
+     * Writes text encoded as UTF-8, replacing ASCII characters that have an entry in the escape table.
+     *
+     * @param text the text
+     * @param escapes the escape table from {@link #escapeTable}, or null for none
+     * @return this sink
+     */
+    public ByteSink writeEscaped(CharSequence text, byte[][] escapes) {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                byte[] escape = escapes != null ? escapes[c] : null;
+                if (escape != null) {
+                    write(escape);
+                } else {
+                    ensure(1);
+                    buffer.put((byte) c);
+                }
+            } else if (c < 0x800) {
+                ensure(2);
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                ensure(4);
+                buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogate, encoded as '?' like String.getBytes does
+                ensure(1);
+                buffer.put((byte) '?');
+            } else {
+                ensure(3);
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        return this;
+    }
+    
+    /**
+     * Drains the buffer to the channel.
+     */
+    public void flush() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                bytesWritten += channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write formatted output", e);
+        } finally {
+            buffer.clear();
+        }
+    }
+    
+    /**
+     * Returns the number of bytes drained to the channel so far.
+     *
+     * @return the bytes written
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+    
+    /**
+     * Returns the number of bytes written to this sink so far, including those still buffered.
+     *
+     * @return the bytes written or buffered
+     */
+    public long getPosition() {
+        return bytesWritten + buffer.position();
+    }
+    
+    private void ensure(int bytes) {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+import java.nio.file.Path;
+import java.util.function.Supplier;
+
+/**
+ * Configuration of a {@link CheckpointedJob}: where it writes its output and checkpoints, how
+ * the input is batched and how often a checkpoint is taken. A checkpoint is taken when either
+ * the batch interval or the time interval has passed since the last one; an interval of zero
+ * disables that trigger, and disabling both runs the job without checkpoints.
+ */
+public final class CheckpointConfig {
+    
+    private final Path outputFile;
+    private final Path checkpointFile;
+    private final int batchSize;
+    private final int checkpointEveryBatches;
+    private final long checkpointEveryMillis;
+    private final Supplier<JobState> stateFactory;
+    
+    private CheckpointConfig(Builder builder) {
+        this.outputFile = builder.outputFile;
+        this.checkpointFile = builder.checkpointFile;
+        this.batchSize = builder.batchSize;
+        this.checkpointEveryBatches = builder.checkpointEveryBatches;
+        this.checkpointEveryMillis = builder.checkpointEveryMillis;
+        this.stateFactory = builder.stateFactory;
+    }
+    
+    /**
+     * Starts building a configuration.
+     * 
+     * @param outputFile the file the formatted output is written to
+     * @param checkpointFile the file checkpoints are written to; a temporary sibling is renamed over it
+     * @return a new builder
+     */
+    public static Builder builder(Path outputFile, Path checkpointFile) {
+        return new Builder(outputFile, checkpointFile);
+    }
+    
+    public Path getOutputFile() {
+        return outputFile;
+    }
+    
+    public Path getCheckpointFile() {
+        return checkpointFile;
+    }
+    
+    public int getBatchSize() {
+        return batchSize;
+    }
+    
+    public int getCheckpointEveryBatches() {
+        return checkpointEveryBatches;
+    }
+    
+    public long getCheckpointEveryMillis() {
+        return checkpointEveryMillis;
+    }
+    
+    /**
+     * Creates the state a job folds its batches into, or returns null if every batch is
+     * formatted and written on its own.
+     * 
+     * @return a new state, or null
+     */
+    public JobState newState() {
+        return stateFactory == null ? null : stateFactory.get();
+    }
+    
+    /**
+     * Builder for checkpoint configurations
+     */
+    public static final class Builder {
+        private final Path outputFile;
+        private final Path checkpointFile;
+        private int batchSize = 1000;
+        private int checkpointEveryBatches = 100;
+        private long checkpointEveryMillis = 60_000;
+        private Supplier<JobState> stateFactory;
+        
+        private Builder(Path outputFile, Path checkpointFile) {
+            this.outputFile = outputFile;
+            this.checkpointFile = checkpointFile;
+        }
+        
+        public Builder batchSize(int batchSize) {
+            if (batchSize <= 0) {
+                throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+            }
+            this.batchSize = batchSize;
+            return this;
+        }
+        
+        /**
+         * Sets how often a checkpoint is taken; zero disables a trigger.
+         * 
+         * @param batches the number of batches between checkpoints
+         * @param millis the time between checkpoints
+         * @return this builder
+         */
+        public Builder checkpointEvery(int batches, long millis) {
+            if (batches < 0 || millis < 0) {
+                throw new IllegalArgumentException("Checkpoint intervals must not be negative");
+            }
+            this.checkpointEveryBatches = batches;
+            this.checkpointEveryMillis = millis;
+            return this;
+        }
+        
+        /**
+         * Folds all batches into one state and formats only its final result, checkpointing
+         * the state instead of per-batch output.
+         * 
+         * @param stateFactory creates the empty state of a run
+         * @return this builder
+         */
+        public Builder state(Supplier<JobState> stateFactory) {
+            this.stateFactory = stateFactory;
+            return this;
+        }
+        
+        public CheckpointConfig build() {
+            return new CheckpointConfig(this);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Runs a {@link PipelinePlan} over a large input batch by batch, periodically checkpointing
+ * its progress so that a job that dies can resume instead of starting over.
+ * 
+ * Formatted output is streamed to the output file, one batch per line, or, when the
+ * configuration has a {@link JobState}, every batch is folded into the state and only its
+ * final result is formatted. A processor that is not partition-safe, such as an aggregation,
+ * needs the whole input, so it can only run with a state, which then takes its place: the
+ * loaded batches go into the state unprocessed. A checkpoint records the input offset, the synced length of the
+ * output file and the serialized state; it is written to a temporary file, synced and
+ * atomically renamed over the previous one, so a crash leaves either the old or the new
+ * checkpoint. On restart the output is truncated to the checkpointed length and processing
+ * continues at the checkpointed offset, producing exactly the output of an uninterrupted run.
+ * The checkpoint is deleted once the job completes.
+ * 
+ * A checkpoint only resumes the job it was written for: the same plan, batch size, state
+ * type and number of input records. The input itself must be unchanged.
+ */
+public class CheckpointedJob {
+    
+    private static final int MAGIC = 0x434B5054;
+    private static final int VERSION = 1;
+    private static final int OUTPUT_BUFFER_BYTES = 64 * 1024;
+    
+    private final PipelinePlan plan;
+    private final CheckpointConfig config;
+    
+    /**
+     * Creates a job.
+     *
+     * @param plan the pipeline to run every batch through
+     * @param config the output, checkpoint and batching configuration
+     */
+    public CheckpointedJob(PipelinePlan plan, CheckpointConfig config) {
+        this.plan = plan;
+        this.config = config;
+    }
+    
+    /**
+     * Runs the job, resuming from the checkpoint file if it exists.
+     *
+     * @param rawData the complete input of the job
+     * @return the report of this run
+     * @throws IllegalArgumentException if the processor needs the whole input and there is no state
+     * @throws IllegalStateException if the checkpoint is corrupt or belongs to a different job
+     * @throws UncheckedIOException if the output or a checkpoint cannot be written
+     */
+    public JobReport run(List<String> rawData) {
+        long startTime = System.nanoTime();
+        JobState state = config.newState();
+        boolean wholeInput = !plan.getProcessor().isPartitionSafe();
+        if (wholeInput && state == null) {
+            throw new IllegalArgumentException("Processing type " + plan.getProcessor().getProcessingType()
+                + " needs the whole input and cannot run batch by batch; configure a JobState such as"
+                + " GroupByJobState to checkpoint it");
+        }
+        String fingerprint = fingerprint(rawData.size(), state);
+        
+        int offset = 0;
+        long outputLength = 0;
+        Path checkpointFile = config.getCheckpointFile();
+        if (Files.exists(checkpointFile)) {
+            try (DataInputStream in = readCheckpoint(checkpointFile, fingerprint)) {
+                offset = in.readInt();
+                outputLength = in.readLong();
+                if (state != null) {
+                    state.readFrom(in);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Corrupt checkpoint: " + checkpointFile, e);
+            }
+            System.out.println("Resuming job from record " + offset + " of " + rawData.size());
+        }
+        
+        int batches = 0;
+        int checkpoints = 0;
+        long checkpointBytes = 0;
+        long checkpointNanos = 0;
+        try (FileChannel output = FileChannel.open(config.getOutputFile(), StandardOpenOption.CREATE,
+                                                   StandardOpenOption.WRITE)) {
+            output.truncate(outputLength);
+            output.position(outputLength);
+            ByteSink sink = new ByteSink(output, ByteBuffer.allocate(OUTPUT_BUFFER_BYTES));
+            
+            long lastCheckpoint = System.nanoTime();
+            int batchesSinceCheckpoint = 0;
+            int start = offset;
+            // An empty input still runs one empty batch, like the other pipelines
+            while (start < rawData.size() || (start == 0 && batches == 0)) {
+                int end = Math.min(start + config.getBatchSize(), rawData.size());
+                Object loaded = plan.load(rawData.subList(start, end));
+                Object processed = wholeInput ? loaded : plan.process(loaded, end - start);
+                if (state != null) {
+                    state.add(processed);
+                } else {
+                    if (start > 0) {
+                        sink.write((byte) '\n');
+                    }
+                    plan.writeTo(processed, end - start, sink);
+                }
+                batches++;
+                batchesSinceCheckpoint++;
+                start = end;
+                
+                if (start < rawData.size() && checkpointDue(batchesSinceCheckpoint, lastCheckpoint)) {
+                    long checkpointStart = System.nanoTime();
+                    sink.flush();
+                    output.force(false);
+                    checkpointBytes += writeCheckpoint(fingerprint, start, output.position(), state);
+                    checkpoints++;
+                    lastCheckpoint = System.nanoTime();
+                    checkpointNanos += lastCheckpoint - checkpointStart;
+                    batchesSinceCheckpoint = 0;
+                }
+            }
+            
+            if (state != null) {
+                plan.writeTo(state.result(), rawData.size(), sink);
+            }
+            sink.flush();
+            output.force(false);
+            Files.deleteIfExists(checkpointFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to run checkpointed job", e);
+        }
+        
+        JobReport report = new JobReport(offset, rawData.size() - offset, batches, checkpoints, checkpointBytes,
+                                         checkpointNanos, System.nanoTime() - startTime);
+        System.out.println("Completed checkpointed job: " + report);
+        return report;
+    }
+    
+    private boolean checkpointDue(int batchesSinceCheckpoint, long lastCheckpoint) {
+        int everyBatches = config.getCheckpointEveryBatches();
+        long everyMillis = config.getCheckpointEveryMillis();
+        return (everyBatches > 0 && batchesSinceCheckpoint >= everyBatches)
+            || (everyMillis > 0 && System.nanoTime() - lastCheckpoint >= everyMillis * 1_000_000);
+    }
+    
+    private String fingerprint(int records, JobState state) {
+        return plan.getLoader().getDataType() + "/" + plan.getProcessor().getProcessingType() + "/"
+            + plan.getFormatter().getFormatType() + "/batch=" + config.getBatchSize() + "/records=" + records
+            + "/state=" + (state == null ? "none" : state.getClass().getName());
+    }
+    
+    /**
+     * Writes a checkpoint atomically: [magic, version, fingerprint, offset, output length,
+     * state, CRC32 of everything before].
+     */
+    private long writeCheckpoint(String fingerprint, int offset, long outputLength, JobState state) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(fingerprint);
+        out.writeInt(offset);
+        out.writeLong(outputLength);
+        if (state != null) {
+            state.writeTo(out);
+        }
+        out.flush();
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+        out.flush();
+        
+        Path checkpointFile = config.getCheckpointFile();
+        Path temporary = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, checkpointFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return buffer.capacity();
+    }
+    
+    /**
+     * Verifies a checkpoint and returns a stream positioned at its input offset.
+     */
+    private static DataInputStream readCheckpoint(Path checkpointFile, String fingerprint) throws IOException {
+        byte[] bytes = Files.readAllBytes(checkpointFile);
+        if (bytes.length < 8) {
+            throw new IllegalStateException("Corrupt checkpoint: " + checkpointFile);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 8);
+        long expectedCrc = ByteBuffer.wrap(bytes, bytes.length - 8, 8).getLong();
+        if (crc.getValue() != expectedCrc) {
+            throw new IllegalStateException("Corrupt checkpoint: " + checkpointFile);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 8)));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IllegalStateException("Unsupported checkpoint format: " + checkpointFile);
+        }
+        String checkpointFingerprint = in.readUTF();
+        if (!checkpointFingerprint.equals(fingerprint)) {
+            throw new IllegalStateException("Checkpoint " + checkpointFile + " belongs to a different job: "
+                + checkpointFingerprint);
+        }
+        return in;
+    }
+}
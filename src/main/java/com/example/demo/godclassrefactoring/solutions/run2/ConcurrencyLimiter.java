@@ -0,0 +1,184 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Limits the number of requests processed concurrently for each data type, so that a
+ * burst of requests for one backend (e.g. the database loader) cannot exhaust it.
+ * 
+ * Requests over the limit wait in a queue of their data type and are handed to the executor
+ * only when a permit frees up, so they never occupy an executor thread while waiting.
+ */
+public class ConcurrencyLimiter {
+    
+    private final int defaultLimit;
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+    
+    /**
+     * Creates a limiter.
+     *
+     * @param defaultLimit the concurrency limit for data types without an explicit limit
+     */
+    public ConcurrencyLimiter(int defaultLimit) {
+        if (defaultLimit <= 0) {
+            throw new IllegalArgumentException("Concurrency limit must be positive: " + defaultLimit);
+        }
+        this.defaultLimit = defaultLimit;
+    }
+    
+    /**
+     * Sets the concurrency limit for a data type. Must be called before requests for
+     * that data type are submitted.
+     *
+     * @param dataType the data type to limit
+     * @param limit the maximum number of concurrent requests
+     */
+    public void setLimit(String dataType, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Concurrency limit must be positive: " + limit);
+        }
+        lanes.put(dataType.toLowerCase(), new Lane(limit));
+    }
+    
+    /**
+     * Runs a request on the executor as soon as the data type is below its limit: right away
+     * if it is now, otherwise after an earlier request of the data type has finished. The
+     * request's permit is released before its future completes. If the executor rejects the
+     * request, e.g. because it was shut down, the permit is released and the future completes
+     * exceptionally with the {@link RejectedExecutionException}.
+     *
+     * @param dataType the data type of the request
+     * @param request the request to run
+     * @param executor the executor to run it on
+     * @param <T> the type of the request's result
+     * @return a future completed with the request's result, or exceptionally with its failure
+     */
+    public <T> CompletableFuture<T> submit(String dataType, Supplier<T> request, Executor executor) {
+        Lane lane = lane(dataType);
+        Request<T> admitted = new Request<>(lane, request, executor);
+        if (lane.acquireOrQueue(admitted) && !admitted.dispatch()) {
+            releasePermit(lane);
+        }
+        return admitted.result;
+    }
+    
+    /**
+     * Returns the number of requests that may currently start for the data type.
+     *
+     * @param dataType the data type
+     * @return the number of available permits
+     */
+    public int availablePermits(String dataType) {
+        return lane(dataType).availablePermits();
+    }
+    
+    private Lane lane(String dataType) {
+        return lanes.computeIfAbsent(dataType.toLowerCase(), type -> new Lane(defaultLimit));
+    }
+    
+    /**
+     * Hands the permit of a finished or rejected request to the next waiting request that its
+     * executor accepts, or returns it to the lane.
+     */
+    private static void releasePermit(Lane lane) {
+        for (Request<?> next = lane.release(); next != null; next = lane.release()) {
+            if (next.dispatch()) {
+                return;
+            }
+        }
+    }
+    
+    /**
+     * A request holding or waiting for a permit of its lane.
+     */
+    private static final class Request<T> implements Runnable {
+        private final Lane lane;
+        private final Supplier<T> request;
+        private final Executor executor;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        
+        Request(Lane lane, Supplier<T> request, Executor executor) {
+            this.lane = lane;
+            this.request = request;
+            this.executor = executor;
+        }
+        
+        /**
+         * Hands the admitted request to its executor; if the executor rejects it, fails the
+         * request and returns false, leaving the caller to release its permit.
+         */
+        boolean dispatch() {
+            try {
+                executor.execute(this);
+                return true;
+            } catch (RejectedExecutionException e) {
+                result.completeExceptionally(e);
+                return false;
+            }
+        }
+        
+        @Override
+        public void run() {
+            T value = null;
+            Throwable failure = null;
+            try {
+                value = request.get();
+            } catch (RuntimeException | Error e) {
+                failure = e;
+            }
+            releasePermit(lane);
+            if (failure == null) {
+                result.complete(value);
+            } else {
+                result.completeExceptionally(failure);
+            }
+        }
+    }
+    
+    /**
+     * Permits and waiting requests of one data type.
+     */
+    private static final class Lane {
+        private final Queue<Request<?>> waiting = new ArrayDeque<>();
+        private int available;
+        
+        Lane(int limit) {
+            this.available = limit;
+        }
+        
+        /**
+         * Takes a permit for the request, or queues it if there is none.
+         */
+        synchronized boolean acquireOrQueue(Request<?> request) {
+            if (available == 0) {
+                waiting.add(request);
+                return false;
+            }
+            available--;
+            return true;
+        }
+        
+        /**
+         * Hands the permit of a finished request to the next waiting one, which the caller
+         * must dispatch, or returns it.
+         */
+        synchronized Request<?> release() {
+            Request<?> next = waiting.poll();
+            if (next == null) {
+                available++;
+            }
+            return next;
+        }
+        
+        synchronized int availablePermits() {
+            return available;
+        }
+    }
+}
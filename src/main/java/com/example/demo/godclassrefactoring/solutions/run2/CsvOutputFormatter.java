@@ -1,14 +1,66 @@
 package com.example.demo.godclassrefactoring.solutions.run2;
 
+import com.example.demo.godclassrefactoring.columnar.ColumnBatch;
+import com.example.demo.godclassrefactoring.columnar.ColumnType;
+
+import java.util.List;
+
 /**
  * Concrete implementation for CSV output formatting.
- * Handles CSV-specific output formatting logic.
+ * Columnar batches are written as a header line followed by one line per row, quoting
+ * fields that contain a delimiter, quote or line break (RFC 4180).
  */
-public class CsvOutputFormatter implements OutputFormatter {
+public class CsvOutputFormatter extends StreamingOutputFormatter {
+    
+    private static final byte[][] QUOTED_ESCAPES = ByteSink.escapeTable("\"", "\"\"");
+    private static final byte[] EMPTY = new byte[0];
+    
+    public CsvOutputFormatter() {
+        super("CSV Output: ");
+    }
     
     @Override
-    public String formatOutput(Object data) {
-        return "CSV Output: " + data.toString();
+    protected void writeBatch(ColumnBatch batch, ByteSink sink) {
+        List<String> names = batch.getColumnNames();
+        ColumnType[] types = new ColumnType[names.size()];
+        Object[] columns = columns(batch, names, types);
+        
+        for (int i = 0; i < names.size(); i++) {
+            if (i > 0) {
+                sink.write((byte) ',');
+            }
+            writeString(names.get(i), sink);
+        }
+        for (int row = 0; row < batch.size(); row++) {
+            sink.write((byte) '\n');
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    sink.write((byte) ',');
+                }
+                writeValue(types[i], columns[i], row, sink, EMPTY);
+            }
+        }
+    }
+    
+    @Override
+    protected void writeString(String text, ByteSink sink) {
+        if (!needsQuoting(text)) {
+            sink.writeText(text);
+            return;
+        }
+        sink.write((byte) '"');
+        sink.writeEscaped(text, QUOTED_ESCAPES);
+        sink.write((byte) '"');
+    }
+    
+    private static boolean needsQuoting(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
     }
     
     @Override
@@ -1,22 +1,29 @@
 package com.example.demo.godclassrefactoring.solutions.run2;
 
-import java.util.HashMap;
-import java.util.Map;
+import com.example.demo.godclassrefactoring.plugin.PluginRegistry;
 
 /**
  * Factory class for creating data loader instances.
  * Implements the Factory pattern to manage DataLoader creation.
+ * 
+ * Lookups read an immutable snapshot of the registrations without locking, so registering
+ * or unregistering at runtime is safe while requests are processed; implementations listed in
+ * {@code META-INF/services/com.example.demo.godclassrefactoring.solutions.run2.DataLoader} are
+ * registered at startup.
  */
 public class DataLoaderFactory {
     
-    private static final Map<String, DataLoader> loaders = new HashMap<>();
+    private static final PluginRegistry<DataLoader> loaders = new PluginRegistry<>(
+        DataLoader.class, "data type", DataLoader::getDataType, RegistrationGeneration::increment);
     
     static {
-        // Register available data loaders
-        registerLoader(new CsvDataLoader());
-        registerLoader(new JsonDataLoader());
-        registerLoader(new XmlDataLoader());
-        registerLoader(new DatabaseDataLoader());
+        // Register available data loaders; each is created on first use
+        loaders.registerLazy("csv", CsvDataLoader::new);
+        loaders.registerLazy("json", JsonDataLoader::new);
+        loaders.registerLazy("xml", XmlDataLoader::new);
+        loaders.registerLazy("database", DatabaseDataLoader::new);
+        loaders.registerLazy("binary", BinaryDataLoader::new);
+        loaders.loadServices(DataLoaderFactory.class.getClassLoader());
     }
     
     /**
@@ -25,7 +32,28 @@ public class DataLoaderFactory {
      * @param loader the data loader to register
      */
     public static void registerLoader(DataLoader loader) {
-        loaders.put(loader.getDataType().toLowerCase(), loader);
+        loaders.register(loader);
+    }
+    
+    /**
+     * Removes the data loader of a data type, so later requests for it fail.
+     * 
+     * @param dataType the data type to remove
+     * @return the removed data loader, or null if none was registered
+     */
+    public static DataLoader unregisterLoader(String dataType) {
+        return loaders.unregister(dataType);
+    }
+    
+    /**
+     * Registers the data loaders a class loader lists as services,
+     * e.g. one over a newly deployed jar.
+     * 
+     * @param classLoader the class loader to search
+     * @return the number of registered data loaders
+     */
+    public static int loadLoaderPlugins(ClassLoader classLoader) {
+        return loaders.loadServices(classLoader).size();
     }
     
     /**
@@ -36,11 +64,14 @@ public class DataLoaderFactory {
      * @throws IllegalArgumentException if the data type is not supported
      */
     public static DataLoader createLoader(String dataType) {
-        DataLoader loader = loaders.get(dataType.toLowerCase());
-        if (loader == null) {
-            throw new IllegalArgumentException("Unsupported data type: " + dataType);
-        }
-        return loader;
+        return loaders.require(dataType);
+    }
+    
+    /**
+     * Returns the registry behind this factory, for warm-up and startup reporting.
+     */
+    static PluginRegistry<DataLoader> registry() {
+        return loaders;
     }
     
     /**
@@ -49,6 +80,6 @@ public class DataLoaderFactory {
      * @return array of supported data types
      */
     public static String[] getAvailableDataTypes() {
-        return loaders.keySet().toArray(new String[0]);
+        return loaders.keys();
     }
 }
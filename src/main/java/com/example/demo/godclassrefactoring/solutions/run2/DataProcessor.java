@@ -20,4 +20,15 @@ public interface DataProcessor {
      * @return the processing type identifier
      */
     String getProcessingType();
+    
+    /**
+     * Whether batches of the input can be processed independently and their outputs simply
+     * concatenated. When a pipeline splits the input, processors that are not, such as
+     * aggregates, process the loaded batches merged into one.
+     * 
+     * @return true if processing each batch separately gives the same records as processing all of them
+     */
+    default boolean isPartitionSafe() {
+        return false;
+    }
 }
@@ -1,22 +1,28 @@
 package com.example.demo.godclassrefactoring.solutions.run2;
 
-import java.util.HashMap;
-import java.util.Map;
+import com.example.demo.godclassrefactoring.plugin.PluginRegistry;
 
 /**
  * Factory class for creating data processor instances.
  * Implements the Factory pattern to manage DataProcessor creation.
+ * 
+ * Lookups read an immutable snapshot of the registrations without locking, so registering
+ * or unregistering at runtime is safe while requests are processed; implementations listed in
+ * {@code META-INF/services/com.example.demo.godclassrefactoring.solutions.run2.DataProcessor} are
+ * registered at startup.
  */
 public class DataProcessorFactory {
     
-    private static final Map<String, DataProcessor> processors = new HashMap<>();
+    private static final PluginRegistry<DataProcessor> processors = new PluginRegistry<>(
+        DataProcessor.class, "processing type", DataProcessor::getProcessingType, RegistrationGeneration::increment);
     
     static {
-        // Register available data processors
-        registerProcessor(new AnalyticsProcessor());
-        registerProcessor(new TransformationProcessor());
-        registerProcessor(new ValidationProcessor());
-        registerProcessor(new AggregationProcessor());
+        // Register available data processors; each is created on first use
+        processors.registerLazy("analytics", AnalyticsProcessor::new);
+        processors.registerLazy("transformation", TransformationProcessor::new);
+        processors.registerLazy("validation", ValidationProcessor::new);
+        processors.registerLazy("aggregation", AggregationProcessor::new);
+        processors.loadServices(DataProcessorFactory.class.getClassLoader());
     }
     
     /**
@@ -25,7 +31,28 @@ public class DataProcessorFactory {
      * @param processor the data processor to register
      */
     public static void registerProcessor(DataProcessor processor) {
-        processors.put(processor.getProcessingType().toLowerCase(), processor);
+        processors.register(processor);
+    }
+    
+    /**
+     * Removes the data processor of a processing type, so later requests for it fail.
+     * 
+     * @param processingType the processing type to remove
+     * @return the removed data processor, or null if none was registered
+     */
+    public static DataProcessor unregisterProcessor(String processingType) {
+        return processors.unregister(processingType);
+    }
+    
+    /**
+     * Registers the data processors a class loader lists as services,
+     * e.g. one over a newly deployed jar.
+     * 
+     * @param classLoader the class loader to search
+     * @return the number of registered data processors
+     */
+    public static int loadProcessorPlugins(ClassLoader classLoader) {
+        return processors.loadServices(classLoader).size();
     }
     
     /**
@@ -36,11 +63,14 @@ public class DataProcessorFactory {
      * @throws IllegalArgumentException if the processing type is not supported
      */
     public static DataProcessor createProcessor(String processingType) {
-        DataProcessor processor = processors.get(processingType.toLowerCase());
-        if (processor == null) {
-            throw new IllegalArgumentException("Unsupported processing type: " + processingType);
-        }
-        return processor;
+        return processors.require(processingType);
+    }
+    
+    /**
+     * Returns the registry behind this factory, for warm-up and startup reporting.
+     */
+    static PluginRegistry<DataProcessor> registry() {
+        return processors;
     }
     
     /**
@@ -49,6 +79,6 @@ public class DataProcessorFactory {
      * @return array of supported processing types
      */
     public static String[] getAvailableProcessingTypes() {
-        return processors.keySet().toArray(new String[0]);
+        return processors.keys();
     }
 }
@@ -1,14 +1,68 @@
 package com.example.demo.godclassrefactoring.solutions.run2;
 
+import com.example.demo.godclassrefactoring.columnar.ColumnBatch;
+import com.example.demo.godclassrefactoring.columnar.ColumnType;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
 /**
  * Concrete implementation for database output formatting.
- * Handles database-specific output formatting logic.
+ * Columnar batches are written as a multi-row SQL INSERT into the "records" table, with
+ * column names as quoted identifiers. A batch without rows or columns becomes a comment.
  */
-public class DatabaseOutputFormatter implements OutputFormatter {
+public class DatabaseOutputFormatter extends StreamingOutputFormatter {
+    
+    private static final byte[][] LITERAL_ESCAPES = ByteSink.escapeTable("'", "''");
+    private static final byte[] NULL = bytes("NULL");
+    private static final byte[] ROW_SEPARATOR = bytes("),\n(");
+    private static final byte[] VALUE_SEPARATOR = bytes(", ");
+    
+    public DatabaseOutputFormatter() {
+        super("Database Output: ");
+    }
     
     @Override
-    public String formatOutput(Object data) {
-        return "Database Output: " + data.toString();
+    protected void writeBatch(ColumnBatch batch, ByteSink sink) {
+        List<String> names = batch.getColumnNames();
+        ColumnType[] types = new ColumnType[names.size()];
+        Object[] columns = columns(batch, names, types);
+        if (batch.size() == 0 || names.isEmpty()) {
+            sink.writeText("-- no records to insert");
+            return;
+        }
+        
+        String columnList = names.stream()
+            .map(DatabaseOutputFormatter::quoteIdentifier)
+            .collect(Collectors.joining(", "));
+        sink.writeText("INSERT INTO records (" + columnList + ") VALUES\n(");
+        for (int row = 0; row < batch.size(); row++) {
+            if (row > 0) {
+                sink.write(ROW_SEPARATOR);
+            }
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    sink.write(VALUE_SEPARATOR);
+                }
+                writeValue(types[i], columns[i], row, sink, NULL);
+            }
+        }
+        sink.write((byte) ')');
+        sink.write((byte) ';');
+    }
+    
+    @Override
+    protected void writeString(String text, ByteSink sink) {
+        sink.write((byte) '\'');
+        sink.writeEscaped(text, LITERAL_ESCAPES);
+        sink.write((byte) '\'');
+    }
+    
+    /**
+     * Quotes a column name as an SQL identifier, doubling embedded quotes.
+     */
+    private static String quoteIdentifier(String name) {
+        return '"' + name.replace("\"", "\"\"") + '"';
     }
     
     @Override
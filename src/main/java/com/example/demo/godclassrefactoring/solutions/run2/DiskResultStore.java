@@ -0,0 +1,174 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+import com.example.demo.godclassrefactoring.profiling.CacheEvent;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Result store keeping one file per result in a directory, so results survive restarts.
+ * Files are written to a temporary name and atomically renamed into place. The least recently
+ * used files are deleted once the directory holds more than a byte budget; entries found in
+ * the directory on startup are ordered by modification time. Keys must be valid file names.
+ * 
+ * The directory records the version of the code that wrote it. Results written by a different
+ * version may no longer match what the pipeline produces, so they are deleted on startup.
+ */
+public class DiskResultStore implements ResultStore {
+    
+    private static final String SUFFIX = ".result";
+    private static final String VERSION_FILE = "store.version";
+    // Running from a build directory instead of a jar has no manifest version
+    private static final String BUILD_VERSION = Objects.requireNonNullElse(
+        DiskResultStore.class.getPackage().getImplementationVersion(), "development");
+    
+    private final Path directory;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Long> sizes = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    
+    /**
+     * Creates a store for results of this build, indexing the results already in the directory.
+     * 
+     * @param directory the directory to keep results in; created if missing
+     * @param maxBytes the disk space the stored results may use
+     */
+    public DiskResultStore(Path directory, long maxBytes) {
+        this(directory, maxBytes, BUILD_VERSION);
+    }
+    
+    /**
+     * Creates a store, indexing the results already in the directory if they were written with
+     * the same version and deleting them otherwise.
+     * 
+     * @param directory the directory to keep results in; created if missing
+     * @param maxBytes the disk space the stored results may use
+     * @param version the version of the pipeline producing the results
+     */
+    public DiskResultStore(Path directory, long maxBytes, String version) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Store size must be positive: " + maxBytes);
+        }
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        try {
+            Files.createDirectories(directory);
+            List<Path> files = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+                stream.forEach(files::add);
+            }
+            Path versionFile = directory.resolve(VERSION_FILE);
+            if (!Files.exists(versionFile) || !Files.readString(versionFile).equals(version)) {
+                // Delete the stale results before recording the new version, so a crash in between cannot keep them
+                for (Path file : files) {
+                    Files.deleteIfExists(file);
+                }
+                files.clear();
+                Path temporary = Files.createTempFile(directory, VERSION_FILE, ".tmp");
+                Files.writeString(temporary, version);
+                Files.move(temporary, versionFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            files.sort(Comparator.comparing(DiskResultStore::lastModified));
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                long size = Files.size(file);
+                sizes.put(name.substring(0, name.length() - SUFFIX.length()), size);
+                bytes += size;
+            }
+            evict();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open result store: " + directory, e);
+        }
+    }
+    
+    @Override
+    public String get(String key) {
+        synchronized (this) {
+            if (sizes.get(key) == null) {
+                return null;
+            }
+        }
+        try {
+            return new String(Files.readAllBytes(file(key)), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            // Evicted concurrently
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read result: " + key, e);
+        }
+    }
+    
+    @Override
+    public void put(String key, String result) {
+        byte[] encoded = result.getBytes(StandardCharsets.UTF_8);
+        if (encoded.length > maxBytes) {
+            return;
+        }
+        try {
+            Path temporary = Files.createTempFile(directory, key, ".tmp");
+            Files.write(temporary, encoded);
+            synchronized (this) {
+                Files.move(temporary, file(key), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                Long previous = sizes.put(key, (long) encoded.length);
+                bytes += encoded.length - (previous == null ? 0 : previous);
+                evict();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to store result: " + key, e);
+        }
+    }
+    
+    @Override
+    public synchronized void clear() {
+        try {
+            for (String key : sizes.keySet()) {
+                Files.deleteIfExists(file(key));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to clear result store: " + directory, e);
+        }
+        sizes.clear();
+        bytes = 0;
+    }
+    
+    public synchronized int size() {
+        return sizes.size();
+    }
+    
+    private void evict() throws IOException {
+        Iterator<Map.Entry<String, Long>> eldest = sizes.entrySet().iterator();
+        while (bytes > maxBytes) {
+            Map.Entry<String, Long> entry = eldest.next();
+            Files.deleteIfExists(file(entry.getKey()));
+            bytes -= entry.getValue();
+            eldest.remove();
+            CacheEvent.emit("disk-result-store", CacheEvent.EVICT, entry.getKey(), entry.getValue());
+        }
+    }
+    
+    private Path file(String key) {
+        return directory.resolve(key + SUFFIX);
+    }
+    
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Threading model used to run asynchronous processing requests.
+ */
+public enum ExecutorMode {
+    
+    /**
+     * A fixed pool of platform threads; requests queue once every thread is busy.
+     */
+    PLATFORM {
+        @Override
+        public ExecutorService createExecutor(int platformThreads) {
+            AtomicInteger counter = new AtomicInteger();
+            return Executors.newFixedThreadPool(platformThreads, task -> {
+                Thread thread = new Thread(task, "order-request-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        
+        @Override
+        public boolean isSupported() {
+            return true;
+        }
+    },
+    
+    /**
+     * One virtual thread per request, so requests blocked on I/O do not hold a carrier thread.
+     * Requires a Java 21+ runtime.
+     */
+    VIRTUAL {
+        @Override
+        public ExecutorService createExecutor(int platformThreads) {
+            if (VIRTUAL_EXECUTOR_FACTORY == null) {
+                throw new UnsupportedOperationException(
+                    "Virtual threads require Java 21+, running on " + System.getProperty("java.version"));
+            }
+            try {
+                return (ExecutorService) VIRTUAL_EXECUTOR_FACTORY.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Unable to create virtual thread executor", e);
+            }
+        }
+        
+        @Override
+        public boolean isSupported() {
+            return VIRTUAL_EXECUTOR_FACTORY != null;
+        }
+    };
+    
+    // Looked up reflectively so the build keeps targeting Java 17
+    private static final Method VIRTUAL_EXECUTOR_FACTORY = findVirtualExecutorFactory();
+    
+    /**
+     * Creates an executor for this mode.
+     *
+     * @param platformThreads the pool size, used by {@link #PLATFORM} only
+     * @return a new executor service
+     * @throws UnsupportedOperationException if the mode is not supported by the running JVM
+     */
+    public abstract ExecutorService createExecutor(int platformThreads);
+    
+    /**
+     * Returns whether the running JVM supports this mode.
+     *
+     * @return true if {@link #createExecutor(int)} can be called
+     */
+    public abstract boolean isSupported();
+    
+    private static Method findVirtualExecutorFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
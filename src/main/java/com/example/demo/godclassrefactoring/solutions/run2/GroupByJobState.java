@@ -0,0 +1,57 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+import com.example.demo.godclassrefactoring.columnar.ColumnBatch;
+import com.example.demo.godclassrefactoring.columnar.GroupByAggregator;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Job state that aggregates a value column per key over all processed columnar batches and
+ * results in their {@link com.example.demo.godclassrefactoring.columnar.GroupStatistics}.
+ */
+public class GroupByJobState implements JobState {
+    
+    private final GroupByAggregator aggregator;
+    
+    /**
+     * Creates an empty state.
+     * 
+     * @param keyColumn the LONG or STRING column to group by
+     * @param valueColumn the LONG or DOUBLE column to aggregate
+     */
+    public GroupByJobState(String keyColumn, String valueColumn) {
+        this.aggregator = new GroupByAggregator(keyColumn, valueColumn);
+    }
+    
+    @Override
+    public void add(Object processedBatch) {
+        if (processedBatch instanceof ColumnBatch) {
+            aggregator.add((ColumnBatch) processedBatch);
+        } else if (processedBatch instanceof List) {
+            for (Object batch : (List<?>) processedBatch) {
+                add(batch);
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported batch type for aggregation: "
+                + processedBatch.getClass().getSimpleName() + "; the data type must load columnar batches");
+        }
+    }
+    
+    @Override
+    public Object result() {
+        return aggregator.result();
+    }
+    
+    @Override
+    public void writeTo(DataOutputStream out) throws IOException {
+        aggregator.writeGroups(out);
+    }
+    
+    @Override
+    public void readFrom(DataInputStream in) throws IOException {
+        aggregator.readGroups(in);
+    }
+}
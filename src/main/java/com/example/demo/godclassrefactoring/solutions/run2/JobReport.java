@@ -0,0 +1,77 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+/**
+ * Outcome of a {@link CheckpointedJob} run, including the time spent writing checkpoints.
+ */
+public final class JobReport {
+    
+    private final int resumedFromRecord;
+    private final int recordsProcessed;
+    private final int batchesProcessed;
+    private final int checkpoints;
+    private final long checkpointBytes;
+    private final long checkpointNanos;
+    private final long elapsedNanos;
+    
+    JobReport(int resumedFromRecord, int recordsProcessed, int batchesProcessed, int checkpoints,
+              long checkpointBytes, long checkpointNanos, long elapsedNanos) {
+        this.resumedFromRecord = resumedFromRecord;
+        this.recordsProcessed = recordsProcessed;
+        this.batchesProcessed = batchesProcessed;
+        this.checkpoints = checkpoints;
+        this.checkpointBytes = checkpointBytes;
+        this.checkpointNanos = checkpointNanos;
+        this.elapsedNanos = elapsedNanos;
+    }
+    
+    /**
+     * Returns the input offset the run started at: 0 for a fresh run, otherwise the offset of
+     * the checkpoint it resumed from.
+     * 
+     * @return the first record processed
+     */
+    public int getResumedFromRecord() {
+        return resumedFromRecord;
+    }
+    
+    public int getRecordsProcessed() {
+        return recordsProcessed;
+    }
+    
+    public int getBatchesProcessed() {
+        return batchesProcessed;
+    }
+    
+    public int getCheckpoints() {
+        return checkpoints;
+    }
+    
+    public long getCheckpointBytes() {
+        return checkpointBytes;
+    }
+    
+    public long getCheckpointNanos() {
+        return checkpointNanos;
+    }
+    
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+    
+    /**
+     * Returns the share of the run spent writing checkpoints, including syncing the output.
+     * 
+     * @return the overhead between 0 and 1
+     */
+    public double getCheckpointOverhead() {
+        return elapsedNanos == 0 ? 0.0 : (double) checkpointNanos / elapsedNanos;
+    }
+    
+    @Override
+    public String toString() {
+        return "JobReport{resumedFrom=" + resumedFromRecord + ", records=" + recordsProcessed
+            + ", batches=" + batchesProcessed + ", checkpoints=" + checkpoints
+            + ", checkpointBytes=" + checkpointBytes + ", checkpointMs=" + checkpointNanos / 1_000_000
+            + ", elapsedMs=" + elapsedNanos / 1_000_000 + "}";
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Partial result of a {@link CheckpointedJob} that folds in processed batches one at a time
+ * and is saved with every checkpoint, e.g. running aggregation totals.
+ */
+public interface JobState {
+    
+    /**
+     * Folds a processed batch into the state.
+     * 
+     * @param processedBatch the output of the data processor for one batch
+     */
+    void add(Object processedBatch);
+    
+    /**
+     * Returns the final result to format once all batches have been added.
+     * 
+     * @return the result data
+     */
+    Object result();
+    
+    /**
+     * Writes the state into a checkpoint.
+     * 
+     * @param out the checkpoint being written
+     * @throws IOException if writing fails
+     */
+    void writeTo(DataOutputStream out) throws IOException;
+    
+    /**
+     * Restores the state of a new instance from a checkpoint.
+     * 
+     * @param in the checkpoint being read
+     * @throws IOException if reading fails
+     */
+    void readFrom(DataInputStream in) throws IOException;
+}
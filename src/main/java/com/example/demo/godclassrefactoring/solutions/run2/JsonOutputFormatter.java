@@ -1,14 +1,95 @@
 package com.example.demo.godclassrefactoring.solutions.run2;
 
+import com.example.demo.godclassrefactoring.columnar.ColumnBatch;
+import com.example.demo.godclassrefactoring.columnar.ColumnType;
+
+import java.util.List;
+
 /**
  * Concrete implementation for JSON output formatting.
- * Handles JSON-specific output formatting logic.
+ * Columnar batches are written as an array with one object per row.
  */
-public class JsonOutputFormatter implements OutputFormatter {
+public class JsonOutputFormatter extends StreamingOutputFormatter {
+    
+    private static final byte[][] STRING_ESCAPES = jsonEscapes();
+    private static final byte[] NULL = bytes("null");
+    
+    public JsonOutputFormatter() {
+        super("JSON Output: ");
+    }
+    
+    @Override
+    protected void writeBatch(ColumnBatch batch, ByteSink sink) {
+        List<String> names = batch.getColumnNames();
+        ColumnType[] types = new ColumnType[names.size()];
+        Object[] columns = columns(batch, names, types);
+        // Encode each "name": once per batch instead of once per row
+        byte[][] keys = new byte[names.size()][];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = bytes((i == 0 ? "\"" : ",\"") + escape(names.get(i)) + "\":");
+        }
+        
+        sink.write((byte) '[');
+        for (int row = 0; row < batch.size(); row++) {
+            if (row > 0) {
+                sink.write((byte) ',');
+            }
+            sink.write((byte) '{');
+            for (int i = 0; i < columns.length; i++) {
+                sink.write(keys[i]);
+                writeValue(types[i], columns[i], row, sink, NULL);
+            }
+            sink.write((byte) '}');
+        }
+        sink.write((byte) ']');
+    }
     
     @Override
-    public String formatOutput(Object data) {
-        return "JSON Output: " + data.toString();
+    protected void writeString(String text, ByteSink sink) {
+        sink.write((byte) '"');
+        sink.writeEscaped(text, STRING_ESCAPES);
+        sink.write((byte) '"');
+    }
+    
+    private static String escape(String name) {
+        StringBuilder escaped = new StringBuilder();
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            byte[] escape = c < 128 ? STRING_ESCAPES[c] : null;
+            escaped.append(escape != null ? new String(escape) : String.valueOf(c));
+        }
+        return escaped.toString();
+    }
+    
+    private static byte[][] jsonEscapes() {
+        StringBuilder characters = new StringBuilder("\"\\");
+        String[] replacements = new String[34];
+        replacements[0] = "\\\"";
+        replacements[1] = "\\\\";
+        for (char c = 0; c < 32; c++) {
+            characters.append(c);
+            switch (c) {
+                case '\n':
+                    replacements[c + 2] = "\\n";
+                    break;
+                case '\r':
+                    replacements[c + 2] = "\\r";
+                    break;
+                case '\t':
+                    replacements[c + 2] = "\\t";
+                    break;
+                case '\b':
+                    replacements[c + 2] = "\\b";
+                    break;
+                case '\f':
+                    replacements[c + 2] = "\\f";
+                    break;
+                default:
+                    replacements[c + 2] = String.format("\\u%04x", (int) c);
+                    break;
+            }
+        }
+        return ByteSink.escapeTable(characters.toString(), replacements);
     }
     
     @Override
@@ -0,0 +1,142 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with power-of-two buckets from 1 microsecond to about 67 seconds.
+ * Recording a value is a bucket index computation and one {@link LongAdder} increment, so
+ * concurrent recorders do not contend on a shared counter. Bucket boundaries are fixed, which
+ * keeps histograms of different stages and processes directly comparable.
+ */
+public final class LatencyHistogram {
+    
+    private static final long FIRST_BOUND_NANOS = 1_000;
+    private static final int BOUNDED_BUCKETS = 27;
+    private static final String[] BOUND_LABELS = new String[BOUNDED_BUCKETS];
+    
+    static {
+        for (int i = 0; i < BOUNDED_BUCKETS; i++) {
+            BOUND_LABELS[i] = BigDecimal.valueOf(upperBoundNanos(i), 9).stripTrailingZeros().toPlainString();
+        }
+    }
+    
+    private final LongAdder[] buckets = new LongAdder[BOUNDED_BUCKETS + 1];
+    private final LongAdder sumNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+    
+    /**
+     * Records one latency.
+     *
+     * @param nanos the latency in nanoseconds, e.g. a difference of {@link System#nanoTime()} values
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets[bucketIndex(nanos)].increment();
+        sumNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+    
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+    
+    public long getSumNanos() {
+        return sumNanos.sum();
+    }
+    
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+    
+    /**
+     * Estimates a percentile as the upper bound of the bucket it falls in, or the maximum for
+     * the last bucket, so the estimate is never below the true value and at most twice it.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the estimated latency in nanoseconds, or 0 if nothing was recorded
+     */
+    public long getPercentileNanos(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+        }
+        long[] counts = bucketCounts();
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BOUNDED_BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBoundNanos(i), getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+    
+    /**
+     * Writes the histogram as the bucket, sum and count samples of a Prometheus histogram in seconds.
+     *
+     * @param out the destination
+     * @param name the metric name
+     * @param labels the labels of every sample, without braces, e.g. {@code stage="load"}
+     * @throws IOException if the destination fails
+     */
+    void writePrometheus(Appendable out, String name, String labels) throws IOException {
+        long[] counts = bucketCounts();
+        long cumulative = 0;
+        for (int i = 0; i < BOUNDED_BUCKETS; i++) {
+            cumulative += counts[i];
+            out.append(name).append("_bucket{").append(labels).append(",le=\"").append(BOUND_LABELS[i])
+                .append("\"} ").append(Long.toString(cumulative)).append('\n');
+        }
+        cumulative += counts[BOUNDED_BUCKETS];
+        out.append(name).append("_bucket{").append(labels).append(",le=\"+Inf\"} ")
+            .append(Long.toString(cumulative)).append('\n');
+        out.append(name).append("_sum{").append(labels).append("} ")
+            .append(BigDecimal.valueOf(getSumNanos(), 9).toPlainString()).append('\n');
+        out.append(name).append("_count{").append(labels).append("} ").append(Long.toString(cumulative)).append('\n');
+    }
+    
+    private long[] bucketCounts() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+    
+    /**
+     * Returns the index of the smallest bucket whose upper bound is at least the value.
+     */
+    static int bucketIndex(long nanos) {
+        if (nanos <= FIRST_BOUND_NANOS) {
+            return 0;
+        }
+        int index = 64 - Long.numberOfLeadingZeros((nanos - 1) / FIRST_BOUND_NANOS);
+        return Math.min(index, BOUNDED_BUCKETS);
+    }
+    
+    static long upperBoundNanos(int index) {
+        return FIRST_BOUND_NANOS << index;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+import com.example.demo.godclassrefactoring.profiling.CacheEvent;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * On-heap result store that evicts the least recently used results once their estimated
+ * size exceeds a byte budget.
+ */
+public class MemoryResultStore implements ResultStore {
+    
+    // Estimated object headers of a key or result string; characters count two bytes each
+    private static final int ENTRY_OVERHEAD_BYTES = 64;
+    
+    private final long maxBytes;
+    private final LinkedHashMap<String, String> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    
+    /**
+     * Creates a store.
+     * 
+     * @param maxBytes the estimated heap the stored results may use
+     */
+    public MemoryResultStore(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Store size must be positive: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+    }
+    
+    @Override
+    public synchronized String get(String key) {
+        return entries.get(key);
+    }
+    
+    @Override
+    public synchronized void put(String key, String result) {
+        long size = sizeOf(key, result);
+        if (size > maxBytes) {
+            return;
+        }
+        String previous = entries.put(key, result);
+        if (previous != null) {
+            bytes -= sizeOf(key, previous);
+        }
+        bytes += size;
+        Iterator<Map.Entry<String, String>> eldest = entries.entrySet().iterator();
+        while (bytes > maxBytes) {
+            Map.Entry<String, String> entry = eldest.next();
+            long evicted = sizeOf(entry.getKey(), entry.getValue());
+            bytes -= evicted;
+            eldest.remove();
+            CacheEvent.emit("memory-result-store", CacheEvent.EVICT, entry.getKey(), evicted);
+        }
+    }
+    
+    @Override
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+    
+    public synchronized int size() {
+        return entries.size();
+    }
+    
+    private static long sizeOf(String key, String result) {
+        return 2 * ENTRY_OVERHEAD_BYTES + 2L * (key.length() + result.length());
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Registry of {@link StageMetrics} keyed by data type, processing type and stage name. Lookups
+ * of existing metrics take no locks and allocate nothing, like {@link PipelinePlanCache}, and
+ * recording into the returned handles is lock-free, so instrumentation costs nanoseconds.
+ * 
+ * Snapshots are exported in the Prometheus text exposition format, either to a file or from
+ * a local HTTP endpoint serving {@code /metrics}. The batch sizes chosen by registered
+ * {@link AdaptiveBatchSizer}s are exported as gauges, with the per-stage measurements they are
+ * based on.
+ */
+public class MetricsRegistry {
+    
+    public static final String LOAD = "load";
+    public static final String PROCESS = "process";
+    public static final String FORMAT = "format";
+    public static final String TOTAL = "total";
+    
+    private static final String PREFIX = "order_processor_";
+    
+    private final ConcurrentMap<String, ConcurrentMap<String, ConcurrentMap<String, StageMetrics>>> stages =
+        new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ConcurrentMap<String, PipelineMetrics>> pipelines = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<AdaptiveBatchSizer> batchSizers = new CopyOnWriteArrayList<>();
+    
+    /**
+     * Returns the metrics of a stage, creating them on first use.
+     *
+     * @param dataType the type of data processed
+     * @param processingType the type of processing applied
+     * @param stage the stage name, e.g. {@link #LOAD}
+     * @return the metrics of the stage
+     */
+    public StageMetrics stage(String dataType, String processingType, String stage) {
+        ConcurrentMap<String, ConcurrentMap<String, StageMetrics>> byProcessingType = stages.get(dataType);
+        ConcurrentMap<String, StageMetrics> byStage = byProcessingType == null ? null : byProcessingType.get(processingType);
+        StageMetrics metrics = byStage == null ? null : byStage.get(stage);
+        if (metrics != null) {
+            return metrics;
+        }
+        return stages.computeIfAbsent(dataType, type -> new ConcurrentHashMap<>())
+            .computeIfAbsent(processingType, type -> new ConcurrentHashMap<>())
+            .computeIfAbsent(stage, name -> new StageMetrics(dataType, processingType, name));
+    }
+    
+    /**
+     * Returns the load, process, format and total metrics of a combination, creating them on first use.
+     *
+     * @param dataType the type of data processed
+     * @param processingType the type of processing applied
+     * @return the metrics of the pipeline
+     */
+    public PipelineMetrics pipeline(String dataType, String processingType) {
+        ConcurrentMap<String, PipelineMetrics> byProcessingType = pipelines.get(dataType);
+        PipelineMetrics metrics = byProcessingType == null ? null : byProcessingType.get(processingType);
+        if (metrics != null) {
+            return metrics;
+        }
+        return pipelines.computeIfAbsent(dataType, type -> new ConcurrentHashMap<>())
+            .computeIfAbsent(processingType, type -> new PipelineMetrics(this, dataType, processingType));
+    }
+    
+    /**
+     * Exports the batch sizes chosen by a sizer with every snapshot.
+     *
+     * @param sizer the sizer to export
+     */
+    public void register(AdaptiveBatchSizer sizer) {
+        batchSizers.addIfAbsent(sizer);
+    }
+    
+    /**
+     * Returns all stage metrics, ordered by data type, processing type and stage.
+     *
+     * @return the stage metrics
+     */
+    public List<StageMetrics> getStages() {
+        List<StageMetrics> all = new ArrayList<>();
+        for (Map<String, ConcurrentMap<String, StageMetrics>> byProcessingType : stages.values()) {
+            for (Map<String, StageMetrics> byStage : byProcessingType.values()) {
+                all.addAll(byStage.values());
+            }
+        }
+        all.sort(Comparator.comparing(StageMetrics::getDataType).thenComparing(StageMetrics::getProcessingType)
+            .thenComparing(StageMetrics::getStage));
+        return all;
+    }
+    
+    /**
+     * Writes a snapshot of all metrics in the Prometheus text exposition format.
+     *
+     * @param out the destination
+     * @throws IOException if the destination fails
+     */
+    public void writePrometheus(Appendable out) throws IOException {
+        List<StageMetrics> all = getStages();
+        out.append("# HELP ").append(PREFIX).append("records_total Records handled per stage.\n");
+        out.append("# TYPE ").append(PREFIX).append("records_total counter\n");
+        for (StageMetrics metrics : all) {
+            out.append(PREFIX).append("records_total{").append(labels(metrics)).append("} ")
+                .append(Long.toString(metrics.getRecords())).append('\n');
+        }
+        out.append("# HELP ").append(PREFIX).append("failures_total Failed runs per stage.\n");
+        out.append("# TYPE ").append(PREFIX).append("failures_total counter\n");
+        for (StageMetrics metrics : all) {
+            out.append(PREFIX).append("failures_total{").append(labels(metrics)).append("} ")
+                .append(Long.toString(metrics.getFailures())).append('\n');
+        }
+        out.append("# HELP ").append(PREFIX).append("stage_duration_seconds Time per run of a stage.\n");
+        out.append("# TYPE ").append(PREFIX).append("stage_duration_seconds histogram\n");
+        for (StageMetrics metrics : all) {
+            metrics.getLatency().writePrometheus(out, PREFIX + "stage_duration_seconds", labels(metrics));
+        }
+        if (!batchSizers.isEmpty()) {
+            writeBatchSizes(out);
+        }
+    }
+    
+    private void writeBatchSizes(Appendable out) throws IOException {
+        List<AdaptiveBatchSizer.Controller> controllers = new ArrayList<>();
+        for (AdaptiveBatchSizer sizer : batchSizers) {
+            controllers.addAll(sizer.getControllers());
+        }
+        out.append("# HELP ").append(PREFIX).append("batch_size Batch size chosen by the adaptive batch sizer.\n");
+        out.append("# TYPE ").append(PREFIX).append("batch_size gauge\n");
+        for (AdaptiveBatchSizer.Controller controller : controllers) {
+            out.append(PREFIX).append("batch_size{").append(labels(controller)).append("} ")
+                .append(Integer.toString(controller.getBatchSize())).append('\n');
+        }
+        out.append("# HELP ").append(PREFIX).append("batch_throughput Records per second at the batch size.\n");
+        out.append("# TYPE ").append(PREFIX).append("batch_throughput gauge\n");
+        for (AdaptiveBatchSizer.Controller controller : controllers) {
+            out.append(PREFIX).append("batch_throughput{").append(labels(controller)).append("} ")
+                .append(Double.toString(controller.getThroughput())).append('\n');
+        }
+        out.append("# HELP ").append(PREFIX).append("batch_record_seconds Smoothed time per record of a stage.\n");
+        out.append("# TYPE ").append(PREFIX).append("batch_record_seconds gauge\n");
+        for (AdaptiveBatchSizer.Controller controller : controllers) {
+            for (String stage : AdaptiveBatchSizer.STAGES) {
+                out.append(PREFIX).append("batch_record_seconds{").append(labels(controller, stage)).append("} ")
+                    .append(Double.toString(controller.getNanosPerRecord(stage) / 1e9)).append('\n');
+            }
+        }
+        out.append("# HELP ").append(PREFIX).append("batch_record_allocated_bytes Bytes allocated per record.\n");
+        out.append("# TYPE ").append(PREFIX).append("batch_record_allocated_bytes gauge\n");
+        for (AdaptiveBatchSizer.Controller controller : controllers) {
+            for (String stage : AdaptiveBatchSizer.STAGES) {
+                out.append(PREFIX).append("batch_record_allocated_bytes{").append(labels(controller, stage))
+                    .append("} ").append(Double.toString(controller.getBytesPerRecord(stage))).append('\n');
+            }
+        }
+        out.append("# HELP ").append(PREFIX).append("batch_queue_depth Smoothed batches waiting before a stage.\n");
+        out.append("# TYPE ").append(PREFIX).append("batch_queue_depth gauge\n");
+        for (AdaptiveBatchSizer.Controller controller : controllers) {
+            for (String stage : AdaptiveBatchSizer.STAGES) {
+                out.append(PREFIX).append("batch_queue_depth{").append(labels(controller, stage)).append("} ")
+                    .append(Double.toString(controller.getQueueDepth(stage))).append('\n');
+            }
+        }
+    }
+    
+    /**
+     * Returns a snapshot of all metrics in the Prometheus text exposition format.
+     *
+     * @return the snapshot
+     */
+    public String toPrometheusText() {
+        StringBuilder text = new StringBuilder();
+        try {
+            writePrometheus(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return text.toString();
+    }
+    
+    /**
+     * Writes a snapshot to a file, e.g. for the node exporter's textfile collector. The snapshot
+     * is written to a temporary file and atomically renamed, so readers never see a partial one.
+     *
+     * @param file the destination file
+     * @throws UncheckedIOException if the file cannot be written
+     */
+    public void exportTo(Path file) {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+                writePrometheus(writer);
+            }
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to export metrics to " + file, e);
+        }
+    }
+    
+    /**
+     * Starts an HTTP server serving snapshots at {@code /metrics}. Stop it with
+     * {@link HttpServer#stop(int)}.
+     *
+     * @param address the address to listen on, e.g. a loopback address; port 0 picks an ephemeral port
+     * @return the started server
+     * @throws UncheckedIOException if the server cannot listen on the address
+     */
+    public HttpServer startHttpEndpoint(InetSocketAddress address) {
+        HttpServer server;
+        try {
+            server = HttpServer.create(address, 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to start metrics endpoint on " + address, e);
+        }
+        server.createContext("/metrics", exchange -> {
+            byte[] body = toPrometheusText().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        return server;
+    }
+    
+    private static String labels(StageMetrics metrics) {
+        return "data_type=\"" + escape(metrics.getDataType()) + "\",processing_type=\""
+            + escape(metrics.getProcessingType()) + "\",stage=\"" + escape(metrics.getStage()) + "\"";
+    }
+    
+    private static String labels(AdaptiveBatchSizer.Controller controller) {
+        return "data_type=\"" + escape(controller.getDataType()) + "\",processing_type=\""
+            + escape(controller.getProcessingType()) + "\"";
+    }
+    
+    private static String labels(AdaptiveBatchSizer.Controller controller, String stage) {
+        return labels(controller) + ",stage=\"" + escape(stage) + "\"";
+    }
+    
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -14,6 +14,18 @@ public interface OutputFormatter {
      */
     String formatOutput(Object data);
     
+    /**
+     * Writes the formatted output into a sink, without building the whole output as a string.
+     * For text formats the bytes are the UTF-8 encoding of {@link #formatOutput}; binary
+     * formats may write their raw encoding instead.
+     * 
+     * @param data the processed data to be formatted
+     * @param sink the destination of the encoded output
+     */
+    default void writeTo(Object data, ByteSink sink) {
+        sink.writeText(formatOutput(data));
+    }
+    
     /**
      * Returns the format type this formatter handles.
      * 
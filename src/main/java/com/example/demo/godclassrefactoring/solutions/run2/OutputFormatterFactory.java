@@ -1,22 +1,29 @@
 package com.example.demo.godclassrefactoring.solutions.run2;
 
-import java.util.HashMap;
-import java.util.Map;
+import com.example.demo.godclassrefactoring.plugin.PluginRegistry;
 
 /**
  * Factory class for creating output formatter instances.
  * Implements the Factory pattern to manage OutputFormatter creation.
+ * 
+ * Lookups read an immutable snapshot of the registrations without locking, so registering
+ * or unregistering at runtime is safe while requests are processed; implementations listed in
+ * {@code META-INF/services/com.example.demo.godclassrefactoring.solutions.run2.OutputFormatter} are
+ * registered at startup.
  */
 public class OutputFormatterFactory {
     
-    private static final Map<String, OutputFormatter> formatters = new HashMap<>();
+    private static final PluginRegistry<OutputFormatter> formatters = new PluginRegistry<>(
+        OutputFormatter.class, "format type", OutputFormatter::getFormatType, RegistrationGeneration::increment);
     
     static {
-        // Register available output formatters
-        registerFormatter(new CsvOutputFormatter());
-        registerFormatter(new JsonOutputFormatter());
-        registerFormatter(new XmlOutputFormatter());
-        registerFormatter(new DatabaseOutputFormatter());
+        // Register available output formatters; each is created on first use
+        formatters.registerLazy("csv", CsvOutputFormatter::new);
+        formatters.registerLazy("json", JsonOutputFormatter::new);
+        formatters.registerLazy("xml", XmlOutputFormatter::new);
+        formatters.registerLazy("database", DatabaseOutputFormatter::new);
+        formatters.registerLazy("binary", BinaryOutputFormatter::new);
+        formatters.loadServices(OutputFormatterFactory.class.getClassLoader());
     }
     
     /**
@@ -25,7 +32,28 @@ public class OutputFormatterFactory {
      * @param formatter the output formatter to register
      */
     public static void registerFormatter(OutputFormatter formatter) {
-        formatters.put(formatter.getFormatType().toLowerCase(), formatter);
+        formatters.register(formatter);
+    }
+    
+    /**
+     * Removes the output formatter of a format type, so later requests for it fail.
+     * 
+     * @param formatType the format type to remove
+     * @return the removed output formatter, or null if none was registered
+     */
+    public static OutputFormatter unregisterFormatter(String formatType) {
+        return formatters.unregister(formatType);
+    }
+    
+    /**
+     * Registers the output formatters a class loader lists as services,
+     * e.g. one over a newly deployed jar.
+     * 
+     * @param classLoader the class loader to search
+     * @return the number of registered output formatters
+     */
+    public static int loadFormatterPlugins(ClassLoader classLoader) {
+        return formatters.loadServices(classLoader).size();
     }
     
     /**
@@ -36,11 +64,14 @@ public class OutputFormatterFactory {
      * @throws IllegalArgumentException if the format type is not supported
      */
     public static OutputFormatter createFormatter(String formatType) {
-        OutputFormatter formatter = formatters.get(formatType.toLowerCase());
-        if (formatter == null) {
-            throw new IllegalArgumentException("Unsupported format type: " + formatType);
-        }
-        return formatter;
+        return formatters.require(formatType);
+    }
+    
+    /**
+     * Returns the registry behind this factory, for warm-up and startup reporting.
+     */
+    static PluginRegistry<OutputFormatter> registry() {
+        return formatters;
     }
     
     /**
@@ -49,6 +80,6 @@ public class OutputFormatterFactory {
      * @return array of supported format types
      */
     public static String[] getAvailableFormatTypes() {
-        return formatters.keySet().toArray(new String[0]);
+        return formatters.keys();
     }
 }
@@ -0,0 +1,36 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+/**
+ * The stage metrics of one combination of data type and processing type: load, process and
+ * format, plus the whole call including plan lookup.
+ */
+public final class PipelineMetrics {
+    
+    private final StageMetrics load;
+    private final StageMetrics process;
+    private final StageMetrics format;
+    private final StageMetrics total;
+    
+    PipelineMetrics(MetricsRegistry registry, String dataType, String processingType) {
+        this.load = registry.stage(dataType, processingType, MetricsRegistry.LOAD);
+        this.process = registry.stage(dataType, processingType, MetricsRegistry.PROCESS);
+        this.format = registry.stage(dataType, processingType, MetricsRegistry.FORMAT);
+        this.total = registry.stage(dataType, processingType, MetricsRegistry.TOTAL);
+    }
+    
+    public StageMetrics getLoad() {
+        return load;
+    }
+    
+    public StageMetrics getProcess() {
+        return process;
+    }
+    
+    public StageMetrics getFormat() {
+        return format;
+    }
+    
+    public StageMetrics getTotal() {
+        return total;
+    }
+}
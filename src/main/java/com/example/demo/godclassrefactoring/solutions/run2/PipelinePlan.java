@@ -0,0 +1,219 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+import com.example.demo.godclassrefactoring.buffer.BufferArena;
+import com.example.demo.godclassrefactoring.profiling.PipelineStageEvent;
+
+import java.util.List;
+
+/**
+ * Immutable, pre-bound processing pipeline for one combination of data type,
+ * processing type and output format. Executing a plan performs no factory lookups.
+ * 
+ * Each execution checks that the stages returned every buffer they borrowed from the
+ * thread's {@link BufferArena}; with leak detection on, a leak fails the execution.
+ */
+public final class PipelinePlan {
+    
+    private final DataLoader loader;
+    private final DataProcessor processor;
+    private final OutputFormatter formatter;
+    
+    /**
+     * Creates a plan from already resolved pipeline components.
+     * 
+     * @param loader the data loader
+     * @param processor the data processor
+     * @param formatter the output formatter
+     */
+    public PipelinePlan(DataLoader loader, DataProcessor processor, OutputFormatter formatter) {
+        this.loader = loader;
+        this.processor = processor;
+        this.formatter = formatter;
+    }
+    
+    /**
+     * Resolves the pipeline components through the factories.
+     * 
+     * @param dataType the type of data to load
+     * @param processingType the type of processing to apply
+     * @param formatType the output format
+     * @return the compiled plan
+     * @throws IllegalArgumentException if any of the types is not supported
+     */
+    public static PipelinePlan compile(String dataType, String processingType, String formatType) {
+        return new PipelinePlan(DataLoaderFactory.createLoader(dataType),
+                                DataProcessorFactory.createProcessor(processingType),
+                                OutputFormatterFactory.createFormatter(formatType));
+    }
+    
+    /**
+     * Runs the raw data through load, process and format.
+     * 
+     * @param rawData the raw data to process
+     * @return the formatted output string
+     */
+    public String execute(List<String> rawData) {
+        BufferArena arena = BufferArena.current();
+        int outstanding = arena.getOutstanding();
+        Object loadedData = load(rawData);
+        Object processedData = process(loadedData, rawData.size());
+        String output = format(processedData, rawData.size());
+        arena.checkReturned(outstanding, this);
+        return output;
+    }
+    
+    /**
+     * Runs the raw data through load and process, then streams the formatted output into a
+     * sink instead of returning it as a string. The sink is flushed before returning.
+     * 
+     * @param rawData the raw data to process
+     * @param sink the destination of the formatted output
+     */
+    public void executeTo(List<String> rawData, ByteSink sink) {
+        BufferArena arena = BufferArena.current();
+        int outstanding = arena.getOutstanding();
+        Object loadedData = load(rawData);
+        Object processedData = process(loadedData, rawData.size());
+        writeTo(processedData, rawData.size(), sink);
+        sink.flush();
+        arena.checkReturned(outstanding, this);
+    }
+    
+    /**
+     * Runs the raw data through load, process and format like {@link #execute(List)}, recording
+     * the time and record count of each stage.
+     * 
+     * @param rawData the raw data to process
+     * @param metrics the metrics to record the stages into
+     * @return the formatted output string
+     */
+    public String execute(List<String> rawData, PipelineMetrics metrics) {
+        BufferArena arena = BufferArena.current();
+        int outstanding = arena.getOutstanding();
+        long start = System.nanoTime();
+        Object loadedData = load(rawData);
+        long loaded = System.nanoTime();
+        metrics.getLoad().record(loaded - start, rawData.size());
+        Object processedData = process(loadedData, rawData.size());
+        long processed = System.nanoTime();
+        metrics.getProcess().record(processed - loaded, rawData.size());
+        String output = format(processedData, rawData.size());
+        metrics.getFormat().record(System.nanoTime() - processed, rawData.size());
+        arena.checkReturned(outstanding, this);
+        return output;
+    }
+    
+    /**
+     * Streams the formatted output into a sink like {@link #executeTo(List, ByteSink)}, recording
+     * the time and record count of each stage; formatting includes flushing the sink.
+     * 
+     * @param rawData the raw data to process
+     * @param sink the destination of the formatted output
+     * @param metrics the metrics to record the stages into
+     */
+    public void executeTo(List<String> rawData, ByteSink sink, PipelineMetrics metrics) {
+        BufferArena arena = BufferArena.current();
+        int outstanding = arena.getOutstanding();
+        long start = System.nanoTime();
+        Object loadedData = load(rawData);
+        long loaded = System.nanoTime();
+        metrics.getLoad().record(loaded - start, rawData.size());
+        Object processedData = process(loadedData, rawData.size());
+        long processed = System.nanoTime();
+        metrics.getProcess().record(processed - loaded, rawData.size());
+        writeTo(processedData, rawData.size(), sink);
+        sink.flush();
+        metrics.getFormat().record(System.nanoTime() - processed, rawData.size());
+        arena.checkReturned(outstanding, this);
+    }
+    
+    /**
+     * Runs the loader, emitting a {@link PipelineStageEvent} while profiling.
+     * 
+     * @param rawData the raw data to load
+     * @return the loaded data
+     */
+    public Object load(List<String> rawData) {
+        PipelineStageEvent event = new PipelineStageEvent();
+        event.begin();
+        Object loadedData = loader.loadData(rawData);
+        if (event.shouldCommit()) {
+            event.commit(PipelineStageEvent.LOAD, loader, loader.getDataType(), processor.getProcessingType(),
+                         rawData.size(), PipelineStageEvent.sizeOf(rawData));
+        }
+        return loadedData;
+    }
+    
+    /**
+     * Runs the processor, emitting a {@link PipelineStageEvent} while profiling.
+     * 
+     * @param loadedData the loaded data
+     * @param recordCount the number of raw records the data was loaded from
+     * @return the processed data
+     */
+    public Object process(Object loadedData, int recordCount) {
+        PipelineStageEvent event = new PipelineStageEvent();
+        event.begin();
+        Object processedData = processor.processData(loadedData);
+        if (event.shouldCommit()) {
+            event.commit(PipelineStageEvent.PROCESS, processor, loader.getDataType(), processor.getProcessingType(),
+                         recordCount, -1);
+        }
+        return processedData;
+    }
+    
+    /**
+     * Runs the formatter, emitting a {@link PipelineStageEvent} while profiling.
+     * 
+     * @param processedData the processed data
+     * @param recordCount the number of raw records the data was loaded from
+     * @return the formatted output string
+     */
+    public String format(Object processedData, int recordCount) {
+        PipelineStageEvent event = new PipelineStageEvent();
+        event.begin();
+        String output = formatter.formatOutput(processedData);
+        if (event.shouldCommit()) {
+            event.commit(PipelineStageEvent.FORMAT, formatter, loader.getDataType(), processor.getProcessingType(),
+                         recordCount, output.length());
+        }
+        return output;
+    }
+    
+    /**
+     * Streams the formatted output into a sink without flushing it, emitting a
+     * {@link PipelineStageEvent} with the bytes written while profiling.
+     * 
+     * @param processedData the processed data
+     * @param recordCount the number of raw records the data was loaded from
+     * @param sink the destination of the formatted output
+     */
+    public void writeTo(Object processedData, int recordCount, ByteSink sink) {
+        PipelineStageEvent event = new PipelineStageEvent();
+        event.begin();
+        long before = sink.getPosition();
+        formatter.writeTo(processedData, sink);
+        if (event.shouldCommit()) {
+            event.commit(PipelineStageEvent.FORMAT, formatter, loader.getDataType(), processor.getProcessingType(),
+                         recordCount, sink.getPosition() - before);
+        }
+    }
+    
+    public DataLoader getLoader() {
+        return loader;
+    }
+    
+    public DataProcessor getProcessor() {
+        return processor;
+    }
+    
+    public OutputFormatter getFormatter() {
+        return formatter;
+    }
+    
+    @Override
+    public String toString() {
+        return "PipelinePlan[" + loader.getDataType() + " -> " + processor.getProcessingType() + " -> "
+            + formatter.getFormatType() + "]";
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+import com.example.demo.godclassrefactoring.profiling.CacheEvent;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cache of compiled {@link PipelinePlan}s keyed by data type and processing type; the data type
+ * also selects the output format. Keys are lower-cased like the factories' type names, which
+ * returns the caller's string itself when it already is, so a cache hit of a lower-case type
+ * involves no key allocation. Registering a component in any factory invalidates all caches;
+ * a plan compiled while a registration happened is compiled again, not cached.
+ */
+public class PipelinePlanCache {
+    
+    private static final String CACHE_NAME = "pipeline-plans";
+    
+    private volatile Plans plans;
+    
+    /**
+     * Creates an empty cache.
+     */
+    public PipelinePlanCache() {
+        // Load the factories first so their built-in registrations do not count as changes
+        DataLoaderFactory.registry();
+        DataProcessorFactory.registry();
+        OutputFormatterFactory.registry();
+        plans = new Plans(RegistrationGeneration.get());
+    }
+    
+    /**
+     * Returns the plan for a combination, compiling it on first use.
+     * 
+     * @param dataType the type of data to process
+     * @param processingType the type of processing to apply
+     * @return the cached plan
+     * @throws IllegalArgumentException if the data type or processing type is not supported
+     */
+    public PipelinePlan get(String dataType, String processingType) {
+        String data = dataType.toLowerCase(Locale.ROOT);
+        String processing = processingType.toLowerCase(Locale.ROOT);
+        while (true) {
+            Plans current = plans;
+            if (current.generation != RegistrationGeneration.get()) {
+                clear();
+                continue;
+            }
+            ConcurrentMap<String, PipelinePlan> byProcessingType = current.byDataType.get(data);
+            PipelinePlan plan = byProcessingType == null ? null : byProcessingType.get(processing);
+            if (plan != null) {
+                return plan;
+            }
+            // Compile before caching so unsupported types throw without leaving entries behind
+            CacheEvent event = new CacheEvent();
+            event.begin();
+            PipelinePlan compiled = PipelinePlan.compile(data, processing, data);
+            if (event.shouldCommit()) {
+                event.commit(CACHE_NAME, CacheEvent.LOAD, data + "/" + processing, -1);
+            }
+            if (RegistrationGeneration.get() != current.generation) {
+                // A registration may have changed what the types resolve to while compiling
+                continue;
+            }
+            return current.byDataType.computeIfAbsent(data, type -> new ConcurrentHashMap<>())
+                .computeIfAbsent(processing, type -> compiled);
+        }
+    }
+    
+    /**
+     * Drops all plans of this cache.
+     */
+    public void clear() {
+        CacheEvent.emit(CACHE_NAME, CacheEvent.INVALIDATE, null, -1);
+        plans = new Plans(RegistrationGeneration.get());
+    }
+    
+    /**
+     * The plans compiled in one generation. A registration after that makes them stale as a
+     * whole, so plans stored after it are dropped with them.
+     */
+    private static final class Plans {
+        private final int generation;
+        private final ConcurrentMap<String, ConcurrentMap<String, PipelinePlan>> byDataType = new ConcurrentHashMap<>();
+        
+        Plans(int generation) {
+            this.generation = generation;
+        }
+    }
+}
@@ -3,35 +3,113 @@ package com.example.demo.godclassrefactoring.solutions.run2;
 /**
  * Service class responsible for logging and monitoring processing metrics.
  * Follows Single Responsibility Principle by handling only metrics-related operations.
+ * 
+ * Metrics are recorded into a {@link MetricsRegistry} instead of being written to the console,
+ * so a processing call pays for a few lock-free counter updates rather than a synchronized
+ * console write; the registry exports them on demand.
+ * 
+ * Types are labelled by the key they are registered under, so "CSV" and "csv" share a series.
+ * Types that are not registered are counted under {@value #UNKNOWN_TYPE}, so requests with
+ * arbitrary type strings cannot create a series each.
  */
 public class ProcessingMetricsService {
     
+    /**
+     * Label of data or processing types that are not registered.
+     */
+    public static final String UNKNOWN_TYPE = "unknown";
+    
+    private final MetricsRegistry registry;
+    
+    /**
+     * Creates a service recording into a new registry.
+     */
+    public ProcessingMetricsService() {
+        this(new MetricsRegistry());
+    }
+    
+    /**
+     * Creates a service recording into the given registry.
+     *
+     * @param registry the registry to record into
+     */
+    public ProcessingMetricsService(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+    
+    public MetricsRegistry getRegistry() {
+        return registry;
+    }
+    
+    /**
+     * Returns the stage metrics of a combination, for timing its load, process and format stages.
+     *
+     * @param dataType the type of data processed
+     * @param processingType the type of processing performed
+     * @return the metrics of the pipeline
+     */
+    public PipelineMetrics pipelineMetrics(String dataType, String processingType) {
+        return registry.pipeline(dataLabel(dataType), processingLabel(processingType));
+    }
+    
+    /**
+     * Records a completed processing call.
+     *
+     * @param dataType the type of data processed
+     * @param processingType the type of processing performed
+     * @param dataSize the number of records processed
+     * @param processingTimeNanos the processing time in nanoseconds
+     */
+    public void recordProcessing(String dataType, String processingType, int dataSize, long processingTimeNanos) {
+        pipelineMetrics(dataType, processingType).getTotal().record(processingTimeNanos, dataSize);
+    }
+    
+    /**
+     * Records a failed processing call and reports it on standard error.
+     *
+     * @param dataType the type of data processed
+     * @param processingType the type of processing performed
+     * @param processingTimeNanos the time until the failure in nanoseconds
+     * @param failure the cause of the failure
+     */
+    public void recordFailure(String dataType, String processingType, long processingTimeNanos, Exception failure) {
+        registry.stage(dataLabel(dataType), processingLabel(processingType), MetricsRegistry.TOTAL).recordFailure();
+        System.err.println("Processing failed after " + processingTimeNanos / 1_000_000 + "ms: " + failure.getMessage());
+    }
+    
     /**
      * Logs processing metrics for monitoring and analytics purposes.
-     * 
+     *
      * @param dataType the type of data that was processed
      * @param processingType the type of processing that was performed
      * @param dataSize the size of the data that was processed
      */
     public void logProcessingMetrics(String dataType, String processingType, int dataSize) {
-        System.out.println("Processed " + dataSize + " records of " + dataType + " using " + processingType);
-        
-        // Additional metrics logging could be added here:
-        // - Performance timing
-        // - Memory usage
-        // - Error rates
-        // - Success rates
+        registry.stage(dataLabel(dataType), processingLabel(processingType), MetricsRegistry.TOTAL)
+            .addRecords(dataSize);
     }
     
     /**
      * Logs performance metrics for a processing operation.
-     * 
+     *
      * @param dataType the type of data processed
      * @param processingType the type of processing performed
      * @param processingTimeMs the processing time in milliseconds
      */
     public void logPerformanceMetrics(String dataType, String processingType, long processingTimeMs) {
-        System.out.println("Processing completed in " + processingTimeMs + "ms for " 
-                         + dataType + " with " + processingType + " processing");
+        registry.stage(dataLabel(dataType), processingLabel(processingType), MetricsRegistry.TOTAL).getLatency()
+            .record(processingTimeMs * 1_000_000);
+    }
+    
+    private static String dataLabel(String dataType) {
+        return orUnknown(DataLoaderFactory.registry().registeredKey(dataType));
+    }
+    
+    private static String processingLabel(String processingType) {
+        return orUnknown(DataProcessorFactory.registry().registeredKey(processingType));
+    }
+    
+    private static String orUnknown(String registeredKey) {
+        return registeredKey != null ? registeredKey : UNKNOWN_TYPE;
     }
 }
@@ -1,6 +1,10 @@
 package com.example.demo.godclassrefactoring.solutions.run2;
 
+import com.example.demo.godclassrefactoring.plugin.PluginStartupReport;
+
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * Refactored OrderProcessor that follows SOLID principles.
@@ -16,6 +20,7 @@ import java.util.List;
 public class RefactoredOrderProcessor {
     
     private final ProcessingMetricsService metricsService;
+    private final PipelinePlanCache planCache = new PipelinePlanCache();
     
     /**
      * Constructor with dependency injection.
@@ -43,32 +48,108 @@ public class RefactoredOrderProcessor {
      * @return the formatted output string
      */
     public String processData(String dataType, String processingType, List<String> rawData) {
-        long startTime = System.currentTimeMillis();
+        long startTime = System.nanoTime();
+        
+        try {
+            // Step 1: Resolve loader, processor and formatter (compiled once per combination)
+            PipelinePlan plan = planCache.get(dataType, processingType);
+            
+            // Step 2: Load, process and format using the pre-bound strategies, timing each stage
+            String formattedOutput = plan.execute(rawData, metricsService.pipelineMetrics(dataType, processingType));
+            
+            // Step 3: Record metrics
+            metricsService.recordProcessing(dataType, processingType, rawData.size(), System.nanoTime() - startTime);
+            
+            return formattedOutput;
+            
+        } catch (Exception e) {
+            // Record error metrics
+            metricsService.recordFailure(dataType, processingType, System.nanoTime() - startTime, e);
+            throw e;
+        }
+    }
+    
+    /**
+     * Processes data like {@link #processData}, but streams the formatted output into a sink,
+     * e.g. a file or socket, so large outputs never exist as a single string.
+     * 
+     * @param dataType the type of data to process
+     * @param processingType the type of processing to apply
+     * @param rawData the raw data to process
+     * @param sink the destination of the formatted output
+     */
+    public void processDataTo(String dataType, String processingType, List<String> rawData, ByteSink sink) {
+        long startTime = System.nanoTime();
         
         try {
-            // Step 1: Load data using appropriate strategy
-            DataLoader loader = DataLoaderFactory.createLoader(dataType);
-            Object loadedData = loader.loadData(rawData);
+            PipelinePlan plan = planCache.get(dataType, processingType);
             
-            // Step 2: Process data using appropriate strategy
-            DataProcessor processor = DataProcessorFactory.createProcessor(processingType);
-            Object processedData = processor.processData(loadedData);
+            plan.executeTo(rawData, sink, metricsService.pipelineMetrics(dataType, processingType));
+            
+            metricsService.recordProcessing(dataType, processingType, rawData.size(), System.nanoTime() - startTime);
+            
+        } catch (Exception e) {
+            metricsService.recordFailure(dataType, processingType, System.nanoTime() - startTime, e);
+            throw e;
+        }
+    }
+    
+    /**
+     * Processes data as a staged pipeline: loading, processing and formatting run concurrently
+     * on batches of the raw data, connected by the bounded queues of the given pipeline.
+     *
+     * @param dataType the type of data to process
+     * @param processingType the type of processing to apply
+     * @param rawData the raw data to process
+     * @param pipeline the staged pipeline to run the batches through
+     * @return the formatted output of each batch, one per line in input order
+     */
+    public String processDataStaged(String dataType, String processingType, List<String> rawData,
+                                    StagedPipeline pipeline) {
+        long startTime = System.nanoTime();
+        
+        try {
+            PipelinePlan plan = planCache.get(dataType, processingType);
             
-            // Step 3: Format output using appropriate strategy
-            OutputFormatter formatter = OutputFormatterFactory.createFormatter(dataType);
-            String formattedOutput = formatter.formatOutput(processedData);
+            String formattedOutput = String.join("\n", pipeline.run(plan.getLoader(), plan.getProcessor(),
+                                                                     plan.getFormatter(), rawData));
             
-            // Step 4: Log metrics
-            long processingTime = System.currentTimeMillis() - startTime;
-            metricsService.logProcessingMetrics(dataType, processingType, rawData.size());
-            metricsService.logPerformanceMetrics(dataType, processingType, processingTime);
+            metricsService.recordProcessing(dataType, processingType, rawData.size(), System.nanoTime() - startTime);
             
             return formattedOutput;
             
         } catch (Exception e) {
-            // Log error metrics
-            long processingTime = System.currentTimeMillis() - startTime;
-            System.err.println("Processing failed after " + processingTime + "ms: " + e.getMessage());
+            metricsService.recordFailure(dataType, processingType, System.nanoTime() - startTime, e);
+            throw e;
+        }
+    }
+    
+    /**
+     * Processes a large input as a checkpointed job that writes its output to a file and can be
+     * resumed after a failure by calling this method again with the same arguments.
+     * 
+     * @param dataType the type of data to process
+     * @param processingType the type of processing to apply
+     * @param rawData the raw data to process
+     * @param config the output, checkpoint and batching configuration
+     * @return the report of this run
+     */
+    public JobReport processDataCheckpointed(String dataType, String processingType, List<String> rawData,
+                                             CheckpointConfig config) {
+        long startTime = System.nanoTime();
+        
+        try {
+            PipelinePlan plan = planCache.get(dataType, processingType);
+            
+            JobReport report = new CheckpointedJob(plan, config).run(rawData);
+            
+            metricsService.recordProcessing(dataType, processingType, report.getRecordsProcessed(),
+                                            System.nanoTime() - startTime);
+            
+            return report;
+            
+        } catch (Exception e) {
+            metricsService.recordFailure(dataType, processingType, System.nanoTime() - startTime, e);
             throw e;
         }
     }
@@ -99,4 +180,26 @@ public class RefactoredOrderProcessor {
     public String[] getAvailableOutputFormats() {
         return OutputFormatterFactory.getAvailableFormatTypes();
     }
+    
+    /**
+     * Creates the loaders, processors and formatters that no request has used yet, in parallel
+     * on an executor, so a service can take their startup cost off its first requests.
+     * 
+     * @param executor runs the creations, e.g. a small background pool
+     * @return a future of the startup report once every plugin is created
+     */
+    public static CompletableFuture<PluginStartupReport> warmUpPlugins(Executor executor) {
+        return PluginStartupReport.warmUp(executor, DataLoaderFactory.registry(), DataProcessorFactory.registry(),
+                                          OutputFormatterFactory.registry());
+    }
+    
+    /**
+     * Reports which loaders, processors and formatters have been created and what each cost.
+     * 
+     * @return the startup report
+     */
+    public static PluginStartupReport pluginStartupReport() {
+        return PluginStartupReport.of(DataLoaderFactory.registry(), DataProcessorFactory.registry(),
+                                      OutputFormatterFactory.registry());
+    }
 }
@@ -0,0 +1,33 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the registrations of the loader, processor and formatter factories, so caches of
+ * what the types resolve to can tell when they became stale.
+ * 
+ * The factories bump the counter from their static initializers, so this class must not
+ * depend on them or on any class that does: two class initializers waiting for each other
+ * deadlock when different threads start them.
+ */
+final class RegistrationGeneration {
+    
+    private static final AtomicInteger GENERATION = new AtomicInteger();
+    
+    private RegistrationGeneration() {
+    }
+    
+    /**
+     * Records a registration that may have changed which component a type resolves to.
+     */
+    static void increment() {
+        GENERATION.incrementAndGet();
+    }
+    
+    /**
+     * Returns the number of registrations so far.
+     */
+    static int get() {
+        return GENERATION.get();
+    }
+}
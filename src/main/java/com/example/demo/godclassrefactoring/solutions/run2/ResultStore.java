@@ -0,0 +1,29 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+/**
+ * Bounded store of formatted processing results, keyed by a content hash of the request.
+ * Implementations evict entries to stay within their size limit and must be thread-safe.
+ */
+public interface ResultStore {
+    
+    /**
+     * Returns a stored result.
+     * 
+     * @param key the content key
+     * @return the result, or null if it is not stored
+     */
+    String get(String key);
+    
+    /**
+     * Stores a result, evicting older entries if necessary.
+     * 
+     * @param key the content key
+     * @param result the formatted result
+     */
+    void put(String key, String result);
+    
+    /**
+     * Removes all entries.
+     */
+    void clear();
+}
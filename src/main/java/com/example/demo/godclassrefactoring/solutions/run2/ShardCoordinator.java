@@ -0,0 +1,400 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Splits large processing jobs into shards and runs them on {@link ShardWorker}s connected
+ * over sockets, in other processes or on other machines.
+ * 
+ * Workers connect to the coordinator's port and pull shards one at a time, so faster workers
+ * take on more shards and throughput grows with the number of workers. The formatted outputs
+ * of the shards are merged in input order, one per line, like a {@link StagedPipeline} run.
+ * Formatted outputs cannot be combined further, so processing types that are not
+ * {@link DataProcessor#isPartitionSafe() partition-safe} run as a single shard.
+ * When a worker disconnects, dies or sends nothing for the shard timeout while running a shard,
+ * it is dropped and the shard is put back for the remaining workers; a shard whose processing
+ * throws fails the job, as it would fail again anywhere else.
+ * 
+ * Jobs run one at a time.
+ */
+public class ShardCoordinator implements AutoCloseable {
+    
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int DEFAULT_SHARD_TIMEOUT_MILLIS = 60_000;
+    
+    private final int shardSize;
+    private final int shardTimeoutMillis;
+    private final ServerSocket serverSocket;
+    private final BlockingQueue<Shard> pending = new LinkedBlockingQueue<>();
+    private final Set<WorkerConnection> workers = ConcurrentHashMap.newKeySet();
+    private final List<Process> processes = new ArrayList<>();
+    private final Thread acceptor;
+    private volatile Job currentJob;
+    private volatile boolean closed;
+    
+    /**
+     * Creates a coordinator listening for workers on an ephemeral loopback port.
+     *
+     * @param shardSize the number of raw records per shard
+     */
+    public ShardCoordinator(int shardSize) {
+        this(shardSize, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    }
+    
+    /**
+     * Creates a coordinator.
+     *
+     * @param shardSize the number of raw records per shard
+     * @param bindAddress the address and port to accept worker connections on; port 0 picks an ephemeral port
+     */
+    public ShardCoordinator(int shardSize, InetSocketAddress bindAddress) {
+        this(shardSize, bindAddress, DEFAULT_SHARD_TIMEOUT_MILLIS);
+    }
+    
+    /**
+     * Creates a coordinator.
+     *
+     * @param shardSize the number of raw records per shard
+     * @param bindAddress the address and port to accept worker connections on; port 0 picks an ephemeral port
+     * @param shardTimeoutMillis how long a worker may stay silent while running a shard before it is dropped
+     */
+    public ShardCoordinator(int shardSize, InetSocketAddress bindAddress, int shardTimeoutMillis) {
+        if (shardSize <= 0) {
+            throw new IllegalArgumentException("Shard size must be positive: " + shardSize);
+        }
+        if (shardTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("Shard timeout must be positive: " + shardTimeoutMillis);
+        }
+        this.shardSize = shardSize;
+        this.shardTimeoutMillis = shardTimeoutMillis;
+        try {
+            this.serverSocket = new ServerSocket();
+            serverSocket.bind(bindAddress);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to listen for workers", e);
+        }
+        this.acceptor = new Thread(this::acceptWorkers, "shard-coordinator-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+    
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+    
+    public int getWorkerCount() {
+        return workers.size();
+    }
+    
+    /**
+     * Starts worker processes on this machine with the classpath of the current JVM. They are
+     * destroyed when the coordinator is closed.
+     *
+     * @param count the number of worker processes
+     */
+    public synchronized void launchLocalWorkers(int count) {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        for (int i = 0; i < count; i++) {
+            ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                ShardWorker.class.getName(), serverSocket.getInetAddress().getHostAddress(),
+                String.valueOf(getPort()));
+            builder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+            builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+            try {
+                processes.add(builder.start());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to launch worker process", e);
+            }
+        }
+    }
+    
+    /**
+     * Waits until at least the given number of workers are connected.
+     *
+     * @param count the number of workers to wait for
+     * @param timeoutMillis the maximum time to wait
+     * @return whether the workers connected in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitWorkers(int count, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (workers.size() < count) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+    
+    /**
+     * Processes data on the connected workers.
+     *
+     * @param dataType the type of data to process
+     * @param processingType the type of processing to apply
+     * @param rawData the raw data to process
+     * @return the formatted output of every shard, one per line in input order
+     * @throws IllegalArgumentException if the processing type is not supported
+     * @throws IllegalStateException if no worker is connected, all workers failed, a shard
+     *         failed to process or a shard was lost too often
+     */
+    public synchronized String processData(String dataType, String processingType, List<String> rawData) {
+        if (workers.isEmpty()) {
+            throw new IllegalStateException("No workers connected");
+        }
+        long startTime = System.currentTimeMillis();
+        
+        int size = DataProcessorFactory.createProcessor(processingType).isPartitionSafe()
+            ? shardSize : Math.max(1, rawData.size());
+        List<List<String>> shards = new ArrayList<>();
+        for (int start = 0; start < rawData.size(); start += size) {
+            shards.add(rawData.subList(start, Math.min(start + size, rawData.size())));
+        }
+        if (shards.isEmpty()) {
+            shards.add(rawData);
+        }
+        Job job = new Job(dataType, processingType, shards.size());
+        currentJob = job;
+        for (int index = 0; index < shards.size(); index++) {
+            pending.add(new Shard(job, index, shards.get(index)));
+        }
+        if (workers.isEmpty()) {
+            job.fail(new IllegalStateException("All workers failed"));
+        }
+        
+        try {
+            String output = job.result.get();
+            System.out.println("Processed " + rawData.size() + " records of " + dataType + " using " + processingType
+                + " in " + shards.size() + " shards on " + workers.size() + " workers in "
+                + (System.currentTimeMillis() - startTime) + "ms");
+            return output;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for shards", e);
+        } catch (ExecutionException e) {
+            throw (IllegalStateException) e.getCause();
+        } finally {
+            currentJob = null;
+            pending.removeIf(shard -> shard.job == job);
+        }
+    }
+    
+    /**
+     * Stops accepting workers, shuts down the connected ones and destroys launched processes.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // Closing anyway
+        }
+        for (WorkerConnection worker : workers) {
+            worker.shutdown();
+        }
+        synchronized (this) {
+            for (Process process : processes) {
+                try {
+                    if (!process.waitFor(2, TimeUnit.SECONDS)) {
+                        process.destroyForcibly();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    process.destroyForcibly();
+                }
+            }
+            processes.clear();
+        }
+    }
+    
+    private void acceptWorkers() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                WorkerConnection worker = new WorkerConnection(socket);
+                Thread thread = new Thread(worker, "shard-worker-" + socket.getRemoteSocketAddress());
+                thread.setDaemon(true);
+                worker.thread = thread;
+                thread.start();
+            } catch (SocketException e) {
+                return;
+            } catch (IOException e) {
+                if (!closed) {
+                    System.err.println("Failed to accept worker: " + e.getMessage());
+                }
+            }
+        }
+    }
+    
+    /**
+     * Serves one connected worker: hands it pending shards one at a time and collects the results.
+     */
+    private final class WorkerConnection implements Runnable {
+        private final Socket socket;
+        private volatile Thread thread;
+        
+        WorkerConnection(Socket socket) {
+            this.socket = socket;
+        }
+        
+        @Override
+        public void run() {
+            Shard shard = null;
+            try {
+                socket.setTcpNoDelay(true);
+                // The coordinator only reads while it waits for a worker, so this bounds every wait;
+                // a SocketTimeoutException is handled like a lost worker
+                socket.setSoTimeout(shardTimeoutMillis);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                if (in.readByte() != ShardProtocol.HELLO || in.readInt() != ShardProtocol.VERSION) {
+                    throw new IOException("Unsupported worker protocol");
+                }
+                workers.add(this);
+                
+                while (!closed) {
+                    shard = pending.take();
+                    Job job = shard.job;
+                    if (job.result.isDone()) {
+                        shard = null;
+                        continue;
+                    }
+                    ShardProtocol.writeTask(out, shard.index, job.dataType, job.processingType, shard.records);
+                    byte type = in.readByte();
+                    int index = in.readInt();
+                    String payload = ShardProtocol.readString(in);
+                    if (index != shard.index) {
+                        throw new IOException("Worker answered shard " + index + " instead of " + shard.index);
+                    }
+                    if (type == ShardProtocol.RESULT) {
+                        job.complete(shard.index, payload);
+                    } else {
+                        job.fail(new IllegalStateException("Shard " + shard.index + " failed: " + payload));
+                    }
+                    shard = null;
+                }
+            } catch (InterruptedException e) {
+                // Coordinator closing
+            } catch (IOException e) {
+                if (!closed) {
+                    System.err.println("Lost worker " + socket.getRemoteSocketAddress() + ": " + e);
+                }
+            } finally {
+                workers.remove(this);
+                closeSocket();
+                if (shard != null) {
+                    reassign(shard);
+                }
+                Job job = currentJob;
+                if (!closed && job != null && workers.isEmpty()) {
+                    job.fail(new IllegalStateException("All workers failed"));
+                }
+            }
+        }
+        
+        void shutdown() {
+            try {
+                // Best effort while idle; a busy worker sees the socket close instead
+                if (thread != null) {
+                    thread.interrupt();
+                }
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                out.writeByte(ShardProtocol.SHUTDOWN);
+                out.flush();
+            } catch (IOException e) {
+                // Already disconnected
+            }
+            closeSocket();
+        }
+        
+        private void closeSocket() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+    }
+    
+    private void reassign(Shard shard) {
+        if (shard.job.result.isDone()) {
+            return;
+        }
+        if (++shard.attempts >= MAX_ATTEMPTS) {
+            shard.job.fail(new IllegalStateException("Shard " + shard.index + " was lost " + shard.attempts + " times"));
+            return;
+        }
+        pending.add(shard);
+    }
+    
+    private static final class Shard {
+        private final Job job;
+        private final int index;
+        private final List<String> records;
+        private int attempts;
+        
+        Shard(Job job, int index, List<String> records) {
+            this.job = job;
+            this.index = index;
+            this.records = records;
+        }
+    }
+    
+    /**
+     * Collects the shard outputs of one processData call.
+     */
+    private static final class Job {
+        private final String dataType;
+        private final String processingType;
+        private final AtomicReferenceArray<String> outputs;
+        private final AtomicInteger remaining;
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        
+        Job(String dataType, String processingType, int shards) {
+            this.dataType = dataType;
+            this.processingType = processingType;
+            this.outputs = new AtomicReferenceArray<>(shards);
+            this.remaining = new AtomicInteger(shards);
+        }
+        
+        void complete(int index, String output) {
+            if (outputs.compareAndSet(index, null, output) && remaining.decrementAndGet() == 0) {
+                StringBuilder merged = new StringBuilder();
+                for (int i = 0; i < outputs.length(); i++) {
+                    if (i > 0) {
+                        merged.append('\n');
+                    }
+                    merged.append(outputs.get(i));
+                }
+                result.complete(merged.toString());
+            }
+        }
+        
+        void fail(IllegalStateException failure) {
+            result.completeExceptionally(failure);
+        }
+    }
+}
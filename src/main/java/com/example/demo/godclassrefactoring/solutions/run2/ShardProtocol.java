@@ -0,0 +1,64 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wire format between {@link ShardCoordinator} and {@link ShardWorker}. Every message is a
+ * type byte followed by its fields; strings are a length and UTF-8 bytes.
+ * <ul>
+ *   <li>worker to coordinator: HELLO(version), RESULT(shard, output), FAILURE(shard, message)</li>
+ *   <li>coordinator to worker: TASK(shard, data type, processing type, records), SHUTDOWN</li>
+ * </ul>
+ */
+final class ShardProtocol {
+    
+    static final int VERSION = 1;
+    
+    static final byte HELLO = 1;
+    static final byte TASK = 2;
+    static final byte RESULT = 3;
+    static final byte FAILURE = 4;
+    static final byte SHUTDOWN = 5;
+    
+    private ShardProtocol() {
+    }
+    
+    static void writeTask(DataOutputStream out, int shard, String dataType, String processingType,
+                          List<String> records) throws IOException {
+        out.writeByte(TASK);
+        out.writeInt(shard);
+        writeString(out, dataType);
+        writeString(out, processingType);
+        out.writeInt(records.size());
+        for (String record : records) {
+            writeString(out, record);
+        }
+        out.flush();
+    }
+    
+    static List<String> readRecords(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<String> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(readString(in));
+        }
+        return records;
+    }
+    
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
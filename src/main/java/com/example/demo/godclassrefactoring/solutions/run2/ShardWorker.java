@@ -0,0 +1,96 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.util.List;
+
+/**
+ * Worker for a {@link ShardCoordinator}. Connects to the coordinator, then runs every shard it
+ * is sent through the regular loader, processor and formatter of the requested types and
+ * sends back the formatted output, until the coordinator shuts it down or disconnects.
+ * Runs in its own process through {@link #main}, or on a thread of the current one.
+ */
+public class ShardWorker implements Runnable {
+    
+    private final String host;
+    private final int port;
+    private final PipelinePlanCache planCache = new PipelinePlanCache();
+    
+    /**
+     * Creates a worker.
+     * 
+     * @param host the coordinator host
+     * @param port the coordinator port
+     */
+    public ShardWorker(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+    
+    /**
+     * Starts a worker process.
+     * 
+     * @param args the coordinator host and port
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: ShardWorker <coordinator host> <coordinator port>");
+            System.exit(2);
+        }
+        new ShardWorker(args[0], Integer.parseInt(args[1])).run();
+    }
+    
+    @Override
+    public void run() {
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeByte(ShardProtocol.HELLO);
+            out.writeInt(ShardProtocol.VERSION);
+            out.flush();
+            
+            while (true) {
+                byte type;
+                try {
+                    type = in.readByte();
+                } catch (EOFException e) {
+                    return;
+                }
+                if (type == ShardProtocol.SHUTDOWN) {
+                    return;
+                }
+                if (type != ShardProtocol.TASK) {
+                    throw new IllegalStateException("Unexpected message type: " + type);
+                }
+                int shard = in.readInt();
+                String dataType = ShardProtocol.readString(in);
+                String processingType = ShardProtocol.readString(in);
+                List<String> records = ShardProtocol.readRecords(in);
+                
+                String output;
+                try {
+                    output = planCache.get(dataType, processingType).execute(records);
+                } catch (RuntimeException e) {
+                    out.writeByte(ShardProtocol.FAILURE);
+                    out.writeInt(shard);
+                    ShardProtocol.writeString(out, String.valueOf(e.getMessage()));
+                    out.flush();
+                    continue;
+                }
+                out.writeByte(ShardProtocol.RESULT);
+                out.writeInt(shard);
+                ShardProtocol.writeString(out, output);
+                out.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Lost connection to coordinator " + host + ":" + port, e);
+        }
+    }
+}
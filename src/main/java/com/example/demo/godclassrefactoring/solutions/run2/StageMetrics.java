@@ -0,0 +1,74 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histogram of one stage of one combination of data type and processing type.
+ * All updates are lock-free; handles are obtained once from a {@link MetricsRegistry} and kept.
+ */
+public final class StageMetrics {
+    
+    private final String dataType;
+    private final String processingType;
+    private final String stage;
+    private final LongAdder records = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    
+    StageMetrics(String dataType, String processingType, String stage) {
+        this.dataType = dataType;
+        this.processingType = processingType;
+        this.stage = stage;
+    }
+    
+    /**
+     * Records one completed run of the stage.
+     *
+     * @param nanos the time the run took in nanoseconds
+     * @param recordCount the number of records the run handled
+     */
+    public void record(long nanos, long recordCount) {
+        latency.record(nanos);
+        records.add(recordCount);
+    }
+    
+    /**
+     * Counts records without recording a run, e.g. for a stage timed elsewhere.
+     *
+     * @param recordCount the number of records
+     */
+    public void addRecords(long recordCount) {
+        records.add(recordCount);
+    }
+    
+    /**
+     * Records one run of the stage that failed.
+     */
+    public void recordFailure() {
+        failures.increment();
+    }
+    
+    public String getDataType() {
+        return dataType;
+    }
+    
+    public String getProcessingType() {
+        return processingType;
+    }
+    
+    public String getStage() {
+        return stage;
+    }
+    
+    public long getRecords() {
+        return records.sum();
+    }
+    
+    public long getFailures() {
+        return failures.sum();
+    }
+    
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+}
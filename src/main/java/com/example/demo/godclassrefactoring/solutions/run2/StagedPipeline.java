@@ -0,0 +1,307 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+import com.example.demo.godclassrefactoring.buffer.BufferArena;
+import com.example.demo.godclassrefactoring.columnar.LoadedBatches;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs the load, process and format steps as concurrent stages connected by bounded queues.
+ * The input is split into batches; each stage works on its own executor, so I/O-bound loading
+ * overlaps with CPU-bound processing. Because the queues are bounded, a slow downstream stage
+ * blocks the upstream ones instead of letting batches pile up in memory.
+ * 
+ * Batches have a fixed size, or one chosen per data type and processing type by an
+ * {@link AdaptiveBatchSizer} from what the stages report about each batch.
+ * 
+ * Only processors that are {@link DataProcessor#isPartitionSafe() partition-safe} process and
+ * format each batch separately. For the others, such as aggregates, the loaded batches are
+ * merged and processed once, so the result is the same as without batching.
+ * 
+ * Each stage call must return the {@link BufferArena} buffers it borrowed on its stage thread;
+ * like {@link PipelinePlan#execute(List)}, a run fails when one does not and leak detection is on.
+ */
+public class StagedPipeline implements AutoCloseable {
+    
+    private static final Object END_OF_STREAM = new Object();
+    
+    private final int batchSize;
+    private final AdaptiveBatchSizer sizer;
+    private final int queueCapacity;
+    private final ExecutorService loaderExecutor;
+    private final ExecutorService processorExecutor;
+    private final ExecutorService formatterExecutor;
+    private final boolean ownsExecutors;
+    
+    /**
+     * Creates a pipeline with one dedicated thread per stage.
+     *
+     * @param batchSize the number of raw records per batch
+     * @param queueCapacity the number of batches each inter-stage queue can hold
+     */
+    public StagedPipeline(int batchSize, int queueCapacity) {
+        this(batchSize, null, queueCapacity, stageExecutor("loader"), stageExecutor("processor"),
+             stageExecutor("formatter"), true);
+    }
+    
+    /**
+     * Creates a pipeline with one dedicated thread per stage and batch sizes chosen at runtime.
+     *
+     * @param sizer chooses the batch size of each combination of data type and processing type
+     * @param queueCapacity the number of batches each inter-stage queue can hold
+     */
+    public StagedPipeline(AdaptiveBatchSizer sizer, int queueCapacity) {
+        this(sizer.getMinBatchSize(), sizer, queueCapacity, stageExecutor("loader"), stageExecutor("processor"),
+             stageExecutor("formatter"), true);
+    }
+    
+    /**
+     * Creates a pipeline running its stages on the given executors. The executors are not
+     * shut down by {@link #close()}.
+     *
+     * @param batchSize the number of raw records per batch
+     * @param queueCapacity the number of batches each inter-stage queue can hold
+     * @param loaderExecutor the executor for the loading stage
+     * @param processorExecutor the executor for the processing stage
+     * @param formatterExecutor the executor for the formatting stage
+     */
+    public StagedPipeline(int batchSize, int queueCapacity, ExecutorService loaderExecutor,
+                          ExecutorService processorExecutor, ExecutorService formatterExecutor) {
+        this(batchSize, null, queueCapacity, loaderExecutor, processorExecutor, formatterExecutor, false);
+    }
+    
+    private StagedPipeline(int batchSize, AdaptiveBatchSizer sizer, int queueCapacity, ExecutorService loaderExecutor,
+                           ExecutorService processorExecutor, ExecutorService formatterExecutor,
+                           boolean ownsExecutors) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity must be positive: " + queueCapacity);
+        }
+        this.batchSize = batchSize;
+        this.sizer = sizer;
+        this.queueCapacity = queueCapacity;
+        this.loaderExecutor = loaderExecutor;
+        this.processorExecutor = processorExecutor;
+        this.formatterExecutor = formatterExecutor;
+        this.ownsExecutors = ownsExecutors;
+    }
+    
+    /**
+     * Runs the raw data through the three stages.
+     *
+     * @param loader the loader for each batch of raw records
+     * @param processor the processor for each loaded batch
+     * @param formatter the formatter for each processed batch
+     * @param rawData the raw data to process
+     * @return the formatted output of every batch, in input order, or the single output
+     *         of a processor that is not partition-safe
+     */
+    public List<String> run(DataLoader loader, DataProcessor processor, OutputFormatter formatter,
+                            List<String> rawData) {
+        PipelinePlan plan = new PipelinePlan(loader, processor, formatter);
+        AdaptiveBatchSizer.Controller controller = sizer == null ? null
+            : sizer.controller(loader.getDataType(), processor.getProcessingType());
+        if (controller != null) {
+            controller.restartWindow();
+        }
+        BlockingQueue<Object> loaded = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Object> processed = new ArrayBlockingQueue<>(queueCapacity);
+        Run run = new Run();
+        
+        // Batches are cut as the loader gets to them, so an adaptive size applies from the next batch
+        Future<?> loading = loaderExecutor.submit(() -> run.stage(() -> {
+            BufferArena arena = BufferArena.current();
+            int start = 0;
+            do {
+                int size = controller == null ? batchSize : controller.nextBatchSize();
+                List<String> records = rawData.subList(start, Math.min(start + size, rawData.size()));
+                start += records.size();
+                Batch batch = new Batch(size, records.size());
+                long begin = System.nanoTime();
+                long allocated = controller == null ? 0 : AdaptiveBatchSizer.allocatedBytes();
+                int outstanding = arena.getOutstanding();
+                batch.data = plan.load(records);
+                arena.checkReturned(outstanding, plan);
+                observe(controller, MetricsRegistry.LOAD, batch, begin, allocated, 0);
+                loaded.put(batch);
+            } while (start < rawData.size());
+            loaded.put(END_OF_STREAM);
+        }));
+        boolean partitionSafe = processor.isPartitionSafe();
+        Future<?> processing = processorExecutor.submit(() -> run.stage(() -> {
+            BufferArena arena = BufferArena.current();
+            List<Object> whole = new ArrayList<>();
+            int wholeRecords = 0;
+            for (Object next = loaded.take(); next != END_OF_STREAM; next = loaded.take()) {
+                Batch batch = (Batch) next;
+                if (!partitionSafe) {
+                    whole.add(batch.data);
+                    wholeRecords += batch.records;
+                    completed(controller, batch);
+                    continue;
+                }
+                int depth = loaded.size();
+                long begin = System.nanoTime();
+                long allocated = controller == null ? 0 : AdaptiveBatchSizer.allocatedBytes();
+                int outstanding = arena.getOutstanding();
+                batch.data = plan.process(batch.data, batch.records);
+                arena.checkReturned(outstanding, plan);
+                observe(controller, MetricsRegistry.PROCESS, batch, begin, allocated, depth);
+                processed.put(batch);
+            }
+            if (!partitionSafe) {
+                // A batch without a cut size is the whole input and is not reported to the sizer
+                Batch batch = new Batch(0, wholeRecords);
+                int outstanding = arena.getOutstanding();
+                batch.data = plan.process(LoadedBatches.merge(whole), wholeRecords);
+                arena.checkReturned(outstanding, plan);
+                processed.put(batch);
+            }
+            processed.put(END_OF_STREAM);
+        }));
+        List<String> results = new ArrayList<>();
+        Future<?> formatting = formatterExecutor.submit(() -> run.stage(() -> {
+            BufferArena arena = BufferArena.current();
+            for (Object next = processed.take(); next != END_OF_STREAM; next = processed.take()) {
+                Batch batch = (Batch) next;
+                int depth = processed.size();
+                long begin = System.nanoTime();
+                long allocated = controller == null ? 0 : AdaptiveBatchSizer.allocatedBytes();
+                int outstanding = arena.getOutstanding();
+                results.add(plan.format(batch.data, batch.records));
+                arena.checkReturned(outstanding, plan);
+                if (batch.cutSize > 0) {
+                    observe(controller, MetricsRegistry.FORMAT, batch, begin, allocated, depth);
+                    completed(controller, batch);
+                }
+            }
+        }));
+        
+        await(loading, run);
+        await(processing, run);
+        await(formatting, run);
+        run.rethrowFailure();
+        return results;
+    }
+    
+    private static void observe(AdaptiveBatchSizer.Controller controller, String stage, Batch batch, long begin,
+                                long allocatedBefore, int depth) {
+        if (controller != null) {
+            long allocated = allocatedBefore < 0 ? -1 : AdaptiveBatchSizer.allocatedBytes() - allocatedBefore;
+            controller.observe(stage, batch.records, System.nanoTime() - begin, allocated, depth);
+        }
+    }
+    
+    private static void completed(AdaptiveBatchSizer.Controller controller, Batch batch) {
+        if (controller != null) {
+            controller.completed(batch.cutSize, batch.records);
+        }
+    }
+    
+    private static void await(Future<?> stage, Run run) {
+        try {
+            stage.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            run.fail(e);
+        } catch (ExecutionException e) {
+            run.fail(e.getCause());
+        }
+    }
+    
+    /**
+     * Shuts down the stage executors if this pipeline created them.
+     */
+    @Override
+    public void close() {
+        if (ownsExecutors) {
+            loaderExecutor.shutdownNow();
+            processorExecutor.shutdownNow();
+            formatterExecutor.shutdownNow();
+        }
+    }
+    
+    private static ExecutorService stageExecutor(String stage) {
+        return Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "pipeline-" + stage);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * A batch on its way through the stages, with the size it was cut with and its record count.
+     */
+    private static final class Batch {
+        final int cutSize;
+        final int records;
+        Object data;
+        
+        Batch(int cutSize, int records) {
+            this.cutSize = cutSize;
+            this.records = records;
+        }
+    }
+    
+    @FunctionalInterface
+    private interface StageBody {
+        void run() throws InterruptedException;
+    }
+    
+    /**
+     * Tracks the threads of one pipeline run so that a failing stage can interrupt
+     * the others, which may otherwise block forever on a full or empty queue.
+     */
+    private static final class Run {
+        private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        
+        void stage(StageBody body) {
+            Thread current = Thread.currentThread();
+            threads.add(current);
+            try {
+                if (failure.get() == null) {
+                    body.run();
+                }
+            } catch (InterruptedException e) {
+                fail(e);
+            } catch (RuntimeException | Error e) {
+                fail(e);
+            } finally {
+                threads.remove(current);
+            }
+        }
+        
+        void fail(Throwable cause) {
+            if (failure.compareAndSet(null, cause)) {
+                threads.forEach(Thread::interrupt);
+            }
+        }
+        
+        void rethrowFailure() {
+            Throwable cause = failure.get();
+            if (cause == null) {
+                return;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Pipeline stage interrupted", cause);
+        }
+    }
+}
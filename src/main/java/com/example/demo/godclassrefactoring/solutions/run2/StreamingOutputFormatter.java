@@ -0,0 +1,203 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+import com.example.demo.godclassrefactoring.buffer.BufferArena;
+import com.example.demo.godclassrefactoring.columnar.ColumnBatch;
+import com.example.demo.godclassrefactoring.columnar.ColumnType;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Base class for formatters that stream their output into a {@link ByteSink}.
+ * Output starts with a fixed label such as "CSV Output: ". Columnar batches are then encoded
+ * row by row in the concrete format, reading the column arrays directly; any other data is
+ * written as its text.
+ * 
+ * {@link #formatOutput} encodes through buffers borrowed from the thread's {@link BufferArena},
+ * so repeated calls only allocate the returned string.
+ */
+public abstract class StreamingOutputFormatter implements OutputFormatter {
+    
+    private static final int SINK_BUFFER_BYTES = 8192;
+    
+    private final String label;
+    private final byte[] labelBytes;
+    
+    /**
+     * Creates a formatter.
+     * 
+     * @param label the text every output starts with
+     */
+    protected StreamingOutputFormatter(String label) {
+        this.label = label;
+        this.labelBytes = label.getBytes(StandardCharsets.UTF_8);
+    }
+    
+    @Override
+    public String formatOutput(Object data) {
+        if (!(data instanceof ColumnBatch)) {
+            return label + data.toString();
+        }
+        BufferArena arena = BufferArena.current();
+        ByteBuffer buffer = arena.borrowByteBuffer(SINK_BUFFER_BYTES);
+        ArenaChannel out = new ArenaChannel(arena);
+        try {
+            ByteSink sink = new ByteSink(out, buffer);
+            writeTo(data, sink);
+            sink.flush();
+            return out.decode();
+        } finally {
+            out.close();
+            arena.release(buffer);
+        }
+    }
+    
+    @Override
+    public void writeTo(Object data, ByteSink sink) {
+        sink.write(labelBytes);
+        if (data instanceof ColumnBatch) {
+            sink.write((byte) '\n');
+            writeBatch((ColumnBatch) data, sink);
+        } else {
+            sink.writeText(data.toString());
+        }
+    }
+    
+    /**
+     * Encodes every row of a batch.
+     * 
+     * @param batch the batch to encode
+     * @param sink the destination
+     */
+    protected abstract void writeBatch(ColumnBatch batch, ByteSink sink);
+    
+    /**
+     * Writes one cell, calling {@link #writeString} for STRING cells. JSON and SQL have no
+     * literal for an infinite number, so infinite DOUBLE cells are written as the strings
+     * "Infinity" and "-Infinity".
+     * 
+     * @param type the column type
+     * @param column the column array
+     * @param row the row index
+     * @param sink the destination
+     * @param nullValue the bytes to write for a null STRING or NaN DOUBLE cell
+     */
+    protected void writeValue(ColumnType type, Object column, int row, ByteSink sink, byte[] nullValue) {
+        switch (type) {
+            case LONG:
+                sink.writeLong(((long[]) column)[row]);
+                break;
+            case DOUBLE:
+                double number = ((double[]) column)[row];
+                if (Double.isNaN(number)) {
+                    sink.write(nullValue);
+                } else if (Double.isInfinite(number)) {
+                    writeString(number > 0 ? "Infinity" : "-Infinity", sink);
+                } else {
+                    sink.writeDouble(number);
+                }
+                break;
+            default:
+                String text = ((String[]) column)[row];
+                if (text == null) {
+                    sink.write(nullValue);
+                } else {
+                    writeString(text, sink);
+                }
+                break;
+        }
+    }
+    
+    /**
+     * Writes a non-null string cell with the format's quoting and escaping.
+     * 
+     * @param text the cell value
+     * @param sink the destination
+     */
+    protected abstract void writeString(String text, ByteSink sink);
+    
+    /**
+     * Returns the column arrays of a batch in column order.
+     * 
+     * @param batch the batch
+     * @param names the column names
+     * @param types receives the type of each column
+     * @return the column arrays
+     */
+    protected static Object[] columns(ColumnBatch batch, List<String> names, ColumnType[] types) {
+        Object[] columns = new Object[names.size()];
+        for (int i = 0; i < columns.length; i++) {
+            String name = names.get(i);
+            types[i] = batch.getColumnType(name);
+            switch (types[i]) {
+                case LONG:
+                    columns[i] = batch.getLongColumn(name);
+                    break;
+                case DOUBLE:
+                    columns[i] = batch.getDoubleColumn(name);
+                    break;
+                default:
+                    columns[i] = batch.getStringColumn(name);
+                    break;
+            }
+        }
+        return columns;
+    }
+    
+    /**
+     * Encodes text as UTF-8 once, for delimiters and names written on every row.
+     * 
+     * @param text the text
+     * @return the encoded bytes
+     */
+    protected static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Collects the drained output in a buffer borrowed from the arena, swapping it for a larger
+     * one when it fills up.
+     */
+    private static final class ArenaChannel implements WritableByteChannel {
+        private final BufferArena arena;
+        private ByteBuffer output;
+        
+        ArenaChannel(BufferArena arena) {
+            this.arena = arena;
+            this.output = arena.borrowByteBuffer(SINK_BUFFER_BYTES);
+        }
+        
+        @Override
+        public int write(ByteBuffer source) {
+            int length = source.remaining();
+            if (output.remaining() < length) {
+                ByteBuffer larger = arena.borrowByteBuffer(Math.max(output.position() + length, output.capacity() * 2));
+                output.flip();
+                larger.put(output);
+                arena.release(output);
+                output = larger;
+            }
+            output.put(source);
+            return length;
+        }
+        
+        String decode() {
+            return new String(output.array(), output.arrayOffset(), output.position(), StandardCharsets.UTF_8);
+        }
+        
+        @Override
+        public boolean isOpen() {
+            return output != null;
+        }
+        
+        @Override
+        public void close() {
+            if (output != null) {
+                arena.release(output);
+                output = null;
+            }
+        }
+    }
+}
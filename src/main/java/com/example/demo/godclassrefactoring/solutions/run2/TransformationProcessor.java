@@ -1,19 +1,63 @@
 package com.example.demo.godclassrefactoring.solutions.run2;
 
+import com.example.demo.godclassrefactoring.columnar.ColumnBatch;
+import com.example.demo.godclassrefactoring.expression.BatchTransformer;
+
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Concrete implementation for data transformation processing.
- * Handles data transformation rules and logic.
+ * Adds output columns to columnar batches from user-configured field expressions. A list of
+ * batches, such as the frames of a binary payload, is transformed batch by batch.
  */
 public class TransformationProcessor implements DataProcessor {
     
+    private final BatchTransformer transformer;
+    
+    /**
+     * Creates a transformation processor without rules.
+     */
+    public TransformationProcessor() {
+        this(BatchTransformer.empty());
+    }
+    
+    /**
+     * Creates a transformation processor.
+     * 
+     * @param transformer the field expressions to apply to columnar batches
+     */
+    public TransformationProcessor(BatchTransformer transformer) {
+        this.transformer = transformer;
+    }
+    
     @Override
     public Object processData(Object data) {
         System.out.println("Applying data transformation rules");
         
-        // Data transformation rules
+        if (data instanceof ColumnBatch) {
+            return transformer.apply((ColumnBatch) data);
+        }
+        if (ColumnBatch.isBatchList(data)) {
+            List<ColumnBatch> batches = new ArrayList<>(((List<?>) data).size());
+            for (Object batch : (List<?>) data) {
+                batches.add(transformer.apply((ColumnBatch) batch));
+            }
+            return batches;
+        }
+        
+        // Untyped data has no fields to transform
         return "Transformed: " + data.toString();
     }
     
+    /**
+     * Records are processed independently, so batches are too.
+     */
+    @Override
+    public boolean isPartitionSafe() {
+        return true;
+    }
+    
     @Override
     public String getProcessingType() {
         return "transformation";
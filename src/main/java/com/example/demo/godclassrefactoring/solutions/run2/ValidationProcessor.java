@@ -1,19 +1,65 @@
 package com.example.demo.godclassrefactoring.solutions.run2;
 
+import com.example.demo.godclassrefactoring.columnar.ColumnBatch;
+import com.example.demo.godclassrefactoring.validation.RuleSet;
+import com.example.demo.godclassrefactoring.validation.ValidationProgram;
+import com.example.demo.godclassrefactoring.validation.ValidationResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Concrete implementation for data validation processing.
- * Handles data quality validation logic.
+ * Checks columnar batches against a rule set compiled once at construction. A list of batches,
+ * such as the frames of a binary payload, yields one result per batch.
  */
 public class ValidationProcessor implements DataProcessor {
     
+    private final ValidationProgram program;
+    
+    /**
+     * Creates a validation processor without rules.
+     */
+    public ValidationProcessor() {
+        this(RuleSet.empty());
+    }
+    
+    /**
+     * Creates a validation processor for the given rules.
+     * 
+     * @param rules the rules every batch must satisfy
+     */
+    public ValidationProcessor(RuleSet rules) {
+        this.program = rules.compile();
+    }
+    
     @Override
     public Object processData(Object data) {
         System.out.println("Validating data quality");
         
-        // Data quality validation
+        if (data instanceof ColumnBatch) {
+            return program.validate((ColumnBatch) data);
+        }
+        if (ColumnBatch.isBatchList(data)) {
+            List<ValidationResult> results = new ArrayList<>(((List<?>) data).size());
+            for (Object batch : (List<?>) data) {
+                results.add(program.validate((ColumnBatch) batch));
+            }
+            return results;
+        }
+        
+        // Untyped data has no fields to check
         return "Validated: " + data.toString();
     }
     
+    /**
+     * Records are processed independently, so batches are too.
+     */
+    @Override
+    public boolean isPartitionSafe() {
+        return true;
+    }
+    
     @Override
     public String getProcessingType() {
         return "validation";
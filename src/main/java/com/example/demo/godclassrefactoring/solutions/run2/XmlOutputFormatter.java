@@ -1,14 +1,90 @@
 package com.example.demo.godclassrefactoring.solutions.run2;
 
+import com.example.demo.godclassrefactoring.columnar.ColumnBatch;
+import com.example.demo.godclassrefactoring.columnar.ColumnType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
 /**
  * Concrete implementation for XML output formatting.
- * Handles XML-specific output formatting logic.
+ * Columnar batches are written as a rows element with one row element per row and one
+ * child element per column. A batch whose column names are not valid XML element names is
+ * rejected before anything is written. Control characters that XML 1.0 does not allow are
+ * replaced with U+FFFD, and carriage returns are written as references so parsers keep them.
  */
-public class XmlOutputFormatter implements OutputFormatter {
+public class XmlOutputFormatter extends StreamingOutputFormatter {
+    
+    // XML 1.0 names, without the rarely used ideographic and combining ranges of the full grammar
+    private static final Pattern ELEMENT_NAME = Pattern.compile("[\\p{L}_:][\\p{L}\\p{Nd}._:\\-\u00B7]*");
+    private static final byte[][] TEXT_ESCAPES = xmlEscapes();
+    private static final byte[] ROWS_START = bytes("<rows>");
+    private static final byte[] ROWS_END = bytes("</rows>");
+    private static final byte[] ROW_START = bytes("<row>");
+    private static final byte[] ROW_END = bytes("</row>");
+    
+    public XmlOutputFormatter() {
+        super("XML Output: ");
+    }
+    
+    @Override
+    protected void writeBatch(ColumnBatch batch, ByteSink sink) {
+        List<String> names = batch.getColumnNames();
+        ColumnType[] types = new ColumnType[names.size()];
+        Object[] columns = columns(batch, names, types);
+        byte[][] openTags = new byte[names.size()][];
+        byte[][] closeTags = new byte[names.size()][];
+        byte[][] emptyTags = new byte[names.size()][];
+        for (int i = 0; i < names.size(); i++) {
+            if (!ELEMENT_NAME.matcher(names.get(i)).matches()) {
+                throw new IllegalArgumentException("Column name is not a valid XML element name: " + names.get(i));
+            }
+            openTags[i] = bytes("<" + names.get(i) + ">");
+            closeTags[i] = bytes("</" + names.get(i) + ">");
+            emptyTags[i] = bytes("<" + names.get(i) + "/>");
+        }
+        
+        sink.write(ROWS_START);
+        for (int row = 0; row < batch.size(); row++) {
+            sink.write(ROW_START);
+            for (int i = 0; i < columns.length; i++) {
+                if (isNull(types[i], columns[i], row)) {
+                    sink.write(emptyTags[i]);
+                    continue;
+                }
+                sink.write(openTags[i]);
+                writeValue(types[i], columns[i], row, sink, emptyTags[i]);
+                sink.write(closeTags[i]);
+            }
+            sink.write(ROW_END);
+        }
+        sink.write(ROWS_END);
+    }
     
     @Override
-    public String formatOutput(Object data) {
-        return "XML Output: " + data.toString();
+    protected void writeString(String text, ByteSink sink) {
+        sink.writeEscaped(text, TEXT_ESCAPES);
+    }
+    
+    private static byte[][] xmlEscapes() {
+        StringBuilder characters = new StringBuilder("&<>\"'\r");
+        List<String> replacements = new ArrayList<>(List.of("&amp;", "&lt;", "&gt;", "&quot;", "&apos;", "&#13;"));
+        for (char c = 0; c < 32; c++) {
+            // Tab and line feed are the only other control characters XML 1.0 allows
+            if (c != '\t' && c != '\n' && c != '\r') {
+                characters.append(c);
+                replacements.add("\uFFFD");
+            }
+        }
+        return ByteSink.escapeTable(characters.toString(), replacements.toArray(new String[0]));
+    }
+    
+    private static boolean isNull(ColumnType type, Object column, int row) {
+        if (type == ColumnType.DOUBLE) {
+            return Double.isNaN(((double[]) column)[row]);
+        }
+        return type == ColumnType.STRING && ((String[]) column)[row] == null;
     }
     
     @Override
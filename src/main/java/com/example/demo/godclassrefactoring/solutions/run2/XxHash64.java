@@ -0,0 +1,237 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+/**
+ * Streaming 64-bit xxHash (XXH64). Input is consumed in 32 byte stripes as it arrives, so
+ * arbitrarily large inputs are hashed in one pass with constant memory. Strings are encoded
+ * to UTF-8 into an internal chunk buffer instead of through intermediate byte arrays.
+ * 
+ * Instances are not thread-safe.
+ */
+public final class XxHash64 {
+    
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+    private static final int CHUNK_BYTES = 8192;
+    
+    private final long seed;
+    private final byte[] stripe = new byte[32];
+    private final byte[] chunk = new byte[CHUNK_BYTES];
+    private int stripeLength;
+    private int chunkLength;
+    private long totalLength;
+    private long v1;
+    private long v2;
+    private long v3;
+    private long v4;
+    
+    public XxHash64() {
+        this(0);
+    }
+    
+    /**
+     * Creates a hash.
+     *
+     * @param seed the seed; different seeds give independent hash functions
+     */
+    public XxHash64(long seed) {
+        this.seed = seed;
+        reset();
+    }
+    
+    /**
+     * Hashes a byte array in one call.
+     *
+     * @param bytes the input
+     * @return the hash
+     */
+    public static long hash(byte[] bytes) {
+        return new XxHash64().update(bytes, 0, bytes.length).getValue();
+    }
+    
+    /**
+     * Starts a new hash with the same seed.
+     *
+     * @return this hash
+     */
+    public XxHash64 reset() {
+        v1 = seed + PRIME1 + PRIME2;
+        v2 = seed + PRIME2;
+        v3 = seed;
+        v4 = seed - PRIME1;
+        stripeLength = 0;
+        chunkLength = 0;
+        totalLength = 0;
+        return this;
+    }
+    
+    /**
+     * Adds bytes to the hash.
+     *
+     * @param bytes the input
+     * @param offset the start of the input
+     * @param length the number of bytes
+     * @return this hash
+     */
+    public XxHash64 update(byte[] bytes, int offset, int length) {
+        flushChunk();
+        consume(bytes, offset, length);
+        return this;
+    }
+    
+    public XxHash64 update(byte value) {
+        if (chunkLength == CHUNK_BYTES) {
+            flushChunk();
+        }
+        chunk[chunkLength++] = value;
+        return this;
+    }
+    
+    /**
+     * Adds a number as 4 little-endian bytes, e.g. to length-prefix variable sized values.
+     *
+     * @param value the number
+     * @return this hash
+     */
+    public XxHash64 updateInt(int value) {
+        update((byte) value);
+        update((byte) (value >>> 8));
+        update((byte) (value >>> 16));
+        return update((byte) (value >>> 24));
+    }
+    
+    /**
+     * Adds the UTF-8 encoding of a string.
+     *
+     * @param text the string
+     * @return this hash
+     */
+    public XxHash64 update(CharSequence text) {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            if (CHUNK_BYTES - chunkLength < 4) {
+                flushChunk();
+            }
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                chunk[chunkLength++] = (byte) c;
+            } else if (c < 0x800) {
+                chunk[chunkLength++] = (byte) (0xC0 | (c >> 6));
+                chunk[chunkLength++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                chunk[chunkLength++] = (byte) (0xF0 | (codePoint >> 18));
+                chunk[chunkLength++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                chunk[chunkLength++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                chunk[chunkLength++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                chunk[chunkLength++] = (byte) '?';
+            } else {
+                chunk[chunkLength++] = (byte) (0xE0 | (c >> 12));
+                chunk[chunkLength++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                chunk[chunkLength++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return this;
+    }
+    
+    /**
+     * Returns the hash of everything added since the last reset. More input can still be added.
+     *
+     * @return the hash
+     */
+    public long getValue() {
+        flushChunk();
+        long hash;
+        if (totalLength >= 32) {
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = mergeRound(hash, v1);
+            hash = mergeRound(hash, v2);
+            hash = mergeRound(hash, v3);
+            hash = mergeRound(hash, v4);
+        } else {
+            hash = seed + PRIME5;
+        }
+        hash += totalLength;
+        
+        int i = 0;
+        for (; i + 8 <= stripeLength; i += 8) {
+            hash ^= round(0, readLong(stripe, i));
+            hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+        }
+        if (i + 4 <= stripeLength) {
+            hash ^= (readInt(stripe, i) & 0xFFFFFFFFL) * PRIME1;
+            hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+            i += 4;
+        }
+        for (; i < stripeLength; i++) {
+            hash ^= (stripe[i] & 0xFF) * PRIME5;
+            hash = Long.rotateLeft(hash, 11) * PRIME1;
+        }
+        
+        hash ^= hash >>> 33;
+        hash *= PRIME2;
+        hash ^= hash >>> 29;
+        hash *= PRIME3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+    
+    private void flushChunk() {
+        if (chunkLength > 0) {
+            int length = chunkLength;
+            chunkLength = 0;
+            consume(chunk, 0, length);
+        }
+    }
+    
+    private void consume(byte[] bytes, int offset, int length) {
+        totalLength += length;
+        int end = offset + length;
+        if (stripeLength > 0) {
+            int fill = Math.min(32 - stripeLength, length);
+            System.arraycopy(bytes, offset, stripe, stripeLength, fill);
+            stripeLength += fill;
+            offset += fill;
+            if (stripeLength < 32) {
+                return;
+            }
+            processStripe(stripe, 0);
+            stripeLength = 0;
+        }
+        for (; offset + 32 <= end; offset += 32) {
+            processStripe(bytes, offset);
+        }
+        System.arraycopy(bytes, offset, stripe, 0, end - offset);
+        stripeLength = end - offset;
+    }
+    
+    private void processStripe(byte[] bytes, int offset) {
+        v1 = round(v1, readLong(bytes, offset));
+        v2 = round(v2, readLong(bytes, offset + 8));
+        v3 = round(v3, readLong(bytes, offset + 16));
+        v4 = round(v4, readLong(bytes, offset + 24));
+    }
+    
+    private static long round(long accumulator, long input) {
+        accumulator += input * PRIME2;
+        accumulator = Long.rotateLeft(accumulator, 31);
+        return accumulator * PRIME1;
+    }
+    
+    private static long mergeRound(long hash, long value) {
+        hash ^= round(0, value);
+        return hash * PRIME1 + PRIME4;
+    }
+    
+    private static long readLong(byte[] bytes, int offset) {
+        return (readInt(bytes, offset) & 0xFFFFFFFFL) | (long) readInt(bytes, offset + 4) << 32;
+    }
+    
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8
+            | (bytes[offset + 2] & 0xFF) << 16 | (bytes[offset + 3] & 0xFF) << 24;
+    }
+}
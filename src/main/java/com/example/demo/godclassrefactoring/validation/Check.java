@@ -0,0 +1,297 @@
+package com.example.demo.godclassrefactoring.validation;
+
+import com.example.demo.godclassrefactoring.columnar.ColumnBatch;
+import com.example.demo.godclassrefactoring.columnar.ColumnType;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * One instruction of a {@link ValidationProgram}: evaluates a rule over a whole column.
+ * 
+ * Value checks iterate the candidate rows of each 64-row word with
+ * {@link Long#numberOfTrailingZeros(long)}, skipping failed and null rows without testing them.
+ */
+abstract class Check {
+    
+    protected final int rule;
+    protected final int slot;
+    protected final String column;
+    
+    Check(int rule, int slot, String column) {
+        this.rule = rule;
+        this.slot = slot;
+        this.column = column;
+    }
+    
+    /**
+     * Relative cost per row, used to order checks cheapest first.
+     */
+    abstract int getCost();
+    
+    abstract void evaluate(ColumnBatch batch, ValidationProgram.Evaluation evaluation);
+    
+    protected IllegalArgumentException wrongType(String expected, ColumnType actual) {
+        return new IllegalArgumentException(
+            "Rule " + this + " requires a " + expected + " column, but " + column + " is " + actual);
+    }
+    
+    /**
+     * Records the null rows of a column and fails them if the column is required.
+     * Runs once per column before any value check.
+     */
+    static final class Nulls extends Check {
+        
+        Nulls(int requiredRule, int slot, String column) {
+            super(requiredRule, slot, column);
+        }
+        
+        @Override
+        int getCost() {
+            return 0;
+        }
+        
+        @Override
+        void evaluate(ColumnBatch batch, ValidationProgram.Evaluation evaluation) {
+            long[] nulls = nullRows(batch, evaluation);
+            evaluation.nullMasks[slot] = nulls;
+            if (rule < 0 || nulls == null) {
+                return;
+            }
+            for (int word = 0; word < evaluation.words(); word++) {
+                long rows = nulls[word] & ~evaluation.failed[word];
+                while (rows != 0) {
+                    evaluation.fail((word << 6) + Long.numberOfTrailingZeros(rows), rule);
+                    rows &= rows - 1;
+                }
+            }
+        }
+        
+        private long[] nullRows(ColumnBatch batch, ValidationProgram.Evaluation evaluation) {
+            long[] nulls = null;
+            switch (batch.getColumnType(column)) {
+                case DOUBLE:
+                    double[] doubles = batch.getDoubleColumn(column);
+                    for (int row = 0; row < batch.size(); row++) {
+                        if (Double.isNaN(doubles[row])) {
+                            nulls = mark(nulls, row, evaluation);
+                        }
+                    }
+                    return nulls;
+                case STRING:
+                    String[] strings = batch.getStringColumn(column);
+                    for (int row = 0; row < batch.size(); row++) {
+                        if (strings[row] == null) {
+                            nulls = mark(nulls, row, evaluation);
+                        }
+                    }
+                    return nulls;
+                default:
+                    // LONG columns cannot hold nulls
+                    return null;
+            }
+        }
+        
+        private static long[] mark(long[] nulls, int row, ValidationProgram.Evaluation evaluation) {
+            long[] mask = nulls != null ? nulls : evaluation.borrowMask();
+            mask[row >>> 6] |= 1L << row;
+            return mask;
+        }
+        
+        @Override
+        public String toString() {
+            return (rule >= 0 ? "required(" : "nulls(") + column + ")";
+        }
+    }
+    
+    /**
+     * Inclusive numeric range.
+     */
+    static final class Range extends Check {
+        private final double min;
+        private final double max;
+        
+        Range(int rule, int slot, String column, double min, double max) {
+            super(rule, slot, column);
+            this.min = min;
+            this.max = max;
+        }
+        
+        @Override
+        int getCost() {
+            return 1;
+        }
+        
+        @Override
+        void evaluate(ColumnBatch batch, ValidationProgram.Evaluation evaluation) {
+            long[] nulls = evaluation.nullMasks[slot];
+            ColumnType type = batch.getColumnType(column);
+            if (type == ColumnType.LONG) {
+                long[] values = batch.getLongColumn(column);
+                for (int word = 0; word < evaluation.words(); word++) {
+                    long rows = evaluation.candidates(word, nulls, null);
+                    while (rows != 0) {
+                        int row = (word << 6) + Long.numberOfTrailingZeros(rows);
+                        rows &= rows - 1;
+                        if (values[row] < min || values[row] > max) {
+                            evaluation.fail(row, rule);
+                        }
+                    }
+                }
+            } else if (type == ColumnType.DOUBLE) {
+                double[] values = batch.getDoubleColumn(column);
+                for (int word = 0; word < evaluation.words(); word++) {
+                    long rows = evaluation.candidates(word, nulls, null);
+                    while (rows != 0) {
+                        int row = (word << 6) + Long.numberOfTrailingZeros(rows);
+                        rows &= rows - 1;
+                        if (values[row] < min || values[row] > max) {
+                            evaluation.fail(row, rule);
+                        }
+                    }
+                }
+            } else {
+                throw wrongType("numeric", type);
+            }
+        }
+        
+        @Override
+        public String toString() {
+            return "range(" + column + ")";
+        }
+    }
+    
+    /**
+     * Full match of a precompiled regular expression.
+     */
+    static final class Matches extends Check {
+        private final Pattern pattern;
+        
+        Matches(int rule, int slot, String column, Pattern pattern) {
+            super(rule, slot, column);
+            this.pattern = pattern;
+        }
+        
+        @Override
+        int getCost() {
+            return 10;
+        }
+        
+        @Override
+        void evaluate(ColumnBatch batch, ValidationProgram.Evaluation evaluation) {
+            ColumnType type = batch.getColumnType(column);
+            if (type != ColumnType.STRING) {
+                throw wrongType("STRING", type);
+            }
+            String[] values = batch.getStringColumn(column);
+            long[] nulls = evaluation.nullMasks[slot];
+            // One matcher per batch, reset for each value
+            Matcher matcher = pattern.matcher("");
+            for (int word = 0; word < evaluation.words(); word++) {
+                long rows = evaluation.candidates(word, nulls, null);
+                while (rows != 0) {
+                    int row = (word << 6) + Long.numberOfTrailingZeros(rows);
+                    rows &= rows - 1;
+                    if (!matcher.reset(values[row]).matches()) {
+                        evaluation.fail(row, rule);
+                    }
+                }
+            }
+        }
+        
+        @Override
+        public String toString() {
+            return "matches(" + column + ")";
+        }
+    }
+    
+    /**
+     * Relation between two columns of the same row.
+     */
+    static final class CrossField extends Check {
+        private final int otherSlot;
+        private final String otherColumn;
+        private final Comparison comparison;
+        
+        CrossField(int rule, int slot, String column, int otherSlot, String otherColumn, Comparison comparison) {
+            super(rule, slot, column);
+            this.otherSlot = otherSlot;
+            this.otherColumn = otherColumn;
+            this.comparison = comparison;
+        }
+        
+        @Override
+        int getCost() {
+            return 2;
+        }
+        
+        @Override
+        void evaluate(ColumnBatch batch, ValidationProgram.Evaluation evaluation) {
+            ColumnType type = batch.getColumnType(column);
+            ColumnType otherType = batch.getColumnType(otherColumn);
+            long[] nulls = evaluation.nullMasks[slot];
+            long[] otherNulls = evaluation.nullMasks[otherSlot];
+            
+            if (type == ColumnType.STRING || otherType == ColumnType.STRING) {
+                if (type != otherType) {
+                    throw wrongType(otherType.toString(), type);
+                }
+                String[] left = batch.getStringColumn(column);
+                String[] right = batch.getStringColumn(otherColumn);
+                for (int word = 0; word < evaluation.words(); word++) {
+                    long rows = evaluation.candidates(word, nulls, otherNulls);
+                    while (rows != 0) {
+                        int row = (word << 6) + Long.numberOfTrailingZeros(rows);
+                        rows &= rows - 1;
+                        if (!comparison.test(left[row].compareTo(right[row]))) {
+                            evaluation.fail(row, rule);
+                        }
+                    }
+                }
+            } else if (type == ColumnType.LONG && otherType == ColumnType.LONG) {
+                long[] left = batch.getLongColumn(column);
+                long[] right = batch.getLongColumn(otherColumn);
+                for (int word = 0; word < evaluation.words(); word++) {
+                    long rows = evaluation.candidates(word, nulls, otherNulls);
+                    while (rows != 0) {
+                        int row = (word << 6) + Long.numberOfTrailingZeros(rows);
+                        rows &= rows - 1;
+                        if (!comparison.test(Long.compare(left[row], right[row]))) {
+                            evaluation.fail(row, rule);
+                        }
+                    }
+                }
+            } else {
+                double[] left = asDoubles(batch, column, type);
+                double[] right = asDoubles(batch, otherColumn, otherType);
+                for (int word = 0; word < evaluation.words(); word++) {
+                    long rows = evaluation.candidates(word, nulls, otherNulls);
+                    while (rows != 0) {
+                        int row = (word << 6) + Long.numberOfTrailingZeros(rows);
+                        rows &= rows - 1;
+                        if (!comparison.test(Double.compare(left[row], right[row]))) {
+                            evaluation.fail(row, rule);
+                        }
+                    }
+                }
+            }
+        }
+        
+        private static double[] asDoubles(ColumnBatch batch, String name, ColumnType type) {
+            if (type == ColumnType.DOUBLE) {
+                return batch.getDoubleColumn(name);
+            }
+            long[] longs = batch.getLongColumn(name);
+            double[] doubles = new double[batch.size()];
+            for (int row = 0; row < doubles.length; row++) {
+                doubles[row] = longs[row];
+            }
+            return doubles;
+        }
+        
+        @Override
+        public String toString() {
+            return column + " " + comparison.getSymbol() + " " + otherColumn;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.demo.godclassrefactoring.validation;
+
+/**
+ * Relation required between two fields by a cross-field rule.
+ */
+public enum Comparison {
+    LESS_THAN("<"),
+    LESS_OR_EQUAL("<="),
+    EQUAL("=="),
+    NOT_EQUAL("!="),
+    GREATER_OR_EQUAL(">="),
+    GREATER_THAN(">");
+    
+    private final String symbol;
+    
+    Comparison(String symbol) {
+        this.symbol = symbol;
+    }
+    
+    /**
+     * Tests the relation against the result of comparing the left value to the right value.
+     *
+     * @param compareResult negative, zero or positive as the left value is less than, equal to or greater than the right
+     * @return true if the relation holds
+     */
+    public boolean test(int compareResult) {
+        switch (this) {
+            case LESS_THAN:
+                return compareResult < 0;
+            case LESS_OR_EQUAL:
+                return compareResult <= 0;
+            case EQUAL:
+                return compareResult == 0;
+            case NOT_EQUAL:
+                return compareResult != 0;
+            case GREATER_OR_EQUAL:
+                return compareResult >= 0;
+            default:
+                return compareResult > 0;
+        }
+    }
+    
+    public String getSymbol() {
+        return symbol;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.demo.godclassrefactoring.validation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An ordered, immutable collection of validation rules.
+ */
+public final class RuleSet {
+    
+    private final List<ValidationRule> rules;
+    
+    private RuleSet(List<ValidationRule> rules) {
+        this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    public static RuleSet empty() {
+        return new RuleSet(Collections.emptyList());
+    }
+    
+    public List<ValidationRule> getRules() {
+        return rules;
+    }
+    
+    /**
+     * Compiles the rules into a flat program. Compile once and reuse the program for every batch.
+     *
+     * @return the compiled program
+     */
+    public ValidationProgram compile() {
+        return ValidationProgram.compile(rules);
+    }
+    
+    /**
+     * Builder for rule sets.
+     */
+    public static final class Builder {
+        private final List<ValidationRule> rules = new ArrayList<>();
+        
+        private Builder() {
+        }
+        
+        public Builder required(String column) {
+            return rule(ValidationRule.required(column));
+        }
+        
+        public Builder range(String column, double min, double max) {
+            return rule(ValidationRule.range(column, min, max));
+        }
+        
+        public Builder matches(String column, String regex) {
+            return rule(ValidationRule.matches(column, regex));
+        }
+        
+        public Builder compare(String column, Comparison comparison, String otherColumn) {
+            return rule(ValidationRule.compare(column, comparison, otherColumn));
+        }
+        
+        public Builder rule(ValidationRule rule) {
+            rules.add(rule);
+            return this;
+        }
+        
+        public RuleSet build() {
+            return new RuleSet(rules);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.demo.godclassrefactoring.validation;
+
+import com.example.demo.godclassrefactoring.buffer.BufferArena;
+import com.example.demo.godclassrefactoring.columnar.ColumnBatch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A rule set compiled into a flat list of column checks.
+ * 
+ * Compilation hoists null handling into a single check per column, which runs first and
+ * records the column's null rows, so the value checks never test for null themselves.
+ * The remaining checks are ordered cheapest first (ranges, then cross-field comparisons,
+ * then regular expressions). Each check scans one column over the whole batch and only
+ * visits rows that have not failed yet, so expensive checks see fewer rows, and
+ * evaluation stops as soon as every row has failed.
+ * 
+ * Programs are immutable and may be shared between threads.
+ */
+public final class ValidationProgram {
+    
+    private final Check[] checks;
+    private final String[] ruleNames;
+    private final String[] columns;
+    
+    private ValidationProgram(Check[] checks, String[] ruleNames, String[] columns) {
+        this.checks = checks;
+        this.ruleNames = ruleNames;
+        this.columns = columns;
+    }
+    
+    static ValidationProgram compile(List<ValidationRule> rules) {
+        Map<String, Integer> slots = new LinkedHashMap<>();
+        List<Integer> requiredRules = new ArrayList<>();
+        List<Check> valueChecks = new ArrayList<>();
+        String[] ruleNames = new String[rules.size()];
+        
+        for (int index = 0; index < rules.size(); index++) {
+            ValidationRule rule = rules.get(index);
+            ruleNames[index] = rule.getName();
+            int slot = slot(slots, requiredRules, rule.getColumn());
+            switch (rule.getKind()) {
+                case REQUIRED:
+                    if (requiredRules.get(slot) < 0) {
+                        requiredRules.set(slot, index);
+                    }
+                    break;
+                case RANGE:
+                    valueChecks.add(new Check.Range(index, slot, rule.getColumn(), rule.getMin(), rule.getMax()));
+                    break;
+                case PATTERN:
+                    valueChecks.add(new Check.Matches(index, slot, rule.getColumn(), rule.getPattern()));
+                    break;
+                case CROSS_FIELD:
+                    int otherSlot = slot(slots, requiredRules, rule.getOtherColumn());
+                    valueChecks.add(new Check.CrossField(index, slot, rule.getColumn(), otherSlot,
+                                                         rule.getOtherColumn(), rule.getComparison()));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported rule type: " + rule.getKind());
+            }
+        }
+        
+        List<Check> program = new ArrayList<>();
+        for (Map.Entry<String, Integer> column : slots.entrySet()) {
+            program.add(new Check.Nulls(requiredRules.get(column.getValue()), column.getValue(), column.getKey()));
+        }
+        // Stable sort keeps declaration order among checks of equal cost
+        valueChecks.sort(Comparator.comparingInt(Check::getCost));
+        program.addAll(valueChecks);
+        return new ValidationProgram(program.toArray(new Check[0]), ruleNames, slots.keySet().toArray(new String[0]));
+    }
+    
+    private static int slot(Map<String, Integer> slots, List<Integer> requiredRules, String column) {
+        return slots.computeIfAbsent(column, name -> {
+            requiredRules.add(-1);
+            return requiredRules.size() - 1;
+        });
+    }
+    
+    /**
+     * Validates every row of a batch.
+     *
+     * @param batch the batch to validate
+     * @return the failing rows and per-rule failure counts
+     * @throws IllegalArgumentException if a rule refers to a column the batch does not have,
+     *         or is applied to a column of the wrong type
+     */
+    public ValidationResult validate(ColumnBatch batch) {
+        for (String column : columns) {
+            if (!batch.hasColumn(column)) {
+                throw new IllegalArgumentException("Unknown column in validation rules: " + column
+                                                   + ", batch has " + batch.getColumnNames());
+            }
+        }
+        Evaluation evaluation = new Evaluation(batch.size(), columns.length, ruleNames.length);
+        try {
+            for (Check check : checks) {
+                if (evaluation.allFailed()) {
+                    break;
+                }
+                check.evaluate(batch, evaluation);
+            }
+        } finally {
+            evaluation.releaseMasks();
+        }
+        return new ValidationResult(batch.size(), evaluation.failed, ruleNames, evaluation.failuresPerRule);
+    }
+    
+    /**
+     * Describes the compiled checks in evaluation order.
+     *
+     * @return one entry per check
+     */
+    public List<String> getPlan() {
+        List<String> plan = new ArrayList<>(checks.length);
+        for (Check check : checks) {
+            plan.add(check.toString());
+        }
+        return plan;
+    }
+    
+    /**
+     * Mutable state of one validation run: the failing row bitmap and the null bitmaps
+     * recorded by the null checks. The null bitmaps are borrowed from the thread's
+     * {@link BufferArena} and released when the run ends.
+     */
+    static final class Evaluation {
+        final long[] failed;
+        final long[][] nullMasks;
+        final int[] failuresPerRule;
+        private final int size;
+        private final long lastWordMask;
+        private int failedCount;
+        
+        Evaluation(int size, int columnCount, int ruleCount) {
+            this.size = size;
+            this.failed = new long[(size + 63) >>> 6];
+            this.nullMasks = new long[columnCount][];
+            this.failuresPerRule = new int[ruleCount];
+            this.lastWordMask = (size & 63) == 0 ? -1L : (1L << size) - 1;
+        }
+        
+        int words() {
+            return failed.length;
+        }
+        
+        /**
+         * Borrows a cleared bitmap of {@link #words()} words, released by {@link #releaseMasks()}
+         * once it is stored in {@link #nullMasks}.
+         */
+        long[] borrowMask() {
+            long[] mask = BufferArena.current().borrowLongs(failed.length);
+            Arrays.fill(mask, 0, failed.length, 0L);
+            return mask;
+        }
+        
+        void releaseMasks() {
+            BufferArena arena = BufferArena.current();
+            for (int slot = 0; slot < nullMasks.length; slot++) {
+                if (nullMasks[slot] != null) {
+                    arena.release(nullMasks[slot]);
+                    nullMasks[slot] = null;
+                }
+            }
+        }
+        
+        /**
+         * Returns the rows of a 64-row word that have not failed and are not null in the given columns.
+         */
+        long candidates(int word, long[] nulls, long[] otherNulls) {
+            long excluded = failed[word];
+            if (nulls != null) {
+                excluded |= nulls[word];
+            }
+            if (otherNulls != null) {
+                excluded |= otherNulls[word];
+            }
+            return ~excluded & rowMask(word);
+        }
+        
+        long rowMask(int word) {
+            return word == failed.length - 1 ? lastWordMask : -1L;
+        }
+        
+        void fail(int row, int rule) {
+            failed[row >>> 6] |= 1L << row;
+            failuresPerRule[rule]++;
+            failedCount++;
+        }
+        
+        boolean allFailed() {
+            return failedCount == size;
+        }
+    }
+}
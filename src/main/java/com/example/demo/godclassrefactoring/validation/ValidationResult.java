@@ -0,0 +1,67 @@
+package com.example.demo.godclassrefactoring.validation;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Outcome of validating a batch: a bitmap of failing rows and how many rows each rule rejected.
+ * 
+ * A row is attributed to the first rule it fails in evaluation order; later rules skip it.
+ */
+public final class ValidationResult {
+    
+    private final int size;
+    private final BitSet failedRows;
+    private final Map<String, Integer> ruleFailures;
+    
+    ValidationResult(int size, long[] failedWords, String[] ruleNames, int[] failuresPerRule) {
+        this.size = size;
+        this.failedRows = BitSet.valueOf(failedWords);
+        Map<String, Integer> failures = new LinkedHashMap<>();
+        for (int rule = 0; rule < ruleNames.length; rule++) {
+            failures.merge(ruleNames[rule], failuresPerRule[rule], Integer::sum);
+        }
+        this.ruleFailures = Collections.unmodifiableMap(failures);
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isValid() {
+        return failedRows.isEmpty();
+    }
+    
+    public boolean isValid(int row) {
+        return !failedRows.get(row);
+    }
+    
+    public int getFailureCount() {
+        return failedRows.cardinality();
+    }
+    
+    /**
+     * Returns the failing rows.
+     *
+     * @return a copy of the failing row bitmap
+     */
+    public BitSet getFailedRows() {
+        return (BitSet) failedRows.clone();
+    }
+    
+    /**
+     * Returns the number of rows rejected by each rule, in rule declaration order.
+     *
+     * @return failures per rule name
+     */
+    public Map<String, Integer> getRuleFailures() {
+        return ruleFailures;
+    }
+    
+    @Override
+    public String toString() {
+        return "Validated: " + size + " rows, " + getFailureCount() + " failed " + ruleFailures;
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.demo.godclassrefactoring.validation;
+
+import java.util.regex.Pattern;
+
+/**
+ * A declarative field rule. Rules are plain descriptions; {@link RuleSet#compile()} turns
+ * them into an executable {@link ValidationProgram}.
+ * 
+ * A value is null when a STRING cell is null or a DOUBLE cell is NaN. Only
+ * {@link #required(String)} rejects nulls; every other rule skips null values. Validating a
+ * batch that lacks a rule's column is an error.
+ */
+public final class ValidationRule {
+    
+    enum Kind { REQUIRED, RANGE, PATTERN, CROSS_FIELD }
+    
+    private final Kind kind;
+    private final String name;
+    private final String column;
+    private final String otherColumn;
+    private final double min;
+    private final double max;
+    private final Pattern pattern;
+    private final Comparison comparison;
+    
+    private ValidationRule(Kind kind, String name, String column, String otherColumn, double min, double max,
+                           Pattern pattern, Comparison comparison) {
+        this.kind = kind;
+        this.name = name;
+        this.column = column;
+        this.otherColumn = otherColumn;
+        this.min = min;
+        this.max = max;
+        this.pattern = pattern;
+        this.comparison = comparison;
+    }
+    
+    /**
+     * Requires a value in the column.
+     *
+     * @param column the column name
+     * @return the rule
+     */
+    public static ValidationRule required(String column) {
+        return new ValidationRule(Kind.REQUIRED, "required(" + column + ")", column, null, 0, 0, null, null);
+    }
+    
+    /**
+     * Requires a numeric value within an inclusive range.
+     *
+     * @param column the LONG or DOUBLE column name
+     * @param min the smallest allowed value
+     * @param max the largest allowed value
+     * @return the rule
+     */
+    public static ValidationRule range(String column, double min, double max) {
+        if (min > max) {
+            throw new IllegalArgumentException("Invalid range for " + column + ": " + min + " > " + max);
+        }
+        return new ValidationRule(Kind.RANGE, "range(" + column + ")", column, null, min, max, null, null);
+    }
+    
+    /**
+     * Requires a string value matching a regular expression in full. The expression is
+     * compiled here, once, rather than per value.
+     *
+     * @param column the STRING column name
+     * @param regex the regular expression
+     * @return the rule
+     */
+    public static ValidationRule matches(String column, String regex) {
+        return new ValidationRule(Kind.PATTERN, "matches(" + column + ")", column, null, 0, 0,
+                                  Pattern.compile(regex), null);
+    }
+    
+    /**
+     * Requires a relation between two columns of the same kind (both numeric or both STRING).
+     *
+     * @param column the left column name
+     * @param comparison the required relation
+     * @param otherColumn the right column name
+     * @return the rule
+     */
+    public static ValidationRule compare(String column, Comparison comparison, String otherColumn) {
+        return new ValidationRule(Kind.CROSS_FIELD, column + " " + comparison.getSymbol() + " " + otherColumn,
+                                  column, otherColumn, 0, 0, null, comparison);
+    }
+    
+    /**
+     * Returns a copy of this rule reported under a different name.
+     *
+     * @param name the rule name
+     * @return the renamed rule
+     */
+    public ValidationRule named(String name) {
+        return new ValidationRule(kind, name, column, otherColumn, min, max, pattern, comparison);
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public String getColumn() {
+        return column;
+    }
+    
+    Kind getKind() {
+        return kind;
+    }
+    
+    String getOtherColumn() {
+        return otherColumn;
+    }
+    
+    double getMin() {
+        return min;
+    }
+    
+    double getMax() {
+        return max;
+    }
+    
+    Pattern getPattern() {
+        return pattern;
+    }
+    
+    Comparison getComparison() {
+        return comparison;
+    }
+    
+    @Override
+    public String toString() {
+        return name;
+    }
+}
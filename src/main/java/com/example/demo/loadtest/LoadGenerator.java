@@ -0,0 +1,237 @@
+package com.example.demo.loadtest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator: requests arrive on a schedule fixed by the target rate, whether or
+ * not earlier requests have completed, and a pool of workers serves them in arrival order.
+ * 
+ * A closed-loop benchmark waits for each request before sending the next, so when the system
+ * stalls it simply stops sending and the stall shows up as one slow request instead of every
+ * request that would have arrived meanwhile (coordinated omission). Here each request's latency
+ * is measured from its scheduled arrival, so time spent waiting behind a stall counts, and the
+ * percentiles are those a client population sending at the target rate would see.
+ * 
+ * The worker count stands for the request-handling concurrency of the node under test; when it
+ * cannot keep up with the rate, requests queue and their response time grows with the backlog.
+ * Response times also include the delay of waking a worker at the scheduled time, typically
+ * some tens of microseconds, which bounds the resolution of sub-millisecond objectives.
+ */
+public final class LoadGenerator {
+    
+    /**
+     * Spacing of the scheduled arrivals
+     */
+    public enum Arrivals {
+        /** Evenly spaced arrivals at exactly the target rate */
+        UNIFORM,
+        /** Exponentially distributed gaps averaging the target rate, like independent clients */
+        POISSON
+    }
+    
+    private final double ratePerSecond;
+    private final long warmupNanos;
+    private final long durationNanos;
+    private final int workers;
+    private final Arrivals arrivals;
+    private final long seed;
+    
+    private LoadGenerator(Builder builder) {
+        this.ratePerSecond = builder.ratePerSecond;
+        this.warmupNanos = builder.warmup.toNanos();
+        this.durationNanos = builder.duration.toNanos();
+        this.workers = builder.workers;
+        this.arrivals = builder.arrivals;
+        this.seed = builder.seed;
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    /**
+     * Drives the mix at the target rate for the warm-up and the measured duration, then waits
+     * for every scheduled request to complete. Requests scheduled during the warm-up run but
+     * are not reported.
+     *
+     * @param mix the operations to send
+     * @return the latencies of the requests scheduled after the warm-up
+     */
+    public LoadReport run(LoadMix mix) {
+        List<LoadReport.OperationReport> operations = new ArrayList<>(mix.size());
+        for (int i = 0; i < mix.size(); i++) {
+            operations.add(new LoadReport.OperationReport(mix.getName(i)));
+        }
+        long start = System.nanoTime();
+        Schedule schedule = new Schedule(mix, start, start + warmupNanos + durationNanos);
+        long measureFrom = start + warmupNanos;
+        LongAccumulator maxStartLag = new LongAccumulator(Math::max, 0);
+        
+        List<Thread> threads = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            Thread thread = new Thread(() -> serve(mix, schedule, measureFrom, operations, maxStartLag),
+                                       "load-generator-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the load generator", e);
+        }
+        long lastCompletion = schedule.getLastCompletion();
+        long measuredNanos = lastCompletion > measureFrom ? lastCompletion - measureFrom : 0;
+        return new LoadReport(ratePerSecond, measuredNanos, maxStartLag.get(), operations);
+    }
+    
+    private void serve(LoadMix mix, Schedule schedule, long measureFrom, List<LoadReport.OperationReport> operations,
+                       LongAccumulator maxStartLag) {
+        long[] arrival = new long[2];
+        while (schedule.next(arrival)) {
+            long intendedStart = arrival[0];
+            int operation = (int) arrival[1];
+            for (long wait = intendedStart - System.nanoTime(); wait > 0; wait = intendedStart - System.nanoTime()) {
+                LockSupport.parkNanos(wait);
+            }
+            long startTime = System.nanoTime();
+            boolean failed = false;
+            try {
+                mix.getOperation(operation).run();
+            } catch (RuntimeException e) {
+                failed = true;
+            }
+            long endTime = System.nanoTime();
+            schedule.completed(endTime);
+            if (intendedStart >= measureFrom) {
+                operations.get(operation).record(intendedStart, startTime, endTime, failed);
+                maxStartLag.accumulate(startTime - intendedStart);
+            }
+        }
+    }
+    
+    /**
+     * Hands out the scheduled arrivals in order, each with the operation it sends.
+     */
+    private final class Schedule {
+        private final LoadMix mix;
+        private final long start;
+        private final long end;
+        private final SplittableRandom random = new SplittableRandom(seed);
+        private final double intervalNanos = 1e9 / ratePerSecond;
+        private final LongAccumulator lastCompletion = new LongAccumulator(Math::max, Long.MIN_VALUE);
+        private long sent;
+        private double offsetNanos;
+        
+        Schedule(LoadMix mix, long start, long end) {
+            this.mix = mix;
+            this.start = start;
+            this.end = end;
+        }
+        
+        /**
+         * Takes the next arrival.
+         *
+         * @param arrival receives the scheduled start time and the operation index
+         * @return false once the schedule has passed the end of the run
+         */
+        synchronized boolean next(long[] arrival) {
+            if (arrivals == Arrivals.UNIFORM) {
+                offsetNanos = sent * intervalNanos;
+            } else if (sent > 0) {
+                offsetNanos += -Math.log(1 - random.nextDouble()) * intervalNanos;
+            }
+            long intendedStart = start + (long) offsetNanos;
+            if (intendedStart >= end) {
+                return false;
+            }
+            sent++;
+            arrival[0] = intendedStart;
+            arrival[1] = mix.pick(random.nextDouble());
+            return true;
+        }
+        
+        void completed(long time) {
+            lastCompletion.accumulate(time);
+        }
+        
+        long getLastCompletion() {
+            return lastCompletion.get();
+        }
+    }
+    
+    /**
+     * Builder for load generators
+     */
+    public static final class Builder {
+        private double ratePerSecond = 1_000;
+        private Duration warmup = Duration.ofSeconds(5);
+        private Duration duration = Duration.ofSeconds(30);
+        private int workers = Runtime.getRuntime().availableProcessors() * 4;
+        private Arrivals arrivals = Arrivals.POISSON;
+        private long seed = 42;
+        
+        private Builder() {
+        }
+        
+        public Builder rate(double ratePerSecond) {
+            if (!(ratePerSecond > 0) || Double.isInfinite(ratePerSecond)) {
+                throw new IllegalArgumentException("Rate must be positive: " + ratePerSecond);
+            }
+            this.ratePerSecond = ratePerSecond;
+            return this;
+        }
+        
+        /**
+         * Sets how long the mix runs before and while latencies are recorded.
+         *
+         * @param warmup the unreported time at the start, e.g. for JIT compilation
+         * @param duration the measured time
+         * @return this builder
+         */
+        public Builder duration(Duration warmup, Duration duration) {
+            if (warmup.isNegative() || duration.isNegative() || duration.isZero()) {
+                throw new IllegalArgumentException("Duration must be positive and warm-up not negative");
+            }
+            this.warmup = warmup;
+            this.duration = duration;
+            return this;
+        }
+        
+        public Builder workers(int workers) {
+            if (workers <= 0) {
+                throw new IllegalArgumentException("Worker count must be positive: " + workers);
+            }
+            this.workers = workers;
+            return this;
+        }
+        
+        public Builder arrivals(Arrivals arrivals) {
+            this.arrivals = arrivals;
+            return this;
+        }
+        
+        /**
+         * Sets the seed of the arrival gaps and operation choices, so runs send the same sequence.
+         *
+         * @param seed the random seed
+         * @return this builder
+         */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+        
+        public LoadGenerator build() {
+            return new LoadGenerator(this);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.demo.loadtest;
+
+import com.example.demo.debugbuggycode.BuggyCache;
+import com.example.demo.godclassrefactoring.solutions.run2.RefactoredOrderProcessor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Weighted mix of named operations a {@link LoadGenerator} draws every request from, e.g. 40%
+ * CSV, 30% JSON and 30% XML processing. Weights are relative and need not add up to 1.
+ */
+public final class LoadMix {
+    
+    private final String[] names;
+    private final Runnable[] operations;
+    private final double[] cumulativeWeights;
+    
+    private LoadMix(Builder builder) {
+        int size = builder.names.size();
+        this.names = builder.names.toArray(new String[0]);
+        this.operations = builder.operations.toArray(new Runnable[0]);
+        this.cumulativeWeights = new double[size];
+        double total = 0;
+        for (int i = 0; i < size; i++) {
+            total += builder.weights.get(i);
+            cumulativeWeights[i] = total;
+        }
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    public int size() {
+        return names.length;
+    }
+    
+    public String getName(int operation) {
+        return names[operation];
+    }
+    
+    Runnable getOperation(int operation) {
+        return operations[operation];
+    }
+    
+    /**
+     * Picks the operation a uniformly distributed random number falls on.
+     *
+     * @param random a number between 0 (inclusive) and 1 (exclusive)
+     * @return the index of the operation
+     */
+    int pick(double random) {
+        double target = random * cumulativeWeights[cumulativeWeights.length - 1];
+        for (int i = 0; i < cumulativeWeights.length - 1; i++) {
+            if (target < cumulativeWeights[i]) {
+                return i;
+            }
+        }
+        return cumulativeWeights.length - 1;
+    }
+    
+    /**
+     * Builder for load mixes
+     */
+    public static final class Builder {
+        private final List<String> names = new ArrayList<>();
+        private final List<Double> weights = new ArrayList<>();
+        private final List<Runnable> operations = new ArrayList<>();
+        
+        private Builder() {
+        }
+        
+        /**
+         * Adds an operation; an exception it throws counts as an error of the request.
+         *
+         * @param name the name the operation is reported under
+         * @param weight the relative share of requests
+         * @param operation the request
+         * @return this builder
+         */
+        public Builder add(String name, double weight, Runnable operation) {
+            if (!(weight > 0) || Double.isInfinite(weight)) {
+                throw new IllegalArgumentException("Weight must be positive: " + weight);
+            }
+            if (names.contains(name)) {
+                throw new IllegalArgumentException("Duplicate operation: " + name);
+            }
+            names.add(name);
+            weights.add(weight);
+            operations.add(operation);
+            return this;
+        }
+        
+        /**
+         * Adds {@link RefactoredOrderProcessor#processData} requests, reported as
+         * {@code dataType/processingType}.
+         *
+         * @param processor the processor under load
+         * @param dataType the type of data to process
+         * @param processingType the type of processing to apply
+         * @param rawData the input of every request
+         * @param weight the relative share of requests
+         * @return this builder
+         */
+        public Builder processData(RefactoredOrderProcessor processor, String dataType, String processingType,
+                                   List<String> rawData, double weight) {
+            return add(dataType + "/" + processingType, weight,
+                       () -> processor.processData(dataType, processingType, rawData));
+        }
+        
+        /**
+         * Adds {@link BuggyCache#get} requests for keys drawn uniformly from {@code 0..keys-1}.
+         *
+         * @param cache the cache under load
+         * @param keys the number of distinct keys
+         * @param weight the relative share of requests
+         * @return this builder
+         */
+        public Builder cacheGet(BuggyCache<Integer, String> cache, int keys, double weight) {
+            checkKeys(keys);
+            return add("cache.get", weight, () -> cache.get(ThreadLocalRandom.current().nextInt(keys)));
+        }
+        
+        /**
+         * Adds {@link BuggyCache#put} requests for keys drawn uniformly from {@code 0..keys-1}.
+         *
+         * @param cache the cache under load
+         * @param keys the number of distinct keys
+         * @param weight the relative share of requests
+         * @return this builder
+         */
+        public Builder cachePut(BuggyCache<Integer, String> cache, int keys, double weight) {
+            checkKeys(keys);
+            return add("cache.put", weight, () -> cache.put(ThreadLocalRandom.current().nextInt(keys), "value"));
+        }
+        
+        private static void checkKeys(int keys) {
+            if (keys <= 0) {
+                throw new IllegalArgumentException("Key count must be positive: " + keys);
+            }
+        }
+        
+        public LoadMix build() {
+            if (names.isEmpty()) {
+                throw new IllegalArgumentException("Load mix needs at least one operation");
+            }
+            return new LoadMix(this);
+        }
+    }
+}
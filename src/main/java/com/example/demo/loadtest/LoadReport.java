@@ -0,0 +1,167 @@
+package com.example.demo.loadtest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Outcome of a {@link LoadGenerator} run after the warm-up.
+ * 
+ * Response time runs from the moment a request was scheduled to arrive until it completed, so
+ * it includes the time the request waited for a free worker; this is the latency a client of
+ * an overloaded node sees. Service time runs from the moment a worker started the request and
+ * is what a closed-loop benchmark would report. A growing gap between the two means the
+ * offered rate exceeds what the workers can serve.
+ */
+public final class LoadReport {
+    
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    
+    private final double targetRate;
+    private final long measuredNanos;
+    private final long maxStartLagNanos;
+    private final List<OperationReport> operations;
+    private final LatencyRecorder responseTime = new LatencyRecorder();
+    private final LatencyRecorder serviceTime = new LatencyRecorder();
+    
+    LoadReport(double targetRate, long measuredNanos, long maxStartLagNanos, List<OperationReport> operations) {
+        this.targetRate = targetRate;
+        this.measuredNanos = measuredNanos;
+        this.maxStartLagNanos = maxStartLagNanos;
+        this.operations = Collections.unmodifiableList(new ArrayList<>(operations));
+        for (OperationReport operation : operations) {
+            responseTime.add(operation.responseTime);
+            serviceTime.add(operation.serviceTime);
+        }
+    }
+    
+    public double getTargetRate() {
+        return targetRate;
+    }
+    
+    /**
+     * Returns the completed requests per second over the measured part of the run.
+     *
+     * @return the achieved rate
+     */
+    public double getAchievedRate() {
+        return measuredNanos == 0 ? 0.0 : getRequests() * 1e9 / measuredNanos;
+    }
+    
+    public long getRequests() {
+        return responseTime.getCount();
+    }
+    
+    public long getErrors() {
+        long errors = 0;
+        for (OperationReport operation : operations) {
+            errors += operation.getErrors();
+        }
+        return errors;
+    }
+    
+    /**
+     * Returns how far the start of a request fell behind its schedule at most, the time the
+     * longest waiting request spent queued for a worker.
+     *
+     * @return the lag in nanoseconds
+     */
+    public long getMaxStartLagNanos() {
+        return maxStartLagNanos;
+    }
+    
+    public long getMeasuredNanos() {
+        return measuredNanos;
+    }
+    
+    public LatencyRecorder getResponseTime() {
+        return responseTime;
+    }
+    
+    public LatencyRecorder getServiceTime() {
+        return serviceTime;
+    }
+    
+    public List<OperationReport> getOperations() {
+        return operations;
+    }
+    
+    /**
+     * Checks a latency objective against the response time of all requests, e.g. p99 below 50ms.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @param limit the highest acceptable latency at that percentile
+     * @return true if the percentile is within the limit and no request failed
+     */
+    public boolean meetsSlo(double percentile, Duration limit) {
+        return getErrors() == 0 && responseTime.getPercentileNanos(percentile) <= limit.toNanos();
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Target %.0f req/s, achieved %.0f req/s over %.1f s, max start lag %.2f ms%n",
+                                    targetRate, getAchievedRate(), measuredNanos / 1e9, maxStartLagNanos / 1e6));
+        report.append(String.format("%-22s %9s %7s %10s %10s %10s %10s %10s %10s%n", "operation", "requests", "errors",
+                                    "mean ms", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+        for (OperationReport operation : operations) {
+            appendRow(report, operation.getName(), operation.getResponseTime(), operation.getErrors());
+        }
+        appendRow(report, "all (response time)", responseTime, getErrors());
+        appendRow(report, "all (service time)", serviceTime, getErrors());
+        return report.toString();
+    }
+    
+    private static void appendRow(StringBuilder report, String name, LatencyRecorder latency, long errors) {
+        report.append(String.format("%-22s %9d %7d %10.3f", name, latency.getCount(), errors,
+                                    latency.getMeanNanos() / 1e6));
+        for (double percentile : PERCENTILES) {
+            report.append(String.format(" %10.3f", latency.getPercentileNanos(percentile) / 1e6));
+        }
+        report.append(String.format(" %10.3f%n", latency.getMaxNanos() / 1e6));
+    }
+    
+    /**
+     * Latencies and errors of one operation of the mix
+     */
+    public static final class OperationReport {
+        private final String name;
+        private final LatencyRecorder responseTime = new LatencyRecorder();
+        private final LatencyRecorder serviceTime = new LatencyRecorder();
+        private final LongAdder errors = new LongAdder();
+        
+        OperationReport(String name) {
+            this.name = name;
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public long getRequests() {
+            return responseTime.getCount();
+        }
+        
+        public long getErrors() {
+            return errors.sum();
+        }
+        
+        public LatencyRecorder getResponseTime() {
+            return responseTime;
+        }
+        
+        public LatencyRecorder getServiceTime() {
+            return serviceTime;
+        }
+        
+        void record(long intendedStart, long start, long end, boolean failed) {
+            responseTime.record(end - intendedStart);
+            serviceTime.record(end - start);
+            if (failed) {
+                errors.increment();
+            }
+        }
+    }
+}
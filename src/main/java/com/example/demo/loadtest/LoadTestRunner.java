@@ -0,0 +1,81 @@
+package com.example.demo.loadtest;
+
+import com.example.demo.debugbuggycode.BuggyCache;
+import com.example.demo.godclassrefactoring.solutions.run2.RefactoredOrderProcessor;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drives open-loop traffic against {@link RefactoredOrderProcessor} with a mix of data types,
+ * then against {@link BuggyCache} with a read-heavy mix, and checks the p99 response time of
+ * each against a latency objective. Exits with status 1 if an objective is missed, so a
+ * capacity check can run as a build step.
+ * 
+ * Usage: LoadTestRunner [ratePerSecond] [seconds] [workers] [p99Millis] [records]
+ */
+public class LoadTestRunner {
+    
+    public static void main(String[] args) {
+        double rate = args.length > 0 ? Double.parseDouble(args[0]) : 5_000;
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 30;
+        int workers = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+        long p99Millis = args.length > 3 ? Long.parseLong(args[3]) : 50;
+        int records = args.length > 4 ? Integer.parseInt(args[4]) : 20;
+        
+        LoadGenerator generator = LoadGenerator.builder()
+            .rate(rate)
+            .duration(Duration.ofSeconds(Math.min(10, seconds)), Duration.ofSeconds(seconds))
+            .workers(workers)
+            .build();
+        Duration slo = Duration.ofMillis(p99Millis);
+        
+        System.out.println("=== Load Test ===");
+        System.out.println("Rate: " + rate + " req/s, duration: " + seconds + "s, workers: " + workers
+            + ", SLO: p99 <= " + p99Millis + "ms");
+        System.out.println();
+        
+        List<String> rawData = new ArrayList<>(records);
+        for (int i = 0; i < records; i++) {
+            rawData.add("order" + i + ",customer" + (i % 7) + "," + (i % 5 + 1));
+        }
+        RefactoredOrderProcessor processor = new RefactoredOrderProcessor();
+        LoadMix processorMix = LoadMix.builder()
+            .processData(processor, "csv", "analytics", rawData, 40)
+            .processData(processor, "json", "validation", rawData, 30)
+            .processData(processor, "xml", "transformation", rawData, 20)
+            .processData(processor, "database", "aggregation", rawData, 10)
+            .build();
+        boolean passed = run("RefactoredOrderProcessor.processData", generator, processorMix, slo);
+        
+        BuggyCache<Integer, String> cache = new BuggyCache<>(10_000, 60_000);
+        LoadMix cacheMix = LoadMix.builder()
+            .cacheGet(cache, 10_000, 90)
+            .cachePut(cache, 10_000, 10)
+            .build();
+        passed &= run("BuggyCache", generator, cacheMix, slo);
+        
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+    
+    private static boolean run(String name, LoadGenerator generator, LoadMix mix, Duration slo) {
+        // The processors log every request; keep the report readable
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        LoadReport report;
+        try {
+            report = generator.run(mix);
+        } finally {
+            System.setOut(console);
+        }
+        boolean passed = report.meetsSlo(99, slo);
+        System.out.println("--- " + name + ": " + (passed ? "PASS" : "FAIL") + " ---");
+        System.out.println(report);
+        return passed;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.demo.readmegeneration;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
@@ -18,10 +19,17 @@ import java.util.stream.Collectors;
 public class DataProcessor {
     
     private final Map<String, Double> conversionRates;
+    // Rates by target currency, then source currency, so converting needs no per-row lookup key
+    private final Map<String, Map<String, Double>> ratesByTarget;
     
     public DataProcessor() {
         this.conversionRates = new HashMap<>();
         initializeConversionRates();
+        this.ratesByTarget = new HashMap<>();
+        for (Map.Entry<String, Double> rate : conversionRates.entrySet()) {
+            String[] currencies = rate.getKey().split("_");
+            ratesByTarget.computeIfAbsent(currencies[1], target -> new HashMap<>()).put(currencies[0], rate.getValue());
+        }
     }
     
     private void initializeConversionRates() {
@@ -34,14 +42,15 @@ public class DataProcessor {
     }
     
     // Complex algorithm that needs good documentation
+    // Sums converted amounts directly, so the hot loop allocates nothing per transaction
     public List<TransactionSummary> processTransactions(List<Transaction> transactions, 
                                                        String targetCurrency) {
+        Map<String, Double> rates = ratesByTarget.getOrDefault(targetCurrency, Collections.emptyMap());
         return transactions.stream()
             .filter(transaction -> transaction.getAmount() > 0)
-            .map(transaction -> convertTransaction(transaction, targetCurrency))
             .collect(Collectors.groupingBy(
                 Transaction::getCategory,
-                Collectors.summingDouble(Transaction::getAmount)
+                Collectors.summingDouble(transaction -> convertAmount(transaction, targetCurrency, rates))
             ))
             .entrySet()
             .stream()
@@ -55,26 +64,19 @@ public class DataProcessor {
             .collect(Collectors.toList());
     }
     
-    private Transaction convertTransaction(Transaction transaction, String targetCurrency) {
+    private double convertAmount(Transaction transaction, String targetCurrency, Map<String, Double> rates) {
         if (transaction.getCurrency().equals(targetCurrency)) {
-            return transaction;
+            return transaction.getAmount();
         }
         
-        String conversionKey = transaction.getCurrency() + "_" + targetCurrency;
-        Double rate = conversionRates.get(conversionKey);
+        Double rate = rates.get(transaction.getCurrency());
         
         if (rate == null) {
-            throw new IllegalArgumentException("Conversion rate not found: " + conversionKey);
+            throw new IllegalArgumentException("Conversion rate not found: " + transaction.getCurrency() + "_"
+                + targetCurrency);
         }
         
-        double convertedAmount = transaction.getAmount() * rate;
-        return new Transaction(
-            transaction.getId(),
-            transaction.getCategory(),
-            convertedAmount,
-            targetCurrency,
-            transaction.getTimestamp()
-        );
+        return transaction.getAmount() * rate;
     }
     
     private double calculateTaxRate(String category) {
@@ -0,0 +1,92 @@
+package com.example.demo.startup;
+
+import com.example.demo.DemoRunner;
+import com.example.demo.debugbuggycode.BuggyCache;
+import com.example.demo.godclassrefactoring.OrderProcessor;
+import com.example.demo.godclassrefactoring.refactored.RefactoredDataProcessor;
+import com.example.demo.godclassrefactoring.solutions.run2.RefactoredOrderProcessor;
+import com.example.demo.readmegeneration.DataProcessor;
+import com.example.demo.readmegeneration.Transaction;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Training workload for the AppCDS archive: runs every loader, processor and formatter of each
+ * pipeline once, so every class a short-lived job loads is in the archive. Run it with
+ * {@code -XX:ArchiveClassesAtExit}; {@code mvn -Pappcds package} does, writing
+ * {@code target/app-cds.jsa}.
+ * 
+ * A combination that fails, e.g. binary input given text records, still loads its classes,
+ * so failures are counted and the training goes on.
+ */
+public class CdsTraining {
+    
+    private static final String[] DATA_TYPES = {"csv", "json", "xml", "database"};
+    private static final String[] PROCESSING_TYPES = {"analytics", "transformation", "validation", "aggregation"};
+    private static final String[] RUN1_PROCESSING_TYPES = {"validate", "transform"};
+    
+    public static void main(String[] args) {
+        List<String> records = Arrays.asList("order1,customer1,3", "order2,customer2,5", "order3,customer1,2");
+        int failures = 0;
+        
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            DemoRunner.main(new String[0]);
+            
+            OrderProcessor legacy = new OrderProcessor();
+            RefactoredDataProcessor refactored = new RefactoredDataProcessor();
+            for (String dataType : DATA_TYPES) {
+                for (String processingType : PROCESSING_TYPES) {
+                    failures += run(() -> legacy.processData(dataType, processingType, records));
+                    failures += run(() -> refactored.processData(dataType, processingType, records));
+                }
+                for (String processingType : RUN1_PROCESSING_TYPES) {
+                    failures += run(() -> {
+                        try (com.example.demo.godclassrefactoring.solutions.run1.OrderProcessor run1 =
+                                 new com.example.demo.godclassrefactoring.solutions.run1.OrderProcessor(
+                                     dataType, processingType, "database")) {
+                            run1.processData(records);
+                        }
+                    });
+                }
+            }
+            
+            RefactoredOrderProcessor run2 = new RefactoredOrderProcessor();
+            for (String dataType : run2.getAvailableDataTypes()) {
+                for (String processingType : run2.getAvailableProcessingTypes()) {
+                    failures += run(() -> run2.processData(dataType, processingType, records));
+                }
+            }
+            
+            DataProcessor transactions = new DataProcessor();
+            List<Transaction> sample = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                sample.add(new Transaction("t" + i, i % 2 == 0 ? "food" : "services", i + 1,
+                                           i % 3 == 0 ? "USD" : "EUR", LocalDateTime.of(2024, 1, 1, 0, 0)));
+            }
+            failures += run(() -> transactions.processTransactions(sample, "EUR"));
+            
+            BuggyCache<String, String> cache = new BuggyCache<>(10, 60_000);
+            cache.put("key", "value");
+            cache.get("key");
+        } finally {
+            System.setOut(console);
+        }
+        System.out.println("CDS training finished, " + failures + " combinations failed");
+    }
+    
+    private static int run(Runnable combination) {
+        try {
+            combination.run();
+            return 0;
+        } catch (RuntimeException e) {
+            return 1;
+        }
+    }
+}
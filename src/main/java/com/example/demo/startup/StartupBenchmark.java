@@ -0,0 +1,91 @@
+package com.example.demo.startup;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures the wall-clock time of short-lived JVMs running an entry point, from process start
+ * to exit, without class data sharing, with the JDK's default archive of its own classes, and
+ * with the application archive built by {@code mvn -Pappcds package}. Runs alternate between
+ * the modes so disk caching and machine load affect each alike.
+ * 
+ * Usage: StartupBenchmark [runs] [mainClass] [archive]
+ */
+public class StartupBenchmark {
+    
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        String mainClass = args.length > 1 ? args[1] : "com.example.demo.DemoRunner";
+        Path classPath = ownClassPath();
+        Path archive = args.length > 2 ? Paths.get(args[2]) : classPath.resolveSibling("app-cds.jsa");
+        
+        List<String[]> modes = new ArrayList<>();
+        modes.add(new String[] {"no CDS", "-Xshare:off"});
+        modes.add(new String[] {"JDK CDS", "-Xshare:auto"});
+        if (Files.exists(archive)) {
+            modes.add(new String[] {"AppCDS", "-XX:SharedArchiveFile=" + archive});
+        } else {
+            System.out.println("No archive at " + archive + "; build it with mvn -Pappcds package");
+        }
+        
+        System.out.println("=== Startup Benchmark ===");
+        System.out.println("Main class: " + mainClass + ", class path: " + classPath + ", runs: " + runs);
+        System.out.println();
+        
+        // One unmeasured run per mode to warm the file system cache
+        for (String[] mode : modes) {
+            launch(classPath, mode[1], mainClass);
+        }
+        long[][] millis = new long[modes.size()][runs];
+        for (int run = 0; run < runs; run++) {
+            for (int i = 0; i < modes.size(); i++) {
+                millis[i][run] = launch(classPath, modes.get(i)[1], mainClass);
+            }
+        }
+        
+        double baseline = median(millis[0]);
+        for (int i = 0; i < modes.size(); i++) {
+            double median = median(millis[i]);
+            System.out.printf("%-8s median %6.0f ms  min %6d ms  max %6d ms  %5.1f%% of no CDS%n", modes.get(i)[0],
+                              median, Arrays.stream(millis[i]).min().getAsLong(),
+                              Arrays.stream(millis[i]).max().getAsLong(), 100 * median / baseline);
+        }
+    }
+    
+    private static long launch(Path classPath, String cdsOption, String mainClass) throws IOException,
+            InterruptedException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        ProcessBuilder builder = new ProcessBuilder(java, cdsOption, "-cp", classPath.toString(), mainClass)
+            .redirectErrorStream(true)
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        long start = System.nanoTime();
+        Process process = builder.start();
+        int exitCode = process.waitFor();
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        if (exitCode != 0) {
+            throw new IllegalStateException(mainClass + " exited with " + exitCode + " using " + cdsOption);
+        }
+        return elapsed;
+    }
+    
+    /**
+     * Returns the jar or directory this class was loaded from; an archive only applies to
+     * classes loaded from the jar it was built with.
+     */
+    private static Path ownClassPath() throws URISyntaxException {
+        return Paths.get(StartupBenchmark.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    }
+    
+    private static double median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2.0;
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the heap bytes a piece of code allocates per operation on the current thread, using
+ * the per-thread allocation counter of {@link com.sun.management.ThreadMXBean}.
+ * 
+ * The code is warmed up first so the JIT has compiled it and removed the allocations escape
+ * analysis can remove, then measured over several runs; the least allocating run counts, which
+ * filters out one-off allocations by class loading or deoptimization.
+ */
+public final class AllocationBudget {
+    
+    private static final int MIN_WARMUP_OPERATIONS = 50_000;
+    private static final int MIN_WARMUP_RUNS = 20;
+    private static final int MEASURED_RUNS = 5;
+    
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    
+    private AllocationBudget() {
+    }
+    
+    /**
+     * Returns the bytes allocated per operation.
+     *
+     * @param operationsPerRun the number of operations one run of the code performs
+     * @param run the code to measure
+     * @return the allocated bytes per operation of the least allocating run
+     */
+    public static double bytesPerOperation(int operationsPerRun, Runnable run) {
+        assumeTrue(THREADS.isThreadAllocatedMemorySupported(), "Allocation measurement is not supported");
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+        
+        for (long runs = 0, operations = 0; runs < MIN_WARMUP_RUNS || operations < MIN_WARMUP_OPERATIONS; runs++) {
+            run.run();
+            operations += operationsPerRun;
+        }
+        long start = allocatedBytes();
+        long measurementCost = allocatedBytes() - start;
+        long least = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long before = allocatedBytes();
+            run.run();
+            least = Math.min(least, allocatedBytes() - before);
+        }
+        return Math.max(0, least - measurementCost) / (double) operationsPerRun;
+    }
+    
+    /**
+     * Fails unless the code allocates at most its budget per operation.
+     *
+     * @param name the name of the measured code, for the failure message
+     * @param budgetBytes the bytes the code may allocate per operation
+     * @param operationsPerRun the number of operations one run of the code performs
+     * @param run the code to measure
+     */
+    public static void assertWithinBudget(String name, double budgetBytes, int operationsPerRun, Runnable run) {
+        double allocated = bytesPerOperation(operationsPerRun, run);
+        assertTrue(allocated <= budgetBytes, name + " allocates " + allocated + " bytes per operation, budget is "
+            + budgetBytes);
+    }
+    
+    private static long allocatedBytes() {
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.demo;
+
+import com.example.demo.debugbuggycode.BuggyCache;
+import com.example.demo.godclassrefactoring.refactored.CsvDataSource;
+import com.example.demo.godclassrefactoring.solutions.run2.MetricsRegistry;
+import com.example.demo.godclassrefactoring.solutions.run2.StageMetrics;
+import com.example.demo.readmegeneration.DataProcessor;
+import com.example.demo.readmegeneration.Transaction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Allocation budgets of hot paths, so per-row allocations that would raise steady-state GC
+ * pressure fail the build instead of surfacing in production. Budgets sit a little above the
+ * measured allocation; a failure means a change made the path allocate more per operation.
+ */
+@DisplayName("Allocation Budget Tests")
+class AllocationBudgetTest {
+    
+    private PrintStream console;
+    
+    @BeforeEach
+    void setUp() {
+        // The measured code logs to the console; keep the test output readable
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+    
+    @AfterEach
+    void tearDown() {
+        System.setOut(console);
+    }
+    
+    @Test
+    @DisplayName("CSV loading allocates a constant amount regardless of the row count")
+    void csvLoadingShouldNotAllocatePerRow() {
+        CsvDataSource source = new CsvDataSource();
+        List<String> rows = Collections.nCopies(100_000, "order,customer,3");
+        
+        AllocationBudget.assertWithinBudget("CsvDataSource.loadData", 512, 1, () -> source.loadData(rows));
+    }
+    
+    @Test
+    @DisplayName("Transaction processing stays within its budget per transaction")
+    void transactionProcessingShouldStayWithinBudget() {
+        DataProcessor processor = new DataProcessor();
+        String[] categories = {"food", "electronics", "clothing", "services"};
+        String[] currencies = {"USD", "EUR", "GBP"};
+        LocalDateTime timestamp = LocalDateTime.of(2024, 1, 1, 0, 0);
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            transactions.add(new Transaction("t" + i, categories[i % categories.length], i % 100 + 1,
+                                             currencies[i % currencies.length], timestamp));
+        }
+        
+        // The grouping collector's per-element lambda is all that remains per transaction
+        AllocationBudget.assertWithinBudget("DataProcessor.processTransactions", 24, transactions.size(),
+                                            () -> processor.processTransactions(transactions, "EUR"));
+    }
+    
+    @Test
+    @DisplayName("Cache reads allocate nothing and overwrites only their entry")
+    void cacheOperationsShouldStayWithinBudget() {
+        BuggyCache<Integer, String> cache = new BuggyCache<>(1_000, 60_000);
+        Integer[] keys = new Integer[1_000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = i;
+            cache.put(keys[i], "value");
+        }
+        
+        AllocationBudget.assertWithinBudget("BuggyCache.get", 1, keys.length, () -> {
+            for (Integer key : keys) {
+                cache.get(key);
+            }
+        });
+        AllocationBudget.assertWithinBudget("BuggyCache.put", 32, keys.length, () -> {
+            for (Integer key : keys) {
+                cache.put(key, "value");
+            }
+        });
+    }
+    
+    @Test
+    @DisplayName("Recording stage metrics allocates nothing")
+    void metricsRecordingShouldNotAllocate() {
+        StageMetrics metrics = new MetricsRegistry().stage("csv", "analytics", MetricsRegistry.PROCESS);
+        
+        AllocationBudget.assertWithinBudget("StageMetrics.record", 1, 10_000, () -> {
+            for (int i = 0; i < 10_000; i++) {
+                metrics.record(i * 100L, 1);
+            }
+        });
+    }
+    
+    @Test
+    @DisplayName("Should measure allocations of the current thread")
+    void shouldMeasureAllocations() {
+        Object[] sink = new Object[1];
+        double allocated = AllocationBudget.bytesPerOperation(1_000, () -> {
+            for (int i = 0; i < 1_000; i++) {
+                sink[0] = new byte[1_000];
+            }
+        });
+        
+        assertTrue(allocated >= 1_000 && allocated < 1_100, "allocated " + allocated);
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.demo.godclassrefactoring.buffer;
+
+import com.example.demo.godclassrefactoring.columnar.ColumnBatch;
+import com.example.demo.godclassrefactoring.columnar.GroupByAggregator;
+import com.example.demo.godclassrefactoring.solutions.run2.ByteSink;
+import com.example.demo.godclassrefactoring.solutions.run2.CsvOutputFormatter;
+import com.example.demo.godclassrefactoring.solutions.run2.DataLoader;
+import com.example.demo.godclassrefactoring.solutions.run2.DataProcessor;
+import com.example.demo.godclassrefactoring.solutions.run2.PipelinePlan;
+import com.example.demo.godclassrefactoring.validation.RuleSet;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Unit tests for the per-thread buffer arena and the pipeline stages that borrow from it.
+ */
+@DisplayName("Buffer Arena Tests")
+class BufferArenaTest {
+    
+    @AfterEach
+    void tearDown() {
+        BufferArena.setLeakDetection(false);
+    }
+    
+    private static ColumnBatch orders(int rows) {
+        long[] customers = new long[rows];
+        double[] amounts = new double[rows];
+        String[] emails = new String[rows];
+        for (int row = 0; row < rows; row++) {
+            customers[row] = row % 7;
+            amounts[row] = row % 3 == 0 ? Double.NaN : row * 1.5;
+            emails[row] = row % 5 == 0 ? null : "customer" + row + "@example.com";
+        }
+        return ColumnBatch.builder(rows)
+            .longColumn("customer", customers)
+            .doubleColumn("amount", amounts)
+            .stringColumn("email", emails)
+            .build();
+    }
+    
+    private static DataProcessor processor(boolean leaking) {
+        return new DataProcessor() {
+            @Override
+            public Object processData(Object data) {
+                long[] scratch = BufferArena.current().borrowLongs(64);
+                if (!leaking) {
+                    BufferArena.current().release(scratch);
+                }
+                return data;
+            }
+            
+            @Override
+            public String getProcessingType() {
+                return leaking ? "leaking" : "passing";
+            }
+        };
+    }
+    
+    @Test
+    @DisplayName("Should hand a released buffer to the next borrower instead of allocating")
+    void shouldReuseReleasedBuffers() {
+        BufferArena arena = new BufferArena();
+        ByteBuffer buffer = arena.borrowByteBuffer(1000);
+        buffer.put((byte) 1);
+        arena.release(buffer);
+        long allocations = arena.getAllocationCount();
+        
+        ByteBuffer again = arena.borrowByteBuffer(1000);
+        assertSame(buffer, again);
+        assertEquals(0, again.position(), "Borrowed byte buffers are cleared");
+        ByteBuffer larger = arena.borrowByteBuffer(again.capacity() + 1);
+        assertNotSame(again, larger);
+        assertTrue(larger.capacity() > again.capacity());
+        arena.release(larger);
+        arena.release(again);
+        
+        StringBuilder builder = arena.borrowStringBuilder();
+        builder.append("text");
+        arena.release(builder);
+        assertEquals(0, arena.borrowStringBuilder().length(), "Borrowed builders are empty");
+        
+        long[] longs = arena.borrowLongs(100);
+        assertTrue(longs.length >= 100);
+        arena.release(longs);
+        assertSame(longs, arena.borrowLongs(50), "A larger pooled array serves a smaller request");
+        arena.release(longs);
+        assertEquals(allocations + 3, arena.getAllocationCount(),
+                     "Only the larger buffer, the builder and the array were new");
+    }
+    
+    @Test
+    @DisplayName("Should keep a bounded number of buffers and drop huge ones")
+    void shouldBoundPooledBuffers() {
+        BufferArena arena = new BufferArena();
+        double[] huge = arena.borrowDoubles(BufferArena.MAX_RETAINED_BYTES / 8 + 1);
+        arena.release(huge);
+        assertNotSame(huge, arena.borrowDoubles(BufferArena.MAX_RETAINED_BYTES / 8 + 1));
+        
+        int[][] arrays = new int[BufferArena.MAX_POOLED + 2][];
+        for (int i = 0; i < arrays.length; i++) {
+            arrays[i] = arena.borrowInts(16 << i);
+        }
+        for (int[] array : arrays) {
+            arena.release(array);
+        }
+        long allocations = arena.getAllocationCount();
+        int[] largest = arena.borrowInts(16 << (arrays.length - 1));
+        assertSame(arrays[arrays.length - 1], largest, "A full pool keeps the largest buffers");
+        arena.release(largest);
+        assertEquals(allocations, arena.getAllocationCount());
+    }
+    
+    @Test
+    @DisplayName("Should reject releasing a buffer twice")
+    void shouldRejectDoubleRelease() {
+        BufferArena arena = new BufferArena();
+        long[] array = arena.borrowLongs(10);
+        int outstanding = arena.getOutstanding();
+        arena.release(array);
+        
+        assertThrows(IllegalStateException.class, () -> arena.release(array));
+        assertEquals(outstanding - 1, arena.getOutstanding(), "A rejected release changes no counters");
+    }
+    
+    @Test
+    @DisplayName("Should report where leaked buffers were borrowed when leak detection is on")
+    void shouldReportLeaks() {
+        BufferArena.setLeakDetection(true);
+        BufferArena arena = new BufferArena();
+        long leaks = BufferArena.getLeakCount();
+        int outstanding = arena.getOutstanding();
+        arena.borrowStringBuilder();
+        arena.release(arena.borrowInts(10));
+        arena.borrowByteBuffer(10);
+        
+        IllegalStateException leak = assertThrows(IllegalStateException.class,
+                                                  () -> arena.checkReturned(outstanding, "test operation"));
+        assertTrue(leak.getMessage().startsWith("test operation did not return 2"), leak.getMessage());
+        assertTrue(leak.getCause().getMessage().startsWith("Borrowed"), leak.getCause().getMessage());
+        assertEquals(1, leak.getSuppressed().length);
+        assertEquals(leaks + 2, BufferArena.getLeakCount());
+        assertEquals(outstanding, arena.getOutstanding());
+        arena.checkReturned(outstanding, "test operation");
+        
+        assertThrows(IllegalStateException.class, () -> arena.release(new int[10]),
+                     "Buffers not borrowed from the arena cannot be released into it");
+    }
+    
+    @Test
+    @DisplayName("Should fail a pipeline execution whose stage keeps a borrowed buffer")
+    void shouldFailLeakingPipeline() {
+        BufferArena.setLeakDetection(true);
+        DataLoader loader = new DataLoader() {
+            @Override
+            public Object loadData(List<String> rawData) {
+                return orders(rawData.size());
+            }
+            
+            @Override
+            public String getDataType() {
+                return "orders";
+            }
+        };
+        List<String> rawData = Collections.nCopies(10, "row");
+        
+        String output = new PipelinePlan(loader, processor(false), new CsvOutputFormatter()).execute(rawData);
+        assertTrue(output.startsWith("CSV Output: "));
+        IllegalStateException leak = assertThrows(IllegalStateException.class,
+            () -> new PipelinePlan(loader, processor(true), new CsvOutputFormatter()).execute(rawData));
+        assertTrue(leak.getMessage().startsWith("PipelinePlan[orders -> leaking -> csv]"), leak.getMessage());
+    }
+    
+    @Test
+    @DisplayName("Should format, aggregate and validate through pooled buffers without leaking")
+    void shouldReturnBuffersFromPipelineStages() {
+        BufferArena.setLeakDetection(true);
+        BufferArena arena = BufferArena.current();
+        int outstanding = arena.getOutstanding();
+        ColumnBatch batch = orders(5_000);
+        CsvOutputFormatter formatter = new CsvOutputFormatter();
+        
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        ByteSink sink = ByteSink.of(expected);
+        formatter.writeTo(batch, sink);
+        sink.flush();
+        String output = formatter.formatOutput(batch);
+        assertTrue(output.length() > 64 * 1024, "Output outgrows the first borrowed buffer");
+        assertEquals(expected.toString(StandardCharsets.UTF_8), output);
+        
+        GroupByAggregator.aggregate(batch, "customer", "amount");
+        RuleSet.builder().required("email").range("amount", 0, 1000).build().compile().validate(batch);
+        assertEquals(outstanding, arena.getOutstanding());
+        
+        long allocations = arena.getAllocationCount();
+        long borrows = arena.getBorrowCount();
+        formatter.formatOutput(batch);
+        GroupByAggregator.aggregate(batch, "customer", "amount");
+        RuleSet.builder().required("email").range("amount", 0, 1000).build().compile().validate(batch);
+        assertTrue(arena.getBorrowCount() > borrows);
+        assertEquals(allocations, arena.getAllocationCount(), "Repeated invocations reuse the pooled buffers");
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.demo.godclassrefactoring.columnar;
+
+import com.example.demo.godclassrefactoring.solutions.run2.BinaryDataLoader;
+import com.example.demo.godclassrefactoring.solutions.run2.BinaryOutputFormatter;
+import com.example.demo.godclassrefactoring.solutions.run2.ByteSink;
+import com.example.demo.godclassrefactoring.solutions.run2.RefactoredOrderProcessor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Unit tests for the binary columnar batch encoding and its block compression.
+ */
+@DisplayName("Binary Batch Codec Tests")
+class BinaryBatchCodecTest {
+    
+    private static ColumnBatch orders(int rows) {
+        long[] ids = new long[rows];
+        long[] hashes = new long[rows];
+        double[] prices = new double[rows];
+        String[] regions = new String[rows];
+        String[] notes = new String[rows];
+        Random random = new Random(7);
+        for (int row = 0; row < rows; row++) {
+            ids[row] = 1_000_000 + row;
+            hashes[row] = random.nextLong();
+            prices[row] = row % 10 == 0 ? Double.NaN : random.nextDouble() * 100;
+            regions[row] = row % 7 == 0 ? null : "region-" + row % 3;
+            notes[row] = row % 5 == 0 ? null : "note é€😀 " + random.nextInt();
+        }
+        if (rows > 1) {
+            hashes[0] = Long.MIN_VALUE;
+            hashes[1] = Long.MAX_VALUE;
+        }
+        return ColumnBatch.builder(rows)
+            .longColumn("id", ids)
+            .longColumn("hash", hashes)
+            .doubleColumn("price", prices)
+            .stringColumn("region", regions)
+            .stringColumn("note", notes)
+            .build();
+    }
+    
+    private static void assertBatchEquals(ColumnBatch expected, ColumnBatch actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.getColumnNames(), actual.getColumnNames());
+        for (String name : expected.getColumnNames()) {
+            assertEquals(expected.getColumnType(name), actual.getColumnType(name));
+            for (int row = 0; row < expected.size(); row++) {
+                assertEquals(expected.getValue(name, row), actual.getValue(name, row), name + "[" + row + "]");
+            }
+        }
+    }
+    
+    @Test
+    @DisplayName("Should round-trip every column type with and without compression")
+    void shouldRoundTripBatches() {
+        for (int rows : new int[] {0, 1, 1000}) {
+            ColumnBatch batch = orders(rows);
+            
+            assertBatchEquals(batch, BinaryBatchCodec.decode(ByteBuffer.wrap(BinaryBatchCodec.encode(batch, false))));
+            assertBatchEquals(batch, BinaryBatchCodec.decode(ByteBuffer.wrap(BinaryBatchCodec.encode(batch, true))));
+        }
+    }
+    
+    @Test
+    @DisplayName("Should encode far smaller than CSV and compress repetitive frames")
+    void shouldEncodeCompactly() {
+        String[] statuses = new String[10_000];
+        Arrays.fill(statuses, "SHIPPED_TO_CUSTOMER");
+        double[] amounts = new double[10_000];
+        Arrays.fill(amounts, 19.99);
+        ColumnBatch batch = ColumnBatch.builder(10_000)
+            .longColumn("id", orders(10_000).getLongColumn("id"))
+            .stringColumn("status", statuses)
+            .doubleColumn("amount", amounts)
+            .build();
+        
+        int plain = BinaryBatchCodec.encode(batch, false).length;
+        int compressed = BinaryBatchCodec.encode(batch, true).length;
+        
+        // Sequential ids take one byte each and the status column is a one-entry dictionary
+        assertTrue(plain < 10_000 * (1 + 1 + 8) + 100, "plain frame was " + plain + " bytes");
+        assertTrue(compressed < plain / 4, "compressed frame was " + compressed + " bytes");
+    }
+    
+    @Test
+    @DisplayName("Should round-trip random and repetitive blocks through the LZ4 compressor")
+    void shouldRoundTripBlocks() {
+        Random random = new Random(42);
+        for (int length : new int[] {0, 5, 13, 100, 70_000}) {
+            byte[] noise = new byte[length];
+            random.nextBytes(noise);
+            byte[] runs = new byte[length];
+            for (int i = 0; i < length; i++) {
+                runs[i] = (byte) (i / 300 % 4);
+            }
+            for (byte[] input : Arrays.asList(noise, runs)) {
+                byte[] compressed = new byte[Lz4Block.maxCompressedLength(length) + 3];
+                int compressedLength = Lz4Block.compress(input, 0, length, compressed, 3);
+                byte[] output = new byte[length];
+                Lz4Block.decompress(compressed, 3, compressedLength, output, 0, length);
+                
+                assertArrayEquals(input, output);
+            }
+        }
+    }
+    
+    @Test
+    @DisplayName("Should reject truncated and corrupt frames")
+    void shouldRejectCorruptFrames() {
+        byte[] frame = BinaryBatchCodec.encode(orders(100), true);
+        
+        assertThrows(IllegalArgumentException.class,
+            () -> BinaryBatchCodec.decode(ByteBuffer.wrap(Arrays.copyOf(frame, frame.length - 1))));
+        byte[] garbled = frame.clone();
+        for (int i = BinaryBatchCodec.HEADER_BYTES; i < garbled.length; i += 3) {
+            garbled[i] ^= 0x5A;
+        }
+        assertThrows(IllegalArgumentException.class, () -> BinaryBatchCodec.decode(ByteBuffer.wrap(garbled)));
+        // A forged payload length must be rejected before the payload buffer is allocated
+        ByteBuffer forged = ByteBuffer.wrap(frame.clone());
+        forged.putInt(5, Integer.MAX_VALUE - 8);
+        IllegalArgumentException oversized = assertThrows(IllegalArgumentException.class,
+            () -> BinaryBatchCodec.decode(forged));
+        assertEquals("Corrupt binary frame", oversized.getMessage());
+        IllegalArgumentException notBinary = assertThrows(IllegalArgumentException.class,
+            () -> BinaryBatchCodec.decode(ByteBuffer.wrap("id,price,region\n".getBytes())));
+        assertEquals("Not a binary batch frame", notBinary.getMessage());
+    }
+    
+    @Test
+    @DisplayName("Should reject forged counts before allocating for them")
+    void shouldRejectForgedCounts() {
+        // One dictionary-encoded STRING column claiming 2^30 entries in a payload of a few bytes
+        byte[] payload = {4, 1, 1, 'r', (byte) ColumnType.STRING.ordinal(), 2, (byte) 0x80, (byte) 0x80, (byte) 0x80,
+                          (byte) 0x80, 0x04, 0, 0, 0, 0};
+        ByteBuffer frame = ByteBuffer.allocate(BinaryBatchCodec.HEADER_BYTES + payload.length);
+        frame.putInt(BinaryBatchCodec.MAGIC).put((byte) 0).putInt(payload.length).putInt(payload.length).put(payload);
+        frame.flip();
+        
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+            () -> BinaryBatchCodec.decode(frame));
+        assertEquals("Corrupt binary frame", exception.getMessage());
+    }
+    
+    @Test
+    @DisplayName("Should hand batches between jobs through the binary formatter and loader")
+    void shouldHandOffThroughPipeline() {
+        ColumnBatch batch = orders(50);
+        String frame = new BinaryOutputFormatter(true).formatOutput(batch);
+        
+        String output = new RefactoredOrderProcessor().processData("binary", "transformation",
+                                                                   Collections.singletonList(frame));
+        assertBatchEquals(batch, (ColumnBatch) new BinaryDataLoader().loadData(Collections.singletonList(output)));
+        
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        ByteSink sink = ByteSink.of(stream);
+        new BinaryOutputFormatter().writeTo(batch, sink);
+        new BinaryOutputFormatter(true).writeTo(orders(3), sink);
+        sink.flush();
+        List<ColumnBatch> batches = new BinaryDataLoader().loadFrames(new ByteArrayInputStream(stream.toByteArray()));
+        assertEquals(2, batches.size());
+        assertBatchEquals(batch, batches.get(0));
+        assertBatchEquals(orders(3), batches.get(1));
+    }
+    
+    @Test
+    @DisplayName("Should write a list of batches as one frame per batch")
+    void shouldFormatBatchListAsFrames() {
+        List<ColumnBatch> batches = Arrays.asList(orders(20), orders(3));
+        BinaryOutputFormatter formatter = new BinaryOutputFormatter(true);
+        
+        List<String> lines = Arrays.asList(formatter.formatOutput(batches).split("\n"));
+        Object loaded = new BinaryDataLoader().loadData(lines);
+        
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        ByteSink sink = ByteSink.of(stream);
+        formatter.writeTo(batches, sink);
+        sink.flush();
+        List<ColumnBatch> frames = new BinaryDataLoader().loadFrames(new ByteArrayInputStream(stream.toByteArray()));
+        
+        assertEquals(2, lines.size());
+        for (List<?> decoded : Arrays.asList((List<?>) loaded, frames)) {
+            assertEquals(2, decoded.size());
+            assertBatchEquals(batches.get(0), (ColumnBatch) decoded.get(0));
+            assertBatchEquals(batches.get(1), (ColumnBatch) decoded.get(1));
+        }
+    }
+}
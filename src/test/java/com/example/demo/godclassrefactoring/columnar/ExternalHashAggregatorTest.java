@@ -0,0 +1,262 @@
+package com.example.demo.godclassrefactoring.columnar;
+
+import com.example.demo.godclassrefactoring.solutions.run2.AggregationProcessor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * Unit tests for the spill-to-disk aggregation behind the aggregation processors.
+ */
+@DisplayName("External Hash Aggregator Tests")
+class ExternalHashAggregatorTest {
+    
+    private static final double DELTA = 1e-9;
+    private static final int KEYS = 5_000;
+    private static final int ROWS = 50_000;
+    
+    @TempDir
+    Path spillDirectory;
+    
+    @Test
+    @DisplayName("Should match in-memory aggregation after spilling and multi-pass merging")
+    void shouldMatchInMemoryAggregationAfterSpilling() throws IOException {
+        ColumnBatch batch = scatteredBatch();
+        GroupStatistics expected = GroupByAggregator.aggregate(batch, "key", "value");
+        
+        GroupStatistics actual;
+        // Room for a few hundred groups, so the run is spilled many times and merged in several passes
+        try (ExternalHashAggregator aggregator = new ExternalHashAggregator(
+                 "key", "value", 300 * ExternalHashAggregator.BYTES_PER_GROUP, spillDirectory, 4)) {
+            aggregator.add(batch);
+            actual = aggregator.result();
+            assertTrue(aggregator.getSpillCount() > 10);
+            assertTrue(aggregator.getSpilledBytes() > 0);
+        }
+        
+        assertEquals(expected.size(), actual.size());
+        for (int group = 0; group < expected.size(); group++) {
+            assertEquals(expected.getKey(group), actual.getKey(group));
+            assertEquals(expected.getCount(group), actual.getCount(group));
+            assertEquals(expected.getSum(group), actual.getSum(group), DELTA);
+            assertEquals(expected.getMin(group), actual.getMin(group), DELTA);
+            assertEquals(expected.getMax(group), actual.getMax(group), DELTA);
+            assertEquals(expected.getStdDev(group), actual.getStdDev(group), 1e-6);
+        }
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            assertEquals(0, files.count(), "Spill files should be deleted");
+        }
+    }
+    
+    @Test
+    @DisplayName("Should aggregate dictionary-encoded string keys, including null, across spills")
+    void shouldAggregateStringKeysAcrossSpills() throws IOException {
+        ColumnBatch longBatch = scatteredBatch();
+        long[] longKeys = longBatch.getLongColumn("key");
+        String[] keys = new String[ROWS];
+        for (int row = 0; row < ROWS; row++) {
+            keys[row] = longKeys[row] == 0 ? null : "k\u00e9y-" + longKeys[row];
+        }
+        ColumnBatch batch = ColumnBatch.builder(ROWS)
+            .stringColumn("key", keys)
+            .doubleColumn("value", longBatch.getDoubleColumn("value"))
+            .build();
+        GroupStatistics expected = GroupByAggregator.aggregate(batch, "key", "value");
+        
+        GroupStatistics actual;
+        try (ExternalHashAggregator aggregator = new ExternalHashAggregator(
+                 "key", "value", 300 * ExternalHashAggregator.BYTES_PER_GROUP, spillDirectory, 4)) {
+            aggregator.add(batch);
+            actual = aggregator.result();
+            assertTrue(aggregator.getSpillCount() > 10);
+        }
+        
+        assertEquals(KEYS, actual.size());
+        assertNull(actual.getKey(0), "Null sorts first");
+        for (int group = 0; group < expected.size(); group++) {
+            int index = actual.indexOf(expected.getKey(group));
+            assertEquals(expected.getCount(group), actual.getCount(index));
+            assertEquals(expected.getSum(group), actual.getSum(index), DELTA);
+            assertEquals(expected.getMin(group), actual.getMin(index), DELTA);
+            assertEquals(expected.getMax(group), actual.getMax(index), DELTA);
+            assertEquals(expected.getStdDev(group), actual.getStdDev(index), 1e-6);
+        }
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            assertEquals(0, files.count(), "Spill files should be deleted");
+        }
+    }
+    
+    @Test
+    @DisplayName("Should reject key columns that are not LONG or STRING or that change type")
+    void shouldRejectUnsupportedKeyTypes() {
+        ColumnBatch longKeys = ColumnBatch.builder(1)
+            .longColumn("key", new long[] {1})
+            .longColumn("value", new long[] {1})
+            .build();
+        ColumnBatch stringKeys = ColumnBatch.builder(1)
+            .stringColumn("key", new String[] {"1"})
+            .longColumn("value", new long[] {1})
+            .build();
+        
+        try (ExternalHashAggregator aggregator =
+                 new ExternalHashAggregator("value", "key", 1 << 20, spillDirectory)) {
+            assertThrows(IllegalArgumentException.class, () -> aggregator.add(stringKeys));
+        }
+        try (ExternalHashAggregator aggregator =
+                 new ExternalHashAggregator("key", "value", 1 << 20, spillDirectory)) {
+            aggregator.add(longKeys);
+            IllegalArgumentException exception =
+                assertThrows(IllegalArgumentException.class, () -> aggregator.add(stringKeys));
+            assertTrue(exception.getMessage().contains("changed type"));
+        }
+    }
+    
+    @Test
+    @DisplayName("Should keep the standard deviation of values with a large mean accurate across spills")
+    void shouldKeepStdDevAccurateAcrossSpills() {
+        // Every group holds 1e9 + {0, 1, 2, 3}: a population standard deviation of sqrt(1.25)
+        int groups = 1_000;
+        long[] keys = new long[groups * 4];
+        double[] values = new double[groups * 4];
+        for (int row = 0; row < keys.length; row++) {
+            keys[row] = row % groups;
+            values[row] = 1e9 + row / groups;
+        }
+        ColumnBatch batch = ColumnBatch.builder(keys.length)
+            .longColumn("key", keys)
+            .doubleColumn("value", values)
+            .build();
+        
+        try (ExternalHashAggregator aggregator = new ExternalHashAggregator(
+                 "key", "value", 300 * ExternalHashAggregator.BYTES_PER_GROUP, spillDirectory)) {
+            aggregator.add(batch);
+            GroupStatistics stats = aggregator.result();
+            
+            assertTrue(aggregator.getSpillCount() > 1);
+            for (int group = 0; group < groups; group++) {
+                assertEquals(1e9 + 1.5, stats.getMean(group), 1e-6);
+                assertEquals(Math.sqrt(1.25), stats.getStdDev(group), 1e-6);
+            }
+        }
+    }
+    
+    @Test
+    @DisplayName("Should stream groups in key order without spilling when they fit the budget")
+    void shouldStreamGroupsInKeyOrder() {
+        ColumnBatch batch = ColumnBatch.builder(5)
+            .longColumn("key", new long[] {9, -4, 9, 0, -4})
+            .longColumn("value", new long[] {1, 2, 3, 4, 5})
+            .build();
+        StringBuilder seen = new StringBuilder();
+        
+        try (ExternalHashAggregator aggregator =
+                 new ExternalHashAggregator("key", "value", 1 << 20, spillDirectory)) {
+            aggregator.add(batch);
+            aggregator.finish((key, count, sum, mean, m2, min, max) ->
+                seen.append(key).append('=').append(sum).append(' '));
+            assertEquals(0, aggregator.getSpillCount());
+        }
+        
+        assertEquals("-4=7.0 0=4.0 9=4.0 ", seen.toString());
+    }
+    
+    @Test
+    @DisplayName("Should size the in-memory table by the groups seen, not by the memory budget")
+    void shouldNotAllocateTheBudgetUpFront() {
+        ColumnBatch batch = ColumnBatch.builder(3)
+            .longColumn("key", new long[] {1, 2, 1})
+            .longColumn("value", new long[] {10, 20, 30})
+            .build();
+        
+        // A 64 GB budget would not fit the test heap if it were allocated eagerly
+        try (ExternalHashAggregator aggregator =
+                 new ExternalHashAggregator("key", "value", 64L << 30, spillDirectory)) {
+            aggregator.add(batch);
+            GroupStatistics stats = aggregator.result();
+            
+            assertEquals(2, stats.size());
+            assertEquals(40.0, stats.getSum(stats.indexOf(1L)), DELTA);
+            assertEquals(0, aggregator.getSpillCount());
+        }
+    }
+    
+    @Test
+    @DisplayName("Should delete the partially merged run when a merge pass fails")
+    void shouldDeletePartialRunWhenMergeFails() throws IOException {
+        ExternalHashAggregator aggregator = new ExternalHashAggregator(
+            "key", "value", 100 * ExternalHashAggregator.BYTES_PER_GROUP, spillDirectory, 2);
+        aggregator.add(scatteredBatch());
+        assertTrue(aggregator.getSpillCount() > 2);
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            for (Path run : (Iterable<Path>) files::iterator) {
+                Files.delete(run);
+            }
+        }
+        
+        assertThrows(UncheckedIOException.class, () -> aggregator.finish((key, count, sum, mean, m2, min, max) -> {
+        }));
+        aggregator.close();
+        
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            assertEquals(0, files.count(), "The partially merged run should be deleted");
+        }
+    }
+    
+    @Test
+    @DisplayName("Should reject a memory budget that cannot hold any groups")
+    void shouldRejectTinyMemoryBudget() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+            () -> new ExternalHashAggregator("key", "value", 64, spillDirectory));
+        assertTrue(exception.getMessage().contains("Memory budget too small"));
+    }
+    
+    @Test
+    @DisplayName("Should aggregate columnar batches in the aggregation processor within its budget")
+    void shouldAggregateBatchesInProcessor() {
+        AggregationProcessor processor = new AggregationProcessor(
+            "key", "value", 100 * ExternalHashAggregator.BYTES_PER_GROUP, spillDirectory);
+        
+        Object result = processor.processData(scatteredBatch());
+        
+        assertTrue(result instanceof GroupStatistics);
+        GroupStatistics stats = (GroupStatistics) result;
+        assertEquals(KEYS, stats.size());
+        assertEquals(ROWS / KEYS, stats.getCount(stats.indexOf(42L * 1_000_003L)));
+        assertTrue(processor.processData("plain").toString().contains("Aggregated"));
+    }
+    
+    @Test
+    @DisplayName("Should group by a STRING column in the aggregation processor")
+    void shouldAggregateStringKeysInProcessor() {
+        AggregationProcessor processor = new AggregationProcessor(
+            "key", "value", 100 * ExternalHashAggregator.BYTES_PER_GROUP, spillDirectory);
+        ColumnBatch batch = ColumnBatch.builder(4)
+            .stringColumn("key", new String[] {"b", "a", "b", "a"})
+            .longColumn("value", new long[] {1, 2, 3, 4})
+            .build();
+        
+        GroupStatistics stats = (GroupStatistics) processor.processData(batch);
+        
+        assertEquals("a", stats.getKey(0));
+        assertEquals(6.0, stats.getSum(stats.indexOf("a")), DELTA);
+        assertEquals(4.0, stats.getSum(stats.indexOf("b")), DELTA);
+    }
+    
+    private static ColumnBatch scatteredBatch() {
+        long[] keys = new long[ROWS];
+        double[] values = new double[ROWS];
+        for (int row = 0; row < ROWS; row++) {
+            // Stride through the key space so every spill run holds a different mix of keys
+            keys[row] = (row * 7919L) % KEYS * 1_000_003L;
+            values[row] = (row % 97) - 48.5;
+        }
+        return ColumnBatch.builder(ROWS).longColumn("key", keys).doubleColumn("value", values).build();
+    }
+}
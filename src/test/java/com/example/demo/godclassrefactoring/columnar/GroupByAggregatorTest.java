@@ -0,0 +1,173 @@
+package com.example.demo.godclassrefactoring.columnar;
+
+import com.example.demo.godclassrefactoring.solutions.run2.AnalyticsProcessor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Unit tests for the columnar group-by aggregation behind the analytics processors.
+ */
+@DisplayName("Group By Aggregator Tests")
+class GroupByAggregatorTest {
+    
+    private static final double DELTA = 1e-9;
+    
+    @Test
+    @DisplayName("Should compute statistics per long key")
+    void shouldComputeStatisticsPerLongKey() {
+        ColumnBatch batch = ColumnBatch.builder(6)
+            .longColumn("key", new long[] {2, 1, 2, 1, 2, 3})
+            .doubleColumn("value", new double[] {4, 10, 6, 20, 8, -1})
+            .build();
+        
+        GroupStatistics stats = GroupByAggregator.aggregate(batch, "key", "value");
+        
+        assertEquals(3, stats.size());
+        assertEquals(1L, stats.getKey(0));
+        int group = stats.indexOf(2L);
+        assertEquals(3, stats.getCount(group));
+        assertEquals(18, stats.getSum(group), DELTA);
+        assertEquals(4, stats.getMin(group), DELTA);
+        assertEquals(8, stats.getMax(group), DELTA);
+        assertEquals(6, stats.getMean(group), DELTA);
+        assertEquals(Math.sqrt(8.0 / 3.0), stats.getStdDev(group), DELTA);
+        assertEquals(-1, stats.getMax(stats.indexOf(3L)), DELTA);
+    }
+    
+    @Test
+    @DisplayName("Should group by dictionary-encoded string keys across batches")
+    void shouldGroupByStringKeysAcrossBatches() {
+        GroupByAggregator aggregator = new GroupByAggregator("category", "amount");
+        aggregator.add(ColumnBatch.builder(3)
+            .stringColumn("category", new String[] {"food", "rent", "food"})
+            .longColumn("amount", new long[] {5, 100, 7})
+            .build());
+        aggregator.add(ColumnBatch.builder(2)
+            .stringColumn("category", new String[] {"travel", "food"})
+            .longColumn("amount", new long[] {40, 3})
+            .build());
+        
+        GroupStatistics stats = aggregator.result();
+        
+        assertEquals(Arrays.asList("food", "rent", "travel"),
+            Arrays.asList(stats.getKey(0), stats.getKey(1), stats.getKey(2)));
+        assertEquals(3, stats.getCount(0));
+        assertEquals(15, stats.getSum(0), DELTA);
+        assertEquals(3, stats.getMin(0), DELTA);
+    }
+    
+    @Test
+    @DisplayName("Merged partial aggregations should equal a single aggregation")
+    void mergedAggregationsShouldMatchSingleAggregation() {
+        int rows = 200_000;
+        long[] keys = new long[rows];
+        double[] values = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            keys[i] = (i * 7919L) % 50_000;
+            values[i] = i % 97;
+        }
+        ColumnBatch all = ColumnBatch.builder(rows).longColumn("key", keys).doubleColumn("value", values).build();
+        
+        GroupByAggregator first = new GroupByAggregator("key", "value");
+        first.add(ColumnBatch.builder(rows / 2)
+            .longColumn("key", Arrays.copyOfRange(keys, 0, rows / 2))
+            .doubleColumn("value", Arrays.copyOfRange(values, 0, rows / 2))
+            .build());
+        GroupByAggregator second = new GroupByAggregator("key", "value");
+        second.add(ColumnBatch.builder(rows - rows / 2)
+            .longColumn("key", Arrays.copyOfRange(keys, rows / 2, rows))
+            .doubleColumn("value", Arrays.copyOfRange(values, rows / 2, rows))
+            .build());
+        first.merge(second);
+        
+        GroupStatistics expected = GroupByAggregator.aggregate(all, "key", "value");
+        GroupStatistics merged = first.result();
+        assertEquals(50_000, merged.size());
+        for (int group = 0; group < expected.size(); group += 997) {
+            assertEquals(expected.getKey(group), merged.getKey(group));
+            assertEquals(expected.getCount(group), merged.getCount(group));
+            assertEquals(expected.getSum(group), merged.getSum(group), DELTA);
+            assertEquals(expected.getMin(group), merged.getMin(group), DELTA);
+            assertEquals(expected.getMax(group), merged.getMax(group), DELTA);
+        }
+    }
+    
+    @Test
+    @DisplayName("Should keep the standard deviation of values with a large mean accurate")
+    void shouldKeepStdDevAccurateForLargeMeans() throws IOException {
+        double[] values = {1e9 + 4, 1e9 + 7, 1e9 + 13, 1e9 + 16};
+        GroupByAggregator first = new GroupByAggregator("key", "value");
+        first.add(ColumnBatch.builder(2).longColumn("key", new long[] {1, 1})
+            .doubleColumn("value", Arrays.copyOfRange(values, 0, 2)).build());
+        GroupByAggregator second = new GroupByAggregator("key", "value");
+        second.add(ColumnBatch.builder(2).longColumn("key", new long[] {1, 1})
+            .doubleColumn("value", Arrays.copyOfRange(values, 2, 4)).build());
+        
+        first.merge(second);
+        ByteArrayOutputStream checkpoint = new ByteArrayOutputStream();
+        first.writeGroups(new DataOutputStream(checkpoint));
+        GroupByAggregator restored = new GroupByAggregator("key", "value");
+        restored.readGroups(new DataInputStream(new ByteArrayInputStream(checkpoint.toByteArray())));
+        
+        GroupByAggregator batched = new GroupByAggregator("key", "value");
+        for (double value : values) {
+            batched.add(ColumnBatch.builder(1).longColumn("key", new long[] {1})
+                .doubleColumn("value", new double[] {value}).build());
+        }
+        
+        for (GroupStatistics stats : Arrays.asList(first.result(), restored.result(), batched.result())) {
+            assertEquals(1e9 + 10, stats.getMean(0), DELTA);
+            // A sum of squares loses all digits here: (1e9)^2 needs more than a double's precision
+            assertEquals(Math.sqrt(22.5), stats.getStdDev(0), DELTA);
+        }
+    }
+    
+    @Test
+    @DisplayName("Analytics processor should aggregate columnar batches")
+    void analyticsProcessorShouldAggregateBatches() {
+        ColumnBatch batch = ColumnBatch.builder(2)
+            .longColumn("key", new long[] {1, 1})
+            .doubleColumn("value", new double[] {1, 3})
+            .build();
+        
+        Object result = new AnalyticsProcessor().processData(batch);
+        
+        assertInstanceOf(GroupStatistics.class, result);
+        assertEquals(2, ((GroupStatistics) result).getMean(0), DELTA);
+        assertEquals("Analytics result for: untyped", new AnalyticsProcessor().processData("untyped"));
+    }
+    
+    @Test
+    @DisplayName("Should reject non-numeric value columns")
+    void shouldRejectNonNumericValueColumns() {
+        ColumnBatch batch = ColumnBatch.builder(1)
+            .longColumn("key", new long[] {1})
+            .stringColumn("value", new String[] {"x"})
+            .build();
+        
+        assertThrows(IllegalArgumentException.class, () -> GroupByAggregator.aggregate(batch, "key", "value"));
+    }
+    
+    @Test
+    @DisplayName("Should reject merging aggregations of different key types")
+    void shouldRejectMergingDifferentKeyTypes() {
+        GroupByAggregator longKeys = new GroupByAggregator("key", "value");
+        longKeys.add(ColumnBatch.builder(1).longColumn("key", new long[] {1})
+            .doubleColumn("value", new double[] {1}).build());
+        GroupByAggregator stringKeys = new GroupByAggregator("key", "value");
+        stringKeys.add(ColumnBatch.builder(1).stringColumn("key", new String[] {"a"})
+            .doubleColumn("value", new double[] {1}).build());
+        
+        assertThrows(IllegalArgumentException.class, () -> longKeys.merge(stringKeys));
+        assertThrows(IllegalArgumentException.class, () -> stringKeys.merge(longKeys));
+        assertEquals(1, longKeys.result().size());
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.demo.godclassrefactoring.expression;
+
+import com.example.demo.godclassrefactoring.columnar.ColumnBatch;
+import com.example.demo.godclassrefactoring.solutions.run2.TransformationProcessor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for the field expression language and its compiled and interpreted evaluation.
+ */
+@DisplayName("Expression Tests")
+class ExpressionTest {
+    
+    private static final double DELTA = 1e-9;
+    
+    private static ColumnBatch orders() {
+        return ColumnBatch.builder(3)
+            .longColumn("quantity", new long[] {2, 5, 1})
+            .doubleColumn("price", new double[] {9.5, 2, 100})
+            .stringColumn("region", new String[] {"eu", "us", "apac"})
+            .build();
+    }
+    
+    private static Map<String, String> rules() {
+        Map<String, String> rules = new LinkedHashMap<>();
+        rules.put("total", "round(quantity * price * 100) / 100 - -1");
+        rules.put("label", "upper(lookup('regions', region)) + ' x' + quantity");
+        rules.put("discount", "max(0, price - 10) % 7");
+        return rules;
+    }
+    
+    private static Map<String, Map<String, String>> lookups() {
+        Map<String, String> regions = new LinkedHashMap<>();
+        regions.put("eu", "Europe");
+        regions.put("us", "America");
+        return Collections.singletonMap("regions", regions);
+    }
+    
+    @Test
+    @DisplayName("Should produce identical columns when compiled and interpreted")
+    void shouldMatchCompiledAndInterpreted() {
+        for (TransformationProgram.Mode mode : TransformationProgram.Mode.values()) {
+            ColumnBatch result = new BatchTransformer(rules(), lookups(), mode).apply(orders());
+            
+            assertEquals(Arrays.asList("quantity", "price", "region", "total", "label", "discount"),
+                result.getColumnNames(), mode.toString());
+            assertArrayEquals(new double[] {20, 11, 101}, result.getDoubleColumn("total"), DELTA);
+            assertArrayEquals(new String[] {"EUROPE x2", "AMERICA x5", " x1"}, result.getStringColumn("label"));
+            assertArrayEquals(new double[] {0, 0, 6}, result.getDoubleColumn("discount"), DELTA);
+        }
+    }
+    
+    @Test
+    @DisplayName("Should propagate null strings instead of failing")
+    void shouldPropagateNullStrings() {
+        ColumnBatch batch = ColumnBatch.builder(2)
+            .stringColumn("region", new String[] {"eu", null})
+            .build();
+        Map<String, String> rules = new LinkedHashMap<>();
+        rules.put("code", "upper(trim(region)) + '-' + lower('X')");
+        rules.put("name", "lookup('regions', region)");
+        rules.put("size", "length(region)");
+        
+        for (TransformationProgram.Mode mode : TransformationProgram.Mode.values()) {
+            ColumnBatch result = new BatchTransformer(rules, lookups(), mode).apply(batch);
+            
+            assertArrayEquals(new String[] {"EU-x", null}, result.getStringColumn("code"), mode.toString());
+            assertArrayEquals(new String[] {"Europe", null}, result.getStringColumn("name"), mode.toString());
+            assertArrayEquals(new double[] {2, Double.NaN}, result.getDoubleColumn("size"), DELTA);
+        }
+    }
+    
+    @Test
+    @DisplayName("Should respect operator precedence and string quoting")
+    void shouldParsePrecedence() {
+        Expression expression = Expression.parse("1 + 2 * (3 - 1) + 'it''s'");
+        
+        assertEquals("((1 + (2 * (3 - 1))) + 'it's')", expression.toString());
+    }
+    
+    @Test
+    @DisplayName("Should reject invalid expressions at compile time")
+    void shouldRejectInvalidExpressions() {
+        ExpressionContext context = ExpressionContext.of(orders(), lookups());
+        
+        assertThrows(IllegalArgumentException.class, () -> Expression.parse("price *"));
+        assertThrows(IllegalArgumentException.class, () -> Expression.parse("median(price)"));
+        IllegalArgumentException typeError = assertThrows(IllegalArgumentException.class,
+            () -> Expression.parse("region * 2").compile(context));
+        assertTrue(typeError.getMessage().contains("requires numbers"));
+        IllegalArgumentException unknownColumn = assertThrows(IllegalArgumentException.class,
+            () -> Expression.parse("weight + 1").compile(context));
+        assertEquals("Unknown column: weight", unknownColumn.getMessage());
+    }
+    
+    @Test
+    @DisplayName("Should transform batches in the transformation processor and keep untyped behaviour")
+    void shouldTransformBatchesInProcessor() {
+        TransformationProcessor processor = new TransformationProcessor(
+            new BatchTransformer(Collections.singletonMap("revenue", "quantity * price"), lookups()));
+        
+        Object result = processor.processData(orders());
+        
+        assertTrue(result instanceof ColumnBatch);
+        assertArrayEquals(new double[] {19, 10, 100}, ((ColumnBatch) result).getDoubleColumn("revenue"), DELTA);
+        assertTrue(processor.processData("row").toString().contains("Transformed"));
+    }
+    
+    @Test
+    @DisplayName("Should transform every batch of a multi-frame payload in the transformation processor")
+    void shouldTransformEachBatchOfList() {
+        TransformationProcessor processor = new TransformationProcessor(
+            new BatchTransformer(Collections.singletonMap("revenue", "quantity * price"), lookups()));
+        
+        Object result = processor.processData(Arrays.asList(orders(), orders()));
+        
+        assertTrue(result instanceof List);
+        List<?> batches = (List<?>) result;
+        assertEquals(2, batches.size());
+        for (Object batch : batches) {
+            assertArrayEquals(new double[] {19, 10, 100}, ((ColumnBatch) batch).getDoubleColumn("revenue"), DELTA);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.demo.godclassrefactoring.plugin;
+
+import com.example.demo.godclassrefactoring.solutions.run2.DataLoader;
+import com.example.demo.godclassrefactoring.solutions.run2.DataLoaderFactory;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for the copy-on-write plugin registry, its service discovery and lazy plugins.
+ */
+@DisplayName("Plugin Registry Tests")
+class PluginRegistryTest {
+    
+    @TempDir
+    Path directory;
+    
+    private final AtomicInteger changes = new AtomicInteger();
+    private final PluginRegistry<DataLoader> registry =
+        new PluginRegistry<>(DataLoader.class, "data type", DataLoader::getDataType, changes::incrementAndGet);
+    
+    /**
+     * Loader discovered through a services file
+     */
+    public static class TsvDataLoader implements DataLoader {
+        @Override
+        public Object loadData(List<String> rawData) {
+            return rawData;
+        }
+        
+        @Override
+        public String getDataType() {
+            return "TSV";
+        }
+    }
+    
+    @Test
+    @DisplayName("Should look up plugins case-insensitively and report unsupported keys")
+    void shouldRegisterAndLookUpPlugins() {
+        TsvDataLoader loader = new TsvDataLoader();
+        
+        assertNull(registry.register(loader));
+        
+        assertSame(loader, registry.get("tsv"));
+        assertSame(loader, registry.require("Tsv"));
+        assertNull(registry.get("csv"));
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> registry.require("csv"));
+        assertEquals("Unsupported data type: csv", error.getMessage());
+        assertEquals(1, changes.get());
+    }
+    
+    @Test
+    @DisplayName("Should only register plugins lazily in a registry without key function")
+    void shouldRejectKeyedRegistrationWithoutKeyFunction() {
+        PluginRegistry<DataLoader> lazyOnly = new PluginRegistry<>(DataLoader.class, "data type");
+        TsvDataLoader loader = new TsvDataLoader();
+        
+        lazyOnly.registerLazy("tsv", () -> loader);
+        
+        assertSame(loader, lazyOnly.require("TSV"));
+        IllegalStateException error = assertThrows(IllegalStateException.class, () -> lazyOnly.register(loader));
+        assertEquals("data type plugins can only be registered lazily by key", error.getMessage());
+        assertThrows(IllegalStateException.class, () -> lazyOnly.registerAll(Arrays.asList(loader)));
+        assertThrows(IllegalStateException.class, () -> lazyOnly.loadServices(getClass().getClassLoader()));
+        assertThrows(NullPointerException.class,
+                     () -> new PluginRegistry<>(DataLoader.class, "data type", null, () -> { }));
+    }
+    
+    @Test
+    @DisplayName("Should publish changes as new snapshots and notify after each")
+    void shouldPublishSnapshots() {
+        TsvDataLoader first = new TsvDataLoader();
+        TsvDataLoader second = new TsvDataLoader();
+        registry.register(first);
+        Map<String, LazyPlugin<DataLoader>> before = registry.snapshot();
+        
+        assertSame(first, registry.register(second));
+        assertSame(second, registry.unregister("tsv"));
+        assertNull(registry.unregister("tsv"));
+        
+        assertSame(first, before.get("tsv").get());
+        assertThrows(UnsupportedOperationException.class, () -> before.remove("tsv"));
+        assertEquals(0, registry.keys().length);
+        assertEquals(3, changes.get());
+    }
+    
+    @Test
+    @DisplayName("Should never fail lookups while plugins are registered concurrently")
+    void shouldServeLookupsDuringRegistrations() throws Exception {
+        registry.register(new TsvDataLoader());
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Thread> readers = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Thread reader = new Thread(() -> {
+                try {
+                    while (running.get()) {
+                        registry.require("tsv");
+                    }
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            });
+            readers.add(reader);
+            reader.start();
+        }
+        
+        for (int i = 0; i < 2_000; i++) {
+            String type = "type" + i % 50;
+            registry.register(new TsvDataLoader() {
+                @Override
+                public String getDataType() {
+                    return type;
+                }
+            });
+            registry.unregister("type" + (i + 25) % 50);
+        }
+        running.set(false);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        
+        assertTrue(failures.isEmpty(), failures.toString());
+        assertEquals("tsv", registry.keys()[0]);
+    }
+    
+    @Test
+    @DisplayName("Should create lazy plugins once on first use and retry failed creations")
+    void shouldCreateLazyPluginsOnFirstUse() {
+        AtomicInteger created = new AtomicInteger();
+        AtomicBoolean broken = new AtomicBoolean(true);
+        registry.registerLazy("tsv", () -> {
+            created.incrementAndGet();
+            if (broken.get()) {
+                throw new IllegalStateException("rules not compiled");
+            }
+            return new TsvDataLoader();
+        });
+        
+        assertEquals(0, created.get());
+        assertFalse(registry.snapshot().get("tsv").isInitialized());
+        assertThrows(IllegalStateException.class, () -> registry.get("tsv"));
+        assertEquals("rules not compiled", registry.snapshot().get("tsv").getFailure().getMessage());
+        
+        broken.set(false);
+        DataLoader loader = registry.require("TSV");
+        assertSame(loader, registry.require("tsv"));
+        assertEquals(2, created.get());
+        assertNull(registry.snapshot().get("tsv").getFailure());
+        assertTrue(registry.snapshot().get("tsv").getInitNanos() >= 0);
+    }
+    
+    @Test
+    @DisplayName("Should warm up lazy plugins in parallel and report their creation cost")
+    void shouldWarmUpAndReport() throws Exception {
+        registry.register(new TsvDataLoader());
+        registry.registerLazy("slow", () -> {
+            sleep(50);
+            return new TsvDataLoader();
+        });
+        registry.registerLazy("broken", () -> {
+            throw new IllegalStateException("no connection");
+        });
+        registry.registerLazy("later", TsvDataLoader::new);
+        
+        PluginStartupReport before = PluginStartupReport.of(registry);
+        assertEquals(-1, before.getEntries().get(before.getEntries().size() - 1).getInitNanos());
+        
+        ExecutorService pool = Executors.newFixedThreadPool(2, task -> new Thread(task, "plugin-warmup"));
+        PluginStartupReport report;
+        try {
+            report = PluginStartupReport.warmUp(pool, registry).get(5, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdown();
+        }
+        
+        List<PluginStartupReport.Entry> entries = report.getEntries();
+        assertEquals(Arrays.asList("slow", "later", "tsv", "broken"),
+                     Arrays.asList(entries.stream().map(PluginStartupReport.Entry::getKey).toArray()));
+        assertTrue(entries.get(0).getInitNanos() >= 50_000_000);
+        assertEquals("plugin-warmup", entries.get(0).getInitThread());
+        assertEquals(TsvDataLoader.class.getName(), entries.get(0).getPluginClass());
+        assertEquals(0, entries.get(2).getInitNanos());
+        assertEquals("no connection", entries.get(3).getFailure().getMessage());
+        assertTrue(report.getTotalInitNanos() >= 50_000_000);
+        assertTrue(report.toString().contains("FAILED"), report.toString());
+    }
+    
+    @Test
+    @DisplayName("Should deploy loaders listed as services without a restart and skip broken ones")
+    void shouldLoadServicePlugins() throws Exception {
+        Path services = Files.createDirectories(directory.resolve("META-INF/services"));
+        Files.write(services.resolve(DataLoader.class.getName()),
+                    Arrays.asList(TsvDataLoader.class.getName(), "com.example.missing.MissingLoader"));
+        
+        try (URLClassLoader plugins = new URLClassLoader(new URL[] {directory.toUri().toURL()},
+                                                         getClass().getClassLoader())) {
+            assertThrows(IllegalArgumentException.class, () -> DataLoaderFactory.createLoader("tsv"));
+            
+            assertEquals(1, DataLoaderFactory.loadLoaderPlugins(plugins));
+            
+            assertTrue(DataLoaderFactory.createLoader("tsv") instanceof TsvDataLoader);
+            assertTrue(Arrays.asList(DataLoaderFactory.getAvailableDataTypes()).contains("tsv"));
+        } finally {
+            DataLoaderFactory.unregisterLoader("tsv");
+        }
+        assertThrows(IllegalArgumentException.class, () -> DataLoaderFactory.createLoader("tsv"));
+    }
+    
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.demo.godclassrefactoring.profiling;
+
+import com.example.demo.godclassrefactoring.solutions.run1.OrderProcessor;
+import com.example.demo.godclassrefactoring.solutions.run2.MemoizingOrderProcessor;
+import com.example.demo.godclassrefactoring.solutions.run2.MemoryResultStore;
+import com.example.demo.godclassrefactoring.solutions.run2.RefactoredOrderProcessor;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Unit tests for the Flight Recorder events of the processing pipelines and caches.
+ */
+@DisplayName("Profiling Tests")
+class ProfilingTest {
+    
+    @TempDir
+    Path directory;
+    
+    private final List<String> data = Arrays.asList("data1", "data2", "data3");
+    
+    private static List<RecordedEvent> events(Path file, String name) throws Exception {
+        return RecordingFile.readAllEvents(file).stream()
+            .filter(event -> event.getEventType().getName().equals(name))
+            .collect(Collectors.toList());
+    }
+    
+    @Test
+    @DisplayName("Should record every stage of a run2 pipeline with its types, records and bytes")
+    void shouldRecordPipelineStages() throws Exception {
+        Path file = directory.resolve("stages.jfr");
+        RefactoredOrderProcessor processor = new RefactoredOrderProcessor();
+        try (Recording recording = Profiling.start(file)) {
+            processor.processData("csv", "validation", data);
+            recording.stop();
+        }
+        
+        List<RecordedEvent> stages = events(file, PipelineStageEvent.NAME);
+        assertEquals(Arrays.asList("load", "process", "format"),
+                     stages.stream().map(event -> event.getString("stage")).collect(Collectors.toList()));
+        for (RecordedEvent stage : stages) {
+            assertEquals("csv", stage.getString("dataType"));
+            assertEquals("validation", stage.getString("processingType"));
+            assertEquals(3, stage.getInt("recordCount"));
+        }
+        assertEquals(15, stages.get(0).getLong("bytes"));
+        assertEquals(-1, stages.get(1).getLong("bytes"));
+        assertTrue(stages.get(2).getLong("bytes") > 0);
+        
+        List<RecordedEvent> loads = events(file, CacheEvent.NAME);
+        assertEquals(1, loads.size());
+        assertEquals("pipeline-plans", loads.get(0).getString("cache"));
+        assertEquals("load", loads.get(0).getString("action"));
+        assertEquals("csv/validation", loads.get(0).getString("key"));
+    }
+    
+    @Test
+    @DisplayName("Should record saves of run1 processors")
+    void shouldRecordSaves() throws Exception {
+        Path file = directory.resolve("saves.jfr");
+        try (Recording recording = Profiling.start(file);
+             OrderProcessor processor = new OrderProcessor("csv", "validate", "filesystem")) {
+            processor.processData(data);
+            recording.stop();
+        }
+        
+        List<RecordedEvent> stages = events(file, PipelineStageEvent.NAME);
+        assertEquals(Arrays.asList("load", "process", "save"),
+                     stages.stream().map(event -> event.getString("stage")).collect(Collectors.toList()));
+        assertEquals("validate", stages.get(2).getString("processingType"));
+    }
+    
+    @Test
+    @DisplayName("Should record result cache loads and evictions")
+    void shouldRecordCacheEvictions() throws Exception {
+        Path file = directory.resolve("cache.jfr");
+        MemoizingOrderProcessor processor = new MemoizingOrderProcessor(new RefactoredOrderProcessor(),
+                                                                        new MemoryResultStore(400), null);
+        try (Recording recording = Profiling.start(file)) {
+            processor.processData("csv", "analytics", data);
+            processor.processData("csv", "analytics", Arrays.asList("other"));
+            recording.stop();
+        }
+        
+        List<RecordedEvent> events = events(file, CacheEvent.NAME).stream()
+            .filter(event -> event.getString("cache").equals("memoized-results")
+                || event.getString("cache").equals("memory-result-store"))
+            .collect(Collectors.toList());
+        assertEquals(Arrays.asList("load", "load", "evict"),
+                     events.stream().map(event -> event.getString("action")).collect(Collectors.toList()));
+        assertEquals(MemoizingOrderProcessor.key("csv", "analytics", data), events.get(2).getString("key"));
+    }
+    
+    @Test
+    @DisplayName("Should leave out stages below the threshold")
+    void shouldApplyStageThreshold() throws Exception {
+        Path file = directory.resolve("slow.jfr");
+        RefactoredOrderProcessor processor = new RefactoredOrderProcessor();
+        try (Recording recording = Profiling.start(file, Duration.ofHours(1))) {
+            processor.processData("csv", "validation", data);
+            recording.stop();
+        }
+        
+        assertTrue(events(file, PipelineStageEvent.NAME).isEmpty());
+    }
+}
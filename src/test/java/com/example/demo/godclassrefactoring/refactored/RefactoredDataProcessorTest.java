@@ -0,0 +1,98 @@
+package com.example.demo.godclassrefactoring.refactored;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Unit tests for the RefactoredDataProcessor, including the partitioned execution mode.
+ */
+@DisplayName("Refactored Data Processor Tests")
+class RefactoredDataProcessorTest {
+    
+    private ForkJoinPool pool;
+    private RefactoredDataProcessor processor;
+    private List<String> testData;
+    
+    @BeforeEach
+    void setUp() {
+        pool = new ForkJoinPool(4);
+        processor = new RefactoredDataProcessor(pool);
+        testData = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            testData.add("row" + i);
+        }
+    }
+    
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+    
+    @Test
+    @DisplayName("Should process CSV data with analytics")
+    void shouldProcessCsvWithAnalytics() {
+        String result = processor.processData("csv", "analytics", testData);
+        
+        assertEquals("CSV Output: Analytics result for: {type=csv, rows=10}", result);
+    }
+    
+    @Test
+    @DisplayName("Partitioned aggregation should match sequential aggregation")
+    void partitionedAggregationShouldMatchSequential() {
+        String sequential = processor.processData("csv", "aggregation", testData);
+        String partitioned = processor.processDataPartitioned("csv", "aggregation", testData, 3, false);
+        
+        assertEquals(sequential, partitioned);
+    }
+    
+    @Test
+    @DisplayName("Partitioned analytics should match sequential analytics")
+    void partitionedAnalyticsShouldMatchSequential() {
+        String sequential = processor.processData("csv", "analytics", testData);
+        String partitioned = processor.processDataPartitioned("csv", "analytics", testData, 4, true);
+        
+        assertEquals(sequential, partitioned);
+    }
+    
+    @Test
+    @DisplayName("Ordered partitioned mode should keep partition results in input order")
+    void orderedPartitionsShouldKeepInputOrder() {
+        String result = processor.processDataPartitioned("csv", "validation", testData, 4, true);
+        
+        assertEquals("CSV Output: [Validated: {type=csv, rows=4}, "
+            + "Validated: {type=csv, rows=4}, "
+            + "Validated: {type=csv, rows=2}]", result);
+    }
+    
+    @Test
+    @DisplayName("Unordered partitioned mode should return every partition result")
+    void unorderedPartitionsShouldReturnAllResults() {
+        String result = processor.processDataPartitioned("json", "validation", testData, 1, false);
+        
+        assertTrue(result.startsWith("JSON Output: ["));
+        assertEquals(10, result.split("Validated: ").length - 1);
+    }
+    
+    @Test
+    @DisplayName("Should reject non-positive partition sizes")
+    void shouldRejectNonPositivePartitionSize() {
+        assertThrows(IllegalArgumentException.class,
+            () -> processor.processDataPartitioned("csv", "analytics", testData, 0, true));
+    }
+    
+    @Test
+    @DisplayName("Should throw exception for unsupported processing type in partitioned mode")
+    void shouldRejectUnsupportedProcessingType() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+            () -> processor.processDataPartitioned("csv", "unsupported", testData, 2, true));
+        
+        assertEquals("Unsupported processing type: unsupported", exception.getMessage());
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.demo.godclassrefactoring.refactored;
+
+import com.example.demo.godclassrefactoring.columnar.ColumnBatch;
+import com.example.demo.godclassrefactoring.columnar.GroupStatistics;
+import com.example.demo.godclassrefactoring.expression.BatchTransformer;
+import com.example.demo.godclassrefactoring.validation.RuleSet;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for strategy chains and the fusion of row-wise strategies.
+ */
+@DisplayName("Strategy Chain Tests")
+class StrategyChainTest {
+    
+    @Test
+    @DisplayName("Adjacent row strategies should be fused into one pass")
+    void shouldFuseAdjacentRowStrategies() {
+        StrategyChain chain = ProcessingStrategyFactory.chain()
+            .then("validation")
+            .then("transformation")
+            .then("aggregation")
+            .build();
+        
+        assertEquals(2, chain.getPasses().size());
+        assertInstanceOf(FusedRowStrategy.class, chain.getPasses().get(0));
+        assertInstanceOf(AggregationProcessor.class, chain.getPasses().get(1));
+    }
+    
+    @Test
+    @DisplayName("Fused chain should produce the same result as separate passes")
+    void fusedChainShouldMatchSeparatePasses() {
+        List<String> rows = Arrays.asList("a", "b", "c");
+        StrategyChain chain = ProcessingStrategyFactory.chain()
+            .then("validation")
+            .then("transformation")
+            .then("aggregation")
+            .build();
+        
+        Object separate = new AggregationProcessor().process(
+            new TransformationProcessor().process(new ValidationProcessor().process(rows)));
+        
+        assertEquals(separate, chain.process(rows));
+        assertEquals("Aggregated: [Transformed: Validated: a, Transformed: Validated: b, Transformed: Validated: c]",
+            chain.process(rows));
+    }
+    
+    @Test
+    @DisplayName("Chained validation and transformation should apply to the rows of a batch")
+    void chainedRowStrategiesShouldApplyToBatches() {
+        RuleSet rules = RuleSet.builder().range("value", 0, 100).build();
+        ColumnBatch batch = ColumnBatch.builder(4)
+            .longColumn("key", new long[] {1, 1, 2, 2})
+            .doubleColumn("value", new double[] {10, 500, 20, 30})
+            .build();
+        StrategyChain chain = ProcessingStrategyFactory.chain()
+            .then(new ValidationProcessor(rules))
+            .then(new TransformationProcessor(
+                new BatchTransformer(Collections.singletonMap("doubled", "value * 2"), Collections.emptyMap())))
+            .then(new AggregationProcessor("key", "doubled", 1 << 20, Paths.get(System.getProperty("java.io.tmpdir"))))
+            .build();
+        
+        Object result = chain.process(batch);
+        
+        assertInstanceOf(GroupStatistics.class, result);
+        GroupStatistics stats = (GroupStatistics) result;
+        assertEquals(1, stats.getCount(stats.indexOf(1L)));
+        assertEquals(20.0, stats.getSum(stats.indexOf(1L)), 1e-9);
+        assertEquals(100.0, stats.getSum(stats.indexOf(2L)), 1e-9);
+    }
+    
+    @Test
+    @DisplayName("Fused pass should touch each record once and stop at dropped records")
+    void fusedPassShouldTouchEachRecordOnce() {
+        AtomicInteger firstCalls = new AtomicInteger();
+        AtomicInteger secondCalls = new AtomicInteger();
+        RowStrategy dropOdd = new CountingRowStrategy(firstCalls) {
+            @Override
+            public Object processRow(Object row) {
+                super.processRow(row);
+                return ((Integer) row) % 2 == 0 ? row : null;
+            }
+        };
+        RowStrategy doubler = new CountingRowStrategy(secondCalls) {
+            @Override
+            public Object processRow(Object row) {
+                super.processRow(row);
+                return ((Integer) row) * 2;
+            }
+        };
+        
+        StrategyChain chain = ProcessingStrategyFactory.chain().then(dropOdd).then(doubler).build();
+        
+        assertEquals(Arrays.asList(0, 4, 8), chain.process(Arrays.asList(0, 1, 2, 3, 4)));
+        assertEquals(5, firstCalls.get());
+        assertEquals(3, secondCalls.get());
+    }
+    
+    @Test
+    @DisplayName("Chain ending in aggregation should combine partitions through the aggregation")
+    void chainShouldCombineThroughLastStep() {
+        StrategyChain chain = ProcessingStrategyFactory.chain()
+            .then("transformation")
+            .then("aggregation")
+            .build();
+        
+        assertFalse(chain.isPartitionSafe());
+        List<Object> partials = Arrays.asList(
+            chain.processPartition(Arrays.asList("a", "b")),
+            chain.processPartition(Arrays.asList("c")));
+        
+        assertEquals(chain.process(Arrays.asList("a", "b", "c")), chain.combine(partials));
+    }
+    
+    @Test
+    @DisplayName("Should reject empty chains")
+    void shouldRejectEmptyChain() {
+        assertThrows(IllegalStateException.class, () -> ProcessingStrategyFactory.chain().build());
+    }
+    
+    private static class CountingRowStrategy implements RowStrategy {
+        private final AtomicInteger calls;
+        
+        CountingRowStrategy(AtomicInteger calls) {
+            this.calls = calls;
+        }
+        
+        @Override
+        public Object process(Object data) {
+            return processRows((List<?>) data);
+        }
+        
+        @Override
+        public Object processRow(Object row) {
+            calls.incrementAndGet();
+            return row;
+        }
+    }
+}
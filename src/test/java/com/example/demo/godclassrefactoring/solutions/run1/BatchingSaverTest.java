@@ -0,0 +1,201 @@
+package com.example.demo.godclassrefactoring.solutions.run1;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+
+/**
+ * Unit tests for the buffered, batched and async savers.
+ */
+@DisplayName("Batching Saver Tests")
+class BatchingSaverTest {
+    
+    @TempDir
+    Path directory;
+    
+    @Test
+    @DisplayName("Should write full batches and keep the remainder buffered until flushed")
+    void shouldWriteBySize() throws IOException {
+        Path file = directory.resolve("orders.log");
+        try (FileSystemSaver saver = new FileSystemSaver(file, 3, 0, true)) {
+            for (int i = 1; i <= 5; i++) {
+                saver.saveData("order-" + i);
+            }
+            assertEquals(List.of("order-1", "order-2", "order-3"), Files.readAllLines(file));
+            
+            saver.flush();
+            assertEquals(5, Files.readAllLines(file).size());
+        }
+    }
+    
+    @Test
+    @DisplayName("Should flush a partial batch once its latency deadline passes")
+    void shouldWriteByDeadline() throws Exception {
+        Path file = directory.resolve("orders.log");
+        try (FileSystemSaver saver = new FileSystemSaver(file, 1000, 20, false)) {
+            saver.saveData("late order");
+            
+            long deadline = System.currentTimeMillis() + 5000;
+            while ((!Files.exists(file) || Files.size(file) == 0) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(List.of("late order"), Files.readAllLines(file));
+        }
+    }
+    
+    @Test
+    @DisplayName("Should retry a failed deadline flush on a new deadline")
+    void shouldRescheduleDeadlineAfterFailedFlush() throws Exception {
+        List<Object> written = new CopyOnWriteArrayList<>();
+        AtomicInteger attempts = new AtomicInteger();
+        try (BatchingSaver saver = new BatchingSaver(1000, 20) {
+            @Override
+            protected void writeBatch(List<Object> batch) {
+                if (attempts.incrementAndGet() == 1) {
+                    throw new IllegalStateException("destination unavailable");
+                }
+                written.addAll(batch);
+            }
+        }) {
+            saver.saveData("order");
+            
+            long deadline = System.currentTimeMillis() + 5000;
+            while (written.isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(List.of("order"), written);
+            assertThrows(IllegalStateException.class, () -> saver.saveData("next"));
+        }
+    }
+    
+    @Test
+    @DisplayName("Should meet one saver's deadline while another saver's write is blocked")
+    void shouldNotShareDeadlineThreadBetweenSavers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch blockedWriteStarted = new CountDownLatch(1);
+        CountDownLatch fastWritten = new CountDownLatch(1);
+        BatchingSaver slow = new BatchingSaver(1000, 5) {
+            @Override
+            protected void writeBatch(List<Object> batch) {
+                blockedWriteStarted.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        BatchingSaver fast = new BatchingSaver(1000, 5) {
+            @Override
+            protected void writeBatch(List<Object> batch) {
+                fastWritten.countDown();
+            }
+        };
+        try {
+            slow.saveData("slow order");
+            assertTrue(blockedWriteStarted.await(5, TimeUnit.SECONDS));
+            fast.saveData("fast order");
+            
+            assertTrue(fastWritten.await(5, TimeUnit.SECONDS), "A blocked write should not delay other savers");
+        } finally {
+            release.countDown();
+            slow.close();
+            fast.close();
+        }
+    }
+    
+    @Test
+    @DisplayName("Should insert each batch with one JDBC batch and commit")
+    void shouldInsertWithJdbcBatches() {
+        List<String> calls = new ArrayList<>();
+        try (DatabaseSaver saver = new DatabaseSaver(recordingDataSource(calls, false), "orders", 2, 0)) {
+            saver.saveData("a");
+            saver.saveData("b");
+            saver.saveData("c");
+        }
+        
+        assertEquals(List.of("autoCommit=false", "prepare", "addBatch", "addBatch", "executeBatch", "commit",
+                             "autoCommit=true",
+                             "autoCommit=false", "prepare", "addBatch", "executeBatch", "commit",
+                             "autoCommit=true"), calls);
+    }
+    
+    @Test
+    @DisplayName("Should roll back a failed batch, keep the rollback failure and restore auto-commit")
+    void shouldRollBackFailedBatch() {
+        List<String> calls = new ArrayList<>();
+        DatabaseSaver saver = new DatabaseSaver(recordingDataSource(calls, true), "orders", 1, 0);
+        
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () -> saver.saveData("a"));
+        
+        assertEquals("batch failed", exception.getCause().getMessage());
+        assertEquals("rollback failed", exception.getCause().getSuppressed()[0].getMessage());
+        assertEquals(List.of("autoCommit=false", "prepare", "addBatch", "executeBatch", "rollback",
+                             "autoCommit=true"), calls);
+    }
+    
+    @Test
+    @DisplayName("Should save asynchronously and write everything on close")
+    void shouldSaveAsynchronously() throws IOException {
+        Path file = directory.resolve("orders.log");
+        DataSaver saver = new AsyncDataSaver(new FileSystemSaver(file, 4, 0, false), 2);
+        for (int i = 0; i < 10; i++) {
+            saver.saveData(i);
+        }
+        saver.close();
+        
+        assertEquals(List.of("0", "1", "2", "3", "4", "5", "6", "7", "8", "9"), Files.readAllLines(file));
+        assertThrows(IllegalStateException.class, () -> saver.saveData("after close"));
+        assertThrows(IllegalStateException.class, saver::flush);
+    }
+    
+    /**
+     * A DataSource whose connections record the JDBC calls made through them. With failing set,
+     * executeBatch and rollback throw.
+     */
+    private static DataSource recordingDataSource(List<String> calls, boolean failing) {
+        Object statement = Proxy.newProxyInstance(BatchingSaverTest.class.getClassLoader(),
+            new Class<?>[] {java.sql.PreparedStatement.class}, (proxy, method, args) -> {
+                if (!"setString".equals(method.getName()) && !"close".equals(method.getName())) {
+                    calls.add(method.getName());
+                }
+                if ("executeBatch".equals(method.getName()) && failing) {
+                    throw new SQLException("batch failed");
+                }
+                return "executeBatch".equals(method.getName()) ? new int[0] : null;
+            });
+        Object connection = Proxy.newProxyInstance(BatchingSaverTest.class.getClassLoader(),
+            new Class<?>[] {java.sql.Connection.class}, (proxy, method, args) -> {
+                if ("prepareStatement".equals(method.getName())) {
+                    calls.add("prepare");
+                    return statement;
+                }
+                if ("commit".equals(method.getName()) || "rollback".equals(method.getName())) {
+                    calls.add(method.getName());
+                }
+                if ("rollback".equals(method.getName()) && failing) {
+                    throw new SQLException("rollback failed");
+                }
+                if ("setAutoCommit".equals(method.getName())) {
+                    calls.add("autoCommit=" + args[0]);
+                }
+                return "getAutoCommit".equals(method.getName()) ? Boolean.TRUE : null;
+            });
+        return (DataSource) Proxy.newProxyInstance(BatchingSaverTest.class.getClassLoader(),
+            new Class<?>[] {DataSource.class}, (proxy, method, args) -> connection);
+    }
+}
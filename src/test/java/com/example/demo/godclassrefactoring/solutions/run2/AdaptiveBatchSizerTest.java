@@ -0,0 +1,143 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Unit tests for the adaptive batch sizing of the StagedPipeline.
+ */
+@DisplayName("Adaptive Batch Sizer Tests")
+class AdaptiveBatchSizerTest {
+    
+    private static final List<String> RECORDS = Collections.nCopies(20_000, "order,customer,3");
+    
+    private static void spin(long nanos) {
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end) {
+            Thread.onSpinWait();
+        }
+    }
+    
+    /**
+     * Loader with a fixed cost per batch, like a round trip, and optionally per record.
+     */
+    private static DataLoader loader(long nanosPerBatch, long nanosPerRecord, int bytesPerRecord) {
+        return new CsvDataLoader() {
+            @Override
+            public Object loadData(List<String> rawData) {
+                spin(nanosPerBatch + nanosPerRecord * rawData.size());
+                List<byte[]> rows = new ArrayList<>(rawData.size());
+                for (int i = 0; i < rawData.size(); i++) {
+                    rows.add(new byte[bytesPerRecord]);
+                }
+                return rows.size();
+            }
+        };
+    }
+    
+    private static final DataProcessor PROCESSOR = new ValidationProcessor() {
+        @Override
+        public Object processData(Object data) {
+            return data;
+        }
+    };
+    
+    private static final OutputFormatter FORMATTER = new CsvOutputFormatter() {
+        @Override
+        public String formatOutput(Object data) {
+            return data.toString();
+        }
+    };
+    
+    private static AdaptiveBatchSizer.Controller run(AdaptiveBatchSizer sizer, DataLoader loader, int runs) {
+        try (StagedPipeline pipeline = new StagedPipeline(sizer, 2)) {
+            for (int i = 0; i < runs; i++) {
+                List<String> results = pipeline.run(loader, PROCESSOR, FORMATTER, RECORDS);
+                assertEquals(RECORDS.size(), results.stream().mapToInt(Integer::parseInt).sum(),
+                             "Every record is in exactly one batch");
+            }
+        }
+        return sizer.controller("csv", "validation");
+    }
+    
+    @Test
+    @DisplayName("Should grow batches while a per-batch overhead dominates")
+    void shouldGrowBatchesToAmortizeOverhead() {
+        AdaptiveBatchSizer sizer = AdaptiveBatchSizer.builder()
+            .batchSizeRange(1, 4096)
+            .initialBatchSize(8)
+            .window(2)
+            .build();
+        
+        AdaptiveBatchSizer.Controller controller = run(sizer, loader(200_000, 0, 0), 1);
+        
+        assertTrue(controller.getBatchSize() >= 64, controller.toString());
+        assertTrue(controller.getAdjustments() > 0);
+        assertTrue(controller.getThroughput() > 0);
+        assertTrue(controller.getNanosPerRecord(MetricsRegistry.LOAD) > 0);
+    }
+    
+    @Test
+    @DisplayName("Should shrink batches that exceed the latency bound")
+    void shouldRespectLatencyBound() {
+        AdaptiveBatchSizer sizer = AdaptiveBatchSizer.builder()
+            .batchSizeRange(1, 4096)
+            .initialBatchSize(1024)
+            .maxBatchLatency(Duration.ofMillis(2))
+            .window(2)
+            .build();
+        
+        // 20 microseconds per record: a 2 ms bound leaves room for at most 100 records per batch
+        AdaptiveBatchSizer.Controller controller = run(sizer, loader(0, 20_000, 0), 1);
+        
+        assertTrue(controller.getBatchSize() <= 100, controller.toString());
+    }
+    
+    @Test
+    @DisplayName("Should keep the memory allocated per batch within the allocation bound")
+    void shouldRespectAllocationBound() {
+        AdaptiveBatchSizer sizer = AdaptiveBatchSizer.builder()
+            .batchSizeRange(1, 4096)
+            .initialBatchSize(8)
+            .maxBatchBytes(64 * 1024)
+            .window(2)
+            .build();
+        
+        AdaptiveBatchSizer.Controller controller = run(sizer, loader(100_000, 0, 1024), 2);
+        
+        assertTrue(controller.getBytesPerRecord(MetricsRegistry.LOAD) >= 1024);
+        assertTrue(controller.getBatchSize() > 8 && controller.getBatchSize() <= 64, controller.toString());
+    }
+    
+    @Test
+    @DisplayName("Should export the chosen batch sizes as metrics")
+    void shouldExportBatchSizes() {
+        AdaptiveBatchSizer sizer = AdaptiveBatchSizer.builder().initialBatchSize(100).build();
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.register(sizer);
+        sizer.controller("json", "validation");
+        
+        String text = registry.toPrometheusText();
+        
+        assertTrue(text.contains("# TYPE order_processor_batch_size gauge"), text);
+        assertTrue(text.contains("order_processor_batch_size{data_type=\"json\",processing_type=\"validation\"} 100"),
+                   text);
+        assertTrue(text.contains("order_processor_batch_record_seconds{data_type=\"json\","
+                                 + "processing_type=\"validation\",stage=\"process\"}"), text);
+    }
+    
+    @Test
+    @DisplayName("Should reject invalid bounds")
+    void shouldRejectInvalidBounds() {
+        assertThrows(IllegalArgumentException.class, () -> AdaptiveBatchSizer.builder().batchSizeRange(10, 5));
+        assertThrows(IllegalArgumentException.class, () -> AdaptiveBatchSizer.builder().maxBatchLatency(Duration.ZERO));
+        AdaptiveBatchSizer.Controller controller = AdaptiveBatchSizer.builder().build().controller("csv", "analytics");
+        assertThrows(IllegalArgumentException.class, () -> controller.observe("render", 1, 1, 1, 0));
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for the AsyncOrderProcessor and its per data type concurrency limits.
+ */
+@DisplayName("Async Order Processor Tests")
+class AsyncOrderProcessorTest {
+    
+    private final List<String> testData = Arrays.asList("data1", "data2", "data3");
+    
+    @Test
+    @DisplayName("Async result should match synchronous processing")
+    void asyncResultShouldMatchSynchronousResult() {
+        RefactoredOrderProcessor processor = new RefactoredOrderProcessor();
+        
+        try (AsyncOrderProcessor async = new AsyncOrderProcessor(processor, ExecutorMode.PLATFORM, 4,
+                                                                 new ConcurrencyLimiter(4))) {
+            String result = async.processDataAsync("json", "transformation", testData).join();
+            
+            assertEquals(processor.processData("json", "transformation", testData), result);
+        }
+    }
+    
+    @Test
+    @DisplayName("Should complete exceptionally for unsupported data types")
+    void shouldCompleteExceptionallyForUnsupportedDataType() {
+        try (AsyncOrderProcessor async = new AsyncOrderProcessor(new RefactoredOrderProcessor(),
+                                                                 ExecutorMode.PLATFORM, 2, new ConcurrencyLimiter(2))) {
+            CompletionException exception = assertThrows(CompletionException.class,
+                () -> async.processDataAsync("unsupported", "analytics", testData).join());
+            
+            assertInstanceOf(IllegalArgumentException.class, exception.getCause());
+        }
+    }
+    
+    @Test
+    @DisplayName("Should respect the concurrency limit of a data type")
+    void shouldRespectConcurrencyLimit() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        RefactoredOrderProcessor processor = new RefactoredOrderProcessor() {
+            @Override
+            public String processData(String dataType, String processingType, List<String> rawData) {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                return dataType;
+            }
+        };
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(8);
+        limiter.setLimit("database", 2);
+        
+        try (AsyncOrderProcessor async = new AsyncOrderProcessor(processor, ExecutorMode.PLATFORM, 8, limiter)) {
+            List<CompletableFuture<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                futures.add(async.processDataAsync("database", "aggregation", testData));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        }
+        
+        assertTrue(maxRunning.get() <= 2, "Ran " + maxRunning.get() + " database requests concurrently");
+        assertEquals(2, limiter.availablePermits("database"));
+    }
+    
+    @Test
+    @DisplayName("Requests waiting for their limit should not hold pool threads")
+    void waitingRequestsShouldNotHoldPoolThreads() {
+        CountDownLatch release = new CountDownLatch(1);
+        RefactoredOrderProcessor processor = new RefactoredOrderProcessor() {
+            @Override
+            public String processData(String dataType, String processingType, List<String> rawData) {
+                if (dataType.equals("database")) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return dataType;
+            }
+        };
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(4);
+        limiter.setLimit("database", 1);
+        
+        try (AsyncOrderProcessor async = new AsyncOrderProcessor(processor, ExecutorMode.PLATFORM, 2, limiter)) {
+            List<CompletableFuture<String>> database = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                database.add(async.processDataAsync("database", "validation", testData));
+            }
+            
+            CompletableFuture<String> csv = async.processDataAsync("csv", "validation", testData);
+            assertEquals("csv", csv.orTimeout(5, TimeUnit.SECONDS).join());
+            release.countDown();
+            CompletableFuture.allOf(database.toArray(new CompletableFuture<?>[0])).join();
+        }
+    }
+    
+    @Test
+    @DisplayName("Should fail rejected requests and return their permits")
+    void shouldReleasePermitsOfRejectedRequests() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1);
+        
+        CompletableFuture<String> running = limiter.submit("database", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "done";
+        }, executor);
+        CompletableFuture<String> waiting = limiter.submit("database", () -> "never", executor);
+        executor.shutdown();
+        release.countDown();
+        
+        assertEquals("done", running.get(5, TimeUnit.SECONDS));
+        ExecutionException queued = assertThrows(ExecutionException.class, () -> waiting.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, queued.getCause());
+        CompletableFuture<String> late = limiter.submit("database", () -> "never", executor);
+        assertTrue(late.isCompletedExceptionally());
+        assertEquals(1, limiter.availablePermits("database"));
+    }
+}
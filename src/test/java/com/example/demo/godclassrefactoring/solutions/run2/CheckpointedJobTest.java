@@ -0,0 +1,157 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+import com.example.demo.godclassrefactoring.columnar.ColumnBatch;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for checkpointed jobs, covering resumption after a failure and checkpoint validation.
+ */
+@DisplayName("Checkpointed Job Tests")
+class CheckpointedJobTest {
+    
+    @TempDir
+    Path directory;
+    
+    private static List<String> records(int count) {
+        List<String> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            records.add((i % 7) + "," + (i * 0.1));
+        }
+        return records;
+    }
+    
+    /**
+     * Parses "key,value" records into a columnar batch.
+     */
+    private static DataLoader keyValueLoader() {
+        return new CsvDataLoader() {
+            @Override
+            public Object loadData(List<String> rawData) {
+                long[] keys = new long[rawData.size()];
+                double[] values = new double[rawData.size()];
+                for (int row = 0; row < rawData.size(); row++) {
+                    String[] fields = rawData.get(row).split(",");
+                    keys[row] = Long.parseLong(fields[0]);
+                    values[row] = Double.parseDouble(fields[1]);
+                }
+                return ColumnBatch.builder(rawData.size()).longColumn("key", keys).doubleColumn("value", values).build();
+            }
+        };
+    }
+    
+    /**
+     * Passes batches through and fails on the given call, simulating a job that dies.
+     */
+    private static DataProcessor failingOnCall(int failingCall) {
+        return new TransformationProcessor() {
+            private int calls;
+            
+            @Override
+            public Object processData(Object data) {
+                if (++calls == failingCall) {
+                    throw new IllegalStateException("Worker died");
+                }
+                return data;
+            }
+        };
+    }
+    
+    private CheckpointConfig.Builder config(String name) {
+        return CheckpointConfig.builder(directory.resolve(name + ".out"), directory.resolve(name + ".checkpoint"))
+            .batchSize(10)
+            .checkpointEvery(2, 0);
+    }
+    
+    private PipelinePlan plan(DataProcessor processor) {
+        return new PipelinePlan(keyValueLoader(), processor, new CsvOutputFormatter());
+    }
+    
+    @Test
+    @DisplayName("Should resume per-batch output after a failure and match an uninterrupted run")
+    void shouldResumeStreamedOutput() throws IOException {
+        List<String> input = records(95);
+        new CheckpointedJob(plan(failingOnCall(-1)), config("expected").checkpointEvery(0, 0).build()).run(input);
+        
+        CheckpointConfig config = config("job").build();
+        assertThrows(IllegalStateException.class, () -> new CheckpointedJob(plan(failingOnCall(6)), config).run(input));
+        assertTrue(Files.exists(config.getCheckpointFile()));
+        
+        JobReport report = new CheckpointedJob(plan(failingOnCall(-1)), config).run(input);
+        
+        assertEquals(40, report.getResumedFromRecord());
+        assertEquals(6, report.getBatchesProcessed());
+        assertEquals(2, report.getCheckpoints());
+        assertTrue(report.getCheckpointBytes() > 0);
+        assertEquals(Files.readString(directory.resolve("expected.out")), Files.readString(config.getOutputFile()));
+        assertFalse(Files.exists(config.getCheckpointFile()));
+    }
+    
+    @Test
+    @DisplayName("Should restore partial aggregation state and produce identical statistics")
+    void shouldResumeAggregation() throws IOException {
+        List<String> input = records(203);
+        new CheckpointedJob(plan(failingOnCall(-1)),
+            config("expected").state(() -> new GroupByJobState("key", "value")).build()).run(input);
+        
+        CheckpointConfig config = config("job").state(() -> new GroupByJobState("key", "value")).build();
+        assertThrows(IllegalStateException.class, () -> new CheckpointedJob(plan(failingOnCall(18)), config).run(input));
+        JobReport report = new CheckpointedJob(plan(failingOnCall(-1)), config).run(input);
+        
+        assertEquals(160, report.getResumedFromRecord());
+        String expected = Files.readString(directory.resolve("expected.out"));
+        assertTrue(expected.startsWith("CSV Output: GroupStatistics[0: count=29"));
+        assertEquals(expected, Files.readString(config.getOutputFile()));
+    }
+    
+    @Test
+    @DisplayName("Should checkpoint an aggregation through the processor by folding loaded batches into the state")
+    void shouldCheckpointAggregationThroughProcessor() throws IOException {
+        List<String> frames = new ArrayList<>();
+        DataLoader loader = keyValueLoader();
+        BinaryOutputFormatter formatter = new BinaryOutputFormatter();
+        for (int start = 0; start < 120; start += 10) {
+            frames.add(formatter.formatOutput(loader.loadData(records(120).subList(start, start + 10))));
+        }
+        RefactoredOrderProcessor processor = new RefactoredOrderProcessor();
+        CheckpointConfig config = config("job").batchSize(5).state(() -> new GroupByJobState("key", "value")).build();
+        
+        processor.processDataCheckpointed("binary", "aggregation", frames, config);
+        
+        String output = Files.readString(config.getOutputFile());
+        assertTrue(output.startsWith("Binary Output: GroupStatistics[0: count=18"), output);
+        assertEquals(processor.processData("binary", "aggregation", frames), output);
+    }
+    
+    @Test
+    @DisplayName("Should refuse to run a whole-input processor batch by batch without a state")
+    void shouldRejectWholeInputProcessorWithoutState() {
+        RefactoredOrderProcessor processor = new RefactoredOrderProcessor();
+        
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+            () -> processor.processDataCheckpointed("csv", "aggregation", records(20), config("job").build()));
+        
+        assertTrue(exception.getMessage().contains("needs the whole input"));
+    }
+    
+    @Test
+    @DisplayName("Should refuse to resume a checkpoint written for a different job")
+    void shouldRejectForeignCheckpoint() {
+        CheckpointConfig config = config("job").build();
+        assertThrows(IllegalStateException.class,
+            () -> new CheckpointedJob(plan(failingOnCall(4)), config).run(records(95)));
+        
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+            () -> new CheckpointedJob(plan(failingOnCall(-1)), config).run(records(96)));
+        
+        assertTrue(exception.getMessage().contains("belongs to a different job"));
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for the memoizing processor, its content hash and its result stores.
+ */
+@DisplayName("Memoizing Order Processor Tests")
+class MemoizingOrderProcessorTest {
+    
+    @TempDir
+    Path directory;
+    
+    /**
+     * A processor counting the requests that actually run the pipeline.
+     */
+    private static RefactoredOrderProcessor countingProcessor(AtomicInteger runs) {
+        return new RefactoredOrderProcessor() {
+            @Override
+            public String processData(String dataType, String processingType, List<String> rawData) {
+                runs.incrementAndGet();
+                return super.processData(dataType, processingType, rawData);
+            }
+        };
+    }
+    
+    @Test
+    @DisplayName("Should match the XXH64 reference values for any chunking")
+    void shouldMatchReferenceHashes() {
+        assertEquals(0xEF46DB3751D8E999L, XxHash64.hash(new byte[0]));
+        assertEquals(0x44BC2CF5AD770999L, XxHash64.hash("abc".getBytes(StandardCharsets.US_ASCII)));
+        String text = "Nobody inspects the spammish repetition";
+        assertEquals(0xFBCEA83C8A378BF1L, new XxHash64().update(text).getValue());
+        
+        byte[] bytes = new byte[20_000];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (i * 31 + i / 7);
+        }
+        long expected = XxHash64.hash(bytes);
+        XxHash64 chunked = new XxHash64();
+        for (int offset = 0, step = 1; offset < bytes.length; offset += step, step = step % 45 + 1) {
+            chunked.update(bytes, offset, Math.min(step, bytes.length - offset));
+        }
+        assertEquals(expected, chunked.getValue());
+        assertEquals(XxHash64.hash("é€😀".getBytes(StandardCharsets.UTF_8)), new XxHash64().update("é€😀").getValue());
+    }
+    
+    @Test
+    @DisplayName("Should serve repeated requests from the store")
+    void shouldServeRepeatedRequests() {
+        AtomicInteger runs = new AtomicInteger();
+        MemoizingOrderProcessor processor = new MemoizingOrderProcessor(countingProcessor(runs), 1 << 20);
+        List<String> data = Arrays.asList("order1", "order2");
+        
+        String first = processor.processData("csv", "validation", data);
+        String second = processor.processData("csv", "validation", Arrays.asList("order1", "order2"));
+        processor.processData("csv", "validation", Arrays.asList("order1", "order", "2"));
+        
+        assertEquals(first, second);
+        assertEquals(2, runs.get());
+        assertEquals(1, processor.getHits());
+        assertEquals(2, processor.getMisses());
+    }
+    
+    @Test
+    @DisplayName("Should persist results on disk, evict least recently used ones and drop other versions")
+    void shouldPersistAndEvict() {
+        AtomicInteger runs = new AtomicInteger();
+        List<String> data = Arrays.asList("a", "b", "c");
+        new MemoizingOrderProcessor(countingProcessor(runs), new MemoryResultStore(1 << 20),
+                                    new DiskResultStore(directory, 1 << 20)).processData("json", "analytics", data);
+        
+        MemoizingOrderProcessor restarted = new MemoizingOrderProcessor(countingProcessor(runs),
+            new MemoryResultStore(1 << 20), new DiskResultStore(directory, 1 << 20));
+        restarted.processData("json", "analytics", data);
+        assertEquals(1, runs.get());
+        
+        DiskResultStore small = new DiskResultStore(directory.resolve("small"), 10);
+        small.put("k1", "12345");
+        small.put("k2", "12345");
+        small.get("k1");
+        small.put("k3", "12345");
+        assertEquals("12345", small.get("k1"));
+        assertNull(small.get("k2"));
+        
+        DiskResultStore versioned = new DiskResultStore(directory.resolve("versioned"), 100, "1");
+        versioned.put("k1", "12345");
+        assertEquals("12345", new DiskResultStore(directory.resolve("versioned"), 100, "1").get("k1"));
+        DiskResultStore upgraded = new DiskResultStore(directory.resolve("versioned"), 100, "2");
+        assertEquals(0, upgraded.size());
+        assertNull(upgraded.get("k1"));
+        
+        MemoryResultStore memory = new MemoryResultStore(1000);
+        memory.put("k1", "x".repeat(300));
+        memory.put("k2", "x".repeat(300));
+        assertEquals(1, memory.size());
+        assertNull(memory.get("k1"));
+    }
+}
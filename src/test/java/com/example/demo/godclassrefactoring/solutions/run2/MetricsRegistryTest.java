@@ -0,0 +1,143 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit tests for the metrics registry, its latency histograms and its Prometheus export.
+ */
+@DisplayName("Metrics Registry Tests")
+class MetricsRegistryTest {
+    
+    @TempDir
+    Path directory;
+    
+    @Test
+    @DisplayName("Should bucket latencies and estimate percentiles from above")
+    void shouldBucketLatencies() {
+        assertEquals(0, LatencyHistogram.bucketIndex(0));
+        assertEquals(0, LatencyHistogram.bucketIndex(1_000));
+        assertEquals(1, LatencyHistogram.bucketIndex(1_001));
+        assertEquals(1, LatencyHistogram.bucketIndex(2_000));
+        assertEquals(2, LatencyHistogram.bucketIndex(2_001));
+        assertEquals(27, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+        
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileNanos(99));
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 10_000L);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(50_500_000L, histogram.getSumNanos());
+        assertEquals(1_000_000L, histogram.getMaxNanos());
+        long median = histogram.getPercentileNanos(50);
+        assertTrue(median >= 500_000 && median <= 1_000_000, "median " + median);
+        assertEquals(1_000_000L, histogram.getPercentileNanos(100));
+        assertThrows(IllegalArgumentException.class, () -> histogram.getPercentileNanos(101));
+    }
+    
+    @Test
+    @DisplayName("Should count concurrent recordings without losing updates")
+    void shouldCountConcurrentRecordings() throws InterruptedException {
+        StageMetrics metrics = new MetricsRegistry().stage("csv", "analytics", MetricsRegistry.PROCESS);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    metrics.record(i, 2);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        assertEquals(40_000, metrics.getLatency().getCount());
+        assertEquals(80_000, metrics.getRecords());
+    }
+    
+    @Test
+    @DisplayName("Should record every stage of processing calls and failures")
+    void shouldRecordProcessingStages() {
+        MetricsRegistry registry = new MetricsRegistry();
+        RefactoredOrderProcessor processor = new RefactoredOrderProcessor(new ProcessingMetricsService(registry));
+        List<String> data = Arrays.asList("data1", "data2", "data3");
+        
+        processor.processData("csv", "validation", data);
+        processor.processData("CSV", "Validation", data);
+        assertThrows(IllegalArgumentException.class, () -> processor.processData("csv", "invalid", data));
+        
+        PipelineMetrics metrics = registry.pipeline("csv", "validation");
+        assertSame(metrics, registry.pipeline("csv", "validation"));
+        for (StageMetrics stage : Arrays.asList(metrics.getLoad(), metrics.getProcess(), metrics.getFormat(),
+                                                metrics.getTotal())) {
+            assertEquals(2, stage.getLatency().getCount(), stage.getStage());
+            assertEquals(6, stage.getRecords(), stage.getStage());
+        }
+        assertTrue(metrics.getTotal().getLatency().getSumNanos() >= metrics.getLoad().getLatency().getSumNanos());
+        assertThrows(IllegalArgumentException.class, () -> processor.processData("yaml", "other", data));
+        String unknown = ProcessingMetricsService.UNKNOWN_TYPE;
+        assertEquals(1, registry.stage("csv", unknown, MetricsRegistry.TOTAL).getFailures());
+        assertEquals(1, registry.stage(unknown, unknown, MetricsRegistry.TOTAL).getFailures());
+        assertFalse(registry.toPrometheusText().contains("invalid"));
+        assertFalse(registry.toPrometheusText().contains("yaml"));
+        assertFalse(registry.toPrometheusText().contains("CSV"), "Types are labelled by their registered key");
+    }
+    
+    @Test
+    @DisplayName("Should export snapshots in the Prometheus text format")
+    void shouldExportPrometheusText() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.stage("csv", "analytics", MetricsRegistry.LOAD).record(1_500, 3);
+        registry.stage("csv", "analytics", MetricsRegistry.LOAD).record(3_000_000_000L, 4);
+        registry.stage("odd\"type", "analytics", MetricsRegistry.LOAD).recordFailure();
+        
+        String text = registry.toPrometheusText();
+        String labels = "data_type=\"csv\",processing_type=\"analytics\",stage=\"load\"";
+        assertTrue(text.contains("# TYPE order_processor_stage_duration_seconds histogram\n"));
+        assertTrue(text.contains("order_processor_records_total{" + labels + "} 7\n"));
+        assertTrue(text.contains("order_processor_stage_duration_seconds_bucket{" + labels + ",le=\"0.000001\"} 0\n"));
+        assertTrue(text.contains("order_processor_stage_duration_seconds_bucket{" + labels + ",le=\"0.000002\"} 1\n"));
+        assertTrue(text.contains("order_processor_stage_duration_seconds_bucket{" + labels + ",le=\"2.097152\"} 1\n"));
+        assertTrue(text.contains("order_processor_stage_duration_seconds_bucket{" + labels + ",le=\"+Inf\"} 2\n"));
+        assertTrue(text.contains("order_processor_stage_duration_seconds_sum{" + labels + "} 3.000001500\n"));
+        assertTrue(text.contains("order_processor_stage_duration_seconds_count{" + labels + "} 2\n"));
+        assertTrue(text.contains("order_processor_failures_total{data_type=\"odd\\\"type\",processing_type=\"analytics\","
+            + "stage=\"load\"} 1\n"));
+        
+        Path file = directory.resolve("metrics.prom");
+        registry.exportTo(file);
+        assertEquals(text, new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        
+        HttpServer server = registry.startHttpEndpoint(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        try {
+            URL url = new URL("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort()
+                + "/metrics");
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            assertEquals(200, connection.getResponseCode());
+            assertTrue(connection.getContentType().startsWith("text/plain; version=0.0.4"));
+            try (InputStream in = connection.getInputStream()) {
+                assertEquals(text, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+}
@@ -5,8 +5,15 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Comprehensive unit tests for the RefactoredOrderProcessor.
@@ -161,4 +168,103 @@ class RefactoredOrderProcessorTest {
         assertTrue(result1.contains("Analytics result"));
         assertTrue(result2.contains("Analytics result"));
     }
+    
+    @Test
+    @DisplayName("Should process data in batches through the staged pipeline")
+    void shouldProcessDataThroughStagedPipeline() {
+        try (StagedPipeline pipeline = new StagedPipeline(2, 1)) {
+            String result = processor.processDataStaged("csv", "validation", testData, pipeline);
+            
+            String[] batches = result.split("\n");
+            assertEquals(2, batches.length);
+            assertTrue(batches[0].contains("rows=2"));
+            assertTrue(batches[1].contains("rows=1"));
+            assertTrue(batches[1].startsWith("CSV Output: Validated"));
+        }
+    }
+    
+    @Test
+    @DisplayName("Staged analytics and aggregation should match unbatched processing")
+    void stagedWholeInputProcessingShouldMatchUnbatched() {
+        try (StagedPipeline pipeline = new StagedPipeline(2, 1)) {
+            for (String processingType : List.of("analytics", "aggregation")) {
+                assertEquals(processor.processData("csv", processingType, testData),
+                             processor.processDataStaged("csv", processingType, testData, pipeline));
+            }
+        }
+    }
+    
+    @Test
+    @DisplayName("Should reuse compiled plans until a factory registration changes")
+    void shouldReuseCompiledPlans() {
+        PipelinePlanCache cache = new PipelinePlanCache();
+        PipelinePlan plan = cache.get("csv", "analytics");
+        
+        assertSame(plan, cache.get("csv", "analytics"));
+        assertSame(plan, cache.get("CSV", "Analytics"), "Types are cached case-insensitively");
+        
+        DataLoaderFactory.registerLoader(plan.getLoader());
+        assertNotSame(plan, cache.get("csv", "analytics"));
+    }
+    
+    @Test
+    @DisplayName("Should compile again instead of caching a plan when a registration happens meanwhile")
+    void shouldNotCachePlansCompiledDuringRegistration() {
+        AtomicInteger created = new AtomicInteger();
+        DataProcessorFactory.registry().registerLazy("racy", () -> {
+            // Another thread registering a component while this plan compiles
+            DataLoaderFactory.registerLoader(new CsvDataLoader());
+            created.incrementAndGet();
+            return new ValidationProcessor();
+        });
+        try {
+            PipelinePlanCache cache = new PipelinePlanCache();
+            PipelinePlan plan = cache.get("csv", "racy");
+            
+            assertEquals(1, created.get());
+            assertSame(plan, cache.get("csv", "racy"), "The plan compiled after the registration is cached");
+        } finally {
+            DataProcessorFactory.unregisterProcessor("racy");
+        }
+    }
+    
+    @Test
+    @DisplayName("Should not cache plans for unsupported types")
+    void shouldNotCachePlansForUnsupportedTypes() {
+        PipelinePlanCache cache = new PipelinePlanCache();
+        
+        assertThrows(IllegalArgumentException.class, () -> cache.get("csv", "unsupported"));
+        assertThrows(IllegalArgumentException.class, () -> cache.get("csv", "unsupported"));
+    }
+    
+    @Test
+    @DisplayName("Should initialize the plan cache and the factories concurrently without deadlock")
+    void shouldInitializeCacheAndFactoriesConcurrently() throws Exception {
+        URL[] classes = {PipelinePlanCache.class.getProtectionDomain().getCodeSource().getLocation()};
+        for (int run = 0; run < 20; run++) {
+            // A fresh class loader runs the class initializers again
+            try (URLClassLoader loader = new URLClassLoader(classes, ClassLoader.getPlatformClassLoader())) {
+                Class<?> factoryClass = loader.loadClass(DataLoaderFactory.class.getName());
+                Class<?> cacheClass = loader.loadClass(PipelinePlanCache.class.getName());
+                CyclicBarrier start = new CyclicBarrier(2);
+                FutureTask<Object> factory = initializer(start,
+                    () -> factoryClass.getMethod("getAvailableDataTypes").invoke(null));
+                FutureTask<Object> cache = initializer(start, () -> cacheClass.getConstructor().newInstance());
+                
+                assertNotNull(factory.get(10, TimeUnit.SECONDS), "Class initialization deadlocked in run " + run);
+                assertNotNull(cache.get(10, TimeUnit.SECONDS), "Class initialization deadlocked in run " + run);
+            }
+        }
+    }
+    
+    private static FutureTask<Object> initializer(CyclicBarrier start, Callable<Object> initialization) {
+        FutureTask<Object> task = new FutureTask<>(() -> {
+            start.await();
+            return initialization.call();
+        });
+        Thread thread = new Thread(task);
+        thread.setDaemon(true);
+        thread.start();
+        return task;
+    }
 }
@@ -0,0 +1,134 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for sharded processing, with workers on threads, in subprocesses and failing.
+ */
+@DisplayName("Shard Coordinator Tests")
+class ShardCoordinatorTest {
+    
+    private static List<String> records(int count) {
+        List<String> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            records.add("record" + i);
+        }
+        return records;
+    }
+    
+    private static String expectedOutput(String dataType, String processingType, List<String> rawData, int shardSize) {
+        try (StagedPipeline pipeline = new StagedPipeline(shardSize, 2)) {
+            return new RefactoredOrderProcessor().processDataStaged(dataType, processingType, rawData, pipeline);
+        }
+    }
+    
+    private static void startWorkerThread(ShardCoordinator coordinator) {
+        Thread thread = new Thread(new ShardWorker(InetAddress.getLoopbackAddress().getHostAddress(),
+                                                   coordinator.getPort()));
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    @Test
+    @DisplayName("Should merge shard outputs in input order")
+    void shouldMergeShardsInOrder() throws InterruptedException {
+        try (ShardCoordinator coordinator = new ShardCoordinator(7)) {
+            startWorkerThread(coordinator);
+            startWorkerThread(coordinator);
+            assertTrue(coordinator.awaitWorkers(2, 5000));
+            
+            String output = coordinator.processData("csv", "validation", records(100));
+            
+            assertEquals(expectedOutput("csv", "validation", records(100), 7), output);
+            assertEquals(15, output.split("\n").length);
+        }
+    }
+    
+    @Test
+    @DisplayName("Should reassign the shard of a worker that dies")
+    void shouldReassignShardsOfFailedWorkers() throws Exception {
+        try (ShardCoordinator coordinator = new ShardCoordinator(10);
+             Socket dying = new Socket(InetAddress.getLoopbackAddress(), coordinator.getPort())) {
+            DataOutputStream out = new DataOutputStream(dying.getOutputStream());
+            out.writeByte(ShardProtocol.HELLO);
+            out.writeInt(ShardProtocol.VERSION);
+            out.flush();
+            assertTrue(coordinator.awaitWorkers(1, 5000));
+            Thread killer = new Thread(() -> {
+                try {
+                    new DataInputStream(dying.getInputStream()).readByte();
+                    dying.shutdownOutput();
+                } catch (Exception e) {
+                    // The test fails on the output instead
+                }
+            });
+            killer.start();
+            startWorkerThread(coordinator);
+            assertTrue(coordinator.awaitWorkers(2, 5000));
+            
+            String output = coordinator.processData("json", "validation", records(50));
+            
+            assertEquals(expectedOutput("json", "validation", records(50), 10), output);
+            killer.join();
+        }
+    }
+    
+    @Test
+    @DisplayName("Should reassign the shard of a worker that stops answering")
+    void shouldReassignShardsOfStalledWorkers() throws Exception {
+        try (ShardCoordinator coordinator = new ShardCoordinator(
+                 10, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 200);
+             Socket stalled = new Socket(InetAddress.getLoopbackAddress(), coordinator.getPort())) {
+            DataOutputStream out = new DataOutputStream(stalled.getOutputStream());
+            out.writeByte(ShardProtocol.HELLO);
+            out.writeInt(ShardProtocol.VERSION);
+            out.flush();
+            assertTrue(coordinator.awaitWorkers(1, 5000));
+            startWorkerThread(coordinator);
+            assertTrue(coordinator.awaitWorkers(2, 5000));
+            
+            String output = coordinator.processData("json", "validation", records(50));
+            
+            assertEquals(expectedOutput("json", "validation", records(50), 10), output);
+            assertEquals(1, coordinator.getWorkerCount());
+        }
+    }
+    
+    @Test
+    @DisplayName("Should fail the job when a shard cannot be processed")
+    void shouldFailOnProcessingErrors() throws InterruptedException {
+        try (ShardCoordinator coordinator = new ShardCoordinator(10)) {
+            assertThrows(IllegalStateException.class, () -> coordinator.processData("csv", "validation", records(5)));
+            startWorkerThread(coordinator);
+            assertTrue(coordinator.awaitWorkers(1, 5000));
+            
+            IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> coordinator.processData("yaml", "validation", records(5)));
+            
+            assertTrue(exception.getMessage().contains("Unsupported data type: yaml"));
+        }
+    }
+    
+    @Test
+    @DisplayName("Should run shards on local worker processes")
+    void shouldRunOnLocalWorkerProcesses() throws InterruptedException {
+        try (ShardCoordinator coordinator = new ShardCoordinator(25)) {
+            coordinator.launchLocalWorkers(2);
+            assertTrue(coordinator.awaitWorkers(2, 30_000));
+            
+            String output = coordinator.processData("xml", "aggregation", records(100));
+            
+            assertEquals(expectedOutput("xml", "aggregation", records(100), 25), output);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+import com.example.demo.godclassrefactoring.buffer.BufferArena;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for the StagedPipeline, covering ordering, backpressure and failure propagation.
+ */
+@DisplayName("Staged Pipeline Tests")
+class StagedPipelineTest {
+    
+    private static List<String> records(int count) {
+        List<String> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            records.add("record" + i);
+        }
+        return records;
+    }
+    
+    @Test
+    @DisplayName("Slow formatter should throttle the loader")
+    void slowFormatterShouldThrottleLoader() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        DataLoader loader = new CsvDataLoader() {
+            @Override
+            public Object loadData(List<String> rawData) {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                return rawData.size();
+            }
+        };
+        DataProcessor processor = new ValidationProcessor() {
+            @Override
+            public Object processData(Object data) {
+                return data;
+            }
+        };
+        OutputFormatter formatter = new CsvOutputFormatter() {
+            @Override
+            public String formatOutput(Object data) {
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                inFlight.decrementAndGet();
+                return data.toString();
+            }
+        };
+        
+        try (StagedPipeline pipeline = new StagedPipeline(1, 2)) {
+            List<String> results = pipeline.run(loader, processor, formatter, records(50));
+            
+            assertEquals(50, results.size());
+        }
+        // Two queues of capacity 2 plus at most one batch held by each stage
+        assertTrue(maxInFlight.get() <= 7, "Loader ran ahead by " + maxInFlight.get() + " batches");
+    }
+    
+    @Test
+    @DisplayName("Should keep batch output in input order")
+    void shouldKeepBatchOrder() {
+        DataLoader loader = new CsvDataLoader() {
+            @Override
+            public Object loadData(List<String> rawData) {
+                return rawData.get(0);
+            }
+        };
+        DataProcessor processor = new ValidationProcessor() {
+            @Override
+            public Object processData(Object data) {
+                return data;
+            }
+        };
+        
+        OutputFormatter formatter = new CsvOutputFormatter() {
+            @Override
+            public String formatOutput(Object data) {
+                return data.toString();
+            }
+        };
+        
+        try (StagedPipeline pipeline = new StagedPipeline(1, 4)) {
+            List<String> results = pipeline.run(loader, processor, formatter, records(20));
+            
+            assertEquals(records(20), results);
+        }
+    }
+    
+    @Test
+    @DisplayName("Should process the merged batches once for processors that are not partition-safe")
+    void shouldMergeBatchesForWholeInputProcessors() {
+        AtomicInteger calls = new AtomicInteger();
+        DataProcessor processor = new AnalyticsProcessor() {
+            @Override
+            public Object processData(Object data) {
+                calls.incrementAndGet();
+                return super.processData(data);
+            }
+        };
+        String sequential = new PipelinePlan(new CsvDataLoader(), new AnalyticsProcessor(), new CsvOutputFormatter())
+            .execute(records(25));
+        
+        try (StagedPipeline pipeline = new StagedPipeline(4, 2)) {
+            List<String> results = pipeline.run(new CsvDataLoader(), processor, new CsvOutputFormatter(), records(25));
+            
+            assertEquals(List.of(sequential), results);
+            assertEquals(1, calls.get());
+        }
+    }
+    
+    @Test
+    @DisplayName("Should propagate stage failures without hanging")
+    void shouldPropagateStageFailures() {
+        DataProcessor failing = new AggregationProcessor() {
+            @Override
+            public Object processData(Object data) {
+                throw new IllegalStateException("processor failed");
+            }
+        };
+        
+        try (StagedPipeline pipeline = new StagedPipeline(1, 1)) {
+            IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> pipeline.run(new CsvDataLoader(), failing, new CsvOutputFormatter(), records(100)));
+            
+            assertEquals("processor failed", exception.getMessage());
+        }
+    }
+    
+    @Test
+    @DisplayName("Should fail a run whose stage keeps a borrowed buffer")
+    void shouldFailLeakingStage() {
+        DataProcessor leaking = new ValidationProcessor() {
+            @Override
+            public Object processData(Object data) {
+                BufferArena.current().borrowLongs(64);
+                return super.processData(data);
+            }
+        };
+        
+        BufferArena.setLeakDetection(true);
+        try (StagedPipeline pipeline = new StagedPipeline(4, 2)) {
+            IllegalStateException leak = assertThrows(IllegalStateException.class,
+                () -> pipeline.run(new CsvDataLoader(), leaking, new CsvOutputFormatter(), records(10)));
+            
+            assertTrue(leak.getMessage().startsWith("PipelinePlan[csv -> validation -> csv] did not return 1"),
+                       leak.getMessage());
+        } finally {
+            BufferArena.setLeakDetection(false);
+        }
+    }
+}
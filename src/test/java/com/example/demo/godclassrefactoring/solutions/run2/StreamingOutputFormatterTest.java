@@ -0,0 +1,160 @@
+package com.example.demo.godclassrefactoring.solutions.run2;
+
+import com.example.demo.godclassrefactoring.columnar.ColumnBatch;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Unit tests for formatters streaming their output into byte sinks.
+ */
+@DisplayName("Streaming Output Formatter Tests")
+class StreamingOutputFormatterTest {
+    
+    private static ColumnBatch orders() {
+        return ColumnBatch.builder(3)
+            .longColumn("id", new long[] {1, -20, Long.MIN_VALUE})
+            .doubleColumn("price", new double[] {9.5, 2, Double.NaN})
+            .stringColumn("note", new String[] {"plain", "say \"hi\", é\n<ok> & 'so'", null})
+            .build();
+    }
+    
+    private static String stream(OutputFormatter formatter, Object data, int bufferSize) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteSink sink = new ByteSink(Channels.newChannel(out), ByteBuffer.allocate(bufferSize));
+        formatter.writeTo(data, sink);
+        sink.flush();
+        assertEquals(out.size(), sink.getBytesWritten());
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+    
+    private static String written(double value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteSink sink = ByteSink.of(out);
+        sink.writeDouble(value);
+        sink.flush();
+        return new String(out.toByteArray(), StandardCharsets.US_ASCII);
+    }
+    
+    @Test
+    @DisplayName("Should quote CSV fields containing delimiters, quotes or line breaks")
+    void shouldFormatCsv() {
+        String output = new CsvOutputFormatter().formatOutput(orders());
+        
+        assertEquals("CSV Output: \nid,price,note\n1,9.5,plain\n-20,2,\"say \"\"hi\"\", é\n<ok> & 'so'\"\n"
+            + Long.MIN_VALUE + ",,", output);
+    }
+    
+    @Test
+    @DisplayName("Should escape JSON strings and write missing values as null")
+    void shouldFormatJson() {
+        String output = new JsonOutputFormatter().formatOutput(orders());
+        
+        assertEquals("JSON Output: \n[{\"id\":1,\"price\":9.5,\"note\":\"plain\"},"
+            + "{\"id\":-20,\"price\":2,\"note\":\"say \\\"hi\\\", é\\n<ok> & 'so'\"},"
+            + "{\"id\":" + Long.MIN_VALUE + ",\"price\":null,\"note\":null}]", output);
+    }
+    
+    @Test
+    @DisplayName("Should escape XML text and SQL literals")
+    void shouldFormatXmlAndSql() {
+        String xml = new XmlOutputFormatter().formatOutput(orders());
+        String sql = new DatabaseOutputFormatter().formatOutput(orders());
+        
+        assertTrue(xml.contains("<note>say &quot;hi&quot;, é\n&lt;ok&gt; &amp; &apos;so&apos;</note>"));
+        assertTrue(xml.endsWith("<price/><note/></row></rows>"));
+        assertTrue(sql.startsWith(
+            "Database Output: \nINSERT INTO records (\"id\", \"price\", \"note\") VALUES\n(1, 9.5, 'plain'),"));
+        assertTrue(sql.contains("'say \"hi\", é\n<ok> & ''so'''"));
+        assertTrue(sql.endsWith(", NULL, NULL);"));
+    }
+    
+    @Test
+    @DisplayName("Should quote SQL identifiers, skip empty batches and reject invalid XML names")
+    void shouldGuardColumnNames() {
+        ColumnBatch hostile = ColumnBatch.builder(1)
+            .longColumn("id) VALUES (1); DROP TABLE records; --", new long[] {1})
+            .stringColumn("say \"hi\"", new String[] {"x"})
+            .build();
+        ColumnBatch empty = ColumnBatch.builder(0).longColumn("id", new long[0]).build();
+        
+        assertEquals("Database Output: \nINSERT INTO records (\"id) VALUES (1); DROP TABLE records; --\", "
+            + "\"say \"\"hi\"\"\") VALUES\n(1, 'x');", new DatabaseOutputFormatter().formatOutput(hostile));
+        assertEquals("Database Output: \n-- no records to insert", new DatabaseOutputFormatter().formatOutput(empty));
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+            () -> new XmlOutputFormatter().formatOutput(hostile));
+        assertTrue(exception.getMessage().contains("not a valid XML element name"));
+    }
+    
+    @Test
+    @DisplayName("Should write doubles that read back exactly, keep -0.0 and quote infinities")
+    void shouldFormatDoubles() {
+        double[] values = {0.1, 0.1 + 0.2, -12.25, 1.5e-7, 123456789.125, 1e300, Double.MIN_VALUE, 2.0 / 3};
+        for (double value : values) {
+            assertEquals(value, Double.parseDouble(written(value)));
+            assertEquals(-value, Double.parseDouble(written(-value)));
+        }
+        assertEquals("0.1", written(0.1));
+        assertEquals("0.00000015", written(1.5e-7));
+        assertEquals("-0", written(-0.0));
+        assertThrows(IllegalArgumentException.class, () -> ByteSink.of(new ByteArrayOutputStream())
+            .writeDouble(Double.POSITIVE_INFINITY));
+        
+        ColumnBatch batch = ColumnBatch.builder(3)
+            .doubleColumn("price", new double[] {Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 0.25})
+            .build();
+        assertEquals("JSON Output: \n[{\"price\":\"Infinity\"},{\"price\":\"-Infinity\"},{\"price\":0.25}]",
+            new JsonOutputFormatter().formatOutput(batch));
+        assertTrue(new DatabaseOutputFormatter().formatOutput(batch)
+            .endsWith("('Infinity'),\n('-Infinity'),\n(0.25);"));
+    }
+    
+    @Test
+    @DisplayName("Should replace control characters XML does not allow and keep carriage returns")
+    void shouldEscapeXmlControlCharacters() {
+        ColumnBatch batch = ColumnBatch.builder(1)
+            .stringColumn("note", new String[] {"a\u0000b\u001Bc\td\r\n"})
+            .build();
+        
+        String xml = new XmlOutputFormatter().formatOutput(batch);
+        
+        assertTrue(xml.contains("<note>a\uFFFDb\uFFFDc\td&#13;\n</note>"), xml);
+    }
+    
+    @Test
+    @DisplayName("Should stream the same bytes as formatOutput through any buffer size for text formats")
+    void shouldStreamSameBytes() {
+        for (String format : OutputFormatterFactory.getAvailableFormatTypes()) {
+            OutputFormatter formatter = OutputFormatterFactory.createFormatter(format);
+            if (!(formatter instanceof StreamingOutputFormatter)) {
+                continue;
+            }
+            for (Object data : Arrays.asList(orders(), "Processed: [a, b]")) {
+                String expected = formatter.formatOutput(data);
+                
+                assertEquals(expected, stream(formatter, data, 32), format);
+                assertEquals(expected, stream(formatter, data, 4096), format);
+            }
+        }
+        assertEquals("CSV Output: Processed: [a, b]", new CsvOutputFormatter().formatOutput("Processed: [a, b]"));
+    }
+    
+    @Test
+    @DisplayName("Should stream pipeline output through the refactored processor")
+    void shouldStreamThroughProcessor() {
+        RefactoredOrderProcessor processor = new RefactoredOrderProcessor();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteSink sink = ByteSink.of(out);
+        
+        processor.processDataTo("csv", "validation", Arrays.asList("a", "b"), sink);
+        
+        assertEquals(processor.processData("csv", "validation", Arrays.asList("a", "b")),
+            new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+}
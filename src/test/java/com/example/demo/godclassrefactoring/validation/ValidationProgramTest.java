@@ -0,0 +1,116 @@
+package com.example.demo.godclassrefactoring.validation;
+
+import com.example.demo.godclassrefactoring.columnar.ColumnBatch;
+import com.example.demo.godclassrefactoring.solutions.run2.ValidationProcessor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Unit tests for compiled validation rule sets.
+ */
+@DisplayName("Validation Program Tests")
+class ValidationProgramTest {
+    
+    private static ColumnBatch orders() {
+        return ColumnBatch.builder(5)
+            .stringColumn("email", new String[] {"a@x.com", "bad", null, "c@x.com", "d@x.com"})
+            .doubleColumn("amount", new double[] {10, 20, 30, Double.NaN, 5000})
+            .longColumn("start", new long[] {1, 2, 3, 4, 9})
+            .longColumn("end", new long[] {2, 2, 3, 5, 1})
+            .build();
+    }
+    
+    @Test
+    @DisplayName("Should flag failing rows in a bitmap and attribute each to one rule")
+    void shouldFlagFailingRows() {
+        ValidationProgram program = RuleSet.builder()
+            .matches("email", "[^@]+@[^@]+")
+            .required("email")
+            .range("amount", 0, 1000)
+            .compare("start", Comparison.LESS_OR_EQUAL, "end")
+            .build()
+            .compile();
+        
+        ValidationResult result = program.validate(orders());
+        
+        BitSet expected = new BitSet();
+        expected.set(1);
+        expected.set(2);
+        expected.set(4);
+        assertEquals(expected, result.getFailedRows());
+        assertTrue(result.isValid(0));
+        assertTrue(result.isValid(3), "Null amounts are only rejected by required rules");
+        assertEquals(1, result.getRuleFailures().get("required(email)"));
+        assertEquals(1, result.getRuleFailures().get("range(amount)"));
+        assertEquals(1, result.getRuleFailures().get("matches(email)"));
+        assertEquals(0, result.getRuleFailures().get("start <= end"));
+    }
+    
+    @Test
+    @DisplayName("Should hoist null checks and order cheap checks before regular expressions")
+    void shouldOrderChecksByCost() {
+        ValidationProgram program = RuleSet.builder()
+            .matches("email", ".*")
+            .compare("start", Comparison.LESS_THAN, "end")
+            .range("amount", 0, 1)
+            .required("email")
+            .build()
+            .compile();
+        
+        assertEquals(Arrays.asList("required(email)", "nulls(start)", "nulls(end)", "nulls(amount)",
+                                   "range(amount)", "start < end", "matches(email)"), program.getPlan());
+    }
+    
+    @Test
+    @DisplayName("Should reject rules on a column the batch does not have")
+    void shouldRejectUnknownColumn() {
+        ValidationProgram program = RuleSet.builder().required("email").matches("customer", "x").build().compile();
+        
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+            () -> program.validate(orders()));
+        assertTrue(exception.getMessage().contains("Unknown column in validation rules: customer"));
+    }
+    
+    @Test
+    @DisplayName("Should reject a range rule on a string column")
+    void shouldRejectWrongColumnType() {
+        ValidationProgram program = RuleSet.builder().range("email", 0, 1).build().compile();
+        
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+            () -> program.validate(orders()));
+        assertTrue(exception.getMessage().contains("requires a numeric column"));
+    }
+    
+    @Test
+    @DisplayName("Should validate batches in the validation processor and keep untyped behaviour")
+    void shouldValidateBatchesInProcessor() {
+        ValidationProcessor processor = new ValidationProcessor(RuleSet.builder().range("amount", 0, 100).build());
+        
+        Object result = processor.processData(orders());
+        
+        assertTrue(result instanceof ValidationResult);
+        assertEquals(1, ((ValidationResult) result).getFailureCount());
+        assertTrue(processor.processData("row").toString().contains("Validated"));
+    }
+    
+    @Test
+    @DisplayName("Should validate every batch of a multi-frame payload in the validation processor")
+    void shouldValidateEachBatchOfList() {
+        ValidationProcessor processor = new ValidationProcessor(RuleSet.builder().range("amount", 0, 100).build());
+        ColumnBatch valid = ColumnBatch.builder(2).doubleColumn("amount", new double[] {1, 2}).build();
+        
+        Object result = processor.processData(Arrays.asList(orders(), valid, orders()));
+        
+        assertTrue(result instanceof List);
+        List<?> results = (List<?>) result;
+        assertEquals(3, results.size());
+        assertEquals(1, ((ValidationResult) results.get(0)).getFailureCount());
+        assertTrue(((ValidationResult) results.get(1)).isValid());
+        assertEquals(1, ((ValidationResult) results.get(2)).getFailureCount());
+    }
+}
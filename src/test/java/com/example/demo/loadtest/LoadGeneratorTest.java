@@ -0,0 +1,124 @@
+package com.example.demo.loadtest;
+
+import com.example.demo.debugbuggycode.BuggyCache;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for the open-loop load generator and its latency recorder.
+ */
+@DisplayName("Load Generator Tests")
+class LoadGeneratorTest {
+    
+    private static LoadGenerator generator(double rate, long millis, int workers) {
+        return LoadGenerator.builder()
+            .rate(rate)
+            .duration(Duration.ZERO, Duration.ofMillis(millis))
+            .workers(workers)
+            .arrivals(LoadGenerator.Arrivals.UNIFORM)
+            .build();
+    }
+    
+    @Test
+    @DisplayName("Should send requests at the target rate split by the mix weights")
+    void shouldSendMixAtTargetRate() {
+        BuggyCache<Integer, String> cache = new BuggyCache<>(100, 60_000);
+        LoadMix mix = LoadMix.builder()
+            .cacheGet(cache, 100, 3)
+            .cachePut(cache, 100, 1)
+            .build();
+        
+        LoadReport report = generator(2_000, 500, 2).run(mix);
+        
+        assertEquals(1_000, report.getRequests());
+        assertEquals(0, report.getErrors());
+        long gets = report.getOperations().get(0).getRequests();
+        assertTrue(gets > 650 && gets < 850, "gets " + gets);
+        assertTrue(report.getAchievedRate() > 1_500 && report.getAchievedRate() < 2_500,
+                   "rate " + report.getAchievedRate());
+    }
+    
+    @Test
+    @DisplayName("Should count the time requests wait behind a stall")
+    void shouldCorrectForCoordinatedOmission() {
+        AtomicInteger calls = new AtomicInteger();
+        LoadMix mix = LoadMix.builder()
+            .add("stalling", 1, () -> {
+                if (calls.getAndIncrement() == 0) {
+                    sleep(200);
+                }
+            })
+            .build();
+        
+        // One worker and a 200ms stall: the ~40 requests arriving meanwhile all queue behind it
+        LoadReport report = generator(200, 500, 1).run(mix);
+        
+        LatencyRecorder service = report.getServiceTime();
+        LatencyRecorder response = report.getResponseTime();
+        assertTrue(service.getPercentileNanos(90) < 10_000_000, "service p90 " + service.getPercentileNanos(90));
+        assertTrue(response.getPercentileNanos(90) > 20_000_000, "response p90 " + response.getPercentileNanos(90));
+        assertTrue(report.getMaxStartLagNanos() >= 190_000_000, "lag " + report.getMaxStartLagNanos());
+        assertFalse(report.meetsSlo(99, Duration.ofMillis(100)));
+    }
+    
+    @Test
+    @DisplayName("Should count failed requests as errors")
+    void shouldCountErrors() {
+        LoadMix mix = LoadMix.builder()
+            .add("failing", 1, () -> {
+                throw new IllegalStateException("boom");
+            })
+            .build();
+        
+        LoadReport report = generator(1_000, 100, 1).run(mix);
+        
+        assertEquals(100, report.getErrors());
+        assertFalse(report.meetsSlo(50, Duration.ofHours(1)));
+    }
+    
+    @Test
+    @DisplayName("Should estimate percentiles within 1/64 of the recorded value")
+    void shouldEstimatePercentilesPrecisely() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        for (long value = 1; value <= 100_000; value++) {
+            recorder.record(value * 1_000);
+        }
+        
+        assertEquals(100_000, recorder.getCount());
+        assertEquals(100_000_000, recorder.getMaxNanos());
+        for (double percentile : new double[] {50, 90, 99, 99.9}) {
+            long exact = (long) (percentile * 1_000_000);
+            long estimate = recorder.getPercentileNanos(percentile);
+            assertTrue(estimate >= exact && estimate <= exact + exact / 64, percentile + ": " + estimate);
+        }
+        assertEquals(100_000_000, recorder.getPercentileNanos(100));
+        
+        for (long value = 0; value < 1L << 36; value = value * 3 + 1) {
+            int index = LatencyRecorder.bucketIndex(value);
+            assertTrue(LatencyRecorder.upperBoundNanos(index) >= value, "bound of " + value);
+            assertTrue(index == 0 || LatencyRecorder.upperBoundNanos(index - 1) < value, "index of " + value);
+        }
+    }
+    
+    @Test
+    @DisplayName("Should reject invalid configuration")
+    void shouldRejectInvalidConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> LoadGenerator.builder().rate(0));
+        assertThrows(IllegalArgumentException.class, () -> LoadGenerator.builder().workers(0));
+        assertThrows(IllegalArgumentException.class, () -> LoadMix.builder().build());
+        assertThrows(IllegalArgumentException.class,
+                     () -> LoadMix.builder().add("a", 1, () -> { }).add("a", 1, () -> { }));
+    }
+    
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}